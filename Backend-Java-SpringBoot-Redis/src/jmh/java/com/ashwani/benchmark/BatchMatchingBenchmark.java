@@ -0,0 +1,128 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.dispatch.Matching;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Simulated surge: batches of passengers and {@code supply} drivers per passenger scattered over a
+ * 10 x 10 km downtown, each passenger seeing its 8 nearest drivers as the batched dispatcher does.
+ * Compares the assignment booking one passenger at a time produces ({@code FIRST_COME}, each takes its
+ * nearest driver still free) with the batch solvers. Setup prints the total pickup distance per batch,
+ * the distance per match and the share of passengers matched per mode; the {@code matches} counter
+ * gives matches per second of solver time. Only the matching is simulated, so it needs no Redis.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchMatchingBenchmark {
+
+    private static final int SCENARIOS = 16;
+    private static final int CANDIDATES = 8;
+    private static final double MIN_LON = 139.70;
+    private static final double MIN_LAT = 35.65;
+    private static final double SPAN = 0.09;    // about 10 km at Tokyo's latitude
+
+    @Param({"FIRST_COME", "GREEDY", "OPTIMAL"})
+    private String mode;
+
+    @Param({"50", "250"})
+    private int batchSize;
+
+    @Param({"0.8", "1.5"})
+    private double supply;
+
+    private int driverCount;
+    private int[][][] drivers;
+    private double[][][] km;
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long matches;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        driverCount = (int) Math.round(batchSize * supply);
+        drivers = new int[SCENARIOS][][];
+        km = new double[SCENARIOS][][];
+        SplittableRandom random = new SplittableRandom(42);
+        double totalKm = 0;
+        long matched = 0;
+        for (int s = 0; s < SCENARIOS; s++) {
+            double[] driverLon = random.doubles(driverCount, MIN_LON, MIN_LON + SPAN).toArray();
+            double[] driverLat = random.doubles(driverCount, MIN_LAT, MIN_LAT + SPAN).toArray();
+            drivers[s] = new int[batchSize][];
+            km[s] = new double[batchSize][];
+            for (int p = 0; p < batchSize; p++) {
+                double lon = MIN_LON + random.nextDouble() * SPAN;
+                double lat = MIN_LAT + random.nextDouble() * SPAN;
+                double[] distance = IntStream.range(0, driverCount)
+                        .mapToDouble(d -> distanceKm(lon, lat, driverLon[d], driverLat[d]))
+                        .toArray();
+                drivers[s][p] = IntStream.range(0, driverCount).boxed()
+                        .sorted(Comparator.comparingDouble(d -> distance[d]))
+                        .limit(CANDIDATES)
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+                km[s][p] = Arrays.stream(drivers[s][p]).mapToDouble(d -> distance[d]).toArray();
+            }
+            int[] assignment = solve(s);
+            totalKm += Matching.totalKm(assignment, drivers[s], km[s]);
+            matched += Arrays.stream(assignment).filter(column -> column >= 0).count();
+        }
+        System.out.printf("%s, %d passengers, %d drivers: %.1f km total pickup per batch, %.3f km per match, %.1f%% matched%n",
+                mode, batchSize, driverCount, totalKm / SCENARIOS, totalKm / matched, 100.0 * matched / ((long) SCENARIOS * batchSize));
+    }
+
+    @Benchmark
+    public int[] match(Counters counters) {
+        int s = next;
+        next = (next + 1) % SCENARIOS;
+        int[] assignment = solve(s);
+        for (int column : assignment) {
+            if (column >= 0) {
+                counters.matches++;
+            }
+        }
+        return assignment;
+    }
+
+    private int[] solve(int s) {
+        return switch (mode) {
+            case "FIRST_COME" -> Matching.firstCome(driverCount, drivers[s], km[s]);
+            case "GREEDY" -> Matching.greedy(driverCount, drivers[s], km[s]);
+            default -> Matching.optimal(driverCount, drivers[s], km[s]);
+        };
+    }
+
+    private static double distanceKm(double lon1, double lat1, double lon2, double lat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * 6371.0088 * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,120 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.RideHailingSystemWithDistributedKvApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application, without the web layer unless asked for, with the master and replica of every region
+ * pointing at the single Redis given by {@code -Dbenchmark.redis.host} / {@code -Dbenchmark.redis.port}.
+ * Extra {@code key=value} properties override the application's defaults.
+ * <p>
+ * When nothing answers there, or with {@code -Dbenchmark.redis.embedded=true}, a Redis server bundled with
+ * the benchmarks is started on a free port for the life of the forked JVM instead, so every benchmark also
+ * runs offline. It is a real Redis 6.2, scripts and GEO commands included, without persistence.
+ */
+public final class BenchmarkContext {
+
+    private static String redisAddress;
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * host:port of the Redis the contexts point at, starting the embedded one on first use if needed.
+     */
+    public static synchronized String redisAddress() {
+        if (redisAddress == null) {
+            String host = System.getProperty("benchmark.redis.host", "localhost");
+            int port = Integer.parseInt(System.getProperty("benchmark.redis.port", "6379"));
+            boolean embedded = Boolean.getBoolean("benchmark.redis.embedded") || !reachable(host, port);
+            redisAddress = embedded ? "localhost:" + startEmbeddedRedis() : host + ":" + port;
+        }
+        return redisAddress;
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Same, with the embedded web server on a free port; read it from {@code local.server.port}.
+     */
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        String[] withPort = new String[properties.length + 1];
+        withPort[0] = "server.port=0";
+        System.arraycopy(properties, 0, withPort, 1, properties.length);
+        return run(WebApplicationType.SERVLET, withPort);
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType webApplicationType, String... properties) {
+        String address = redisAddress();
+        String host = address.substring(0, address.lastIndexOf(':'));
+        String port = address.substring(address.lastIndexOf(':') + 1);
+
+        // Passed as command-line arguments so they win over application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.data.redis=WARN",
+                "--logging.level.redis.clients.jedis=WARN",
+                "--logging.level.com.ashwani=WARN"));
+        for (String region : new String[]{"us", "eu", "asia"}) {
+            for (String role : new String[]{"master", "replica"}) {
+                args.add("--spring.redis." + region + "." + role + ".host=" + host);
+                args.add("--spring.redis." + region + "." + role + ".port=" + port);
+            }
+        }
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(RideHailingSystemWithDistributedKvApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(String[]::new));
+    }
+
+    private static boolean reachable(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static int startEmbeddedRedis() {
+        try {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            RedisServer server = RedisServer.newRedisServer()
+                    .port(port)
+                    .bind("127.0.0.1")
+                    .setting("save \"\"")
+                    .setting("appendonly no")
+                    .build();
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.stop();
+                } catch (IOException ignored) {
+                    // The process goes with the JVM anyway
+                }
+            }));
+            System.out.println("Using an embedded Redis on localhost:" + port);
+            return port;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the embedded Redis", e);
+        }
+    }
+}
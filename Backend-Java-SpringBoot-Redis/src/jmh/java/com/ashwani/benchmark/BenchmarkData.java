@@ -0,0 +1,126 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.RideIds;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.ashwani.constant.ApplicationConstant.DRIVER_GEO_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_STATE_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.RIDE_ARCHIVE_KEY_PREFIX;
+
+/**
+ * Synthetic driver fleets and ride history written straight into the region's Redis layout. Writing one driver at a
+ * time through the repository would take minutes at a million drivers, so drivers are seeded with
+ * raw pipelines. Every driver is also added to the legacy single {@code drivers:geo:<region>} index
+ * so benchmarks can compare against it.
+ */
+final class BenchmarkData {
+
+    private static final int SEED_CHUNK = 10_000;
+    private static final DateTimeFormatter DAY_BUCKET = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Writes {@code count} COMPLETED rides straight into the region's archive buckets, with start times
+     * spread over the last {@code days} days, the way {@code RideRepository.archive} would lay them out
+     * with daily buckets.
+     */
+    static void seedArchivedRides(ShardedRedisTemplateRouter router, Region region, int count, int days, long seed) {
+        RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
+        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, ConsistencyLevel.STRONG);
+        String prefix = RIDE_ARCHIVE_KEY_PREFIX + region.name().toLowerCase() + ":";
+        geoTemplate.unlink(geoTemplate.keys(prefix + "*"));
+
+        SplittableRandom random = new SplittableRandom(seed);
+        RedisSerializer<String> strings = RedisSerializer.string();
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> rides = (RedisSerializer<Object>) rideTemplate.getHashValueSerializer();
+        long now = System.currentTimeMillis();
+        for (int from = 0; from < count; from += SEED_CHUNK) {
+            int start = from;
+            int end = Math.min(from + SEED_CHUNK, count);
+            geoTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = start; i < end; i++) {
+                    Ride ride = new Ride();
+                    ride.setStartTime(now - random.nextLong(TimeUnit.DAYS.toMillis(days)));
+                    ride.setEndTime(ride.getStartTime() + TimeUnit.MINUTES.toMillis(20));
+                    ride.setId(RideIds.newId(ride.getStartTime()));
+                    ride.setPassengerId("bench-passenger-" + i);
+                    ride.setDriverId("bench-driver-" + i);
+                    ride.setStatus(RideStatus.COMPLETED);
+                    String bucket = prefix + DAY_BUCKET.format(Instant.ofEpochMilli(ride.getStartTime()));
+                    connection.hashCommands().hSet(strings.serialize(bucket), strings.serialize(ride.getId()), rides.serialize(ride));
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Replaces the region's drivers with {@code count} drivers placed uniformly in the box
+     * [minLon, minLon + span] x [minLat, minLat + span], {@code busyPercent}% of them ON_RIDE.
+     */
+    static void seedDrivers(ShardedRedisTemplateRouter router, Region region, int count, int busyPercent,
+                            double minLon, double minLat, double span, long seed) {
+        RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
+        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, ConsistencyLevel.STRONG);
+        String name = region.name().toLowerCase();
+        String driverKey = DRIVER_KEY_PREFIX + name;
+        String legacyGeoKey = DRIVER_GEO_KEY_PREFIX + name;
+        // UNLINK frees large keys in the background instead of blocking past the client timeout
+        geoTemplate.unlink(List.of(driverKey, legacyGeoKey,
+                DriverRepository.geoIndexKey(region, DriverStatus.AVAILABLE),
+                DriverRepository.geoIndexKey(region, DriverStatus.ON_RIDE),
+                DriverRepository.geoIndexKey(region, DriverStatus.OFFLINE)));
+
+        SplittableRandom random = new SplittableRandom(seed);
+        RedisSerializer<String> strings = RedisSerializer.string();
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> profiles = (RedisSerializer<Object>) driverTemplate.getHashValueSerializer();
+        for (int from = 0; from < count; from += SEED_CHUNK) {
+            int start = from;
+            int end = Math.min(from + SEED_CHUNK, count);
+            geoTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = start; i < end; i++) {
+                    Driver driver = new Driver();
+                    driver.setId("bench-driver-" + i);
+                    driver.setName("Driver " + i);
+                    driver.setStatus(random.nextInt(100) < busyPercent ? DriverStatus.ON_RIDE : DriverStatus.AVAILABLE);
+                    driver.setLongitude(minLon + random.nextDouble(span));
+                    driver.setLatitude(minLat + random.nextDouble(span));
+
+                    byte[] id = strings.serialize(driver.getId());
+                    Point point = new Point(driver.getLongitude(), driver.getLatitude());
+                    byte[] stateKey = strings.serialize(DRIVER_STATE_KEY_PREFIX + name + ":" + driver.getId());
+                    connection.hashCommands().hSet(strings.serialize(driverKey), id, profiles.serialize(driver));
+                    connection.hashCommands().hSet(stateKey, strings.serialize("status"), strings.serialize(driver.getStatus().name()));
+                    connection.hashCommands().hSet(stateKey, strings.serialize("lon"), strings.serialize(String.valueOf(point.getX())));
+                    connection.hashCommands().hSet(stateKey, strings.serialize("lat"), strings.serialize(String.valueOf(point.getY())));
+                    connection.geoCommands().geoAdd(strings.serialize(DriverRepository.geoIndexKey(region, driver.getStatus())), point, id);
+                    connection.geoCommands().geoAdd(strings.serialize(legacyGeoKey), point, id);
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_ACTIVE_RIDE_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.RIDE_KEY_PREFIX;
+
+/**
+ * The booking workload of the HTTP load benchmarks: the embedded server with twice as many drivers as
+ * clients and one passenger per client in its region, and the book-then-end cycle each client repeats.
+ * Requests the server turns away (typically a Redis pool that could not hand out a connection in time)
+ * fail the cycle instead of the benchmark, and a ride left open by a failed end is ended on the
+ * client's next cycle.
+ */
+final class BookingLoad implements AutoCloseable {
+
+    static final Region REGION = Region.US;
+
+    private final ConfigurableApplicationContext context;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final AtomicInteger nextPassenger = new AtomicInteger();
+
+    BookingLoad(int clients, String... properties) {
+        context = BenchmarkContext.startServer(properties);
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        String name = REGION.name().toLowerCase();
+        template.unlink(List.of(RIDE_KEY_PREFIX + name, PASSENGER_KEY_PREFIX + name, PASSENGER_ACTIVE_RIDE_KEY_PREFIX + name));
+        // Twice as many drivers as clients, so a booking always finds one
+        BenchmarkData.seedDrivers(router, REGION, 2 * clients, 0, -74.00, 40.70, 0.05, 7);
+        PassengerRepository passengerRepository = context.getBean(PassengerRepository.class);
+        for (int i = 0; i < clients; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId("load-passenger-" + i);
+            passenger.setName("Load Passenger " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passenger.setLatitude(40.725);
+            passenger.setLongitude(-73.975);
+            passengerRepository.save(REGION, passenger);
+        }
+    }
+
+    /**
+     * One client's place in the cycle; create one per benchmark thread.
+     */
+    Client newClient() {
+        return new Client("load-passenger-" + nextPassenger.getAndIncrement());
+    }
+
+    /**
+     * Books a ride for the client and ends it again, through the booking endpoints under {@code ridesPath}.
+     *
+     * @return whether both requests succeeded
+     */
+    boolean bookAndEnd(Client client, String ridesPath) throws IOException {
+        if (client.openRideId == null) {
+            String ride = post(ridesPath + "/book?id=" + client.passengerId);
+            if (ride == null) {
+                return false;
+            }
+            client.openRideId = objectMapper.readTree(ride).get("id").asText();
+        }
+        if (post(ridesPath + "/end?id=" + client.openRideId) == null) {
+            return false;
+        }
+        client.openRideId = null;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    // The response body, or null when the server did not answer 200
+    private String post(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("X-Region", REGION.name());
+        int status = connection.getResponseCode();
+        InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        // Drained and closed, not disconnected, so the keep-alive connection goes back to the JDK's cache
+        try (stream) {
+            String body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            return status == 200 ? body : null;
+        }
+    }
+
+    static final class Client {
+
+        private final String passengerId;
+        private String openRideId;
+
+        private Client(String passengerId) {
+            this.passengerId = passengerId;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ashwani.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained concurrent bookings over HTTP: {@value #CLIENTS} clients, more than Tomcat's 200 request
+ * threads, each booking a ride and ending it again in a loop against the embedded server. Compares
+ * request handling on platform threads (default settings) with the {@code virtual-threads} profile,
+ * which needs a Java 21+ runtime. Throughput is booking cycles per millisecond; the sample-time run
+ * gives the p99 of a cycle. Cycles the server turned away are reported as the {@code failed} counter
+ * next to {@code completed}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(1)
+@Threads(BookingLoadBenchmark.CLIENTS)
+public class BookingLoadBenchmark {
+
+    static final int CLIENTS = 256;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"PLATFORM", "VIRTUAL"})
+        private String threads;
+
+        private BookingLoad load;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            if (threads.equals("VIRTUAL") && Runtime.version().feature() < 21) {
+                throw new IllegalStateException("Virtual-thread request handling needs a Java 21+ runtime, this is "
+                        + Runtime.version() + "; run with -p threads=PLATFORM");
+            }
+            load = threads.equals("VIRTUAL")
+                    ? new BookingLoad(CLIENTS, "spring.profiles.active=virtual-threads")
+                    : new BookingLoad(CLIENTS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            load.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Client {
+
+        public long completed;
+        public long failed;
+
+        private BookingLoad.Client cycle;
+
+        @Setup(Level.Trial)
+        public void setUp(Server server) {
+            cycle = server.load.newClient();
+        }
+    }
+
+    @Benchmark
+    public boolean bookAndEndRide(Server server, Client client) throws IOException {
+        boolean done = server.load.bookAndEnd(client.cycle, "/rides");
+        if (done) {
+            client.completed++;
+        } else {
+            client.failed++;
+        }
+        return done;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.dto.DispatchResult;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.repository.RideIds;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.service.RideService;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The booking's candidate selection loop: claiming a driver from a candidate list whose first
+ * {@code stale} entries are already on a ride, as happens when the in-process index is behind, so the
+ * claim script has to pass over them before it reaches the free driver. Each operation claims and then
+ * ends the ride to free the driver again; {@code stale=0} is the cost of that cycle alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CandidateClaimBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final int PASSENGERS = 1_000;
+
+    @Param({"0", "4", "16"})
+    private int stale;
+
+    private ConfigurableApplicationContext context;
+    private RideRepository rideRepository;
+    private RideService rideService;
+    private final List<String> candidates = new ArrayList<>();
+    private final List<Passenger> passengers = new ArrayList<>();
+    private int nextPassenger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        rideRepository = context.getBean(RideRepository.class);
+        rideService = context.getBean(RideService.class);
+        DriverRepository driverRepository = context.getBean(DriverRepository.class);
+        PassengerRepository passengerRepository = context.getBean(PassengerRepository.class);
+        RedisTemplate<String, String> template = context.getBean(ShardedRedisTemplateRouter.class).getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:us*"));
+
+        for (int i = 0; i <= stale; i++) {
+            Driver driver = new Driver();
+            driver.setId(i < stale ? "bench-busy-" + i : "bench-free");
+            driver.setName(driver.getId());
+            driver.setStatus(i < stale ? DriverStatus.ON_RIDE : DriverStatus.AVAILABLE);
+            driver.setLongitude(-74.0 + i * 0.001);
+            driver.setLatitude(40.7);
+            driverRepository.saveDriver(REGION, driver);
+            candidates.add(driver.getId());
+        }
+        for (int i = 0; i < PASSENGERS; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId("bench-passenger-" + i);
+            passenger.setName("Passenger " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passenger.setLongitude(-74.0);
+            passenger.setLatitude(40.7);
+            passengerRepository.save(REGION, passenger);
+            passengers.add(passenger);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Ride claimAndEnd() {
+        Ride ride = new Ride();
+        ride.setStartTime(System.currentTimeMillis());
+        ride.setId(RideIds.newId(ride.getStartTime()));
+        Passenger passenger = passengers.get(nextPassenger);
+        ride.setPassengerId(passenger.getId());
+        ride.setStatus(RideStatus.ONGOING);
+        nextPassenger = (nextPassenger + 1) % PASSENGERS;
+
+        DispatchResult result = rideRepository.claim(REGION, ride, passenger, candidates);
+        if (result.getOutcome() != DispatchResult.Outcome.OK) {
+            throw new IllegalStateException("Claim failed: " + result.getOutcome());
+        }
+        return rideService.endRide(REGION, ride.getId());
+    }
+}
@@ -0,0 +1,156 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.ashwani.constant.ApplicationConstant.DRIVER_GEO_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_STATE_KEY_PREFIX;
+
+/**
+ * Nearest-available-driver lookup in a city where 90% of the drivers are busy.
+ * <ul>
+ *     <li>{@code legacyScan} - the original search: every driver within 50 km from a single GEO index,
+ *     then one status HGET per candidate until an AVAILABLE one turns up.</li>
+ *     <li>{@code availableIndex} - the same search against the AVAILABLE-only index.</li>
+ *     <li>{@code dispatchAndRelease} - a full booking through the dispatch script, followed by the
+ *     status update that returns the driver to the pool.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final int BUSY_PERCENT = 90;
+    // Drivers are spread over a ~55 x 45 km box around Manhattan
+    private static final double MIN_LON = -74.3;
+    private static final double MIN_LAT = 40.5;
+    private static final double SPAN = 0.5;
+
+    @Param({"10000", "100000", "1000000"})
+    private int drivers;
+
+    private ConfigurableApplicationContext context;
+    private RideRepository rideRepository;
+    private DriverRepository driverRepository;
+    private PassengerRepository passengerRepository;
+    private RedisTemplate<String, String> geoTemplate;
+    private String legacyGeoKey;
+    private String availableGeoKey;
+    private SplittableRandom random;
+    private Passenger passenger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        rideRepository = context.getBean(RideRepository.class);
+        driverRepository = context.getBean(DriverRepository.class);
+        passengerRepository = context.getBean(PassengerRepository.class);
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        geoTemplate = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        random = new SplittableRandom(42);
+
+        legacyGeoKey = DRIVER_GEO_KEY_PREFIX + REGION.name().toLowerCase();
+        availableGeoKey = DriverRepository.geoIndexKey(REGION, DriverStatus.AVAILABLE);
+        BenchmarkData.seedDrivers(router, REGION, drivers, BUSY_PERCENT, MIN_LON, MIN_LAT, SPAN, 42);
+
+        passenger = new Passenger();
+        passenger.setId("bench-passenger");
+        passenger.setName("Passenger");
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLongitude(MIN_LON + SPAN / 2);
+        passenger.setLatitude(MIN_LAT + SPAN / 2);
+        passengerRepository.save(REGION, passenger);
+        passengerRepository.clearActiveRide(REGION, passenger.getId());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String legacyScan() {
+        GeoResults<GeoLocation<String>> results = geoTemplate.opsForGeo().radius(legacyGeoKey,
+                new Circle(randomPoint(), new Distance(50, Metrics.KILOMETERS)));
+        for (GeoResult<GeoLocation<String>> result : results) {
+            String driverId = result.getContent().getName();
+            Object status = geoTemplate.opsForHash().get(DRIVER_STATE_KEY_PREFIX + "us:" + driverId, "status");
+            if (DriverStatus.AVAILABLE.name().equals(status)) {
+                return driverId;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Object availableIndex() {
+        return geoTemplate.opsForGeo().radius(availableGeoKey,
+                new Circle(randomPoint(), new Distance(50, Metrics.KILOMETERS)),
+                RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs().sortAscending().limit(1));
+    }
+
+    @Benchmark
+    public Ride dispatchAndRelease() {
+        Point point = randomPoint();
+        Ride ride = new Ride();
+        ride.setId(UUID.randomUUID().toString());
+        ride.setPassengerId("bench-passenger");
+        ride.setStatus(RideStatus.ONGOING);
+        ride.setStartTime(System.currentTimeMillis());
+        passenger.setLongitude(point.getX());
+        passenger.setLatitude(point.getY());
+        rideRepository.dispatch(REGION, ride, passenger, List.of(50.0), 100);
+
+        if (ride.getDriverId() != null) {
+            driverRepository.updateDriverStatus(REGION, ride.getDriverId(), DriverStatus.AVAILABLE);
+        }
+        passengerRepository.clearActiveRide(REGION, ride.getPassengerId());
+        return ride;
+    }
+
+    private Point randomPoint() {
+        return new Point(MIN_LON + random.nextDouble(SPAN), MIN_LAT + random.nextDouble(SPAN));
+    }
+}
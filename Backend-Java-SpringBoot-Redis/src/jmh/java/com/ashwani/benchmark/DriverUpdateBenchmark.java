@@ -0,0 +1,121 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.ashwani.constant.ApplicationConstant.DRIVER_GEO_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_KEY_PREFIX;
+
+/**
+ * Cost of a single location or status update with the legacy layout (GEOADD + HGET of the JSON
+ * profile + HSET of it back) against the split layout, where the hot fields are written in place
+ * by one script call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DriverUpdateBenchmark {
+
+    private static final Region REGION = Region.US;
+
+    @Param({"10000"})
+    private int drivers;
+
+    private ConfigurableApplicationContext context;
+    private DriverRepository driverRepository;
+    private RedisTemplate<String, Driver> driverTemplate;
+    private RedisTemplate<String, String> geoTemplate;
+    private String[] driverIds;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        driverRepository = context.getBean(DriverRepository.class);
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        driverTemplate = router.getDriverTemplate(REGION, ConsistencyLevel.STRONG);
+        geoTemplate = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        random = new SplittableRandom(42);
+
+        driverIds = new String[drivers];
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("bench-driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLongitude(-74.0 + random.nextDouble(0.5));
+            driver.setLatitude(40.6 + random.nextDouble(0.5));
+            driverRepository.saveDriver(REGION, driver);
+            driverIds[i] = driver.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void legacyLocationUpdate() {
+        String driverId = driverIds[random.nextInt(drivers)];
+        double longitude = -74.0 + random.nextDouble(0.5);
+        double latitude = 40.6 + random.nextDouble(0.5);
+        String driverKey = DRIVER_KEY_PREFIX + REGION.name().toLowerCase();
+
+        geoTemplate.opsForGeo().add(DRIVER_GEO_KEY_PREFIX + REGION.name().toLowerCase(), new Point(longitude, latitude), driverId);
+        Driver driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
+        if (driver != null) {
+            driver.setLongitude(longitude);
+            driver.setLatitude(latitude);
+            driverTemplate.opsForHash().put(driverKey, driverId, driver);
+        }
+    }
+
+    @Benchmark
+    public void splitLocationUpdate() {
+        String driverId = driverIds[random.nextInt(drivers)];
+        driverRepository.updateDriverLocation(REGION, driverId, -74.0 + random.nextDouble(0.5), 40.6 + random.nextDouble(0.5));
+    }
+
+    @Benchmark
+    public void legacyStatusUpdate() {
+        String driverId = driverIds[random.nextInt(drivers)];
+        String driverKey = DRIVER_KEY_PREFIX + REGION.name().toLowerCase();
+        Driver driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
+        if (driver != null) {
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driverTemplate.opsForHash().put(driverKey, driverId, driver);
+        }
+    }
+
+    @Benchmark
+    public void splitStatusUpdate() {
+        driverRepository.updateDriverStatus(REGION, driverIds[random.nextInt(drivers)], DriverStatus.AVAILABLE);
+    }
+}
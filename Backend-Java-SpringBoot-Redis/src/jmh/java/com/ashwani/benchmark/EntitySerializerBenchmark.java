@@ -0,0 +1,127 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.codec.DriverCodec;
+import com.ashwani.codec.EntityCodec;
+import com.ashwani.codec.PassengerCodec;
+import com.ashwani.codec.RideCodec;
+import com.ashwani.codec.ValueFormat;
+import com.ashwani.codec.VersionedRedisSerializer;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.repository.RideIds;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of the entity values, with the typed Jackson JSON the templates have
+ * always written ({@code JSON}) against the versioned binary codecs ({@code BINARY}). Setup prints
+ * the stored size of each entity in both formats. Needs no Redis.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EntitySerializerBenchmark {
+
+    @Param({"DRIVER", "PASSENGER", "RIDE"})
+    private String entity;
+
+    @Param({"JSON", "BINARY"})
+    private ValueFormat format;
+
+    private RedisSerializer<Object> serializer;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        EntityCodec<?> codec = switch (entity) {
+            case "DRIVER" -> {
+                Driver driver = new Driver();
+                driver.setId(UUID.randomUUID().toString());
+                driver.setName("Alexandra Johnson");
+                driver.setStatus(DriverStatus.AVAILABLE);
+                driver.setLatitude(40.712776);
+                driver.setLongitude(-74.005974);
+                driver.setLastUpdated(now);
+                value = driver;
+                yield new DriverCodec();
+            }
+            case "PASSENGER" -> {
+                Passenger passenger = new Passenger();
+                passenger.setId(UUID.randomUUID().toString());
+                passenger.setName("Samuel Okafor");
+                passenger.setStatus(PassengerStatus.ONLINE);
+                passenger.setLatitude(40.758896);
+                passenger.setLongitude(-73.985130);
+                value = passenger;
+                yield new PassengerCodec();
+            }
+            case "RIDE" -> {
+                Ride ride = new Ride();
+                ride.setStartTime(now);
+                ride.setEndTime(now + TimeUnit.MINUTES.toMillis(23));
+                ride.setId(RideIds.newId(now));
+                ride.setPassengerId(UUID.randomUUID().toString());
+                ride.setDriverId(UUID.randomUUID().toString());
+                ride.setStatus(RideStatus.COMPLETED);
+                value = ride;
+                yield new RideCodec();
+            }
+            default -> throw new IllegalArgumentException("Unknown entity " + entity);
+        };
+        serializer = (RedisSerializer<Object>) serializer(codec, format);
+        encoded = serializer.serialize(value);
+        if (format == ValueFormat.BINARY) {
+            System.out.printf("%s: %d bytes as BINARY, %d bytes as JSON%n", entity, encoded.length,
+                    serializer(codec, ValueFormat.JSON).serialize(cast(value)).length);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serializer.deserialize(encoded);
+    }
+
+    // Same JSON setup as RedisConfig
+    private static <T> VersionedRedisSerializer<T> serializer(EntityCodec<T> codec, ValueFormat format) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return new VersionedRedisSerializer<>(codec, new Jackson2JsonRedisSerializer<>(objectMapper, codec.type()), format);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.config.DispatchProperties;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.geo.LocalDriverIndex;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * k-nearest AVAILABLE drivers from the in-process grid ({@code localKnn}) versus GEOSEARCH on Redis
+ * ({@code redisKnn}, the expanding-ring search), over a metro-sized fleet with 90% of drivers busy.
+ * Setup loads the grid through {@link LocalDriverIndex#reconcile} and prints the heap it retains per
+ * driver, ids included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class LocalIndexBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final double MIN_LON = -74.25;
+    private static final double MIN_LAT = 40.50;
+    private static final double SPAN = 0.5;
+
+    @Param({"100000", "1000000"})
+    private int drivers;
+
+    private ConfigurableApplicationContext context;
+    private LocalDriverIndex localDriverIndex;
+    private RideRepository rideRepository;
+    private List<Double> ringsKm;
+    private int candidateCount;
+    private double maxRadiusKm;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("ride.local-index.enabled=true", "ride.local-index.reconcile-interval-ms=3600000");
+        localDriverIndex = context.getBean(LocalDriverIndex.class);
+        rideRepository = context.getBean(RideRepository.class);
+        DispatchProperties properties = context.getBean(DispatchProperties.class);
+        ringsKm = properties.ringsKm(REGION);
+        candidateCount = properties.forRegion(REGION).getCandidateCount();
+        maxRadiusKm = properties.forRegion(REGION).getMaxRadiusKm();
+
+        // Baseline with an empty region, so the delta is the copy of the seeded fleet alone
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        BenchmarkData.seedDrivers(router, REGION, 0, 90, MIN_LON, MIN_LAT, SPAN, 11);
+        localDriverIndex.reconcile(REGION);
+        long before = usedHeap();
+        BenchmarkData.seedDrivers(router, REGION, drivers, 90, MIN_LON, MIN_LAT, SPAN, 11);
+        int loaded = localDriverIndex.reconcile(REGION);
+        long retained = usedHeap() - before;
+        System.out.printf("Local index: %d drivers, ~%d bytes retained per driver%n", loaded, retained / Math.max(1, loaded));
+        random = new SplittableRandom(11);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object localKnn() {
+        return localDriverIndex.nearestAvailable(REGION, randomLon(), randomLat(), candidateCount, maxRadiusKm);
+    }
+
+    @Benchmark
+    public Object redisKnn() {
+        return rideRepository.getNearByDrivers(REGION, randomLat(), randomLon(), ringsKm, candidateCount,
+                ConsistencyLevel.STRONG);
+    }
+
+    private double randomLon() {
+        return MIN_LON + random.nextDouble(SPAN);
+    }
+
+    private double randomLat() {
+        return MIN_LAT + random.nextDouble(SPAN);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
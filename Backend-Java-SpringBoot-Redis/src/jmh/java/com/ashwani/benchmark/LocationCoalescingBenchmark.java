@@ -0,0 +1,133 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.enums.Region;
+import com.ashwani.ingest.LocationIngestionPipeline;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis write load of one flush window of location pings, written one script call per ping
+ * ({@code DIRECT}, the synchronous endpoint) or through {@link LocationIngestionPipeline}
+ * ({@code BUFFERED}). Every driver pings {@code pingsPerSecond} times a second with GPS jitter, so a
+ * window holds {@code pingsPerSecond * flushIntervalMs / 1000} pings per driver on average.
+ * <p>
+ * The score is flush windows handled per second. The {@code pings}, {@code driverWrites} (state hashes
+ * written) and {@code scriptCalls} counters are totals over the measured iterations, so
+ * {@code driverWrites / pings} is the share of pings that still reach Redis and {@code scriptCalls / pings}
+ * the round trips per ping.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocationCoalescingBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final int MAX_UPDATES_PER_SCRIPT = 1000;
+
+    public enum Path { DIRECT, BUFFERED }
+
+    @Param({"1000"})
+    private int drivers;
+
+    @Param({"1", "4"})
+    private double pingsPerSecond;
+
+    @Param({"250", "1000"})
+    private int flushIntervalMs;
+
+    @Param({"DIRECT", "BUFFERED"})
+    private Path path;
+
+    private ConfigurableApplicationContext context;
+    private DriverRepository driverRepository;
+    private LocationIngestionPipeline pipeline;
+    private SplittableRandom random;
+    private double[] longitudes;
+    private double[] latitudes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The benchmark flushes at the end of each window itself, so the pipeline's own flusher stays idle
+        context = BenchmarkContext.start(
+                "ride.ingestion.enabled=true",
+                "ride.ingestion.flush-interval=1h",
+                "ride.ingestion.capacity=1000000");
+        driverRepository = context.getBean(DriverRepository.class);
+        pipeline = context.getBean(LocationIngestionPipeline.class);
+        BenchmarkData.seedDrivers(context.getBean(ShardedRedisTemplateRouter.class), REGION, drivers, 0, -74.00, 40.70, 0.05, 11);
+
+        random = new SplittableRandom(42);
+        longitudes = new double[drivers];
+        latitudes = new double[drivers];
+        for (int i = 0; i < drivers; i++) {
+            longitudes[i] = -74.00 + random.nextDouble(0.05);
+            latitudes[i] = 40.70 + random.nextDouble(0.05);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WriteLoad {
+
+        public long pings;
+        public long driverWrites;
+        public long scriptCalls;
+    }
+
+    @Benchmark
+    public void flushWindow(WriteLoad load) {
+        double pingsPerDriver = pingsPerSecond * flushIntervalMs / 1000.0;
+        int pingedDrivers = 0;
+        for (int i = 0; i < drivers; i++) {
+            // Whole pings plus one more with the fractional remainder's probability
+            int pings = (int) pingsPerDriver + (random.nextDouble() < pingsPerDriver % 1 ? 1 : 0);
+            if (pings > 0) {
+                pingedDrivers++;
+            }
+            for (int p = 0; p < pings; p++) {
+                double longitude = longitudes[i] += random.nextDouble(-0.0002, 0.0002);
+                double latitude = latitudes[i] += random.nextDouble(-0.0002, 0.0002);
+                String driverId = "bench-driver-" + i;
+                if (path == Path.DIRECT) {
+                    driverRepository.updateDriverLocation(REGION, driverId, longitude, latitude);
+                    load.driverWrites++;
+                    load.scriptCalls++;
+                } else {
+                    pipeline.submit(REGION, driverId, longitude, latitude);
+                }
+                load.pings++;
+            }
+        }
+        if (path == Path.BUFFERED) {
+            pipeline.flushAll();
+            load.driverWrites += pingedDrivers;
+            load.scriptCalls += (pingedDrivers + MAX_UPDATES_PER_SCRIPT - 1) / MAX_UPDATES_PER_SCRIPT;
+        }
+    }
+}
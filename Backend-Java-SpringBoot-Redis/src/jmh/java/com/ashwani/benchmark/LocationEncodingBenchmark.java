@@ -0,0 +1,81 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cost of a location script call before it reaches the network: building its keys and
+ * arguments with {@link DriverRepository#locationUpdateCall} ({@code build}), and serializing them to
+ * bytes as the template does as well ({@code buildAndSerialize}), for calls carrying 1, 100 and 1,000
+ * pings; divide by the batch size for the cost per ping. Needs no Redis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocationEncodingBenchmark {
+
+    private static final Region REGION = Region.US;
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    private final RedisSerializer<String> serializer = RedisSerializer.string();
+    private List<String> driverIds;
+    private Map<String, Point> locations;
+    private String timestamp;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        driverIds = new ArrayList<>(batchSize);
+        locations = new LinkedHashMap<>();
+        for (int i = 0; i < batchSize; i++) {
+            String driverId = UUID.randomUUID().toString();
+            driverIds.add(driverId);
+            locations.put(driverId, new Point(-74.0 + random.nextDouble(0.5), 40.5 + random.nextDouble(0.5)));
+        }
+        timestamp = String.valueOf(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public DriverRepository.LocationUpdateCall build() {
+        return DriverRepository.locationUpdateCall(REGION, "drivers:us", timestamp, "", driverIds, locations);
+    }
+
+    @Benchmark
+    public int buildAndSerialize() {
+        DriverRepository.LocationUpdateCall call = DriverRepository.locationUpdateCall(REGION, "drivers:us", timestamp, "", driverIds, locations);
+        int bytes = 0;
+        for (String key : call.keys()) {
+            bytes += serializer.serialize(key).length;
+        }
+        for (Object arg : call.args()) {
+            bytes += serializer.serialize((String) arg).length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.geo.Point;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings per second through the single-ping path ({@link DriverRepository#updateDriverLocation})
+ * compared with the pipelined batch path ({@link DriverRepository#updateDriverLocations}).
+ * Both modes report throughput in pings, so the scores compare directly.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocationIngestionBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final Region REGION = Region.US;
+
+    @Param({"10000"})
+    private int drivers;
+
+    private ConfigurableApplicationContext context;
+    private DriverRepository driverRepository;
+    private String[] driverIds;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        driverRepository = context.getBean(DriverRepository.class);
+        random = new SplittableRandom(42);
+
+        driverIds = new String[drivers];
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("bench-driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLongitude(-74.0 + random.nextDouble(0.5));
+            driver.setLatitude(40.6 + random.nextDouble(0.5));
+            driverRepository.saveDriver(REGION, driver);
+            driverIds[i] = driver.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singlePing() {
+        String driverId = driverIds[random.nextInt(drivers)];
+        driverRepository.updateDriverLocation(REGION, driverId, -74.0 + random.nextDouble(0.5), 40.6 + random.nextDouble(0.5));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object batch() {
+        Map<String, Point> locations = new LinkedHashMap<>(BATCH_SIZE * 2);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            locations.put(driverIds[random.nextInt(drivers)],
+                    new Point(-74.0 + random.nextDouble(0.5), 40.6 + random.nextDouble(0.5)));
+        }
+        return driverRepository.updateDriverLocations(REGION, locations);
+    }
+}
@@ -0,0 +1,117 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.metrics.HotPathMetrics;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.service.RideService;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the hot-path instrumentation, {@code ride.metrics.detailed} on and off: a booking followed by
+ * ending the ride ({@code bookAndEnd}), a single location update ({@code locationUpdate}), and recording
+ * one stage on its own ({@code recordStage}), which is all the instrumentation adds per stage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final int DRIVERS = 1_000;
+    private static final int PASSENGERS = 1_000;
+
+    @Param({"true", "false"})
+    private boolean detailed;
+
+    private ConfigurableApplicationContext context;
+    private RideService rideService;
+    private DriverRepository driverRepository;
+    private HotPathMetrics hotPathMetrics;
+    private SplittableRandom random;
+    private int nextPassenger;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("ride.metrics.detailed=" + detailed);
+        rideService = context.getBean(RideService.class);
+        driverRepository = context.getBean(DriverRepository.class);
+        hotPathMetrics = context.getBean(HotPathMetrics.class);
+        PassengerRepository passengerRepository = context.getBean(PassengerRepository.class);
+        RedisTemplate<String, String> template = context.getBean(ShardedRedisTemplateRouter.class).getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:us*"));
+
+        random = new SplittableRandom(42);
+        for (int i = 0; i < DRIVERS; i++) {
+            Driver driver = new Driver();
+            driver.setId("bench-driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLongitude(-74.0 + random.nextDouble(0.1));
+            driver.setLatitude(40.7 + random.nextDouble(0.1));
+            driverRepository.saveDriver(REGION, driver);
+        }
+        for (int i = 0; i < PASSENGERS; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId("bench-passenger-" + i);
+            passenger.setName("Passenger " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passenger.setLongitude(-74.0 + random.nextDouble(0.1));
+            passenger.setLatitude(40.7 + random.nextDouble(0.1));
+            passengerRepository.save(REGION, passenger);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Ride bookAndEnd() {
+        String passengerId = "bench-passenger-" + nextPassenger;
+        nextPassenger = (nextPassenger + 1) % PASSENGERS;
+        Ride ride = rideService.bookRide(REGION, passengerId);
+        return rideService.endRide(REGION, ride.getId());
+    }
+
+    @Benchmark
+    public void locationUpdate() {
+        driverRepository.updateDriverLocation(REGION, "bench-driver-" + random.nextInt(DRIVERS),
+                -74.0 + random.nextDouble(0.1), 40.7 + random.nextDouble(0.1));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void recordStage() {
+        long start = hotPathMetrics.start();
+        hotPathMetrics.booking(REGION, HotPathMetrics.BookingStage.CLAIM, start);
+    }
+}
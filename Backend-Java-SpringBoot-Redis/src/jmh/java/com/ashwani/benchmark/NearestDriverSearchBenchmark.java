@@ -0,0 +1,102 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.config.DispatchProperties;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.SearchMode;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate search in a dense city: every driver sits in a ~10 x 10 km downtown box.
+ * {@code fullRadius} is the original query (every member within 50 km, no COUNT, no sort);
+ * {@code expandingRing} is {@link RideRepository#getNearByDrivers} with the default ring settings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NearestDriverSearchBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final double MIN_LON = -74.02;
+    private static final double MIN_LAT = 40.70;
+    private static final double SPAN = 0.09;
+
+    @Param({"20000", "200000"})
+    private int drivers;
+
+    private ConfigurableApplicationContext context;
+    private RideRepository rideRepository;
+    private RedisTemplate<String, String> geoTemplate;
+    private String availableGeoKey;
+    private List<Double> ringsKm;
+    private int candidateCount;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        rideRepository = context.getBean(RideRepository.class);
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        geoTemplate = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        availableGeoKey = DriverRepository.geoIndexKey(REGION, DriverStatus.AVAILABLE);
+
+        DispatchProperties properties = new DispatchProperties();
+        properties.setSearchMode(SearchMode.EXPANDING_RING);
+        ringsKm = properties.ringsKm(REGION);
+        candidateCount = properties.forRegion(REGION).getCandidateCount();
+
+        BenchmarkData.seedDrivers(router, REGION, drivers, 0, MIN_LON, MIN_LAT, SPAN, 7);
+        random = new SplittableRandom(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object fullRadius() {
+        return geoTemplate.opsForGeo().radius(availableGeoKey,
+                new Circle(randomPoint(), new Distance(50, Metrics.KILOMETERS)));
+    }
+
+    @Benchmark
+    public Object expandingRing() {
+        Point point = randomPoint();
+        return rideRepository.getNearByDrivers(REGION, point.getY(), point.getX(), ringsKm, candidateCount,
+                ConsistencyLevel.STRONG);
+    }
+
+    private Point randomPoint() {
+        return new Point(MIN_LON + random.nextDouble(SPAN), MIN_LAT + random.nextDouble(SPAN));
+    }
+}
@@ -0,0 +1,87 @@
+package com.ashwani.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking against reactive booking with the server held to {@value #REQUEST_THREADS} request threads:
+ * {@value #CLIENTS} HTTP clients book and end rides through {@code /rides} (each request keeps its
+ * thread until Redis has answered every call) or {@code /reactive/rides} (the thread is released while
+ * the commands are in flight on the shared Lettuce connection). Throughput is booking cycles per
+ * millisecond, with refused cycles counted as {@code failed}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(1)
+@Threads(ReactiveBookingBenchmark.CLIENTS)
+public class ReactiveBookingBenchmark {
+
+    static final int CLIENTS = 64;
+    static final int REQUEST_THREADS = 8;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        @Param({"BLOCKING", "REACTIVE"})
+        private String stack;
+
+        private BookingLoad load;
+        private String ridesPath;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            load = new BookingLoad(CLIENTS, "server.tomcat.threads.max=" + REQUEST_THREADS,
+                    "server.tomcat.threads.min-spare=" + REQUEST_THREADS);
+            ridesPath = stack.equals("REACTIVE") ? "/reactive/rides" : "/rides";
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            load.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Client {
+
+        public long completed;
+        public long failed;
+
+        private BookingLoad.Client cycle;
+
+        @Setup(Level.Trial)
+        public void setUp(Server server) {
+            cycle = server.load.newClient();
+        }
+    }
+
+    @Benchmark
+    public boolean bookAndEndRide(Server server, Client client) throws IOException {
+        boolean done = server.load.bookAndEnd(client.cycle, server.ridesPath);
+        if (done) {
+            client.completed++;
+        } else {
+            client.failed++;
+        }
+        return done;
+    }
+}
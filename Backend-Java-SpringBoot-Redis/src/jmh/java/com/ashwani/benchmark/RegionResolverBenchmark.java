@@ -0,0 +1,86 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.config.RegionResolutionProperties;
+import com.ashwani.enums.Region;
+import com.ashwani.geo.RegionGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region lookups per second through {@link RegionGrid}, over uniformly random points on land-sized
+ * areas. {@code BOXES} uses the default bounding boxes; {@code POLYGONS} outlines every region with a
+ * 64-vertex polygon, so the points landing in boundary cells pay for a point-in-polygon test. Run with
+ * {@code -prof gc} to confirm lookups allocate nothing. Needs no Redis.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegionResolverBenchmark {
+
+    private static final int POINTS = 1 << 16;
+
+    @Param({"BOXES", "POLYGONS"})
+    private String areas;
+
+    @Param({"0.5", "0.1"})
+    private double gridSizeDeg;
+
+    private RegionGrid grid;
+    private final double[] longitudes = new double[POINTS];
+    private final double[] latitudes = new double[POINTS];
+
+    @Setup
+    public void setUp() {
+        Map<Region, List<String>> shapes = areas.equals("BOXES")
+                ? new RegionResolutionProperties().getRegions()
+                : Map.of(Region.US, List.of(ellipse(-100, 20, 60, 55)),
+                         Region.EU, List.of(ellipse(15, 20, 35, 55)),
+                         Region.ASIA, List.of(ellipse(110, 20, 55, 55)));
+        grid = RegionGrid.of(shapes, gridSizeDeg);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < POINTS; i++) {
+            longitudes[i] = -180 + random.nextDouble() * 360;
+            latitudes[i] = -60 + random.nextDouble() * 130;
+        }
+        System.out.printf("%s at %s degrees: %d boundary cells%n", areas, gridSizeDeg, grid.boundaryCells());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void resolve(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            blackhole.consume(grid.resolve(longitudes[i], latitudes[i]));
+        }
+    }
+
+    private static String ellipse(double lon, double lat, double radiusLon, double radiusLat) {
+        StringBuilder shape = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            double angle = 2 * Math.PI * i / 64;
+            if (i > 0) {
+                shape.append("; ");
+            }
+            shape.append(lon + radiusLon * Math.cos(angle)).append(' ').append(lat + radiusLat * Math.sin(angle));
+        }
+        return shape.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.service.RideService;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_ACTIVE_RIDE_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.RIDE_KEY_PREFIX;
+
+/**
+ * Latency of {@code endRide} while the region's completed-ride history grows from nothing to a million
+ * rides over 30 days of archive buckets. Each invocation ends a ride booked in the per-invocation setup.
+ * With active rides in their own hash the latency should stay flat across the params; sample mode
+ * reports its percentiles.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RideLifecycleBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final String PASSENGER_ID = "bench-passenger";
+
+    @Param({"0", "100000", "1000000"})
+    private int completedRides;
+
+    private ConfigurableApplicationContext context;
+    private RideService rideService;
+    private Ride ride;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        rideService = context.getBean(RideService.class);
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        String name = REGION.name().toLowerCase();
+        template.unlink(List.of(RIDE_KEY_PREFIX + name, PASSENGER_ACTIVE_RIDE_KEY_PREFIX + name));
+
+        BenchmarkData.seedDrivers(router, REGION, 0, 0, 0, 0, 0, 1);
+        BenchmarkData.seedArchivedRides(router, REGION, completedRides, 30, 1);
+
+        Driver driver = new Driver();
+        driver.setId("bench-driver");
+        driver.setName("Bench Driver");
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLatitude(40.75);
+        driver.setLongitude(-73.98);
+        context.getBean(DriverRepository.class).saveDriver(REGION, driver);
+
+        Passenger passenger = new Passenger();
+        passenger.setId(PASSENGER_ID);
+        passenger.setName("Bench Passenger");
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLatitude(40.751);
+        passenger.setLongitude(-73.981);
+        context.getBean(PassengerRepository.class).save(REGION, passenger);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Per-invocation setup is fine here: an endRide is several round trips, far above JMH's timer overhead
+    @Setup(Level.Invocation)
+    public void book() {
+        ride = rideService.bookRide(REGION, PASSENGER_ID);
+    }
+
+    @Benchmark
+    public Ride endRide() {
+        return rideService.endRide(REGION, ride.getId());
+    }
+}
@@ -0,0 +1,130 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.config.DispatchProperties;
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.sharding.RegionShards;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of location batches and nearest-driver searches as the US region is split over 1 to 4
+ * masters. Shard 0 is {@code -Dbenchmark.redis.host/port}; the others are taken in order from
+ * {@code -Dbenchmark.redis.shards}, by default localhost:6381, :6382 and :6383, each its own
+ * redis-server. Drivers cover a 2 x 2 degree area, several metros wide, cut into the default 0.5 degree
+ * cells; now and then a driver in a batch crosses into a cell of another shard. The masters only add
+ * capacity when each has a core of its own: on a single core the runs measure the routing overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ShardScalingBenchmark {
+
+    private static final Region REGION = Region.US;
+    private static final double MIN_LON = -75.0;
+    private static final double MIN_LAT = 39.5;
+    private static final double SPAN = 2.0;
+    private static final int BATCH = 100;
+
+    @Param({"1", "2", "3", "4"})
+    private int shards;
+
+    @Param({"20000"})
+    private int drivers;
+
+    private ConfigurableApplicationContext context;
+    private DriverRepository driverRepository;
+    private RideRepository rideRepository;
+    private List<Double> ringsKm;
+    private int candidateCount;
+    private double[][] positions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] extra = System.getProperty("benchmark.redis.shards", "localhost:6381,localhost:6382,localhost:6383").split(",");
+        String shardList = String.join(",", List.of(extra).subList(0, shards - 1));
+        context = BenchmarkContext.start("spring.redis.us.shards=" + shardList, "ride.push.enabled=false");
+        driverRepository = context.getBean(DriverRepository.class);
+        rideRepository = context.getBean(RideRepository.class);
+        ShardedRedisTemplateRouter router = context.getBean(ShardedRedisTemplateRouter.class);
+        RegionShards regionShards = context.getBean(RegionShards.class);
+        for (int shard = 0; shard < regionShards.count(REGION); shard++) {
+            RedisTemplate<String, String> template = router.getGeoTemplate(REGION, shard, ConsistencyLevel.STRONG);
+            template.unlink(template.keys("*:us*"));
+        }
+
+        DispatchProperties properties = context.getBean(DispatchProperties.class);
+        ringsKm = properties.ringsKm(REGION);
+        candidateCount = properties.forRegion(REGION).getCandidateCount();
+
+        SplittableRandom random = new SplittableRandom(18);
+        positions = new double[drivers][];
+        for (int i = 0; i < drivers; i++) {
+            Driver driver = new Driver();
+            driver.setId("bench-driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLongitude(MIN_LON + random.nextDouble(SPAN));
+            driver.setLatitude(MIN_LAT + random.nextDouble(SPAN));
+            driverRepository.saveDriver(REGION, driver);
+            positions[i] = new double[]{driver.getLongitude(), driver.getLatitude()};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Each driver moves up to ~100 m, so now and then one crosses a cell border
+    @Benchmark
+    public Object locationBatch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Point> batch = new HashMap<>();
+        for (int i = 0; i < BATCH; i++) {
+            int driver = random.nextInt(drivers);
+            double[] position = positions[driver];
+            batch.put("bench-driver-" + driver, new Point(position[0] + random.nextDouble(-0.001, 0.001),
+                    position[1] + random.nextDouble(-0.001, 0.001)));
+        }
+        return driverRepository.updateDriverLocations(REGION, batch);
+    }
+
+    @Benchmark
+    public Object nearestDrivers() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return rideRepository.getNearByDrivers(REGION, MIN_LAT + random.nextDouble(SPAN), MIN_LON + random.nextDouble(SPAN),
+                ringsKm, candidateCount, ConsistencyLevel.STRONG);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ashwani.benchmark;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of picking a template for a request with {@link ShardedRedisTemplateRouter}, taken on every Redis
+ * access: a map lookup for {@code STRONG}, and for {@code EVENTUAL} the replica choice among the usable
+ * replicas as well. Cycles through the three regions. Sends no commands, but the context needs a Redis
+ * to start.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateRoutingBenchmark {
+
+    private static final Region[] REGIONS = Region.values();
+
+    @Param({"STRONG", "EVENTUAL"})
+    private ConsistencyLevel consistency;
+
+    private ConfigurableApplicationContext context;
+    private ShardedRedisTemplateRouter router;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        router = context.getBean(ShardedRedisTemplateRouter.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public RedisTemplate<String, Driver> getTemplate() {
+        Region region = REGIONS[next];
+        next = next + 1 == REGIONS.length ? 0 : next + 1;
+        return router.getDriverTemplate(region, consistency);
+    }
+}
@@ -0,0 +1,232 @@
+package com.ashwani.cache;
+
+import com.ashwani.config.NearCacheProperties;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.sharding.ReactiveShardedRedisTemplateRouter;
+import com.ashwani.sharding.RegionShards;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_EVENTS_CHANNEL_PREFIX;
+
+/**
+ * Caches driver profiles and passengers in process, each tagged with the version it was read at.
+ * <ul>
+ *     <li>Driver profiles are versioned by the {@code pv} field of the driver's state hash, which every
+ *     read fetches anyway for the hot fields; a cached profile is used only when its version matches,
+ *     at any consistency level.</li>
+ *     <li>Passengers are versioned in {@code passengers:version:<region>}, bumped by the same script that
+ *     writes them. EVENTUAL reads are served from the cache as is; STRONG reads check the version on the
+ *     master first and use the cached copy only when it matches.</li>
+ * </ul>
+ * Passenger writes also publish the id on {@code passengers:events:<region>}; every instance listens on
+ * its regions' masters and drops the entry, so EVENTUAL reads elsewhere stop serving it. A listener that
+ * has to resubscribe drops the region's passengers, since it may have missed some. Entries are bounded
+ * by size (W-TinyLFU eviction) and expire {@code ride.near-cache.ttl} after loading.
+ * <p>
+ * Lookups hand out copies, so callers can modify what they get back.
+ */
+@Component
+public class NearCache implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCache.class);
+
+    private final NearCacheProperties properties;
+    private final Cache<String, Entry<Driver>> drivers;
+    private final Cache<String, Entry<Passenger>> passengers;
+    private final Counters driverCounters;
+    private final Counters passengerCounters;
+    private final List<Disposable> listeners = new ArrayList<>();
+
+    public NearCache(NearCacheProperties properties, ReactiveShardedRedisTemplateRouter router, RegionShards shards,
+                     MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.drivers = build(properties);
+        this.passengers = build(properties);
+        this.driverCounters = new Counters("drivers", meterRegistry);
+        this.passengerCounters = new Counters("passengers", meterRegistry);
+        if (properties.isEnabled()) {
+            CaffeineCacheMetrics.monitor(meterRegistry, drivers, "drivers");
+            CaffeineCacheMetrics.monitor(meterRegistry, passengers, "passengers");
+            for (Region region : Region.values()) {
+                for (int shard = 0; shard < shards.count(region); shard++) {
+                    listeners.add(listen(router, region, shard));
+                }
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public static String passengerChannel(Region region) {
+        return PASSENGER_EVENTS_CHANNEL_PREFIX + region.name().toLowerCase();
+    }
+
+    /**
+     * Argument for the passenger write script naming the channel to publish on; empty tells it not to.
+     */
+    public String passengerScriptArg(Region region) {
+        return properties.isEnabled() ? passengerChannel(region) : "";
+    }
+
+    /**
+     * A copy of the driver's cached profile if it was read at {@code version}, otherwise null.
+     */
+    public Driver driverProfile(Region region, String driverId, long version) {
+        Entry<Driver> entry = lookup(drivers, driverCounters, region, driverId, version);
+        return entry != null ? copy(entry.value()) : null;
+    }
+
+    public void putDriverProfile(Region region, String driverId, long version, Driver profile) {
+        put(drivers, region, driverId, new Entry<>(version, copy(profile)));
+    }
+
+    /**
+     * A copy of the cached passenger whatever its version, for EVENTUAL reads; null when not cached.
+     */
+    public Passenger passenger(Region region, String passengerId) {
+        Entry<Passenger> entry = lookup(passengers, passengerCounters, region, passengerId, null);
+        return entry != null ? copy(entry.value()) : null;
+    }
+
+    /**
+     * A copy of the cached passenger if it was read at {@code version}, otherwise null.
+     */
+    public Passenger passenger(Region region, String passengerId, long version) {
+        Entry<Passenger> entry = lookup(passengers, passengerCounters, region, passengerId, version);
+        return entry != null ? copy(entry.value()) : null;
+    }
+
+    public void putPassenger(Region region, String passengerId, long version, Passenger passenger) {
+        put(passengers, region, passengerId, new Entry<>(version, copy(passenger)));
+    }
+
+    public void invalidatePassenger(Region region, String passengerId) {
+        passengers.invalidate(key(region, passengerId));
+    }
+
+    @Override
+    public void destroy() {
+        listeners.forEach(Disposable::dispose);
+    }
+
+    // Passengers are written on the shard their id hashes to, so a split region has one feed per shard
+    private Disposable listen(ReactiveShardedRedisTemplateRouter router, Region region, int shard) {
+        String channel = passengerChannel(region);
+        String prefix = key(region, "");
+        // Deferred so a region whose master is unreachable at startup is retried instead of failing the context
+        return Flux.defer(() -> router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG).listenToChannel(channel))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> {
+                            logger.warn("Passenger invalidations for region {} failed, resubscribing", region, signal.failure());
+                            passengers.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+                        }))
+                .map(ReactiveSubscription.Message::getMessage)
+                .subscribe(passengerId -> invalidatePassenger(region, passengerId));
+    }
+
+    // A null version accepts whatever is cached
+    private <T> Entry<T> lookup(Cache<String, Entry<T>> cache, Counters counters, Region region, String id, Long version) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        Entry<T> entry = cache.getIfPresent(key(region, id));
+        if (entry == null) {
+            counters.miss.increment();
+            return null;
+        }
+        if (version != null && entry.version() != version) {
+            counters.stale.increment();
+            return null;
+        }
+        counters.hit.increment();
+        return entry;
+    }
+
+    // Keeps the newer of two concurrent loads, so a late replica read cannot replace a fresher master read
+    private <T> void put(Cache<String, Entry<T>> cache, Region region, String id, Entry<T> entry) {
+        if (properties.isEnabled()) {
+            cache.asMap().merge(key(region, id), entry, (cached, loaded) -> loaded.version() >= cached.version() ? loaded : cached);
+        }
+    }
+
+    private static String key(Region region, String id) {
+        return region.name() + ":" + id;
+    }
+
+    private static <T> Cache<String, Entry<T>> build(NearCacheProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    private static Driver copy(Driver driver) {
+        Driver copy = new Driver();
+        copy.setId(driver.getId());
+        copy.setName(driver.getName());
+        copy.setStatus(driver.getStatus());
+        copy.setLatitude(driver.getLatitude());
+        copy.setLongitude(driver.getLongitude());
+        copy.setLastUpdated(driver.getLastUpdated());
+        return copy;
+    }
+
+    private static Passenger copy(Passenger passenger) {
+        Passenger copy = new Passenger();
+        copy.setId(passenger.getId());
+        copy.setName(passenger.getName());
+        copy.setStatus(passenger.getStatus());
+        copy.setLatitude(passenger.getLatitude());
+        copy.setLongitude(passenger.getLongitude());
+        return copy;
+    }
+
+    private record Entry<T>(long version, T value) {
+    }
+
+    // Version-checked outcomes; Caffeine's own hit count also includes entries found stale
+    private static final class Counters {
+
+        private final Counter hit;
+        private final Counter stale;
+        private final Counter miss;
+
+        private Counters(String cache, MeterRegistry meterRegistry) {
+            hit = meterRegistry.counter("ride.cache.lookups", "cache", cache, "outcome", "hit");
+            stale = meterRegistry.counter("ride.cache.lookups", "cache", cache, "outcome", "stale");
+            miss = meterRegistry.counter("ride.cache.lookups", "cache", cache, "outcome", "miss");
+            Gauge.builder("ride.cache.hit.ratio", this, Counters::hitRatio)
+                    .tag("cache", cache)
+                    .register(meterRegistry);
+        }
+
+        private double hitRatio() {
+            double lookups = hit.count() + stale.count() + miss.count();
+            return lookups == 0 ? 0 : hit.count() / lookups;
+        }
+    }
+}
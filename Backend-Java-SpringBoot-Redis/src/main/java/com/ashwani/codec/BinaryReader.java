@@ -0,0 +1,99 @@
+package com.ashwani.codec;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads the encodings written by {@link BinaryWriter}. Truncated or malformed input fails with a
+ * {@link SerializationException}.
+ */
+public final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.position = offset;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint at offset " + position);
+    }
+
+    public long readVarLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new SerializationException("Malformed varlong at offset " + position);
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public long readLong() {
+        require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public String readId() {
+        int tag = readByte();
+        return switch (tag) {
+            case Ids.UUID_TAG -> new UUID(readLong(), readLong()).toString();
+            case Ids.STRING_TAG -> readString();
+            default -> throw new SerializationException("Unknown id encoding " + tag);
+        };
+    }
+
+    /**
+     * Enum constants are stored by ordinal, so constants may only ever be appended.
+     */
+    public <E extends Enum<E>> E readEnum(E[] constants) {
+        int ordinal = readByte();
+        if (ordinal >= constants.length) {
+            throw new SerializationException("Unknown " + constants.getClass().getComponentType().getSimpleName()
+                    + " ordinal " + ordinal);
+        }
+        return constants[ordinal];
+    }
+
+    private void require(int bytes) {
+        if (bytes < 0 || position + bytes > buffer.length) {
+            throw new SerializationException("Truncated value: needed " + bytes + " bytes at offset " + position
+                    + " of " + buffer.length);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ashwani.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings shared by the entity codecs: unsigned varints,
+ * zig-zag varlongs, big-endian doubles and length-prefixed UTF-8.
+ */
+public final class BinaryWriter {
+
+    private byte[] buffer;
+    private int size;
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public void writeByte(int value) {
+        ensure(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Zig-zag varint, so small negative numbers stay short; epoch millis take 6 bytes.
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        buffer[size++] = (byte) zigZag;
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    public void writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Writes an id as 16 raw bytes when it is a canonical lowercase UUID, which every generated id
+     * is, and as a string otherwise. Either form reads back as the exact same string.
+     */
+    public void writeId(String id) {
+        if (Ids.isCanonicalUuid(id)) {
+            writeByte(Ids.UUID_TAG);
+            writeLong(Ids.hexToLong(id, 0, 8, 9, 13, 14, 18));
+            writeLong(Ids.hexToLong(id, 19, 23, 24, 36, 36, 36));
+        } else {
+            writeByte(Ids.STRING_TAG);
+            writeString(id);
+        }
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+}
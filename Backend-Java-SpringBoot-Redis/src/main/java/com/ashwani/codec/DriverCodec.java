@@ -0,0 +1,87 @@
+package com.ashwani.codec;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.DriverStatus;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Version 1: a presence byte with one bit per field, then the present fields in declaration order.
+ */
+public class DriverCodec implements EntityCodec<Driver> {
+
+    private static final int ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int STATUS = 1 << 2;
+    private static final int LATITUDE = 1 << 3;
+    private static final int LONGITUDE = 1 << 4;
+    private static final int LAST_UPDATED = 1 << 5;
+
+    private static final DriverStatus[] STATUSES = DriverStatus.values();
+
+    @Override
+    public Class<Driver> type() {
+        return Driver.class;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public void write(Driver driver, BinaryWriter out) {
+        int present = (driver.getId() != null ? ID : 0)
+                | (driver.getName() != null ? NAME : 0)
+                | (driver.getStatus() != null ? STATUS : 0)
+                | (driver.getLatitude() != null ? LATITUDE : 0)
+                | (driver.getLongitude() != null ? LONGITUDE : 0)
+                | (driver.getLastUpdated() != null ? LAST_UPDATED : 0);
+        out.writeByte(present);
+        if ((present & ID) != 0) {
+            out.writeId(driver.getId());
+        }
+        if ((present & NAME) != 0) {
+            out.writeString(driver.getName());
+        }
+        if ((present & STATUS) != 0) {
+            out.writeByte(driver.getStatus().ordinal());
+        }
+        if ((present & LATITUDE) != 0) {
+            out.writeDouble(driver.getLatitude());
+        }
+        if ((present & LONGITUDE) != 0) {
+            out.writeDouble(driver.getLongitude());
+        }
+        if ((present & LAST_UPDATED) != 0) {
+            out.writeVarLong(driver.getLastUpdated());
+        }
+    }
+
+    @Override
+    public Driver read(BinaryReader in, int version) {
+        if (version != 1) {
+            throw new SerializationException("Unsupported Driver schema version " + version);
+        }
+        int present = in.readByte();
+        Driver driver = new Driver();
+        if ((present & ID) != 0) {
+            driver.setId(in.readId());
+        }
+        if ((present & NAME) != 0) {
+            driver.setName(in.readString());
+        }
+        if ((present & STATUS) != 0) {
+            driver.setStatus(in.readEnum(STATUSES));
+        }
+        if ((present & LATITUDE) != 0) {
+            driver.setLatitude(in.readDouble());
+        }
+        if ((present & LONGITUDE) != 0) {
+            driver.setLongitude(in.readDouble());
+        }
+        if ((present & LAST_UPDATED) != 0) {
+            driver.setLastUpdated(in.readVarLong());
+        }
+        return driver;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ashwani.codec;
+
+/**
+ * Binary layout of one entity type. A codec writes only its current {@link #version()} and must
+ * keep reading every version it has written before, so values already in Redis stay readable
+ * after a schema change.
+ */
+public interface EntityCodec<T> {
+
+    Class<T> type();
+
+    /**
+     * Schema version written ahead of each value, 1 to 255.
+     */
+    int version();
+
+    void write(T value, BinaryWriter out);
+
+    T read(BinaryReader in, int version);
+}
@@ -0,0 +1,44 @@
+package com.ashwani.codec;
+
+/**
+ * Compact form of entity ids: the UUIDs the controllers and {@code RideIds} generate are stored as
+ * 16 bytes instead of 36 characters.
+ */
+final class Ids {
+
+    static final int STRING_TAG = 0;
+    static final int UUID_TAG = 1;
+
+    private Ids() {
+    }
+
+    // Only the exact form UUID.toString() produces, so decoding gives back the same string
+    static boolean isCanonicalUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Packs up to three hex ranges [from, to) into one long
+    static long hexToLong(String id, int from1, int to1, int from2, int to2, int from3, int to3) {
+        long value = 0;
+        value = appendHex(value, id, from1, to1);
+        value = appendHex(value, id, from2, to2);
+        return appendHex(value, id, from3, to3);
+    }
+
+    private static long appendHex(long value, String id, int from, int to) {
+        for (int i = from; i < to; i++) {
+            value = (value << 4) | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+}
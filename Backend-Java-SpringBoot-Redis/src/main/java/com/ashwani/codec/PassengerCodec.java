@@ -0,0 +1,79 @@
+package com.ashwani.codec;
+
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.PassengerStatus;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Version 1: a presence byte with one bit per field, then the present fields in declaration order.
+ */
+public class PassengerCodec implements EntityCodec<Passenger> {
+
+    private static final int ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int STATUS = 1 << 2;
+    private static final int LATITUDE = 1 << 3;
+    private static final int LONGITUDE = 1 << 4;
+
+    private static final PassengerStatus[] STATUSES = PassengerStatus.values();
+
+    @Override
+    public Class<Passenger> type() {
+        return Passenger.class;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public void write(Passenger passenger, BinaryWriter out) {
+        int present = (passenger.getId() != null ? ID : 0)
+                | (passenger.getName() != null ? NAME : 0)
+                | (passenger.getStatus() != null ? STATUS : 0)
+                | (passenger.getLatitude() != null ? LATITUDE : 0)
+                | (passenger.getLongitude() != null ? LONGITUDE : 0);
+        out.writeByte(present);
+        if ((present & ID) != 0) {
+            out.writeId(passenger.getId());
+        }
+        if ((present & NAME) != 0) {
+            out.writeString(passenger.getName());
+        }
+        if ((present & STATUS) != 0) {
+            out.writeByte(passenger.getStatus().ordinal());
+        }
+        if ((present & LATITUDE) != 0) {
+            out.writeDouble(passenger.getLatitude());
+        }
+        if ((present & LONGITUDE) != 0) {
+            out.writeDouble(passenger.getLongitude());
+        }
+    }
+
+    @Override
+    public Passenger read(BinaryReader in, int version) {
+        if (version != 1) {
+            throw new SerializationException("Unsupported Passenger schema version " + version);
+        }
+        int present = in.readByte();
+        Passenger passenger = new Passenger();
+        if ((present & ID) != 0) {
+            passenger.setId(in.readId());
+        }
+        if ((present & NAME) != 0) {
+            passenger.setName(in.readString());
+        }
+        if ((present & STATUS) != 0) {
+            passenger.setStatus(in.readEnum(STATUSES));
+        }
+        if ((present & LATITUDE) != 0) {
+            passenger.setLatitude(in.readDouble());
+        }
+        if ((present & LONGITUDE) != 0) {
+            passenger.setLongitude(in.readDouble());
+        }
+        return passenger;
+    }
+}
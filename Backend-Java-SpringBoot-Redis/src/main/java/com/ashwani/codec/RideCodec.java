@@ -0,0 +1,89 @@
+package com.ashwani.codec;
+
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.RideStatus;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Version 1: a presence byte with one bit per field, then the present fields in declaration order.
+ */
+public class RideCodec implements EntityCodec<Ride> {
+
+    private static final int ID = 1;
+    private static final int PASSENGER_ID = 1 << 1;
+    private static final int DRIVER_ID = 1 << 2;
+    private static final int STATUS = 1 << 3;
+    private static final int START_TIME = 1 << 4;
+    private static final int END_TIME = 1 << 5;
+
+    private static final RideStatus[] STATUSES = RideStatus.values();
+
+    @Override
+    public Class<Ride> type() {
+        return Ride.class;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public void write(Ride ride, BinaryWriter out) {
+        int present = (ride.getId() != null ? ID : 0)
+                | (ride.getPassengerId() != null ? PASSENGER_ID : 0)
+                | (ride.getDriverId() != null ? DRIVER_ID : 0)
+                | (ride.getStatus() != null ? STATUS : 0)
+                | (ride.getStartTime() != null ? START_TIME : 0)
+                | (ride.getEndTime() != null ? END_TIME : 0);
+        out.writeByte(present);
+        if ((present & ID) != 0) {
+            out.writeId(ride.getId());
+        }
+        if ((present & PASSENGER_ID) != 0) {
+            out.writeId(ride.getPassengerId());
+        }
+        if ((present & DRIVER_ID) != 0) {
+            out.writeId(ride.getDriverId());
+        }
+        if ((present & STATUS) != 0) {
+            out.writeByte(ride.getStatus().ordinal());
+        }
+        if ((present & START_TIME) != 0) {
+            out.writeVarLong(ride.getStartTime());
+        }
+        // Stored as the duration, which is much shorter than a second timestamp
+        if ((present & END_TIME) != 0) {
+            out.writeVarLong(ride.getStartTime() != null ? ride.getEndTime() - ride.getStartTime() : ride.getEndTime());
+        }
+    }
+
+    @Override
+    public Ride read(BinaryReader in, int version) {
+        if (version != 1) {
+            throw new SerializationException("Unsupported Ride schema version " + version);
+        }
+        int present = in.readByte();
+        Ride ride = new Ride();
+        if ((present & ID) != 0) {
+            ride.setId(in.readId());
+        }
+        if ((present & PASSENGER_ID) != 0) {
+            ride.setPassengerId(in.readId());
+        }
+        if ((present & DRIVER_ID) != 0) {
+            ride.setDriverId(in.readId());
+        }
+        if ((present & STATUS) != 0) {
+            ride.setStatus(in.readEnum(STATUSES));
+        }
+        if ((present & START_TIME) != 0) {
+            ride.setStartTime(in.readVarLong());
+        }
+        if ((present & END_TIME) != 0) {
+            long endTime = in.readVarLong();
+            ride.setEndTime(ride.getStartTime() != null ? ride.getStartTime() + endTime : endTime);
+        }
+        return ride;
+    }
+}
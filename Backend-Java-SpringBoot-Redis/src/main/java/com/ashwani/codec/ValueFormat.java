@@ -0,0 +1,10 @@
+package com.ashwani.codec;
+
+/**
+ * How entity values are written to Redis, set with {@code ride.redis.value-format}. Both formats
+ * are always readable.
+ */
+public enum ValueFormat {
+    JSON,
+    BINARY
+}
@@ -0,0 +1,53 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import com.ashwani.exception.ApiError;
+import com.ashwani.sharding.ConsistencyToken;
+import com.ashwani.sharding.ReplicaLagMonitor;
+import com.ashwani.sharding.RequestContext;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import static com.ashwani.constant.ApplicationConstant.CONSISTENCY_TOKEN_HEADER;
+
+/**
+ * Hands out read-your-writes tokens: every successful POST response carries the time its write had
+ * returned in {@code X-Consistency-Token}, which costs no round trip to Redis. Reads that send it back
+ * are kept on the master until the replica has caught up with a master offset probed after that time;
+ * see {@link RequestInterceptor} and {@link ReplicaLagMonitor#replicaCaughtUp}.
+ */
+@ControllerAdvice
+public class ConsistencyTokenAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ReplicaRoutingProperties properties;
+
+    public ConsistencyTokenAdvice(ReplicaRoutingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return properties.isReadYourWrites();
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!HttpMethod.POST.equals(request.getMethod()) || body instanceof ApiError
+                || !(request instanceof ServletServerHttpRequest servletRequest)) {
+            return body;
+        }
+        Object context = servletRequest.getServletRequest().getAttribute(RequestContext.ATTRIBUTE);
+        Region region = (context instanceof RequestContext requestContext ? requestContext : RequestContext.NONE).regionOrDefault();
+        response.getHeaders().set(CONSISTENCY_TOKEN_HEADER, new ConsistencyToken(region, System.currentTimeMillis()).toString());
+        return body;
+    }
+}
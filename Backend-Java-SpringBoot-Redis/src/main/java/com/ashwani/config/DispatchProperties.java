@@ -0,0 +1,63 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import com.ashwani.enums.SearchMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nearest-driver search settings, bound from {@code ride.dispatch.*}. Settings under
+ * {@code ride.dispatch.regions.<REGION>} replace {@code ride.dispatch.defaults} for that region.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.dispatch")
+public class DispatchProperties {
+
+    private SearchMode searchMode = SearchMode.EXPANDING_RING;
+    private Search defaults = new Search();
+    private Map<Region, Search> regions = new EnumMap<>(Region.class);
+    private Batching batching = new Batching();
+
+    @Data
+    public static class Search {
+        private List<Double> radiusStepsKm = List.of(1.0, 2.0, 5.0, 10.0, 25.0);
+        private double maxRadiusKm = 50;
+        private int candidateCount = 10;    // GEOSEARCH COUNT per ring
+    }
+
+    @Data
+    public static class Batching {
+        private boolean enabled = false;
+        private Duration window = Duration.ofMillis(300);   // bookings collected per region before they are matched together
+        private int capacity = 10_000;                      // bookings queued per region before new ones are refused
+        private int optimalMaxSize = 100;                   // larger batches are matched greedily instead of exactly
+        private int candidateCount = 8;                     // nearest drivers considered per passenger
+    }
+
+    public Search forRegion(Region region) {
+        return regions.getOrDefault(region, defaults);
+    }
+
+    /**
+     * Radii to search, smallest first. A fixed-radius search is a single ring at the max radius;
+     * an expanding search walks the steps below the max and always ends on the max itself.
+     */
+    public List<Double> ringsKm(Region region) {
+        Search search = forRegion(region);
+        List<Double> rings = new ArrayList<>();
+        if (searchMode == SearchMode.EXPANDING_RING) {
+            search.getRadiusStepsKm().stream()
+                    .filter(radius -> radius < search.getMaxRadiusKm())
+                    .sorted()
+                    .forEach(rings::add);
+        }
+        rings.add(search.getMaxRadiusKm());
+        return rings;
+    }
+}
@@ -0,0 +1,42 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrates drivers stored before the profile/state split and the per-status GEO indexes at startup, since
+ * dispatch cannot see them until then. On by default; it is idempotent and returns at once in a region
+ * with nothing left to migrate. Disable with {@code ride.drivers.migrate-layout-on-startup=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "ride.drivers.migrate-layout-on-startup", havingValue = "true", matchIfMissing = true)
+public class DriverLayoutMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriverLayoutMigration.class);
+
+    private final DriverRepository driverRepository;
+
+    public DriverLayoutMigration(DriverRepository driverRepository) {
+        this.driverRepository = driverRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (Region region : Region.values()) {
+            try {
+                driverRepository.migrateLegacyLayout(region);
+            } catch (RedisConnectionFailureException e) {
+                logger.warn("Driver layout migration skipped in region {}, whose master is unreachable: {}", region, e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Driver layout migration failed in region {}", region, e);
+            }
+        }
+    }
+}
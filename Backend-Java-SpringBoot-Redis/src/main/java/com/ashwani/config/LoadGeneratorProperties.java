@@ -0,0 +1,45 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic city traffic of the {@code loadgen} profile, bound from {@code ride.loadgen.*}. Per region,
+ * {@code drivers} drivers drive between random points within {@code radius-km} of the region's city and
+ * ping every {@code ping-interval}; passengers book at {@code bookings-per-second} on average (Poisson
+ * arrivals) and end their ride after a log-normal trip time. The same seed and settings always produce
+ * the same scenario; see {@link com.ashwani.loadgen.ScenarioGenerator}.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.loadgen")
+public class LoadGeneratorProperties {
+
+    private String target = "";                     // base URL of the API; empty drives this instance's own server
+    private long seed = 42;
+    private Duration duration = Duration.ofMinutes(1);
+    private List<Region> regions = List.of(Region.values());
+    private int drivers = 500;                      // per region
+    private int passengers = 2_000;                 // per region
+    private Duration pingInterval = Duration.ofSeconds(1);
+    private double speedKmh = 30;
+    private double bookingsPerSecond = 5;           // per region
+    private Duration tripMedian = Duration.ofSeconds(20);
+    private double tripSigma = 0.5;                 // spread of the log-normal trip time
+    private double radiusKm = 8;
+    private Map<Region, String> cities = new EnumMap<>(Map.of(   // "lon lat" of each region's city centre
+            Region.US, "-73.9857 40.7484",
+            Region.EU, "-0.1276 51.5072",
+            Region.ASIA, "139.7671 35.6812"));
+    private int maxInFlight = 256;                  // requests outstanding at once; later ones wait, and count the wait
+    private Duration reportInterval = Duration.ofSeconds(10);
+    private String record = "";                     // file the generated scenario is written to, one JSON event per line
+    private String replay = "";                     // scenario file to run instead of generating one
+    private String report = "";                     // file the final report is written to as JSON
+    private boolean exitWhenDone = true;
+}
@@ -0,0 +1,16 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * In-process driver index settings, bound from {@code ride.local-index.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.local-index")
+public class LocalIndexProperties {
+
+    private boolean enabled = false;
+    private double cellSizeDeg = 0.01;          // ~1.1 km of latitude per grid cell
+    private long reconcileIntervalMs = 30_000;  // full resync from the region's GEO indexes
+}
@@ -0,0 +1,20 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Buffered location ingestion settings, bound from {@code ride.ingestion.*}. When enabled, single
+ * location pings are queued per region and written in coalesced batches instead of one script call each.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.ingestion")
+public class LocationIngestionProperties {
+
+    private boolean enabled = false;
+    private int capacity = 65_536;                          // pings buffered per region before new ones are refused
+    private Duration flushInterval = Duration.ofMillis(200);
+    private Duration maxStaleness = Duration.ofSeconds(2);  // pings older than this when flushed are dropped
+}
@@ -0,0 +1,17 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Hot-path instrumentation settings, bound from {@code ride.metrics.*}. With {@code detailed} off the
+ * per-stage booking and location timers and the Redis command timers are not recorded; the other
+ * metrics are unaffected.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.metrics")
+public class MetricsProperties {
+
+    private boolean detailed = true;
+    private boolean histograms = true;      // publish percentile histogram buckets for the detailed timers
+}
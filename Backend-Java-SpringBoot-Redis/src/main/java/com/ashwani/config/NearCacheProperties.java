@@ -0,0 +1,19 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * In-process cache of driver profiles and passengers, bound from {@code ride.near-cache.*}. Each of the
+ * two caches holds at most {@code maximumSize} entries and drops an entry {@code ttl} after it was loaded.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.near-cache")
+public class NearCacheProperties {
+
+    private boolean enabled = false;
+    private long maximumSize = 100_000;         // per cache; beyond it Caffeine evicts by W-TinyLFU
+    private Duration ttl = Duration.ofSeconds(30); // bounds how stale an EVENTUAL read can be if an invalidation is missed
+}
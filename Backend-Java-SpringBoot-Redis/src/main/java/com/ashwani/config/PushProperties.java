@@ -0,0 +1,20 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Driver delta push settings, bound from {@code ride.push.*}. When disabled the update scripts publish
+ * nothing and the push endpoint is refused.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.push")
+public class PushProperties {
+
+    private boolean enabled = true;
+    private int maxUpdatesPerSecond = 2;                      // per driver and subscriber; later deltas replace queued ones
+    private Duration heartbeatInterval = Duration.ofSeconds(15); // keep-alive for idle streams and proxies
+    private int senderThreads = 2;
+}
@@ -1,23 +1,39 @@
 package com.ashwani.config;
 
+import com.ashwani.codec.DriverCodec;
+import com.ashwani.codec.EntityCodec;
+import com.ashwani.codec.PassengerCodec;
+import com.ashwani.codec.RideCodec;
+import com.ashwani.codec.VersionedRedisSerializer;
 import com.ashwani.entity.Driver;
 import com.ashwani.entity.Passenger;
 import com.ashwani.entity.Ride;
 import com.ashwani.enums.Region;
+import com.ashwani.metrics.TimedRedisTemplate;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Configuration
@@ -33,6 +49,10 @@ public class RedisConfig {
     private String usReplicaHost;
     @Value("${spring.redis.us.replica.port:6379}")
     private int usReplicaPort;
+    @Value("${spring.redis.us.replicas:}")
+    private String usReplicas;
+    @Value("${spring.redis.us.shards:}")
+    private String usShards;
 
     @Value("${spring.redis.eu.master.host:redis-eu-master}")
     private String euMasterHost;
@@ -43,6 +63,10 @@ public class RedisConfig {
     private String euReplicaHost;
     @Value("${spring.redis.eu.replica.port:6379}")
     private int euReplicaPort;
+    @Value("${spring.redis.eu.replicas:}")
+    private String euReplicas;
+    @Value("${spring.redis.eu.shards:}")
+    private String euShards;
 
     @Value("${spring.redis.asia.master.host:redis-asia-master}")
     private String asiaMasterHost;
@@ -53,79 +77,209 @@ public class RedisConfig {
     private String asiaReplicaHost;
     @Value("${spring.redis.asia.replica.port:6379}")
     private int asiaReplicaPort;
+    @Value("${spring.redis.asia.replicas:}")
+    private String asiaReplicas;
+    @Value("${spring.redis.asia.shards:}")
+    private String asiaShards;
     //</editor-fold>
 
+    private final RedisTopologyProperties properties;
+    private final MetricsProperties metricsProperties;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<RedisNodeTransport> transport;
+
+    // One value mapper and one serializer per value type, shared by every template
+    private final StringRedisSerializer stringSerializer = new StringRedisSerializer();
+    private final RedisSerializer<Driver> driverSerializer;
+    private final RedisSerializer<Ride> rideSerializer;
+    private final RedisSerializer<Passenger> passengerSerializer;
+    private final Map<JedisConnectionFactory, Map<RedisSerializer<?>, RedisTemplate<String, ?>>> templates = new HashMap<>();
+    private final Map<ReactiveRedisConnectionFactory, Map<RedisSerializer<?>, ReactiveRedisTemplate<String, ?>>> reactiveTemplates = new HashMap<>();
+
+    public RedisConfig(RedisTopologyProperties properties, MetricsProperties metricsProperties, MeterRegistry meterRegistry,
+                       ObjectProvider<RedisNodeTransport> transport) {
+        this.properties = properties;
+        this.metricsProperties = metricsProperties;
+        this.meterRegistry = meterRegistry;
+        this.transport = transport;
+        ObjectMapper valueObjectMapper = new ObjectMapper();
+        valueObjectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        this.driverSerializer = createValueSerializer(valueObjectMapper, new DriverCodec());
+        this.rideSerializer = createValueSerializer(valueObjectMapper, new RideCodec());
+        this.passengerSerializer = createValueSerializer(valueObjectMapper, new PassengerCodec());
+    }
+
     //<editor-fold desc="Connection Factory Beans">
+    @Bean
+    public RedisTopology redisTopology() {
+        RedisTopology topology = new RedisTopology(properties, transport.getIfAvailable());
+        topology.add(Region.US, RedisTopology.Role.MASTER, usMasterHost, usMasterPort);
+        topology.add(Region.EU, RedisTopology.Role.MASTER, euMasterHost, euMasterPort);
+        topology.add(Region.ASIA, RedisTopology.Role.MASTER, asiaMasterHost, asiaMasterPort);
+        addReplicas(topology, Region.US, usReplicas, usReplicaHost, usReplicaPort);
+        addReplicas(topology, Region.EU, euReplicas, euReplicaHost, euReplicaPort);
+        addReplicas(topology, Region.ASIA, asiaReplicas, asiaReplicaHost, asiaReplicaPort);
+        addShards(topology, Region.US, usShards);
+        addShards(topology, Region.EU, euShards);
+        addShards(topology, Region.ASIA, asiaShards);
+        return topology;
+    }
+
+    // spring.redis.<region>.replicas, a comma-separated host:port list, replaces the single replica
+    private static void addReplicas(RedisTopology topology, Region region, String replicas, String host, int port) {
+        if (replicas.isBlank()) {
+            topology.add(region, RedisTopology.Role.REPLICA, host, port);
+            return;
+        }
+        for (String replica : replicas.split(",")) {
+            String[] address = hostAndPort(replica);
+            topology.add(region, RedisTopology.Role.REPLICA, address[0], Integer.parseInt(address[1]));
+        }
+    }
+
+    // spring.redis.<region>.shards, a comma-separated host:port list of the masters of shards 1, 2, ...
+    private static void addShards(RedisTopology topology, Region region, String shards) {
+        if (shards.isBlank()) {
+            return;
+        }
+        for (String shard : shards.split(",")) {
+            String[] address = hostAndPort(shard);
+            topology.addShard(region, address[0], Integer.parseInt(address[1]));
+        }
+    }
+
+    private static String[] hostAndPort(String address) {
+        String trimmed = address.trim();
+        int colon = trimmed.lastIndexOf(':');
+        return colon < 0 ? new String[]{trimmed, "6379"} : new String[]{trimmed.substring(0, colon), trimmed.substring(colon + 1)};
+    }
+
     @Bean
     public Map<Region, JedisConnectionFactory> masterConnectionFactories() {
-        Map<Region, JedisConnectionFactory> map = new EnumMap<>(Region.class);
-        map.put(Region.US, createJedisConnectionFactory(usMasterHost, usMasterPort));
-        map.put(Region.EU, createJedisConnectionFactory(euMasterHost, euMasterPort));
-        map.put(Region.ASIA, createJedisConnectionFactory(asiaMasterHost, asiaMasterPort));
-        return map;
+        return firstOfEach(redisTopology().connectionFactories(RedisTopology.Role.MASTER));
+    }
+
+    @Bean
+    public Map<Region, List<JedisConnectionFactory>> replicaConnectionFactories() {
+        return redisTopology().connectionFactories(RedisTopology.Role.REPLICA);
+    }
+
+    @Bean
+    public Map<Region, ReactiveRedisConnectionFactory> reactiveMasterConnectionFactories() {
+        return firstOfEach(redisTopology().reactiveConnectionFactories(RedisTopology.Role.MASTER));
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisConnectionFactory>> reactiveReplicaConnectionFactories() {
+        return redisTopology().reactiveConnectionFactories(RedisTopology.Role.REPLICA);
+    }
+
+    @Bean
+    public Map<Region, List<JedisConnectionFactory>> shardConnectionFactories() {
+        return redisTopology().shardConnectionFactories();
     }
 
     @Bean
-    public Map<Region, JedisConnectionFactory> replicaConnectionFactories() {
-        Map<Region, JedisConnectionFactory> map = new EnumMap<>(Region.class);
-        map.put(Region.US, createJedisConnectionFactory(usReplicaHost, usReplicaPort));
-        map.put(Region.EU, createJedisConnectionFactory(euReplicaHost, euReplicaPort));
-        map.put(Region.ASIA, createJedisConnectionFactory(asiaReplicaHost, asiaReplicaPort));
-        return map;
+    public Map<Region, List<ReactiveRedisConnectionFactory>> reactiveShardConnectionFactories() {
+        return redisTopology().reactiveShardConnectionFactories();
     }
 
-    private JedisConnectionFactory createJedisConnectionFactory(String host, int port) {
-        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
-        JedisConnectionFactory factory = new JedisConnectionFactory(config);
-        factory.afterPropertiesSet(); // Ensure factory is initialized
-        return factory;
+    private static <F> Map<Region, F> firstOfEach(Map<Region, List<F>> factories) {
+        Map<Region, F> first = new EnumMap<>(Region.class);
+        factories.forEach((region, regionFactories) -> first.put(region, regionFactories.get(0)));
+        return first;
     }
     //</editor-fold>
 
     //<editor-fold desc="Redis Template Generation">
-    private <V> RedisTemplate<String, V> createRedisTemplate(JedisConnectionFactory factory, Class<V> valueType) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
-
-        Jackson2JsonRedisSerializer<V> serializer = new Jackson2JsonRedisSerializer<>(objectMapper, valueType);
-
-        RedisTemplate<String, V> template = new RedisTemplate<>();
-        template.setConnectionFactory(factory);
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(serializer);
-        template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(serializer);
-        template.afterPropertiesSet();
-        return template;
-    }
-
-    private RedisTemplate<String, String> createStringRedisTemplate(JedisConnectionFactory factory) {
-        RedisTemplate<String, String> template = new RedisTemplate<>();
-        template.setConnectionFactory(factory);
-        StringRedisSerializer serializer = new StringRedisSerializer();
-        template.setKeySerializer(serializer);
-        template.setValueSerializer(serializer);
-        template.setHashKeySerializer(serializer);
-        template.setHashValueSerializer(serializer);
-        template.afterPropertiesSet();
-        return template;
-    }
-
-    private <V> Map<Region, RedisTemplate<String, V>> createRedisTemplateMap(Map<Region, JedisConnectionFactory> factories, Class<V> valueType) {
+    private <V> RedisSerializer<V> createValueSerializer(ObjectMapper objectMapper, EntityCodec<V> codec) {
+        Jackson2JsonRedisSerializer<V> json = new Jackson2JsonRedisSerializer<>(objectMapper, codec.type());
+        return new VersionedRedisSerializer<>(codec, json, properties.getValueFormat());
+    }
+
+    // Roles on the same node get the same template, as they already share its connection pool
+    @SuppressWarnings("unchecked")
+    private <V> RedisTemplate<String, V> createRedisTemplate(JedisConnectionFactory factory, RedisSerializer<V> serializer) {
+        return (RedisTemplate<String, V>) templates.computeIfAbsent(factory, f -> new HashMap<>())
+                .computeIfAbsent(serializer, s -> {
+                    RedisTemplate<String, V> template = metricsProperties.isDetailed() && factory instanceof RedisNodeConnectionFactory node
+                            ? new TimedRedisTemplate<>(commandTimer(node))
+                            : new RedisTemplate<>();
+                    template.setConnectionFactory(factory);
+                    template.setKeySerializer(stringSerializer);
+                    template.setValueSerializer(serializer);
+                    template.setHashKeySerializer(stringSerializer);
+                    template.setHashValueSerializer(serializer);
+                    template.afterPropertiesSet();
+                    return template;
+                });
+    }
+
+    /**
+     * Round-trip timer shared by every template of the node. A node serving several region roles, as in
+     * a single-Redis setup, lists them all in its region and role tags, comma-separated.
+     */
+    private Timer commandTimer(RedisNodeConnectionFactory node) {
+        Set<String> regions = new LinkedHashSet<>();
+        Set<String> roles = new LinkedHashSet<>();
+        for (String role : node.getRoles()) {
+            String[] parts = role.split(" ");
+            regions.add(parts[0]);
+            roles.add(parts[1]);
+        }
+        return Timer.builder("ride.redis.command")
+                .tag("node", node.getNode())
+                .tag("region", String.join(",", regions))
+                .tag("role", String.join(",", roles))
+                .publishPercentileHistogram(metricsProperties.isHistograms())
+                .register(meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> ReactiveRedisTemplate<String, V> createReactiveRedisTemplate(ReactiveRedisConnectionFactory factory, RedisSerializer<V> serializer) {
+        return (ReactiveRedisTemplate<String, V>) reactiveTemplates.computeIfAbsent(factory, f -> new HashMap<>())
+                .computeIfAbsent(serializer, s -> new ReactiveRedisTemplate<>(factory,
+                        RedisSerializationContext.<String, V>newSerializationContext(serializer)
+                                .key(stringSerializer)
+                                .hashKey(stringSerializer)
+                                .build()));
+    }
+
+    private <V> Map<Region, ReactiveRedisTemplate<String, V>> createReactiveRedisTemplateMap(Map<Region, ReactiveRedisConnectionFactory> factories, RedisSerializer<V> serializer) {
         return factories.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        entry -> createRedisTemplate(entry.getValue(), valueType),
+                        entry -> createReactiveRedisTemplate(entry.getValue(), serializer),
                         (u, v) -> u,
                         () -> new EnumMap<>(Region.class)
                 ));
     }
 
-    private Map<Region, RedisTemplate<String, String>> createStringRedisTemplateMap(Map<Region, JedisConnectionFactory> factories) {
+    private <V> Map<Region, RedisTemplate<String, V>> createRedisTemplateMap(Map<Region, JedisConnectionFactory> factories, RedisSerializer<V> serializer) {
         return factories.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
-                        entry -> createStringRedisTemplate(entry.getValue()),
+                        entry -> createRedisTemplate(entry.getValue(), serializer),
+                        (u, v) -> u,
+                        () -> new EnumMap<>(Region.class)
+                ));
+    }
+
+    private <V> Map<Region, List<RedisTemplate<String, V>>> createRedisTemplateListMap(Map<Region, List<JedisConnectionFactory>> factories, RedisSerializer<V> serializer) {
+        return factories.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> entry.getValue().stream().map(factory -> createRedisTemplate(factory, serializer)).toList(),
+                        (u, v) -> u,
+                        () -> new EnumMap<>(Region.class)
+                ));
+    }
+
+    private <V> Map<Region, List<ReactiveRedisTemplate<String, V>>> createReactiveRedisTemplateListMap(Map<Region, List<ReactiveRedisConnectionFactory>> factories, RedisSerializer<V> serializer) {
+        return factories.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> entry.getValue().stream().map(factory -> createReactiveRedisTemplate(factory, serializer)).toList(),
                         (u, v) -> u,
                         () -> new EnumMap<>(Region.class)
                 ));
@@ -135,44 +289,128 @@ public class RedisConfig {
     //<editor-fold desc="Master RedisTemplate Beans">
     @Bean
     public Map<Region, RedisTemplate<String, Driver>> masterDriverRedisTemplates() {
-        return createRedisTemplateMap(masterConnectionFactories(), Driver.class);
+        return createRedisTemplateMap(masterConnectionFactories(), driverSerializer);
     }
 
     @Bean
     public Map<Region, RedisTemplate<String, Ride>> masterRideRedisTemplates() {
-        return createRedisTemplateMap(masterConnectionFactories(), Ride.class);
+        return createRedisTemplateMap(masterConnectionFactories(), rideSerializer);
     }
 
     @Bean
     public Map<Region, RedisTemplate<String, Passenger>> masterPassengerRedisTemplates() {
-        return createRedisTemplateMap(masterConnectionFactories(), Passenger.class);
+        return createRedisTemplateMap(masterConnectionFactories(), passengerSerializer);
     }
 
     @Bean
     public Map<Region, RedisTemplate<String, String>> masterGeoRedisTemplates() {
-        return createStringRedisTemplateMap(masterConnectionFactories());
+        return createRedisTemplateMap(masterConnectionFactories(), stringSerializer);
     }
     //</editor-fold>
 
     //<editor-fold desc="Replica RedisTemplate Beans">
     @Bean
-    public Map<Region, RedisTemplate<String, Driver>> replicaDriverRedisTemplates() {
-        return createRedisTemplateMap(replicaConnectionFactories(), Driver.class);
+    public Map<Region, List<RedisTemplate<String, Driver>>> replicaDriverRedisTemplates() {
+        return createRedisTemplateListMap(replicaConnectionFactories(), driverSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<RedisTemplate<String, Ride>>> replicaRideRedisTemplates() {
+        return createRedisTemplateListMap(replicaConnectionFactories(), rideSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<RedisTemplate<String, Passenger>>> replicaPassengerRedisTemplates() {
+        return createRedisTemplateListMap(replicaConnectionFactories(), passengerSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<RedisTemplate<String, String>>> replicaGeoRedisTemplates() {
+        return createRedisTemplateListMap(replicaConnectionFactories(), stringSerializer);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Shard Master RedisTemplate Beans">
+    @Bean
+    public Map<Region, List<RedisTemplate<String, Driver>>> shardDriverRedisTemplates() {
+        return createRedisTemplateListMap(shardConnectionFactories(), driverSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<RedisTemplate<String, Ride>>> shardRideRedisTemplates() {
+        return createRedisTemplateListMap(shardConnectionFactories(), rideSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<RedisTemplate<String, Passenger>>> shardPassengerRedisTemplates() {
+        return createRedisTemplateListMap(shardConnectionFactories(), passengerSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<RedisTemplate<String, String>>> shardGeoRedisTemplates() {
+        return createRedisTemplateListMap(shardConnectionFactories(), stringSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisTemplate<String, Driver>>> reactiveShardDriverRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveShardConnectionFactories(), driverSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisTemplate<String, Ride>>> reactiveShardRideRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveShardConnectionFactories(), rideSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisTemplate<String, Passenger>>> reactiveShardPassengerRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveShardConnectionFactories(), passengerSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisTemplate<String, String>>> reactiveShardGeoRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveShardConnectionFactories(), stringSerializer);
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Reactive RedisTemplate Beans">
+    @Bean
+    public Map<Region, ReactiveRedisTemplate<String, Driver>> reactiveMasterDriverRedisTemplates() {
+        return createReactiveRedisTemplateMap(reactiveMasterConnectionFactories(), driverSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisTemplate<String, Driver>>> reactiveReplicaDriverRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveReplicaConnectionFactories(), driverSerializer);
+    }
+
+    @Bean
+    public Map<Region, ReactiveRedisTemplate<String, Ride>> reactiveMasterRideRedisTemplates() {
+        return createReactiveRedisTemplateMap(reactiveMasterConnectionFactories(), rideSerializer);
+    }
+
+    @Bean
+    public Map<Region, List<ReactiveRedisTemplate<String, Ride>>> reactiveReplicaRideRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveReplicaConnectionFactories(), rideSerializer);
+    }
+
+    @Bean
+    public Map<Region, ReactiveRedisTemplate<String, Passenger>> reactiveMasterPassengerRedisTemplates() {
+        return createReactiveRedisTemplateMap(reactiveMasterConnectionFactories(), passengerSerializer);
     }
 
     @Bean
-    public Map<Region, RedisTemplate<String, Ride>> replicaRideRedisTemplates() {
-        return createRedisTemplateMap(replicaConnectionFactories(), Ride.class);
+    public Map<Region, List<ReactiveRedisTemplate<String, Passenger>>> reactiveReplicaPassengerRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveReplicaConnectionFactories(), passengerSerializer);
     }
 
     @Bean
-    public Map<Region, RedisTemplate<String, Passenger>> replicaPassengerRedisTemplates() {
-        return createRedisTemplateMap(replicaConnectionFactories(), Passenger.class);
+    public Map<Region, ReactiveRedisTemplate<String, String>> reactiveMasterGeoRedisTemplates() {
+        return createReactiveRedisTemplateMap(reactiveMasterConnectionFactories(), stringSerializer);
     }
 
     @Bean
-    public Map<Region, RedisTemplate<String, String>> replicaGeoRedisTemplates() {
-        return createStringRedisTemplateMap(replicaConnectionFactories());
+    public Map<Region, List<ReactiveRedisTemplate<String, String>>> reactiveReplicaGeoRedisTemplates() {
+        return createReactiveRedisTemplateListMap(reactiveReplicaConnectionFactories(), stringSerializer);
     }
     //</editor-fold>
 }
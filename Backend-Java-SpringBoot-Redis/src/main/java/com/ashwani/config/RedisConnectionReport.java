@@ -0,0 +1,40 @@
+package com.ashwani.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens each node's min-idle connections at startup and logs, per Redis node, the region roles it
+ * serves and the connections its pool holds.
+ */
+@Component
+public class RedisConnectionReport implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisConnectionReport.class);
+
+    private final RedisTopology topology;
+
+    public RedisConnectionReport(RedisTopology topology) {
+        this.topology = topology;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (RedisNodeConnectionFactory node : topology.nodes()) {
+            try {
+                node.warmUp();
+            } catch (Exception e) {
+                logger.warn("Could not open connections to Redis node {}: {}", node.getNode(), e.getMessage());
+            }
+        }
+        logger.info("Redis topology: {} nodes", topology.nodes().size());
+        for (RedisNodeConnectionFactory node : topology.nodes()) {
+            logger.info("Redis node {} serves {}: {} connections open ({} active, {} idle), pool max {}",
+                    node.getNode(), node.getRoles(), node.getNumActive() + node.getNumIdle(),
+                    node.getNumActive(), node.getNumIdle(), node.getPoolSettings().getMaxTotal());
+        }
+    }
+}
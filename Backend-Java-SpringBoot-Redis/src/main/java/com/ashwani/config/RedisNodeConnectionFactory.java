@@ -0,0 +1,92 @@
+package com.ashwani.config;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisFactory;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisSocketFactory;
+import redis.clients.jedis.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The one pooled connection factory of a Redis node, shared by every region role and template that
+ * points at it. Keeps hold of the Jedis pool so its occupancy can be reported. Given a socket factory,
+ * the pool opens its connections through it instead of to the host and port.
+ */
+public class RedisNodeConnectionFactory extends JedisConnectionFactory {
+
+    private final String node;
+    private final RedisTopologyProperties.Pool poolSettings;
+    private final JedisSocketFactory socketFactory;
+    private final List<String> roles = new ArrayList<>();
+    private volatile Pool<Jedis> pool;
+
+    RedisNodeConnectionFactory(String host, int port, RedisTopologyProperties.Pool poolSettings,
+                               JedisClientConfiguration clientConfiguration, JedisSocketFactory socketFactory) {
+        super(new RedisStandaloneConfiguration(host, port), clientConfiguration);
+        this.node = host + ":" + port;
+        this.poolSettings = poolSettings;
+        this.socketFactory = socketFactory;
+    }
+
+    @Override
+    protected Pool<Jedis> createRedisPool() {
+        if (socketFactory == null) {
+            pool = super.createRedisPool();
+            return pool;
+        }
+        JedisClientConfiguration configuration = getClientConfiguration();
+        DefaultJedisClientConfig clientConfig = DefaultJedisClientConfig.builder()
+                .clientName(getClientName())
+                .connectionTimeoutMillis(Math.toIntExact(configuration.getConnectTimeout().toMillis()))
+                .socketTimeoutMillis(Math.toIntExact(configuration.getReadTimeout().toMillis()))
+                .build();
+        // The constructor taking a socket factory is protected
+        pool = new JedisPool(getPoolConfig(), new JedisFactory(socketFactory, clientConfig) {
+        });
+        return pool;
+    }
+
+    /**
+     * Opens connections up to the pool's min-idle; failures are left for the first command to report.
+     */
+    void warmUp() throws Exception {
+        if (pool != null) {
+            pool.preparePool();
+        }
+    }
+
+    void addRole(String role) {
+        roles.add(role);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public List<String> getRoles() {
+        return Collections.unmodifiableList(roles);
+    }
+
+    public RedisTopologyProperties.Pool getPoolSettings() {
+        return poolSettings;
+    }
+
+    public int getNumActive() {
+        return pool != null ? pool.getNumActive() : 0;
+    }
+
+    public int getNumIdle() {
+        return pool != null ? pool.getNumIdle() : 0;
+    }
+
+    public int getNumWaiters() {
+        return pool != null ? pool.getNumWaiters() : 0;
+    }
+}
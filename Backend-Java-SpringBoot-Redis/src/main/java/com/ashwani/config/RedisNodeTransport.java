@@ -0,0 +1,28 @@
+package com.ashwani.config;
+
+import io.lettuce.core.resource.ClientResources;
+import redis.clients.jedis.JedisSocketFactory;
+
+/**
+ * Carries a topology's connections to its nodes over something other than TCP, such as to Redis
+ * stand-ins inside the same JVM. Without a transport bean every node is reached at its host and port.
+ */
+public interface RedisNodeTransport {
+
+    /**
+     * The sockets a node's Jedis pool opens. Called once per node, with the role it is first added in.
+     */
+    JedisSocketFactory socketFactory(String host, int port, RedisTopology.Role role);
+
+    /**
+     * Adjusts the Lettuce client resources every reactive connection of the topology is opened with.
+     */
+    void customize(ClientResources.Builder clientResources);
+
+    /**
+     * Called when a node serves only as a replica of a region's master; a real replica is set up on the
+     * Redis side, so this is for transports that have to set it up themselves.
+     */
+    default void replicate(String master, String replica) {
+    }
+}
@@ -0,0 +1,236 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Redis nodes behind every region's master and replicas; a region has one master and any number of
+ * replicas, in the order they were added. A region split into shards has one more master per extra
+ * shard; the region's master is shard 0 and the only one with replicas. Roles that resolve to the same host and
+ * port share one pooled {@link RedisNodeConnectionFactory}, so a node never has more pools than one,
+ * whichever templates and regions use it. The reactive stack gets one Lettuce connection factory per
+ * node on the same terms; it multiplexes every command over a single shared connection, so it needs
+ * no pool of its own. All of them share the topology's one set of Lettuce client resources, so the
+ * event loops and timer are not started once per node.
+ * <p>
+ * Given a {@link RedisNodeTransport}, both open their connections through it instead of over TCP.
+ */
+public class RedisTopology implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisTopology.class);
+
+    public enum Role {
+        MASTER,
+        REPLICA
+    }
+
+    private final RedisTopologyProperties properties;
+    private final Map<String, RedisNodeConnectionFactory> nodes = new LinkedHashMap<>();
+    private final Map<Role, Map<Region, List<RedisNodeConnectionFactory>>> roles = new EnumMap<>(Role.class);
+    private final Map<Region, List<RedisNodeConnectionFactory>> extraShards = new EnumMap<>(Region.class);
+    private final Map<RedisNodeConnectionFactory, LettuceConnectionFactory> reactiveNodes = new LinkedHashMap<>();
+    private final RedisNodeTransport transport;
+    private ClientResources clientResources;
+
+    public RedisTopology(RedisTopologyProperties properties) {
+        this(properties, null);
+    }
+
+    public RedisTopology(RedisTopologyProperties properties, RedisNodeTransport transport) {
+        this.properties = properties;
+        this.transport = transport;
+        for (Role role : Role.values()) {
+            roles.put(role, new EnumMap<>(Region.class));
+        }
+    }
+
+    /**
+     * Assigns a region role to its node, creating the node's pool the first time it is seen. A node
+     * shared by roles with different pool settings keeps the settings of the role added first. Adding a
+     * master replaces the region's master; adding a replica appends one.
+     */
+    public RedisNodeConnectionFactory add(Region region, Role role, String host, int port) {
+        RedisTopologyProperties.Pool settings = properties.forNode(region, role);
+        RedisNodeConnectionFactory node = nodes.computeIfAbsent(host + ":" + port, key -> createNode(host, port, role, settings));
+        if (!node.getPoolSettings().equals(settings)) {
+            logger.warn("Redis node {} is shared by {} and {} {} with different pool settings; using those of {}",
+                    node.getNode(), node.getRoles(), region, role, node.getRoles().get(0));
+        }
+        node.addRole(region + " " + role.name().toLowerCase());
+        List<RedisNodeConnectionFactory> regionNodes = roles.get(role).computeIfAbsent(region, key -> new ArrayList<>());
+        if (role == Role.MASTER) {
+            regionNodes.clear();
+        } else {
+            replicate(get(region, Role.MASTER), node);
+        }
+        regionNodes.add(node);
+        return node;
+    }
+
+    /**
+     * Adds a master for the region's next shard, numbered from 1 in the order added.
+     */
+    public RedisNodeConnectionFactory addShard(Region region, String host, int port) {
+        RedisTopologyProperties.Pool settings = properties.forNode(region, Role.MASTER);
+        RedisNodeConnectionFactory node = nodes.computeIfAbsent(host + ":" + port, key -> createNode(host, port, Role.MASTER, settings));
+        List<RedisNodeConnectionFactory> regionShards = extraShards.computeIfAbsent(region, key -> new ArrayList<>());
+        regionShards.add(node);
+        node.addRole(region + " shard " + regionShards.size());
+        return node;
+    }
+
+    /**
+     * Masters of the region's shards, indexed by shard; the region's master alone when it is not split.
+     */
+    public List<RedisNodeConnectionFactory> shardMasters(Region region) {
+        List<RedisNodeConnectionFactory> masters = new ArrayList<>();
+        masters.add(get(region, Role.MASTER));
+        masters.addAll(extraShards.getOrDefault(region, List.of()));
+        return masters;
+    }
+
+    /**
+     * The region's master, or its first replica.
+     */
+    public RedisNodeConnectionFactory get(Region region, Role role) {
+        List<RedisNodeConnectionFactory> regionNodes = roles.get(role).get(region);
+        return regionNodes != null ? regionNodes.get(0) : null;
+    }
+
+    /**
+     * The region's replicas, in the order they were added.
+     */
+    public List<RedisNodeConnectionFactory> replicas(Region region) {
+        return Collections.unmodifiableList(roles.get(Role.REPLICA).getOrDefault(region, List.of()));
+    }
+
+    public Collection<RedisNodeConnectionFactory> nodes() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    /**
+     * Connection factories of the role's nodes per region; a single one for masters.
+     */
+    public Map<Region, List<JedisConnectionFactory>> connectionFactories(Role role) {
+        Map<Region, List<JedisConnectionFactory>> factories = new EnumMap<>(Region.class);
+        roles.get(role).forEach((region, regionNodes) -> factories.put(region, List.copyOf(regionNodes)));
+        return factories;
+    }
+
+    /**
+     * Connection factories of every region's shard masters, indexed by shard.
+     */
+    public Map<Region, List<JedisConnectionFactory>> shardConnectionFactories() {
+        Map<Region, List<JedisConnectionFactory>> factories = new EnumMap<>(Region.class);
+        roles.get(Role.MASTER).keySet().forEach(region -> factories.put(region, List.copyOf(shardMasters(region))));
+        return factories;
+    }
+
+    /**
+     * Reactive connection factories of every region's shard masters, indexed by shard.
+     */
+    public synchronized Map<Region, List<ReactiveRedisConnectionFactory>> reactiveShardConnectionFactories() {
+        Map<Region, List<ReactiveRedisConnectionFactory>> factories = new EnumMap<>(Region.class);
+        roles.get(Role.MASTER).keySet().forEach(region -> factories.put(region, shardMasters(region).stream()
+                .map(node -> (ReactiveRedisConnectionFactory) reactiveNodes.computeIfAbsent(node, this::createReactiveNode))
+                .toList()));
+        return factories;
+    }
+
+    /**
+     * Reactive connection factories of the role's nodes, created on first use. Nothing connects until
+     * a reactive command is sent.
+     */
+    public synchronized Map<Region, List<ReactiveRedisConnectionFactory>> reactiveConnectionFactories(Role role) {
+        Map<Region, List<ReactiveRedisConnectionFactory>> factories = new EnumMap<>(Region.class);
+        roles.get(role).forEach((region, regionNodes) -> factories.put(region, regionNodes.stream()
+                .map(node -> (ReactiveRedisConnectionFactory) reactiveNodes.computeIfAbsent(node, this::createReactiveNode))
+                .toList()));
+        return factories;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        reactiveNodes.values().forEach(LettuceConnectionFactory::destroy);
+        if (clientResources != null) {
+            clientResources.shutdown(0, 2, TimeUnit.SECONDS).awaitUninterruptibly();
+        }
+        nodes.values().forEach(JedisConnectionFactory::destroy);
+    }
+
+    // Only a node that serves as nothing but a replica is handed to the transport; one that is also a
+    // master must keep taking writes
+    private void replicate(RedisNodeConnectionFactory master, RedisNodeConnectionFactory replica) {
+        if (transport != null && master != replica
+                && replica.getRoles().stream().allMatch(role -> role.endsWith(" replica"))) {
+            transport.replicate(master.getNode(), replica.getNode());
+        }
+    }
+
+    private RedisNodeConnectionFactory createNode(String host, int port, Role role, RedisTopologyProperties.Pool settings) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(settings.getMaxTotal());
+        poolConfig.setMaxIdle(settings.getMaxIdle());
+        poolConfig.setMinIdle(settings.getMinIdle());
+        poolConfig.setMaxWait(settings.getMaxWait());
+        poolConfig.setTimeBetweenEvictionRuns(settings.getEvictionInterval());
+        poolConfig.setMinEvictableIdleDuration(settings.getMinEvictableIdle());
+
+        JedisClientConfiguration clientConfiguration = JedisClientConfiguration.builder()
+                .clientName(properties.getClientName())
+                .connectTimeout(settings.getConnectTimeout())
+                .readTimeout(settings.getReadTimeout())
+                .usePooling().poolConfig(poolConfig)
+                .build();
+        RedisNodeConnectionFactory factory = new RedisNodeConnectionFactory(host, port, settings, clientConfiguration,
+                transport != null ? transport.socketFactory(host, port, role) : null);
+        factory.afterPropertiesSet(); // Ensure factory is initialized
+        return factory;
+    }
+
+    private LettuceConnectionFactory createReactiveNode(RedisNodeConnectionFactory node) {
+        RedisTopologyProperties.Pool settings = node.getPoolSettings();
+        if (clientResources == null) {
+            DefaultClientResources.Builder builder = DefaultClientResources.builder();
+            if (transport != null) {
+                transport.customize(builder);
+            }
+            clientResources = builder.build();
+        }
+        LettuceClientConfiguration clientConfiguration = LettuceClientConfiguration.builder()
+                .clientResources(clientResources)
+                .clientName(properties.getClientName())
+                .commandTimeout(settings.getReadTimeout())
+                .clientOptions(ClientOptions.builder()
+                        .socketOptions(SocketOptions.builder().connectTimeout(settings.getConnectTimeout()).build())
+                        .build())
+                .build();
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(node.getHostName(), node.getPort()), clientConfiguration);
+        factory.afterPropertiesSet();
+        factory.start();
+        return factory;
+    }
+}
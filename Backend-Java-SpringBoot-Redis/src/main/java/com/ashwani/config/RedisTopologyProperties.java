@@ -0,0 +1,49 @@
+package com.ashwani.config;
+
+import com.ashwani.codec.ValueFormat;
+import com.ashwani.enums.Region;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Redis client settings, bound from {@code ride.redis.*}. Node addresses stay under
+ * {@code spring.redis.<region>.<role>.*}. Pool settings under {@code ride.redis.regions.<REGION>.master}
+ * or {@code .replica} replace {@code ride.redis.pool} for that node.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.redis")
+public class RedisTopologyProperties {
+
+    private ValueFormat valueFormat = ValueFormat.JSON;
+    private String clientName = "ride-hailing";     // CLIENT SETNAME of every pooled connection
+    private Pool pool = new Pool();
+    private Map<Region, RegionPools> regions = new EnumMap<>(Region.class);
+
+    @Data
+    public static class RegionPools {
+        private Pool master;
+        private Pool replica;
+    }
+
+    @Data
+    public static class Pool {
+        private int maxTotal = 32;
+        private int maxIdle = 32;
+        private int minIdle = 0;                                // opened at startup and kept by the evictor
+        private Duration maxWait = Duration.ofSeconds(2);       // borrow timeout once maxTotal are in use
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration readTimeout = Duration.ofSeconds(2);
+        private Duration evictionInterval = Duration.ofSeconds(30);
+        private Duration minEvictableIdle = Duration.ofMinutes(1);
+    }
+
+    public Pool forNode(Region region, RedisTopology.Role role) {
+        RegionPools pools = regions.get(region);
+        Pool override = pools == null ? null : role == RedisTopology.Role.MASTER ? pools.getMaster() : pools.getReplica();
+        return override != null ? override : pool;
+    }
+}
@@ -0,0 +1,32 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Region areas used to derive a region from coordinates, bound from {@code ride.region-resolution.*}.
+ * Each region lists shapes in {@code "lon lat; lon lat; ..."} form, two corners for a bounding box or
+ * three or more vertices for a polygon; see {@link com.ashwani.geo.RegionGrid}. With {@code handoff} on,
+ * a driver whose location update falls in another region's area is moved to that region. It is off by
+ * default, as the default areas are rough continental boxes; set the areas to the real service areas
+ * before turning it on.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.region-resolution")
+public class RegionResolutionProperties {
+
+    private boolean enabled = true;
+    private double gridSizeDeg = 0.5;           // boundary cells fall back to testing the shapes
+    private boolean handoff = false;            // move drivers whose pings land in another region there
+    private Duration handoffTimeout = Duration.ofSeconds(10);   // an unfinished handoff may be taken over after this
+    private Map<Region, List<String>> regions = new EnumMap<>(Map.of(
+            Region.US, List.of("-170 -90; -25 90"),
+            Region.EU, List.of("-25 -90; 60 90"),
+            Region.ASIA, List.of("60 -90; 180 90", "-180 -90; -170 90")));
+}
@@ -0,0 +1,20 @@
+package com.ashwani.config;
+
+import com.ashwani.geo.RegionGrid;
+import com.ashwani.geo.RegionResolver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RegionResolverConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(RegionResolver.class)
+    public RegionResolver regionResolver(RegionResolutionProperties properties) {
+        if (!properties.isEnabled()) {
+            return RegionResolver.NONE;
+        }
+        return RegionGrid.of(properties.getRegions(), properties.getGridSizeDeg());
+    }
+}
@@ -0,0 +1,22 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Replica lag tracking, bound from {@code ride.replica-routing.*}. Every region's master and replica are
+ * probed with {@code INFO replication} each {@code probeInterval}; while a replica is unreachable or more
+ * than {@code maxLagBytes} of replication stream behind its master, EVENTUAL reads go to the master.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.replica-routing")
+public class ReplicaRoutingProperties {
+
+    private boolean enabled = true;
+    private Duration probeInterval = Duration.ofMillis(500);
+    private long maxLagBytes = 1024 * 1024;
+    private boolean readYourWrites = true;      // hand out consistency tokens on writes and honour them on reads
+    private Duration tokenClockSkew = Duration.ofMillis(100);   // how far apart the instances' clocks may be
+}
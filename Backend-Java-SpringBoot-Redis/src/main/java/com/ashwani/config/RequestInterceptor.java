@@ -2,56 +2,92 @@ package com.ashwani.config;
 
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
-import com.ashwani.sharding.ConsistencyContext;
-import com.ashwani.sharding.RegionContext;
+import com.ashwani.geo.RegionResolver;
+import com.ashwani.sharding.ConsistencyToken;
+import com.ashwani.sharding.ReplicaLagMonitor;
+import com.ashwani.sharding.RequestContext;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
 
 import static com.ashwani.constant.ApplicationConstant.CONSISTENCY_LEVEL_HEADER;
+import static com.ashwani.constant.ApplicationConstant.CONSISTENCY_TOKEN_HEADER;
 import static com.ashwani.constant.ApplicationConstant.REGION_HEADER;
 
+/**
+ * Reads the region and consistency headers into a {@link RequestContext} request attribute. Without a
+ * valid region header, the region is derived from {@code longitude} and {@code latitude} request
+ * parameters when present. A read sent with a {@link ConsistencyToken} its region's replica has not
+ * caught up with yet is made STRONG.
+ */
 @Component
 public class RequestInterceptor implements HandlerInterceptor {
 
+    private static final Logger logger = LoggerFactory.getLogger(RequestInterceptor.class);
+
+    private final ReplicaRoutingProperties replicaRoutingProperties;
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final RegionResolver regionResolver;
+
+    public RequestInterceptor(ReplicaRoutingProperties replicaRoutingProperties, ReplicaLagMonitor replicaLagMonitor,
+                              RegionResolver regionResolver) {
+        this.replicaRoutingProperties = replicaRoutingProperties;
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.regionResolver = regionResolver;
+    }
 
     @Override
-    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Region region = null;
         String regionHeader = request.getHeader(REGION_HEADER);
         if (regionHeader != null && !regionHeader.isEmpty()) {
             try {
-                Region region = Region.valueOf(regionHeader.toUpperCase());
-                RegionContext.setRegion(region);
+                region = Region.valueOf(regionHeader.toUpperCase());
             } catch (IllegalArgumentException e) {
-                // Log or handle invalid region header
-                System.err.println("Invalid X-Region header: " + regionHeader);
+                logger.warn("Invalid {} header: {}", REGION_HEADER, regionHeader);
             }
         }
+        if (region == null) {
+            region = regionOfCoordinates(request);
+        }
 
+        ConsistencyLevel consistencyLevel = null;
         String consistencyHeader = request.getHeader(CONSISTENCY_LEVEL_HEADER);
         if (consistencyHeader != null && !consistencyHeader.isEmpty()) {
             try {
-                ConsistencyLevel consistencyLevel = ConsistencyLevel.valueOf(consistencyHeader.toUpperCase());
-                ConsistencyContext.setConsistencyLevel(consistencyLevel);
+                consistencyLevel = ConsistencyLevel.valueOf(consistencyHeader.toUpperCase());
             } catch (IllegalArgumentException e) {
-                // Log or handle invalid consistency level header
-                System.err.println("Invalid X-Consistency-Level header: " + consistencyHeader);
+                logger.warn("Invalid {} header: {}", CONSISTENCY_LEVEL_HEADER, consistencyHeader);
             }
         }
 
-        return true;
-    }
+        RequestContext context = new RequestContext(region, consistencyLevel);
+        if (!ConsistencyLevel.STRONG.equals(consistencyLevel) && replicaRoutingProperties.isReadYourWrites()) {
+            ConsistencyToken token = ConsistencyToken.parse(request.getHeader(CONSISTENCY_TOKEN_HEADER));
+            if (token != null && token.region() == context.regionOrDefault()
+                    && !replicaLagMonitor.replicaCaughtUp(context.regionOrDefault(), token.writtenAt())) {
+                context = new RequestContext(context.region(), ConsistencyLevel.STRONG);
+            }
+        }
 
-    @Override
-    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
-        // Not used for this purpose
+        request.setAttribute(RequestContext.ATTRIBUTE, context);
+        return true;
     }
 
-    @Override
-    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        RegionContext.clear();
-        ConsistencyContext.clear();
+    private Region regionOfCoordinates(HttpServletRequest request) {
+        String longitude = request.getParameter("longitude");
+        String latitude = request.getParameter("latitude");
+        if (longitude == null || latitude == null) {
+            return null;
+        }
+        try {
+            return regionResolver.resolve(Double.parseDouble(longitude), Double.parseDouble(latitude));
+        } catch (NumberFormatException e) {
+            // Left to the controller's parameter binding to reject
+            return null;
+        }
     }
 }
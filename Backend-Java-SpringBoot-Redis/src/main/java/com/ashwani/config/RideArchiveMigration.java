@@ -0,0 +1,38 @@
+package com.ashwani.config;
+
+import com.ashwani.enums.Region;
+import com.ashwani.repository.RideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off move of the finished rides that earlier versions left in the hot ride hash into the archive
+ * buckets. Enable with {@code ride.rides.archive-finished-on-startup=true}; it is idempotent.
+ */
+@Component
+@ConditionalOnProperty(name = "ride.rides.archive-finished-on-startup", havingValue = "true")
+public class RideArchiveMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(RideArchiveMigration.class);
+
+    private final RideRepository rideRepository;
+
+    public RideArchiveMigration(RideRepository rideRepository) {
+        this.rideRepository = rideRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (Region region : Region.values()) {
+            try {
+                rideRepository.archiveFinishedRides(region);
+            } catch (RuntimeException e) {
+                logger.error("Ride archive migration failed in region {}", region, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Where finished rides go, bound from {@code ride.rides.archive.*}. Rides are archived into one hash per
+ * {@code bucket} (HOURS or DAYS, by ride start time, UTC), and each bucket expires {@code retention}
+ * after it closes. A zero retention keeps archived rides forever.
+ * <p>
+ * The bucket can be switched while archives are retained: a lookup by a time-ordered id falls back to
+ * the bucket of the other granularity, and older ids are indexed under their bucket's full name.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.rides.archive")
+public class RideArchiveProperties {
+
+    private ChronoUnit bucket = ChronoUnit.DAYS;
+    private Duration retention = Duration.ofDays(30);
+}
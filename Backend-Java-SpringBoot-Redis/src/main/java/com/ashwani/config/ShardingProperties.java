@@ -0,0 +1,17 @@
+package com.ashwani.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Intra-region sharding settings, bound from {@code ride.sharding.*}. A region is split when
+ * {@code spring.redis.<region>.shards} lists masters beyond its own; driver positions are then placed on
+ * the shard owning their geographic cell, and nearest-driver searches only visit the shards owning the
+ * cells a search circle touches.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.sharding")
+public class ShardingProperties {
+
+    private double cellSizeDeg = 0.5;           // ~55 km of latitude; no narrower than the widest search ring keeps a search within 2 x 2 cells
+}
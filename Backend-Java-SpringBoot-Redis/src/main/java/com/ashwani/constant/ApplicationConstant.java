@@ -3,9 +3,20 @@ package com.ashwani.constant;
 public class ApplicationConstant {
     public static final String DRIVER_GEO_KEY_PREFIX = "drivers:geo:"; // Redis GEO key prefix
     public static final String DRIVER_KEY_PREFIX = "drivers:"; // Redis hash key prefix
+    public static final String DRIVER_STATE_KEY_PREFIX = "drivers:state:"; // Per-driver hot state hash prefix
+    public static final String DRIVER_SHARD_KEY_PREFIX = "drivers:shard:"; // Driver id -> shard holding its state, in split regions
+    public static final String DRIVER_MEMBERS_KEY_PREFIX = "drivers:members:"; // Ids of the drivers placed on a shard, in split regions
+    public static final String DRIVER_MOVED_KEY_PREFIX = "drivers:moved:"; // Driver id -> region it was handed off to, in the region it left
+    public static final String DRIVER_EVENTS_CHANNEL_PREFIX = "drivers:events:"; // Pub/sub channel of driver deltas
     public static final String PASSENGER_KEY_PREFIX = "passengers:"; // Redis hash key prefix
+    public static final String PASSENGER_ACTIVE_RIDE_KEY_PREFIX = "passengers:active:"; // Passenger id -> active ride id
+    public static final String PASSENGER_VERSION_KEY_PREFIX = "passengers:version:"; // Passenger id -> write counter
+    public static final String PASSENGER_EVENTS_CHANNEL_PREFIX = "passengers:events:"; // Pub/sub channel of changed passenger ids
     public static final String RIDE_KEY_PREFIX = "rides:"; // Redis hash key prefix
+    public static final String RIDE_ARCHIVE_KEY_PREFIX = "rides:archive:"; // Finished rides, one hash per region and time bucket
+    public static final String RIDE_ARCHIVE_BUCKET_KEY_PREFIX = "rides:archive-bucket:"; // Archived ride id without a start time -> its bucket
     public static final String CONSISTENCY_LEVEL_HEADER = "X-Consistency-Level";
+    public static final String CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token"; // Read-your-writes token, <REGION>:<write time, epoch ms>
     public static final String REGION_HEADER = "X-Region";
     public static final String DEFAULT_CONSISTENCY = "strong";
 }
@@ -1,13 +1,23 @@
 package com.ashwani.controller;
 
+import com.ashwani.dto.BatchLocationUpdateResponse;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dto.DriverLocationUpdate;
 import com.ashwani.entity.Driver;
 import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.push.DriverDeltaHub;
+import com.ashwani.push.Viewport;
 import com.ashwani.service.DriverService;
-import com.ashwani.sharding.RegionContext;
+import com.ashwani.sharding.RequestContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -20,24 +30,62 @@ public class DriverController {
     @Autowired
     private DriverService driverService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DriverDeltaHub driverDeltaHub;
+
     @PostMapping
-    public ResponseEntity<Driver> addDriver(@Valid @RequestBody Driver driver) {
+    public ResponseEntity<Driver> addDriver(@Valid @RequestBody Driver driver, RequestContext context) {
         if (driver.getId() == null || driver.getId().isEmpty()) {
             driver.setId(UUID.randomUUID().toString());
         }
 
         driver.setStatus(DriverStatus.AVAILABLE);
-        driverService.addDriver(RegionContext.getRegion(), driver);
+        driverService.addDriver(context.region(), driver);
         return ResponseEntity.ok(driver);
     }
 
     @PostMapping("/updateLocation")
-    public void updateDriverLocation(@RequestParam String id, @RequestParam Double longitude, @RequestParam Double latitude) {
-        driverService.updateDriverLocation(RegionContext.getRegion(), id, longitude, latitude);
+    public void updateDriverLocation(@RequestParam String id, @RequestParam Double longitude, @RequestParam Double latitude,
+                                     RequestContext context) {
+        driverService.updateDriverLocation(context.region(), id, longitude, latitude);
+    }
+
+    @PostMapping("/locations:batch")
+    public ResponseEntity<BatchLocationUpdateResponse> updateDriverLocations(@RequestBody List<DriverLocationUpdate> updates,
+                                                                             RequestContext context) {
+        return ResponseEntity.ok(driverService.updateDriverLocations(context.region(), updates));
     }
 
+    /**
+     * Lists the region's drivers one cursor page at a time; pass {@code nextCursor} back as {@code cursor}
+     * until it comes back null. With {@code Accept: application/x-ndjson} every driver is streamed
+     * instead, one JSON document per line.
+     */
     @GetMapping
-    public ResponseEntity<List<Driver>> getAllDrivers() {
-        return ResponseEntity.ok(driverService.getAllDrivers());
+    public ResponseEntity<CursorPage<Driver>> getDrivers(@RequestParam(defaultValue = CursorPage.FIRST) String cursor,
+                                                         @RequestParam(defaultValue = "100") int limit,
+                                                         RequestContext context) {
+        return ResponseEntity.ok(driverService.getDriversPage(context.regionOrDefault(), context.consistencyLevel(), cursor, limit));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDrivers(RequestContext context) {
+        return NdjsonStreams.of(objectMapper, sink -> driverService.streamDrivers(context.regionOrDefault(), context.consistencyLevel(), sink));
+    }
+
+    /**
+     * Server-sent events with the changes to the region's drivers inside the box: moves, status changes,
+     * drivers going offline and drivers leaving the box. Load the map with {@link #getDrivers} first and
+     * apply the deltas on top; reconnect with the new box when the map moves. The region may be given as
+     * a parameter, since browsers cannot set headers on an {@code EventSource}.
+     */
+    @GetMapping(value = "/deltas", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDriverDeltas(@RequestParam double minLat, @RequestParam double minLon,
+                                         @RequestParam double maxLat, @RequestParam double maxLon,
+                                         @RequestParam(required = false) Region region, RequestContext context) {
+        return driverDeltaHub.subscribe(region != null ? region : context.regionOrDefault(), new Viewport(minLat, minLon, maxLat, maxLon));
     }
 }
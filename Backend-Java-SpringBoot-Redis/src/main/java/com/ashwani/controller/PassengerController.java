@@ -1,15 +1,18 @@
 package com.ashwani.controller;
 
+import com.ashwani.dto.CursorPage;
 import com.ashwani.entity.Passenger;
 import com.ashwani.enums.PassengerStatus;
 import com.ashwani.service.PassengerService;
-import com.ashwani.sharding.RegionContext;
+import com.ashwani.sharding.RequestContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -20,19 +23,34 @@ public class PassengerController {
     @Autowired
     private PassengerService passengerService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
-    public ResponseEntity<Passenger> addPassenger(@Valid @RequestBody Passenger passenger) {
+    public ResponseEntity<Passenger> addPassenger(@Valid @RequestBody Passenger passenger, RequestContext context) {
         // Generate ID if not provided
         if (passenger.getId() == null || passenger.getId().isEmpty()) {
             passenger.setId(UUID.randomUUID().toString());
         }
         passenger.setStatus(PassengerStatus.ONLINE);
-        passengerService.addPassenger(RegionContext.getRegion(), passenger);
+        passengerService.addPassenger(context.region(), passenger);
         return ResponseEntity.ok(passenger);
     }
 
+    /**
+     * Lists the region's passengers one cursor page at a time; pass {@code nextCursor} back as {@code cursor}
+     * until it comes back null. With {@code Accept: application/x-ndjson} every passenger is streamed
+     * instead, one JSON document per line.
+     */
     @GetMapping
-    public ResponseEntity<List<Passenger>> getAllPassengers() {
-        return ResponseEntity.ok(passengerService.getAllPassengers());
+    public ResponseEntity<CursorPage<Passenger>> getPassengers(@RequestParam(defaultValue = CursorPage.FIRST) String cursor,
+                                                               @RequestParam(defaultValue = "100") int limit,
+                                                               RequestContext context) {
+        return ResponseEntity.ok(passengerService.getPassengersPage(context.regionOrDefault(), context.consistencyLevel(), cursor, limit));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPassengers(RequestContext context) {
+        return NdjsonStreams.of(objectMapper, sink -> passengerService.streamPassengers(context.regionOrDefault(), context.consistencyLevel(), sink));
     }
 }
@@ -0,0 +1,25 @@
+package com.ashwani.controller;
+
+import com.ashwani.service.ReactiveDriverService;
+import com.ashwani.sharding.RequestContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link DriverController}'s location ping on the non-blocking stack.
+ */
+@RestController
+@CrossOrigin("*")
+@RequestMapping("/reactive/drivers")
+public class ReactiveDriverController {
+
+    @Autowired
+    private ReactiveDriverService driverService;
+
+    @PostMapping("/updateLocation")
+    public Mono<Void> updateDriverLocation(@RequestParam String id, @RequestParam Double longitude, @RequestParam Double latitude,
+                                           RequestContext context) {
+        return driverService.updateDriverLocation(context.region(), id, longitude, latitude);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ashwani.controller;
+
+import com.ashwani.entity.Ride;
+import com.ashwani.service.ReactiveRideService;
+import com.ashwani.sharding.RequestContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link RideController}'s booking endpoints on the non-blocking stack. The request thread is handed
+ * back to the server as soon as the {@link Mono} is returned, and the response is written once Redis
+ * has answered.
+ */
+@RestController
+@CrossOrigin("*")
+@RequestMapping("/reactive/rides")
+public class ReactiveRideController {
+
+    @Autowired
+    private ReactiveRideService rideService;
+
+    @PostMapping("/book")
+    public Mono<ResponseEntity<Ride>> bookRide(@RequestParam String id, RequestContext context) {
+        return rideService.bookRide(context.regionOrDefault(), id).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/end")
+    public Mono<ResponseEntity<Ride>> endRide(@RequestParam String id, RequestContext context) {
+        return rideService.endRide(context.regionOrDefault(), id).map(ResponseEntity::ok);
+    }
+}
@@ -1,13 +1,17 @@
 package com.ashwani.controller;
 
+import com.ashwani.dto.CursorPage;
 import com.ashwani.entity.Ride;
 import com.ashwani.service.RideService;
-import com.ashwani.sharding.RegionContext;
+import com.ashwani.sharding.RequestContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @CrossOrigin("*")
@@ -17,23 +21,54 @@ public class RideController {
     @Autowired
     private RideService rideService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Books at once, or answers when the booking's batch has been matched if
+     * {@code ride.dispatch.batching.enabled} is on.
+     */
     @PostMapping("/book")
-    public ResponseEntity<Ride> bookRide(@RequestParam String id) {
-        return ResponseEntity.ok(rideService.bookRide(RegionContext.getRegion(), id));
+    public CompletableFuture<ResponseEntity<Ride>> bookRide(@RequestParam String id, RequestContext context) {
+        return rideService.bookRideAsync(context.regionOrDefault(), id).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/end")
-    public ResponseEntity<Ride> endRide(@RequestParam String id) {
-        return ResponseEntity.ok(rideService.endRide(RegionContext.getRegion(), id));
+    public ResponseEntity<Ride> endRide(@RequestParam String id, RequestContext context) {
+        return ResponseEntity.ok(rideService.endRide(context.regionOrDefault(), id));
     }
 
+    /**
+     * Lists the region's active rides one cursor page at a time; pass {@code nextCursor} back as {@code cursor}
+     * until it comes back null. With {@code Accept: application/x-ndjson} every ride is streamed
+     * instead, one JSON document per line.
+     */
     @GetMapping
-    public ResponseEntity<List<Ride>> getAllRides() {
-        return ResponseEntity.ok(rideService.getAllRides());
+    public ResponseEntity<CursorPage<Ride>> getRides(@RequestParam(defaultValue = CursorPage.FIRST) String cursor,
+                                                     @RequestParam(defaultValue = "100") int limit,
+                                                     RequestContext context) {
+        return ResponseEntity.ok(rideService.getRidesPage(context.regionOrDefault(), context.consistencyLevel(), cursor, limit));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamRides(RequestContext context) {
+        return NdjsonStreams.of(objectMapper, sink -> rideService.streamRides(context.regionOrDefault(), context.consistencyLevel(), sink));
+    }
+
+    /**
+     * Finished rides of one archive bucket, {@code yyyyMMdd} or {@code yyyyMMddHH} (UTC) depending on
+     * {@code ride.rides.archive.bucket}, paged like {@link #getRides}.
+     */
+    @GetMapping("/archive/{bucket}")
+    public ResponseEntity<CursorPage<Ride>> getArchivedRides(@PathVariable String bucket,
+                                                             @RequestParam(defaultValue = CursorPage.FIRST) String cursor,
+                                                             @RequestParam(defaultValue = "100") int limit,
+                                                             RequestContext context) {
+        return ResponseEntity.ok(rideService.getArchivedRidesPage(context.regionOrDefault(), context.consistencyLevel(), bucket, cursor, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Ride> getRideById(@PathVariable String id) {
-        return ResponseEntity.ok(rideService.getRideById(id));
+    public ResponseEntity<Ride> getRideById(@PathVariable String id, RequestContext context) {
+        return ResponseEntity.ok(rideService.getRideById(context.regionOrDefault(), context.consistencyLevel(), id));
     }
 }
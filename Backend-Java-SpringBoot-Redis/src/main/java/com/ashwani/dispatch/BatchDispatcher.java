@@ -0,0 +1,267 @@
+package com.ashwani.dispatch;
+
+import com.ashwani.config.DispatchProperties;
+import com.ashwani.dto.DispatchResult;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.exception.BackpressureException;
+import com.ashwani.repository.RideRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Books rides in per-region batches instead of one at a time, so a surge of bookings is matched to
+ * drivers together rather than each passenger grabbing the nearest driver still free.
+ * <p>
+ * Bookings wait in a bounded queue per region for up to {@code ride.dispatch.batching.window}. A flusher
+ * thread per region then drains the queue, looks up each passenger's nearest AVAILABLE drivers on the
+ * master, and assigns drivers to passengers over the whole batch with {@link Matching#optimal}, or
+ * {@link Matching#greedy} for batches above {@code optimal-max-size}. Every assignment is then claimed
+ * with the claim script, the passenger's own other candidates that no one else in the batch was given
+ * following as fallbacks, so a driver taken meanwhile by another instance costs nothing but the next
+ * candidate. Passengers left without a driver go through the regular ring search.
+ * <p>
+ * Callers get a future that completes, on the flusher thread, once their batch is done. Counted in
+ * {@code ride.dispatch.batch.*}: size per batch, time spent queued, flush time and pickup distance.
+ */
+@Component
+public class BatchDispatcher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDispatcher.class);
+
+    private final DispatchProperties properties;
+    private final RideRepository rideRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<Region, BlockingQueue<Booking>> queues = new EnumMap<>(Region.class);
+    private final ScheduledExecutorService flushers;
+
+    public BatchDispatcher(DispatchProperties properties, RideRepository rideRepository, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.rideRepository = rideRepository;
+        this.meterRegistry = meterRegistry;
+        DispatchProperties.Batching batching = properties.getBatching();
+        if (batching.isEnabled()) {
+            for (Region region : Region.values()) {
+                BlockingQueue<Booking> queue = new ArrayBlockingQueue<>(batching.getCapacity());
+                queues.put(region, queue);
+                Gauge.builder("ride.dispatch.batch.queued", queue, BlockingQueue::size)
+                        .tag("region", region.name())
+                        .register(meterRegistry);
+            }
+            flushers = Executors.newScheduledThreadPool(queues.size(), runnable -> {
+                Thread thread = new Thread(runnable, "batch-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long windowMs = Math.max(1, batching.getWindow().toMillis());
+            for (Region region : queues.keySet()) {
+                flushers.scheduleWithFixedDelay(() -> flushQuietly(region), windowMs, windowMs, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            flushers = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.getBatching().isEnabled();
+    }
+
+    /**
+     * Queues a booking for the region's next batch. The ride's driver id is filled in when the future
+     * completes with an OK outcome.
+     *
+     * @throws BackpressureException when the region's queue is full
+     */
+    public CompletableFuture<DispatchResult> submit(Region region, Ride ride, Passenger passenger) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Batched dispatch is disabled");
+        }
+        Booking booking = new Booking(ride, passenger, System.nanoTime(), new CompletableFuture<>());
+        if (!queues.get(region).offer(booking)) {
+            throw new BackpressureException("Booking queue for region " + region + " is full, retry later");
+        }
+        return booking.result();
+    }
+
+    /**
+     * Matches and books everything queued for the region now; the flusher threads call this every window.
+     */
+    public void flush(Region region) {
+        BlockingQueue<Booking> queue = queues.get(region);
+        if (queue == null || queue.isEmpty()) {
+            return;
+        }
+        List<Booking> drained = new ArrayList<>(queue.size());
+        queue.drainTo(drained);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        DispatchResult[] results = new DispatchResult[drained.size()];
+        try {
+            book(region, drained, results);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < drained.size(); i++) {
+                if (results[i] != null) {
+                    drained.get(i).result().complete(results[i]);
+                } else {
+                    drained.get(i).result().completeExceptionally(e);
+                }
+            }
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("ride.dispatch.batch.flush", "region", region.name()));
+            meterRegistry.summary("ride.dispatch.batch.size", "region", region.name()).record(drained.size());
+            Timer queued = meterRegistry.timer("ride.dispatch.batch.delay", "region", region.name());
+            long now = System.nanoTime();
+            drained.forEach(booking -> queued.record(now - booking.queuedAt(), TimeUnit.NANOSECONDS));
+        }
+        // Completed only after the whole batch is claimed: callers' follow-up writes run on this thread.
+        // Bookings that failed on their own were completed exceptionally already.
+        for (int i = 0; i < drained.size(); i++) {
+            if (results[i] != null) {
+                drained.get(i).result().complete(results[i]);
+            }
+        }
+    }
+
+    private void book(Region region, List<Booking> bookings, DispatchResult[] results) {
+        DispatchProperties.Batching batching = properties.getBatching();
+        DispatchProperties.Search search = properties.forRegion(region);
+        List<Double> ringsKm = properties.ringsKm(region);
+
+        // Candidate drivers per passenger, numbered across the batch. A passenger booked twice in one
+        // batch keeps the first booking; the script would refuse the second anyway.
+        int n = bookings.size();
+        int[][] candidates = new int[n][];
+        double[][] km = new double[n][];
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> driverIds = new ArrayList<>();
+        Set<String> passengers = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            Booking booking = bookings.get(i);
+            if (!passengers.add(booking.ride().getPassengerId())) {
+                results[i] = new DispatchResult(DispatchResult.Outcome.PASSENGER_ON_RIDE, null, 0, 0);
+                candidates[i] = new int[0];
+                km[i] = new double[0];
+                continue;
+            }
+            GeoResults<GeoLocation<String>> nearby = rideRepository.getNearByDrivers(region, booking.passenger().getLatitude(), booking.passenger().getLongitude(),
+                    ringsKm, batching.getCandidateCount(), ConsistencyLevel.STRONG);
+            List<GeoResult<GeoLocation<String>>> content = nearby == null ? List.of() : nearby.getContent();
+            candidates[i] = new int[content.size()];
+            km[i] = new double[content.size()];
+            for (int c = 0; c < content.size(); c++) {
+                String driverId = content.get(c).getContent().getName();
+                candidates[i][c] = columns.computeIfAbsent(driverId, id -> {
+                    driverIds.add(id);
+                    return driverIds.size() - 1;
+                });
+                km[i][c] = content.get(c).getDistance().getValue();
+            }
+        }
+
+        int[] assignment = n <= batching.getOptimalMaxSize()
+                ? Matching.optimal(driverIds.size(), candidates, km)
+                : Matching.greedy(driverIds.size(), candidates, km);
+        boolean[] assigned = new boolean[driverIds.size()];
+        for (int column : assignment) {
+            if (column >= 0) {
+                assigned[column] = true;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Ride ride = bookings.get(i).ride();
+            List<String> claimOrder = new ArrayList<>(candidates[i].length);
+            if (assignment[i] >= 0) {
+                claimOrder.add(driverIds.get(assignment[i]));
+            }
+            for (int column : candidates[i]) {
+                if (!assigned[column]) {
+                    claimOrder.add(driverIds.get(column));
+                }
+            }
+            try {
+                results[i] = claim(region, bookings.get(i), claimOrder, ringsKm, search.getCandidateCount());
+            } catch (RuntimeException e) {
+                logger.warn("Batch booking for passenger {} failed in region {}", ride.getPassengerId(), region, e);
+                bookings.get(i).result().completeExceptionally(e);
+                continue;
+            }
+            if (results[i].getOutcome() == DispatchResult.Outcome.OK && assignment[i] >= 0
+                    && driverIds.get(assignment[i]).equals(results[i].getDriverId())) {
+                for (int c = 0; c < candidates[i].length; c++) {
+                    if (candidates[i][c] == assignment[i]) {
+                        meterRegistry.summary("ride.dispatch.batch.pickup_km", "region", region.name()).record(km[i][c]);
+                        break;
+                    }
+                }
+            }
+        }
+        logger.info("Batch dispatch in region {}: {} bookings over {} candidate drivers, {} matched in batch",
+                region, n, driverIds.size(), Arrays.stream(assignment).filter(column -> column >= 0).count());
+    }
+
+    // Claims the given drivers in order; when none is left, falls back to the ring search
+    private DispatchResult claim(Region region, Booking booking, List<String> claimOrder, List<Double> ringsKm, int candidateCount) {
+        if (!claimOrder.isEmpty()) {
+            DispatchResult result = rideRepository.claim(region, booking.ride(), booking.passenger(), claimOrder);
+            if (result.getOutcome() != DispatchResult.Outcome.NO_AVAILABLE_DRIVERS) {
+                return result;
+            }
+        }
+        return rideRepository.dispatch(region, booking.ride(), booking.passenger(), ringsKm, candidateCount);
+    }
+
+    private void flushQuietly(Region region) {
+        try {
+            flush(region);
+        } catch (RuntimeException e) {
+            logger.warn("Batch dispatch failed in region {}", region, e);
+        }
+    }
+
+    // Books what is still queued before the Redis connections close
+    @Override
+    public void destroy() {
+        if (flushers == null) {
+            return;
+        }
+        flushers.shutdown();
+        try {
+            flushers.awaitTermination(properties.getBatching().getWindow().toMillis() + 5_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queues.keySet().forEach(this::flushQuietly);
+    }
+
+    private record Booking(Ride ride, Passenger passenger, long queuedAt, CompletableFuture<DispatchResult> result) {
+    }
+}
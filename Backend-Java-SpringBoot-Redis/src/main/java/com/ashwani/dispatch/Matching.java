@@ -0,0 +1,164 @@
+package com.ashwani.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Passenger-to-driver assignment over sparse candidate lists. Passenger {@code i} may only take the
+ * drivers in {@code drivers[i]}, at the pickup distances in {@code km[i]}; driver ids are column
+ * numbers below {@code driverCount}. Both solvers return the column chosen for each passenger, or -1.
+ * <ul>
+ *   <li>{@link #optimal} matches as many passengers as possible and, among those matchings, minimises the
+ *       total pickup distance (Hungarian algorithm, O(n&sup2;m) over a dense n x m matrix).</li>
+ *   <li>{@link #greedy} takes the shortest remaining pickup first until no allowed pair is left
+ *       (O(E log E) over the E candidate pairs), for batches too large for the exact solver.</li>
+ *   <li>{@link #firstCome} is what one-booking-at-a-time dispatch does: passengers in order each take their
+ *       closest driver not already taken. Kept for comparison.</li>
+ * </ul>
+ */
+public final class Matching {
+
+    // Cost of a pair that is not allowed; larger than any total of real pickups in a batch
+    private static final double FORBIDDEN = 1e7;
+
+    private Matching() {
+    }
+
+    public static int[] optimal(int driverCount, int[][] drivers, double[][] km) {
+        int n = drivers.length;
+        int m = Math.max(n, driverCount);     // padding columns absorb passengers that cannot all be matched
+        double[][] cost = new double[n + 1][m + 1];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(cost[i + 1], FORBIDDEN);
+            for (int c = 0; c < drivers[i].length; c++) {
+                cost[i + 1][drivers[i][c] + 1] = Math.min(cost[i + 1][drivers[i][c] + 1], km[i][c]);
+            }
+        }
+
+        // Potentials u (rows) and v (columns); p[j] is the row matched to column j, 0 for none
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double reduced = cost[i0][j] - u[i0] - v[j];
+                        if (reduced < minv[j]) {
+                            minv[j] = reduced;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            // Flip the augmenting path
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        for (int j = 1; j <= driverCount; j++) {
+            if (p[j] != 0 && cost[p[j]][j] < FORBIDDEN) {
+                assignment[p[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+
+    public static int[] greedy(int driverCount, int[][] drivers, double[][] km) {
+        int edges = 0;
+        for (int[] candidates : drivers) {
+            edges += candidates.length;
+        }
+        // Float bits of a non-negative distance sort like the distance itself, so one primitive sort
+        // orders the pairs by distance, with the pair number in the low half breaking ties
+        long[] order = new long[edges];
+        int[] rows = new int[edges];
+        int[] columns = new int[edges];
+        int e = 0;
+        for (int i = 0; i < drivers.length; i++) {
+            for (int c = 0; c < drivers[i].length; c++) {
+                order[e] = (long) Float.floatToIntBits((float) Math.max(0, km[i][c])) << 32 | e;
+                rows[e] = i;
+                columns[e] = drivers[i][c];
+                e++;
+            }
+        }
+        Arrays.sort(order);
+
+        int[] assignment = new int[drivers.length];
+        Arrays.fill(assignment, -1);
+        boolean[] taken = new boolean[driverCount];
+        int left = Math.min(drivers.length, driverCount);
+        for (int k = 0; k < edges && left > 0; k++) {
+            int edge = (int) order[k];
+            if (assignment[rows[edge]] < 0 && !taken[columns[edge]]) {
+                assignment[rows[edge]] = columns[edge];
+                taken[columns[edge]] = true;
+                left--;
+            }
+        }
+        return assignment;
+    }
+
+    public static int[] firstCome(int driverCount, int[][] drivers, double[][] km) {
+        int[] assignment = new int[drivers.length];
+        boolean[] taken = new boolean[driverCount];
+        for (int i = 0; i < drivers.length; i++) {
+            int best = -1;
+            for (int c = 0; c < drivers[i].length; c++) {
+                if (!taken[drivers[i][c]] && (best < 0 || km[i][c] < km[i][best])) {
+                    best = c;
+                }
+            }
+            assignment[i] = best < 0 ? -1 : drivers[i][best];
+            if (best >= 0) {
+                taken[drivers[i][best]] = true;
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * Sum of the pickup distances of an assignment returned by one of the solvers.
+     */
+    public static double totalKm(int[] assignment, int[][] drivers, double[][] km) {
+        double total = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            for (int c = 0; c < drivers[i].length; c++) {
+                if (drivers[i][c] == assignment[i]) {
+                    total += km[i][c];
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ashwani.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchLocationUpdateResponse {
+    private int received;
+    private int succeeded;
+    private int failed;
+    private List<LocationUpdateResult> results;     // Same order as the request body
+
+    public BatchLocationUpdateResponse(List<LocationUpdateResult> results) {
+        this.results = results;
+        this.received = results.size();
+        this.succeeded = (int) results.stream().filter(LocationUpdateResult::isSuccess).count();
+        this.failed = received - succeeded;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ashwani.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * One page of an HSCAN over a region hash. Pass {@code nextCursor} back to get the following page;
+ * it is null once the scan has covered the whole hash. Pages can be smaller or larger than the
+ * requested limit, and an entry changed during the scan may show up twice.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    public static final String FIRST = "0";
+    public static final int STREAM_PAGE_SIZE = 500;    // HSCAN count per page when a listing is streamed whole
+
+    private List<T> items;
+    private String nextCursor;
+
+    /**
+     * Walks every page from the start, handing items to {@code action} one page at a time, so only a
+     * single page is ever held in memory.
+     */
+    public static <T> void forEach(Function<String, CursorPage<T>> pages, Consumer<? super T> action) {
+        String cursor = FIRST;
+        do {
+            CursorPage<T> page = pages.apply(cursor);
+            page.getItems().forEach(action);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ashwani.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DispatchResult {
+
+    public enum Outcome {
+        OK,
+        PASSENGER_ON_RIDE,
+        NO_AVAILABLE_DRIVERS
+    }
+
+    private Outcome outcome;
+    private String driverId;    // Set only when the outcome is OK
+    private int ringsTried;     // Search radii examined before the outcome was known
+    private int candidatesScanned;  // Drivers looked at, claimed or passed over, before the outcome was known
+}
@@ -0,0 +1,32 @@
+package com.ashwani.dto;
+
+import com.ashwani.enums.DriverStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change to a driver pushed to map subscribers. Every delta carries the driver's full hot state,
+ * so a newer delta for the same driver can always replace an older one that has not been sent yet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DriverDelta {
+
+    public enum Type {
+        MOVED,      // new position
+        STATUS,     // status changed, still on the map
+        OFFLINE,    // went offline; drop the marker
+        LEFT        // moved out of the subscriber's viewport; drop the marker
+    }
+
+    private Type type;
+    private String id;
+    private DriverStatus status;
+    private Double latitude;    // Null for drivers with no recorded position
+    private Double longitude;
+    private Long timestamp;
+}
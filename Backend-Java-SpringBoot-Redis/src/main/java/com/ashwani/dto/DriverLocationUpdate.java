@@ -0,0 +1,12 @@
+package com.ashwani.dto;
+
+import com.ashwani.enums.Region;
+import lombok.Data;
+
+@Data
+public class DriverLocationUpdate {
+    private String id;
+    private Double latitude;
+    private Double longitude;
+    private Region region;      // Optional, falls back to the X-Region header
+}
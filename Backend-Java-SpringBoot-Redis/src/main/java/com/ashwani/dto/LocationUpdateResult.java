@@ -0,0 +1,24 @@
+package com.ashwani.dto;
+
+import com.ashwani.enums.Region;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationUpdateResult {
+    private String id;
+    private Region region;
+    private boolean success;
+    private String error;       // Null when the update was applied
+
+    public static LocationUpdateResult applied(String id, Region region) {
+        return new LocationUpdateResult(id, region, true, null);
+    }
+
+    public static LocationUpdateResult rejected(String id, Region region, String error) {
+        return new LocationUpdateResult(id, region, false, error);
+    }
+}
@@ -17,4 +17,6 @@ public class Driver {
 
     @NotNull(message = "Longitude cannot be null")
     private Double longitude;
+
+    private Long lastUpdated;   // Epoch millis of the last location or status change
 }
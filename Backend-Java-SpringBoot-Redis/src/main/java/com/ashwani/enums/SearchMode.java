@@ -0,0 +1,6 @@
+package com.ashwani.enums;
+
+public enum SearchMode {
+    FIXED_RADIUS,
+    EXPANDING_RING
+}
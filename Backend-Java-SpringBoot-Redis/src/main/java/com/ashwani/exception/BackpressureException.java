@@ -0,0 +1,10 @@
+package com.ashwani.exception;
+
+/**
+ * Thrown when work is refused because a bounded queue is full; the client should retry later.
+ */
+public class BackpressureException extends RuntimeException {
+    public BackpressureException(String message) {
+        super(message);
+    }
+}
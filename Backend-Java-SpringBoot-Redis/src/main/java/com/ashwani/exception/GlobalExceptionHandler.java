@@ -42,6 +42,12 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.NOT_FOUND, "Ride Not Found", ex.getMessage());
     }
 
+    // Queue full, retry later
+    @ExceptionHandler(BackpressureException.class)
+    public ResponseEntity<ApiError> handleBackpressure(BackpressureException ex) {
+        return buildResponse(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", ex.getMessage());
+    }
+
     // Bad request
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ApiError> handleBadRequest(IllegalArgumentException ex) {
@@ -0,0 +1,328 @@
+package com.ashwani.geo;
+
+import com.ashwani.enums.DriverStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory driver positions for one region, bucketed in a fixed grid of {@code cellDeg} x {@code cellDeg}
+ * cells. Each bucket holds the drivers of one status inside one cell, with their coordinates stored
+ * inline so a search scans contiguous arrays; per-driver bookkeeping lives in primitive arrays indexed
+ * by a slot number, so a driver costs a few dozen bytes of arrays plus its id entry. Like the per-status
+ * GEO indexes in Redis, a search for AVAILABLE drivers never touches busy ones.
+ * <p>
+ * Nearest-neighbour queries walk the cells ring by ring around the query point and stop once no
+ * unvisited cell can hold anything closer than the k-th best match. All methods are thread-safe.
+ */
+public class GridSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6372.797560856;    // same radius Redis uses for GEO distances
+    private static final double KM_PER_DEGREE = 111.195;
+    private static final byte UNKNOWN_STATUS = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Planar pre-filter slack; the flat-earth estimate stays within a few percent at dispatch distances
+    private static final double PREFILTER_SLACK = 1.05;
+    private static final long NO_BUCKET = -1;
+    private static final int CELL_BITS = 28;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+
+    private final double cellDeg;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<Long, Bucket> buckets = new HashMap<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private long[] bucketKeys = new long[INITIAL_CAPACITY];
+    private int[] bucketPositions = new int[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int highWaterMark;
+
+    public GridSpatialIndex(double cellDeg) {
+        this.cellDeg = cellDeg;
+    }
+
+    /**
+     * Inserts or moves a driver. A null status keeps the current one; new drivers inserted without a
+     * status are never returned by {@link #nearest} until their status is known.
+     */
+    public void put(String id, double longitude, double latitude, DriverStatus status) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = allocate(id);
+                statuses[slot] = UNKNOWN_STATUS;
+                bucketKeys[slot] = NO_BUCKET;
+            }
+            if (status != null) {
+                statuses[slot] = (byte) status.ordinal();
+            }
+            place(slot, longitude, latitude);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the status of a driver already in the index; unknown drivers are ignored because
+     * there is no position to file them under.
+     */
+    public void updateStatus(String id, DriverStatus status) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                statuses[slot] = (byte) status.ordinal();
+                replace(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the driver's status as unknown, keeping its position, so it is skipped by {@link #nearest}
+     * until a status is set again.
+     */
+    public void invalidateStatus(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                statuses[slot] = UNKNOWN_STATUS;
+                replace(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot == null) {
+                return;
+            }
+            removeFromBucket(slot);
+            ids[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Up to {@code k} drivers with the given status within {@code maxRadiusKm}, closest first; none when
+     * {@code k} is not positive.
+     */
+    public List<String> nearest(double longitude, double latitude, DriverStatus status, int k, double maxRadiusKm) {
+        if (k <= 0) {
+            return List.of();
+        }
+        byte wanted = (byte) status.ordinal();
+        String[] bestIds = new String[k];
+        double[] bestDistances = new double[k];
+        int found = 0;
+
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double cutoffKm = maxRadiusKm;
+
+        lock.readLock().lock();
+        try {
+            long centerX = cellX(longitude);
+            long centerY = cellY(latitude);
+            for (int ring = 0; ; ring++) {
+                // Closest any cell of this ring can be: (ring - 1) whole cells away, measured across the
+                // narrower longitude side at the ring's most poleward latitude.
+                double poleward = Math.min(89.0, Math.abs(latitude) + (ring + 1) * cellDeg);
+                double cellKm = cellDeg * KM_PER_DEGREE * Math.cos(Math.toRadians(poleward));
+                double ringMinKm = Math.max(0, ring - 1) * cellKm;
+                if (ringMinKm > maxRadiusKm || (found == k && ringMinKm > bestDistances[k - 1])) {
+                    break;
+                }
+
+                for (long x = centerX - ring; x <= centerX + ring; x++) {
+                    boolean edgeColumn = x == centerX - ring || x == centerX + ring;
+                    long step = edgeColumn ? 1 : 2L * ring;
+                    for (long y = centerY - ring; y <= centerY + ring; y += Math.max(1, step)) {
+                        Bucket bucket = x < 0 || y < 0 ? null : buckets.get(bucketKey(wanted, x, y));
+                        if (bucket == null) {
+                            continue;
+                        }
+                        double cutoffDeg = cutoffKm * PREFILTER_SLACK / KM_PER_DEGREE;
+                        double cutoffDegSquared = cutoffDeg * cutoffDeg;
+                        for (int i = 0; i < bucket.size; i++) {
+                            // Cheap equirectangular estimate first; only plausible winners pay for haversine
+                            double dx = (bucket.longitudes[i] - longitude) * cosLatitude;
+                            double dy = bucket.latitudes[i] - latitude;
+                            if (dx * dx + dy * dy > cutoffDegSquared) {
+                                continue;
+                            }
+                            double distance = distanceKm(longitude, latitude, bucket.longitudes[i], bucket.latitudes[i]);
+                            if (distance > maxRadiusKm || (found == k && distance >= bestDistances[k - 1])) {
+                                continue;
+                            }
+                            int at = found < k ? found++ : k - 1;
+                            while (at > 0 && bestDistances[at - 1] > distance) {
+                                bestDistances[at] = bestDistances[at - 1];
+                                bestIds[at] = bestIds[at - 1];
+                                at--;
+                            }
+                            bestDistances[at] = distance;
+                            bestIds[at] = ids[bucket.slots[i]];
+                            if (found == k) {
+                                cutoffKm = bestDistances[k - 1];
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<String> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(bestIds[i]);
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate(String id) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWaterMark == ids.length) {
+                grow();
+            }
+            slot = highWaterMark++;
+        }
+        ids[slot] = id;
+        slots.put(id, slot);
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        bucketKeys = Arrays.copyOf(bucketKeys, capacity);
+        bucketPositions = Arrays.copyOf(bucketPositions, capacity);
+    }
+
+    // Files the slot under the bucket of its status and the cell of the given position
+    private void place(int slot, double longitude, double latitude) {
+        long key = bucketKey(statuses[slot], cellX(longitude), cellY(latitude));
+        if (key == bucketKeys[slot]) {
+            buckets.get(key).set(bucketPositions[slot], longitude, latitude);
+            return;
+        }
+        if (bucketKeys[slot] != NO_BUCKET) {
+            removeFromBucket(slot);
+        }
+        bucketKeys[slot] = key;
+        bucketPositions[slot] = buckets.computeIfAbsent(key, k -> new Bucket()).add(slot, longitude, latitude);
+    }
+
+    // Re-files the slot after a status change, keeping its position
+    private void replace(int slot) {
+        Bucket bucket = buckets.get(bucketKeys[slot]);
+        int position = bucketPositions[slot];
+        place(slot, bucket.longitudes[position], bucket.latitudes[position]);
+    }
+
+    private void removeFromBucket(int slot) {
+        Bucket bucket = buckets.get(bucketKeys[slot]);
+        int moved = bucket.removeAt(bucketPositions[slot]);
+        if (moved >= 0) {
+            bucketPositions[moved] = bucketPositions[slot];
+        }
+        if (bucket.size == 0) {
+            buckets.remove(bucketKeys[slot]);
+        }
+    }
+
+    private long cellX(double longitude) {
+        return (long) Math.floor((longitude + 180.0) / cellDeg);
+    }
+
+    private long cellY(double latitude) {
+        return (long) Math.floor((latitude + 90.0) / cellDeg);
+    }
+
+    private static long bucketKey(byte status, long x, long y) {
+        return ((status + 1L) << (2 * CELL_BITS)) | ((x & CELL_MASK) << CELL_BITS) | (y & CELL_MASK);
+    }
+
+    static double distanceKm(double lon1, double lat1, double lon2, double lat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Growable parallel arrays of slots and their coordinates, with O(1) swap-remove.
+     */
+    private static final class Bucket {
+        private int[] slots = new int[4];
+        private double[] longitudes = new double[4];
+        private double[] latitudes = new double[4];
+        private int size;
+
+        int add(int slot, double longitude, double latitude) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+            }
+            slots[size] = slot;
+            longitudes[size] = longitude;
+            latitudes[size] = latitude;
+            return size++;
+        }
+
+        void set(int position, double longitude, double latitude) {
+            longitudes[position] = longitude;
+            latitudes[position] = latitude;
+        }
+
+        /**
+         * Removes the entry at {@code position} by moving the last entry into its place.
+         *
+         * @return the slot that moved, or -1 if the removed entry was the last one
+         */
+        int removeAt(int position) {
+            int last = --size;
+            if (position == last) {
+                return -1;
+            }
+            slots[position] = slots[last];
+            longitudes[position] = longitudes[last];
+            latitudes[position] = latitudes[last];
+            return slots[position];
+        }
+    }
+}
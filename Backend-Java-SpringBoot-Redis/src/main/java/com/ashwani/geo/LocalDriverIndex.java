@@ -0,0 +1,147 @@
+package com.ashwani.geo;
+
+import com.ashwani.config.LocalIndexProperties;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.sharding.RegionShards;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-region copy of driver positions and statuses held in this JVM, so dispatch can pick nearest
+ * candidates without a GEOSEARCH and only goes to Redis to claim one.
+ * <p>
+ * The copy is kept current by the repositories, which mirror every driver write they make, and is
+ * rebuilt from the region's status GEO indexes every {@code ride.local-index.reconcile-interval-ms}
+ * to pick up writes made by other instances. It is only ever a hint: the claim script re-checks the
+ * driver's status on the master. When {@code ride.local-index.enabled} is false every method is a no-op.
+ */
+@Component
+public class LocalDriverIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalDriverIndex.class);
+
+    private static final int SCAN_BATCH = 1000;
+
+    private final LocalIndexProperties properties;
+    private final ShardedRedisTemplateRouter router;
+    private final RegionShards shards;
+    private final Map<Region, GridSpatialIndex> indexes = new ConcurrentHashMap<>();
+
+    public LocalDriverIndex(LocalIndexProperties properties, ShardedRedisTemplateRouter router, RegionShards shards,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.router = router;
+        this.shards = shards;
+        for (Region region : Region.values()) {
+            indexes.put(region, new GridSpatialIndex(properties.getCellSizeDeg()));
+            Gauge.builder("ride.local_index.drivers", indexes, map -> map.get(region).size())
+                    .tag("region", region.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Records a driver's position; a null status keeps the one already known.
+     */
+    public void put(Region region, String driverId, double longitude, double latitude, DriverStatus status) {
+        if (isEnabled()) {
+            indexes.get(region).put(driverId, longitude, latitude, status);
+        }
+    }
+
+    public void updateStatus(Region region, String driverId, DriverStatus status) {
+        if (isEnabled()) {
+            indexes.get(region).updateStatus(driverId, status);
+        }
+    }
+
+    /**
+     * Forgets the status of drivers Redis refused to hand out, so they stop being offered as
+     * candidates until the next reconcile tells us where they stand.
+     */
+    public void invalidateStatus(Region region, Collection<String> driverIds) {
+        if (isEnabled()) {
+            GridSpatialIndex index = indexes.get(region);
+            driverIds.forEach(index::invalidateStatus);
+        }
+    }
+
+    public void remove(Region region, String driverId) {
+        if (isEnabled()) {
+            indexes.get(region).remove(driverId);
+        }
+    }
+
+    /**
+     * Up to {@code count} AVAILABLE drivers within {@code maxRadiusKm}, closest first.
+     */
+    public List<String> nearestAvailable(Region region, double longitude, double latitude, int count, double maxRadiusKm) {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        return indexes.get(region).nearest(longitude, latitude, DriverStatus.AVAILABLE, count, maxRadiusKm);
+    }
+
+    @Scheduled(fixedDelayString = "${ride.local-index.reconcile-interval-ms:30000}")
+    public void reconcileAll() {
+        if (!isEnabled()) {
+            return;
+        }
+        for (Region region : Region.values()) {
+            try {
+                reconcile(region);
+            } catch (RuntimeException e) {
+                logger.warn("Local driver index reconcile failed in region {}, keeping the current copy", region, e);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the region's copy from its status GEO indexes on every shard, read from the replica with ZSCAN and
+     * decoded from the geohash scores, then swaps it in. Local writes that land while the scan runs
+     * are only in the discarded copy; the next write or reconcile for those drivers restores them.
+     *
+     * @return number of drivers loaded
+     */
+    public int reconcile(Region region) {
+        GridSpatialIndex fresh = new GridSpatialIndex(properties.getCellSizeDeg());
+        for (int shard = 0; shard < shards.count(region); shard++) {
+            RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, shard, ConsistencyLevel.EVENTUAL);
+            for (DriverStatus status : DriverStatus.values()) {
+                String geoKey = DriverRepository.geoIndexKey(region, status);
+                try (Cursor<TypedTuple<String>> cursor = geoTemplate.opsForZSet()
+                        .scan(geoKey, ScanOptions.scanOptions().count(SCAN_BATCH).build())) {
+                    while (cursor.hasNext()) {
+                        TypedTuple<String> member = cursor.next();
+                        double[] position = RedisGeoHash.decode(member.getScore());
+                        fresh.put(member.getValue(), position[0], position[1], status);
+                    }
+                }
+            }
+        }
+        indexes.put(region, fresh);
+        logger.debug("Reconciled local driver index for region {}: {} drivers", region, fresh.size());
+        return fresh.size();
+    }
+}
@@ -0,0 +1,81 @@
+package com.ashwani.geo;
+
+/**
+ * Encodes and decodes the 52-bit interleaved geohash Redis stores as the sorted-set score of a GEO
+ * member, so positions can be read with a plain ZSCAN instead of one GEOPOS per driver, and the tests'
+ * in-memory Redis scores its GEO members as Redis would.
+ */
+public final class RedisGeoHash {
+
+    public static final int STEP = 26;
+    public static final double LAT_MIN = -85.05112878;
+    public static final double LAT_MAX = 85.05112878;
+    public static final double LON_MIN = -180.0;
+    public static final double LON_MAX = 180.0;
+
+    private RedisGeoHash() {
+    }
+
+    /**
+     * @return the score of the cell holding the point; callers check the coordinates are in range
+     */
+    public static long encode(double longitude, double latitude) {
+        double scale = 1L << STEP;
+        long latOffset = Math.min((long) ((latitude - LAT_MIN) / (LAT_MAX - LAT_MIN) * scale), (1L << STEP) - 1);
+        long lonOffset = Math.min((long) ((longitude - LON_MIN) / (LON_MAX - LON_MIN) * scale), (1L << STEP) - 1);
+        return interleave(latOffset, lonOffset);
+    }
+
+    /**
+     * @return {longitude, latitude} at the centre of the cell encoded by {@code score}
+     */
+    public static double[] decode(double score) {
+        long bits = (long) score;
+        // Redis interleaves latitude into the even bits and longitude into the odd bits
+        long latOffset = squash(bits);
+        long lonOffset = squash(bits >>> 1);
+        // The midpoint of the cell's edges, computed as Redis does so that positions match it to the last bit
+        return new double[]{centre(lonOffset, LON_MIN, LON_MAX), centre(latOffset, LAT_MIN, LAT_MAX)};
+    }
+
+    private static double centre(long offset, double min, double max) {
+        double scale = 1L << STEP;
+        double from = min + (offset / scale) * (max - min);
+        double to = min + ((offset + 1) / scale) * (max - min);
+        return Math.max(min, Math.min(max, (from + to) / 2));
+    }
+
+    /**
+     * Hash of the cell at row {@code latOffset} and column {@code lonOffset} of a grid of any step; at
+     * step {@code s} it covers the scores from {@code hash << (52 - 2s)} up to the next cell's.
+     */
+    public static long interleave(long latOffset, long lonOffset) {
+        return spread(latOffset) | (spread(lonOffset) << 1);
+    }
+
+    /**
+     * Spreads the low 32 bits of {@code x} over the even bits.
+     */
+    private static long spread(long x) {
+        x &= 0x00000000FFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    /**
+     * Collects the even bits of {@code x} into the low 32 bits.
+     */
+    private static long squash(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+}
@@ -0,0 +1,233 @@
+package com.ashwani.geo;
+
+import com.ashwani.enums.Region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Region areas, given as polygons or bounding boxes, flattened into a world grid of {@code cellDeg} x
+ * {@code cellDeg} cells. A cell lying wholly inside one area, or outside all of them, stores the answer;
+ * only the cells a boundary runs through keep the few shapes to test the point against. A lookup is
+ * one array read plus, near a boundary, a point-in-polygon test, and allocates nothing.
+ * <p>
+ * A shape is written {@code "lon lat; lon lat; ..."}: two corners make a bounding box, three or more
+ * vertices a polygon. Shapes may not cross the antimeridian; split them at 180 instead. Where areas
+ * overlap, the region earlier in {@link Region} order wins, then the shape listed first. Points on a
+ * box's maximum longitude or latitude belong to the neighbouring area, if any.
+ */
+public final class RegionGrid implements RegionResolver {
+
+    private static final Region[] REGIONS = Region.values();
+    private static final int OUTSIDE = -1;
+    private static final int FIRST_MIXED = -2;
+    private static final long MAX_CELLS = 16_000_000;
+
+    private final double cellDeg;
+    private final int columns;
+    private final int rows;
+    // Region ordinal, OUTSIDE, or FIRST_MIXED - i for the cells whose shapes are mixed[i]
+    private final int[] cells;
+    private final Shape[][] mixed;
+
+    private RegionGrid(List<Shape> shapes, double cellDeg) {
+        this.cellDeg = cellDeg;
+        this.columns = (int) Math.ceil(360 / cellDeg);
+        this.rows = (int) Math.ceil(180 / cellDeg);
+        if ((long) columns * rows > MAX_CELLS) {
+            throw new IllegalArgumentException("Region grid cells of " + cellDeg + " degrees are too small");
+        }
+        this.cells = new int[columns * rows];
+        Arrays.fill(cells, OUTSIDE);
+
+        boolean[] decided = new boolean[cells.length];
+        Map<Integer, List<Shape>> boundaries = new HashMap<>();
+        for (Shape shape : shapes) {
+            BitSet edges = edgeCells(shape);
+            for (int row = row(shape.minY); row <= row(shape.maxY); row++) {
+                for (int column = column(shape.minX); column <= column(shape.maxX); column++) {
+                    int cell = row * columns + column;
+                    if (decided[cell]) {
+                        continue;
+                    }
+                    List<Shape> pending = boundaries.get(cell);
+                    if (edges.get(cell)) {
+                        boundaries.computeIfAbsent(cell, c -> new ArrayList<>()).add(shape);
+                    } else if (shape.contains(-180 + (column + 0.5) * cellDeg, -90 + (row + 0.5) * cellDeg)) {
+                        // Covered; shapes after this one can no longer win here
+                        decided[cell] = true;
+                        if (pending == null) {
+                            cells[cell] = shape.region.ordinal();
+                        } else {
+                            pending.add(shape);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Boundary cells along one border share the same shape list
+        Map<List<Shape>, Integer> indexes = new HashMap<>();
+        List<Shape[]> lists = new ArrayList<>();
+        boundaries.forEach((cell, list) -> cells[cell] = FIRST_MIXED - indexes.computeIfAbsent(list, l -> {
+            lists.add(l.toArray(new Shape[0]));
+            return lists.size() - 1;
+        }));
+        this.mixed = lists.toArray(new Shape[0][]);
+    }
+
+    /**
+     * Builds the grid from each region's shapes in {@code "lon lat; lon lat; ..."} form.
+     *
+     * @throws IllegalArgumentException if a shape cannot be parsed or lies outside the world
+     */
+    public static RegionGrid of(Map<Region, List<String>> areas, double cellDeg) {
+        if (!(cellDeg > 0)) {
+            throw new IllegalArgumentException("Region grid cell size must be positive: " + cellDeg);
+        }
+        List<Shape> shapes = new ArrayList<>();
+        for (Region region : REGIONS) {
+            for (String spec : areas.getOrDefault(region, List.of())) {
+                shapes.add(Shape.parse(region, spec));
+            }
+        }
+        return new RegionGrid(shapes, cellDeg);
+    }
+
+    @Override
+    public Region resolve(double longitude, double latitude) {
+        if (!(longitude >= -180 && longitude <= 180 && latitude >= -90 && latitude <= 90)) {
+            return null;
+        }
+        int code = cells[row(latitude) * columns + column(longitude)];
+        if (code >= 0) {
+            return REGIONS[code];
+        }
+        if (code == OUTSIDE) {
+            return null;
+        }
+        for (Shape shape : mixed[FIRST_MIXED - code]) {
+            if (shape.contains(longitude, latitude)) {
+                return shape.region;
+            }
+        }
+        return null;
+    }
+
+    /** Number of cells a boundary runs through, which are resolved by testing shapes. */
+    public int boundaryCells() {
+        int count = 0;
+        for (int code : cells) {
+            if (code <= FIRST_MIXED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int column(double longitude) {
+        int column = (int) ((longitude + 180) / cellDeg);
+        return column < 0 ? 0 : Math.min(column, columns - 1);
+    }
+
+    private int row(double latitude) {
+        int row = (int) ((latitude + 90) / cellDeg);
+        return row < 0 ? 0 : Math.min(row, rows - 1);
+    }
+
+    // Cells any of the shape's edges passes through or touches
+    private BitSet edgeCells(Shape shape) {
+        BitSet edges = new BitSet(cells.length);
+        int n = shape.xs.length;
+        for (int i = 0; i < n; i++) {
+            double x0 = shape.xs[i], y0 = shape.ys[i];
+            double x1 = shape.xs[(i + 1) % n], y1 = shape.ys[(i + 1) % n];
+            for (int row = row(Math.min(y0, y1)); row <= row(Math.max(y0, y1)); row++) {
+                for (int column = column(Math.min(x0, x1)); column <= column(Math.max(x0, x1)); column++) {
+                    double minX = -180 + column * cellDeg, minY = -90 + row * cellDeg;
+                    if (segmentTouches(x0, y0, x1, y1, minX, minY, minX + cellDeg, minY + cellDeg)) {
+                        edges.set(row * columns + column);
+                    }
+                }
+            }
+        }
+        return edges;
+    }
+
+    // Liang-Barsky clipping of the segment against the rectangle
+    private static boolean segmentTouches(double x0, double y0, double x1, double y1,
+                                          double minX, double minY, double maxX, double maxY) {
+        double dx = x1 - x0, dy = y1 - y0;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x0 - minX, maxX - x0, y0 - minY, maxY - y0};
+        double enter = 0, leave = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false;
+                }
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    enter = Math.max(enter, t);
+                } else {
+                    leave = Math.min(leave, t);
+                }
+            }
+        }
+        return enter <= leave;
+    }
+
+    private record Shape(Region region, double[] xs, double[] ys, double minX, double minY, double maxX, double maxY) {
+
+        static Shape parse(Region region, String spec) {
+            String[] points = spec.trim().split("\\s*;\\s*");
+            if (points.length < 2) {
+                throw new IllegalArgumentException("Area of region " + region + " needs two corners or three vertices: " + spec);
+            }
+            double[] xs = new double[points.length];
+            double[] ys = new double[points.length];
+            for (int i = 0; i < points.length; i++) {
+                String[] lonLat = points[i].split("\\s+");
+                try {
+                    if (lonLat.length != 2) {
+                        throw new NumberFormatException();
+                    }
+                    xs[i] = Double.parseDouble(lonLat[0]);
+                    ys[i] = Double.parseDouble(lonLat[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Area of region " + region + " has a vertex that is not 'lon lat': " + points[i]);
+                }
+                if (!(Math.abs(xs[i]) <= 180 && Math.abs(ys[i]) <= 90)) {
+                    throw new IllegalArgumentException("Area of region " + region + " has a vertex outside the world: " + points[i]);
+                }
+            }
+            if (points.length == 2) {
+                double minX = Math.min(xs[0], xs[1]), maxX = Math.max(xs[0], xs[1]);
+                double minY = Math.min(ys[0], ys[1]), maxY = Math.max(ys[0], ys[1]);
+                xs = new double[]{minX, maxX, maxX, minX};
+                ys = new double[]{minY, minY, maxY, maxY};
+            }
+            return new Shape(region, xs, ys, Arrays.stream(xs).min().orElseThrow(), Arrays.stream(ys).min().orElseThrow(),
+                    Arrays.stream(xs).max().orElseThrow(), Arrays.stream(ys).max().orElseThrow());
+        }
+
+        // Even-odd ray casting
+        boolean contains(double x, double y) {
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                return false;
+            }
+            boolean inside = false;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((ys[i] > y) != (ys[j] > y) && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+    }
+}
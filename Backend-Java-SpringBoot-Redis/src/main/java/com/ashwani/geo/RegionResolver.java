@@ -0,0 +1,22 @@
+package com.ashwani.geo;
+
+import com.ashwani.enums.Region;
+
+/**
+ * Maps a position to the region whose area holds it. Requests without an {@code X-Region} header are
+ * routed by it, and driver and passenger writes are checked against it. The default is a
+ * {@link RegionGrid} built from {@code ride.region-resolution.*}; declare another bean of this type to
+ * replace it.
+ */
+@FunctionalInterface
+public interface RegionResolver {
+
+    /** Never resolves anything; used when resolution is switched off. */
+    RegionResolver NONE = (longitude, latitude) -> null;
+
+    /**
+     * Region whose area holds the point, or null when none does or the coordinates are not a valid
+     * position. Called on every request and location update, so implementations should not allocate.
+     */
+    Region resolve(double longitude, double latitude);
+}
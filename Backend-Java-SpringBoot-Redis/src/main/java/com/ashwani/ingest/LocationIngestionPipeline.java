@@ -0,0 +1,177 @@
+package com.ashwani.ingest;
+
+import com.ashwani.config.LocationIngestionProperties;
+import com.ashwani.enums.Region;
+import com.ashwani.exception.BackpressureException;
+import com.ashwani.repository.DriverRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.geo.Point;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues single location pings per region and writes them to the region's master in batches.
+ * <p>
+ * Pings go into a bounded ring buffer per region; when it is full new pings are refused with a
+ * {@link BackpressureException} instead of growing the heap. Every {@code ride.ingestion.flush-interval}
+ * a flusher thread drains each buffer, keeps only the newest ping per driver and writes the rest with
+ * {@link DriverRepository#updateDriverLocations}, one script call per 1,000 drivers. Pings that waited
+ * longer than {@code ride.ingestion.max-staleness}, because Redis fell behind, are dropped rather than
+ * written late. A batch that fails to write is dropped too: the next ping replaces it anyway.
+ * <p>
+ * Outcomes are counted per region in {@code ride.ingestion.pings}: accepted, rejected, coalesced, stale,
+ * written, unknown (no such driver) and failed.
+ */
+@Component
+public class LocationIngestionPipeline implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationIngestionPipeline.class);
+
+    private final LocationIngestionProperties properties;
+    private final DriverRepository driverRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<Region, BlockingQueue<Ping>> buffers = new EnumMap<>(Region.class);
+    private final ScheduledExecutorService flusher;
+
+    public LocationIngestionPipeline(LocationIngestionProperties properties, DriverRepository driverRepository,
+                                     MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.driverRepository = driverRepository;
+        this.meterRegistry = meterRegistry;
+        if (properties.isEnabled()) {
+            for (Region region : Region.values()) {
+                BlockingQueue<Ping> buffer = new ArrayBlockingQueue<>(properties.getCapacity());
+                buffers.put(region, buffer);
+                Gauge.builder("ride.ingestion.buffered", buffer, BlockingQueue::size)
+                        .tag("region", region.name())
+                        .register(meterRegistry);
+            }
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "location-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMs = Math.max(1, properties.getFlushInterval().toMillis());
+            flusher.scheduleWithFixedDelay(this::flushAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Queues a ping for the next flush. Whether the driver exists is only known once it is written.
+     *
+     * @throws BackpressureException when the region's buffer is full
+     */
+    public void submit(Region region, String driverId, double longitude, double latitude) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Location ingestion is disabled");
+        }
+        if (!buffers.get(region).offer(new Ping(driverId, longitude, latitude, System.nanoTime()))) {
+            pings(region, "rejected").increment();
+            throw new BackpressureException("Location buffer for region " + region + " is full, retry later");
+        }
+        pings(region, "accepted").increment();
+    }
+
+    /**
+     * Drains and writes every region's buffer now; the flusher thread calls this on its interval.
+     */
+    public void flushAll() {
+        for (Region region : buffers.keySet()) {
+            try {
+                flush(region);
+            } catch (RuntimeException e) {
+                logger.warn("Location flush failed in region {}", region, e);
+            }
+        }
+    }
+
+    private void flush(Region region) {
+        BlockingQueue<Ping> buffer = buffers.get(region);
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<Ping> drained = new ArrayList<>(buffer.size());
+        buffer.drainTo(drained);
+
+        // Drained in arrival order, so a later ping for the same driver replaces the earlier one
+        long staleBefore = System.nanoTime() - properties.getMaxStaleness().toNanos();
+        Map<String, Ping> latest = new LinkedHashMap<>();
+        int stale = 0;
+        for (Ping ping : drained) {
+            if (ping.receivedAt - staleBefore < 0) {
+                stale++;
+            } else {
+                latest.put(ping.driverId, ping);
+            }
+        }
+        pings(region, "stale").increment(stale);
+        pings(region, "coalesced").increment(drained.size() - stale - latest.size());
+        if (latest.isEmpty()) {
+            return;
+        }
+
+        Map<String, Point> locations = new LinkedHashMap<>(latest.size() * 2);
+        latest.forEach((driverId, ping) -> locations.put(driverId, new Point(ping.longitude, ping.latitude)));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Set<String> updated = driverRepository.updateDriverLocations(region, locations);
+            pings(region, "written").increment(updated.size());
+            pings(region, "unknown").increment(locations.size() - updated.size());
+        } catch (RuntimeException e) {
+            pings(region, "failed").increment(locations.size());
+            throw e;
+        } finally {
+            sample.stop(meterRegistry.timer("ride.ingestion.flush", "region", region.name()));
+        }
+
+        // How long the oldest ping written in this batch waited
+        long oldest = latest.values().stream().mapToLong(ping -> ping.receivedAt).min().orElseThrow();
+        meterRegistry.timer("ride.ingestion.delay", "region", region.name())
+                .record(System.nanoTime() - oldest, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter pings(Region region, String outcome) {
+        return meterRegistry.counter("ride.ingestion.pings", "region", region.name(), "outcome", outcome);
+    }
+
+    // Writes what is still buffered before the Redis connections close
+    @Override
+    public void destroy() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(properties.getFlushInterval().toMillis() + 5_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+
+    private record Ping(String driverId, double longitude, double latitude, long receivedAt) {
+    }
+}
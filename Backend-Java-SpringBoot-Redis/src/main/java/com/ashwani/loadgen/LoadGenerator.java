@@ -0,0 +1,235 @@
+package com.ashwani.loadgen;
+
+import com.ashwani.config.LoadGeneratorProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the REST API with a load scenario and reports what it saw; active with the {@code loadgen}
+ * profile. The scenario is generated from {@code ride.loadgen.*} (see {@link ScenarioGenerator}), or read
+ * back from {@code ride.loadgen.replay}, and optionally recorded to {@code ride.loadgen.record}.
+ * <p>
+ * The drivers and passengers are created first. The clock then starts and every event is sent when it is
+ * due, whatever happened to earlier ones (open-loop load), with at most {@code max-in-flight} requests
+ * outstanding. An {@code END} ends the ride its passenger's last booking returned, and is skipped when that
+ * booking got none. Progress is logged every {@code report-interval}; at the end the {@link LoadReport} is
+ * logged, written to {@code ride.loadgen.report} if set, and the application exits unless
+ * {@code exit-when-done} is off.
+ * <p>
+ * Requests go to {@code ride.loadgen.target}, or to this instance's own server when that is empty, which
+ * makes one process both the load and the system under test.
+ */
+@Component
+@Profile("loadgen")
+public class LoadGenerator implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final LoadGeneratorProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final ApplicationContext applicationContext;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public LoadGenerator(LoadGeneratorProperties properties, ObjectMapper objectMapper, Environment environment,
+                         ApplicationContext applicationContext) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String target = properties.getTarget().isBlank()
+                ? "http://localhost:" + environment.getProperty("local.server.port", "8080")
+                : properties.getTarget();
+        Iterator<ScenarioEvent> scenario = properties.getReplay().isBlank()
+                ? new ScenarioGenerator(properties)
+                : ScenarioFile.replay(Path.of(properties.getReplay()), objectMapper);
+        if (!properties.getRecord().isBlank()) {
+            scenario = ScenarioFile.record(scenario, Path.of(properties.getRecord()), objectMapper);
+        }
+        logger.info("Load generator: {} against {}", properties.getReplay().isBlank()
+                ? "seed " + properties.getSeed() + " for " + properties.getDuration()
+                : "replay of " + properties.getReplay(), target);
+
+        LoadReport report = run(scenario, target);
+
+        logger.info("Load generator report:{}{}", System.lineSeparator(), report.table());
+        if (!properties.getReport().isBlank()) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(Path.of(properties.getReport()).toFile(), report.rows());
+        }
+        if (properties.isExitWhenDone()) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    /**
+     * Sends the scenario to the API at {@code baseUrl} and returns once every request has finished.
+     */
+    public LoadReport run(Iterator<ScenarioEvent> scenario, String baseUrl) throws InterruptedException {
+        LoadReport report = new LoadReport();
+        Semaphore inFlight = new Semaphore(properties.getMaxInFlight());
+        Map<String, String> rides = new ConcurrentHashMap<>();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadgen-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long setupStart = System.nanoTime();
+        long start = -1;
+        try {
+            while (scenario.hasNext()) {
+                ScenarioEvent event = scenario.next();
+                long due;
+                if (event.type().isSetup()) {
+                    due = System.nanoTime();
+                } else {
+                    if (start < 0) {
+                        // Drivers and passengers must exist before the first ping or booking
+                        awaitIdle(inFlight);
+                        start = System.nanoTime();
+                        report.setupDone(start - setupStart);
+                        report.runStarted(start);
+                        long runStart = start;
+                        long intervalMs = Math.max(1, properties.getReportInterval().toMillis());
+                        progress.scheduleAtFixedRate(() -> logProgress(report, runStart), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+                    }
+                    due = start + TimeUnit.MILLISECONDS.toNanos(event.at());
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                inFlight.acquire();
+                send(baseUrl, event, due, rides, report, inFlight);
+            }
+            awaitIdle(inFlight);
+        } finally {
+            progress.shutdownNow();
+        }
+        if (start < 0) {
+            report.setupDone(System.nanoTime() - setupStart);
+            start = System.nanoTime();
+            report.runStarted(start);
+        }
+        report.runEnded(System.nanoTime());
+        return report;
+    }
+
+    // Sends one event; the caller holds a permit of inFlight, which is given back when the request is done,
+    // or straight away when the event is skipped or fails before anything is sent
+    private void send(String baseUrl, ScenarioEvent event, long due, Map<String, String> rides, LoadReport report, Semaphore inFlight) {
+        boolean sent = false;
+        try {
+            String endpoint;
+            HttpRequest.Builder request;
+            switch (event.type()) {
+                case DRIVER -> {
+                    endpoint = "POST /drivers";
+                    request = json(baseUrl + "/drivers", Map.of("id", event.id(), "name", "Driver " + event.id(),
+                            "longitude", event.longitude(), "latitude", event.latitude()));
+                }
+                case PASSENGER -> {
+                    endpoint = "POST /passengers";
+                    request = json(baseUrl + "/passengers", Map.of("id", event.id(), "name", "Passenger " + event.id(),
+                            "status", "ONLINE", "longitude", event.longitude(), "latitude", event.latitude()));
+                }
+                case PING -> {
+                    endpoint = "POST /drivers/updateLocation";
+                    request = post(String.format(Locale.ROOT, "%s/drivers/updateLocation?id=%s&longitude=%.6f&latitude=%.6f",
+                            baseUrl, event.id(), event.longitude(), event.latitude()));
+                }
+                case BOOK -> {
+                    endpoint = "POST /rides/book";
+                    request = post(baseUrl + "/rides/book?id=" + event.id());
+                }
+                case END -> {
+                    endpoint = "POST /rides/end";
+                    String rideId = rides.remove(event.id());
+                    if (rideId == null) {
+                        report.record(endpoint, event.region(), false, LoadReport.Outcome.SKIPPED, 0);
+                        return;
+                    }
+                    request = post(baseUrl + "/rides/end?id=" + rideId);
+                }
+                default -> throw new IllegalArgumentException("Unknown event " + event.type());
+            }
+
+            request.header("X-Region", event.region().name()).timeout(Duration.ofSeconds(30));
+            httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString()).whenComplete((response, failure) -> {
+                try {
+                    long latency = System.nanoTime() - due;
+                    LoadReport.Outcome outcome = failure != null || response.statusCode() >= 500
+                            ? LoadReport.Outcome.ERROR
+                            : response.statusCode() >= 300 ? LoadReport.Outcome.REJECTED : LoadReport.Outcome.OK;
+                    if (outcome == LoadReport.Outcome.OK && event.type() == ScenarioEvent.Type.BOOK) {
+                        rides.put(event.id(), objectMapper.readTree(response.body()).get("id").asText());
+                    }
+                    report.record(endpoint, event.region(), event.type().isSetup(), outcome, latency);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Unreadable answer to {}: {}", event, response.body(), e);
+                    report.record(endpoint, event.region(), event.type().isSetup(), LoadReport.Outcome.ERROR, System.nanoTime() - due);
+                } finally {
+                    inFlight.release();
+                }
+            });
+            sent = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode " + event, e);
+        } finally {
+            if (!sent) {
+                inFlight.release();
+            }
+        }
+    }
+
+    private HttpRequest.Builder json(String url, Map<String, Object> body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+    }
+
+    private static HttpRequest.Builder post(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).POST(HttpRequest.BodyPublishers.noBody());
+    }
+
+    private void awaitIdle(Semaphore inFlight) throws InterruptedException {
+        inFlight.acquire(properties.getMaxInFlight());
+        inFlight.release(properties.getMaxInFlight());
+    }
+
+    private static void logProgress(LoadReport report, long runStart) {
+        double seconds = (System.nanoTime() - runStart) / 1e9;
+        long completed = report.completed();
+        logger.info("Load generator at {}s: {} requests done ({}/s), {} errors", Math.round(seconds), completed,
+                Math.round(completed / seconds), report.errors());
+    }
+}
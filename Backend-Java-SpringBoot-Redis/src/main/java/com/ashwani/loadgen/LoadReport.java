@@ -0,0 +1,178 @@
+package com.ashwani.loadgen;
+
+import com.ashwani.enums.Region;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome counts and latency percentiles of a load run, per endpoint and region plus every region of an
+ * endpoint together ({@code ALL}). Latency runs from the time a request was due, not the time it was
+ * sent, so requests held back by {@code max-in-flight} or a late scheduler count their wait. Answers
+ * other than 2xx below 500 are {@code rejected} (no driver nearby, passenger already riding, which the API
+ * answers with 302, back-pressure); errors are 5xx and requests that got no answer. Kept in a registry of
+ * its own, apart from the application's meters.
+ */
+public class LoadReport {
+
+    public enum Outcome {
+        OK,
+        REJECTED,
+        ERROR,
+        SKIPPED     // an END whose booking got no ride
+    }
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private volatile long setupNanos;
+    private volatile long runStart;
+    private volatile long runEnd;
+
+    public void setupDone(long nanos) {
+        setupNanos = nanos;
+    }
+
+    public void runStarted(long nanoTime) {
+        runStart = nanoTime;
+    }
+
+    public void runEnded(long nanoTime) {
+        runEnd = nanoTime;
+    }
+
+    public void record(String endpoint, Region region, boolean setup, Outcome outcome, long latencyNanos) {
+        stats(endpoint, region.name(), setup).record(outcome, latencyNanos);
+        stats(endpoint, "ALL", setup).record(outcome, latencyNanos);
+    }
+
+    /**
+     * Requests finished so far, for progress lines.
+     */
+    public long completed() {
+        return stats.values().stream().filter(s -> s.region.equals("ALL")).mapToLong(Stats::total).sum();
+    }
+
+    public long errors() {
+        return stats.values().stream().filter(s -> s.region.equals("ALL")).mapToLong(s -> s.errors.sum()).sum();
+    }
+
+    /**
+     * One row per endpoint and region, setup endpoints first, each region's rows before the endpoint's
+     * {@code ALL} row. Throughput is over the setup phase for setup endpoints and the timed run otherwise.
+     */
+    public List<Map<String, Object>> rows() {
+        double setupSeconds = setupNanos / 1e9;
+        double runSeconds = Math.max(0, runEnd - runStart) / 1e9;
+        List<Stats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.<Stats, Boolean>comparing(s -> !s.setup)
+                .thenComparing(s -> s.endpoint)
+                .thenComparing(s -> s.region.equals("ALL"))
+                .thenComparing(s -> s.region));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Stats s : sorted) {
+            HistogramSnapshot snapshot = s.latency.takeSnapshot();
+            double seconds = s.setup ? setupSeconds : runSeconds;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("endpoint", s.endpoint);
+            row.put("region", s.region);
+            row.put("requests", s.total());
+            row.put("perSecond", seconds > 0 ? round(s.total() / seconds) : 0.0);
+            row.put("ok", s.ok.sum());
+            row.put("rejected", s.rejected.sum());
+            row.put("errors", s.errors.sum());
+            row.put("errorRate", s.total() > 0 ? round((double) s.errors.sum() / s.total()) : 0.0);
+            row.put("skipped", s.skipped.sum());
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                row.put("p" + percentileName(percentile.percentile()) + "Ms", round(percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            row.put("maxMs", round(snapshot.max(TimeUnit.MILLISECONDS)));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * {@link #rows} as a fixed-width table.
+     */
+    public String table() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-28s %-6s %9s %9s %9s %8s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "region", "requests", "req/s", "rejected", "errors", "skipped", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map<String, Object> row : rows()) {
+            table.append(String.format(Locale.ROOT, "%-28s %-6s %9d %9.1f %9d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    row.get("endpoint"), row.get("region"), row.get("requests"), row.get("perSecond"), row.get("rejected"),
+                    row.get("errors"), row.get("skipped"), row.get("p50Ms"), row.get("p90Ms"), row.get("p99Ms"),
+                    row.get("p99.9Ms"), row.get("maxMs")));
+        }
+        return table.toString();
+    }
+
+    private Stats stats(String endpoint, String region, boolean setup) {
+        return stats.computeIfAbsent(endpoint + " " + region, key -> new Stats(endpoint, region, setup, Timer.builder("loadgen.latency")
+                .tag("endpoint", endpoint)
+                .tag("region", region)
+                .publishPercentiles(PERCENTILES)
+                .percentilePrecision(3)
+                // One window covering the whole run, so the percentiles are over every request
+                .distributionStatisticExpiry(Duration.ofDays(365))
+                .distributionStatisticBufferLength(1)
+                .register(registry)));
+    }
+
+    private static String percentileName(double percentile) {
+        String name = String.format(Locale.ROOT, "%.1f", percentile * 100);
+        return name.endsWith(".0") ? name.substring(0, name.length() - 2) : name;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static final class Stats {
+
+        private final String endpoint;
+        private final String region;
+        private final boolean setup;
+        private final Timer latency;
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+
+        private Stats(String endpoint, String region, boolean setup, Timer latency) {
+            this.endpoint = endpoint;
+            this.region = region;
+            this.setup = setup;
+            this.latency = latency;
+        }
+
+        void record(Outcome outcome, long latencyNanos) {
+            switch (outcome) {
+                case OK -> ok.increment();
+                case REJECTED -> rejected.increment();
+                case ERROR -> errors.increment();
+                case SKIPPED -> skipped.increment();
+            }
+            if (outcome != Outcome.SKIPPED) {
+                latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        long total() {
+            return ok.sum() + rejected.sum() + errors.sum();
+        }
+    }
+}
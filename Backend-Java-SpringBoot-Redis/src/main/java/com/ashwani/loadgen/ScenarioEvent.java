@@ -0,0 +1,27 @@
+package com.ashwani.loadgen;
+
+import com.ashwani.enums.Region;
+
+/**
+ * One request of a load scenario, due {@code at} milliseconds after the scenario starts. {@code id} is the
+ * driver for {@code DRIVER} and {@code PING}, and the passenger for {@code PASSENGER}, {@code BOOK} and
+ * {@code END}: an {@code END} ends the ride the passenger's last booking got. Coordinates are only set for
+ * the events that carry a position.
+ */
+public record ScenarioEvent(long at, Type type, Region region, String id, double longitude, double latitude) {
+
+    public enum Type {
+        DRIVER,
+        PASSENGER,
+        PING,
+        BOOK,
+        END;
+
+        /**
+         * Whether the event creates the scenario's drivers and passengers; these all run before the clock starts.
+         */
+        public boolean isSetup() {
+            return this == DRIVER || this == PASSENGER;
+        }
+    }
+}
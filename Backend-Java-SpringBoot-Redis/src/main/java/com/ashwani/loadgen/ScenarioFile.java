@@ -0,0 +1,103 @@
+package com.ashwani.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Scenarios on disk, one {@link ScenarioEvent} as JSON per line, in time order. {@link #record} copies the
+ * events of a scenario to a file as they are sent and {@link #replay} reads them back lazily, so a
+ * recorded run can be repeated exactly, edited, or shared without the settings that generated it.
+ */
+public final class ScenarioFile {
+
+    private ScenarioFile() {
+    }
+
+    /**
+     * The events of {@code scenario}, each written to {@code file} as it is handed out; the file is
+     * closed once the scenario is exhausted.
+     */
+    public static Iterator<ScenarioEvent> record(Iterator<ScenarioEvent> scenario, Path file, ObjectMapper objectMapper) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = scenario.hasNext();
+                if (!hasNext) {
+                    close();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public ScenarioEvent next() {
+                ScenarioEvent event = scenario.next();
+                try {
+                    writer.write(objectMapper.writeValueAsString(event));
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return event;
+            }
+
+            private void close() {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    public static Iterator<ScenarioEvent> replay(Path file, ObjectMapper objectMapper) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(file);
+        return new Iterator<>() {
+            private String line = read();
+
+            @Override
+            public boolean hasNext() {
+                return line != null;
+            }
+
+            @Override
+            public ScenarioEvent next() {
+                if (line == null) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    ScenarioEvent event = objectMapper.readValue(line, ScenarioEvent.class);
+                    line = read();
+                    return event;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            // Next non-blank line, closing the file at its end
+            private String read() {
+                try {
+                    String next = reader.readLine();
+                    while (next != null && next.isBlank()) {
+                        next = reader.readLine();
+                    }
+                    if (next == null) {
+                        reader.close();
+                    }
+                    return next;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,244 @@
+package com.ashwani.loadgen;
+
+import com.ashwani.config.LoadGeneratorProperties;
+import com.ashwani.enums.Region;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a load scenario lazily, in time order, so long runs do not hold every event in memory. First the
+ * drivers and passengers of every region are created, then, until {@code duration}:
+ * <ul>
+ *   <li>each driver pings every {@code ping-interval}, at its own phase, with a position moved at
+ *       {@code speed-kmh} towards a random waypoint within {@code radius-km} of its city, picking the
+ *       next waypoint on arrival;</li>
+ *   <li>passengers of each region book at exponentially distributed intervals averaging
+ *       {@code 1 / bookings-per-second}, a random passenger not already riding each time;</li>
+ *   <li>each booking is followed by an {@code END} after a log-normal trip time of median
+ *       {@code trip-median}, which frees the passenger again.</li>
+ * </ul>
+ * Every driver and every region's bookings draw from their own random stream split off the seed, so the
+ * scenario only depends on the seed and the settings.
+ */
+public class ScenarioGenerator implements Iterator<ScenarioEvent> {
+
+    private static final double KM_PER_DEG_LAT = 110.574;
+
+    private final LoadGeneratorProperties properties;
+    private final long durationMs;
+    private final Queue<ScenarioEvent> setup = new ArrayDeque<>();
+    private final PriorityQueue<Source> sources = new PriorityQueue<>((a, b) -> a.at != b.at
+            ? Long.compare(a.at, b.at)
+            : Long.compare(a.seq, b.seq));
+    private long nextSeq;
+
+    public ScenarioGenerator(LoadGeneratorProperties properties) {
+        this.properties = properties;
+        this.durationMs = properties.getDuration().toMillis();
+        SplittableRandom seed = new SplittableRandom(properties.getSeed());
+        long pingMs = Math.max(1, properties.getPingInterval().toMillis());
+        for (Region region : properties.getRegions()) {
+            City city = City.parse(properties.getCities().get(region), properties.getRadiusKm());
+            String prefix = "lg" + properties.getSeed() + "-" + region.name().toLowerCase(Locale.ROOT);
+            SplittableRandom regionRandom = seed.split();
+            for (int i = 0; i < properties.getDrivers(); i++) {
+                DriverSource driver = new DriverSource(prefix + "-d" + i, region, city, regionRandom.split(), pingMs);
+                setup.add(new ScenarioEvent(0, ScenarioEvent.Type.DRIVER, region, driver.id, driver.longitude, driver.latitude));
+                schedule(driver);
+            }
+            List<String> passengers = new ArrayList<>(properties.getPassengers());
+            for (int i = 0; i < properties.getPassengers(); i++) {
+                double[] position = city.randomPoint(regionRandom);
+                String passengerId = prefix + "-p" + i;
+                passengers.add(passengerId);
+                setup.add(new ScenarioEvent(0, ScenarioEvent.Type.PASSENGER, region, passengerId, position[0], position[1]));
+            }
+            if (properties.getBookingsPerSecond() > 0 && !passengers.isEmpty()) {
+                schedule(new BookingSource(region, passengers, regionRandom.split()));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !setup.isEmpty() || (!sources.isEmpty() && sources.peek().at < durationMs);
+    }
+
+    @Override
+    public ScenarioEvent next() {
+        if (!setup.isEmpty()) {
+            return setup.poll();
+        }
+        while (hasNext()) {
+            Source source = sources.poll();
+            ScenarioEvent event = source.fire();
+            if (source.advance()) {
+                schedule(source);
+            }
+            if (event != null) {
+                return event;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    private void schedule(Source source) {
+        source.seq = nextSeq++;
+        sources.add(source);
+    }
+
+    private abstract static class Source {
+
+        long at;
+        long seq;
+
+        // The event due at "at", or null when there is nothing to send this time
+        abstract ScenarioEvent fire();
+
+        // Moves "at" to the source's next event; false when it has none
+        abstract boolean advance();
+    }
+
+    private final class DriverSource extends Source {
+
+        private final String id;
+        private final Region region;
+        private final City city;
+        private final SplittableRandom random;
+        private final long pingMs;
+        private double longitude;
+        private double latitude;
+        private double[] waypoint;
+
+        DriverSource(String id, Region region, City city, SplittableRandom random, long pingMs) {
+            this.id = id;
+            this.region = region;
+            this.city = city;
+            this.random = random;
+            this.pingMs = pingMs;
+            double[] start = city.randomPoint(random);
+            this.longitude = start[0];
+            this.latitude = start[1];
+            this.waypoint = city.randomPoint(random);
+            this.at = random.nextLong(pingMs);
+        }
+
+        @Override
+        ScenarioEvent fire() {
+            double stepKm = properties.getSpeedKmh() * pingMs / 3_600_000.0;
+            double kmPerDegLon = KM_PER_DEG_LAT * Math.cos(Math.toRadians(latitude));
+            double dxKm = (waypoint[0] - longitude) * kmPerDegLon;
+            double dyKm = (waypoint[1] - latitude) * KM_PER_DEG_LAT;
+            double distanceKm = Math.hypot(dxKm, dyKm);
+            if (distanceKm <= stepKm) {
+                longitude = waypoint[0];
+                latitude = waypoint[1];
+                waypoint = city.randomPoint(random);
+            } else {
+                longitude += dxKm / distanceKm * stepKm / kmPerDegLon;
+                latitude += dyKm / distanceKm * stepKm / KM_PER_DEG_LAT;
+            }
+            return new ScenarioEvent(at, ScenarioEvent.Type.PING, region, id, longitude, latitude);
+        }
+
+        @Override
+        boolean advance() {
+            at += pingMs;
+            return true;
+        }
+    }
+
+    private final class BookingSource extends Source {
+
+        private final Region region;
+        private final List<String> free;
+        private final SplittableRandom random;
+        private final double meanGapMs;
+
+        BookingSource(Region region, List<String> passengers, SplittableRandom random) {
+            this.region = region;
+            this.free = passengers;
+            this.random = random;
+            this.meanGapMs = 1000.0 / properties.getBookingsPerSecond();
+            this.at = gap();
+        }
+
+        @Override
+        ScenarioEvent fire() {
+            if (free.isEmpty()) {
+                return null;
+            }
+            // Swap-remove keeps the draw O(1); the order of the free list is itself deterministic
+            int pick = random.nextInt(free.size());
+            String passengerId = free.get(pick);
+            free.set(pick, free.get(free.size() - 1));
+            free.remove(free.size() - 1);
+            double tripMs = properties.getTripMedian().toMillis() * Math.exp(properties.getTripSigma() * random.nextGaussian());
+            schedule(new EndSource(at + Math.max(1, Math.round(tripMs)), region, passengerId, free));
+            return new ScenarioEvent(at, ScenarioEvent.Type.BOOK, region, passengerId, 0, 0);
+        }
+
+        @Override
+        boolean advance() {
+            at += gap();
+            return true;
+        }
+
+        private long gap() {
+            return Math.round(-meanGapMs * Math.log(1 - random.nextDouble()));
+        }
+    }
+
+    private static final class EndSource extends Source {
+
+        private final Region region;
+        private final String passengerId;
+        private final List<String> free;
+
+        EndSource(long at, Region region, String passengerId, List<String> free) {
+            this.at = at;
+            this.region = region;
+            this.passengerId = passengerId;
+            this.free = free;
+        }
+
+        @Override
+        ScenarioEvent fire() {
+            free.add(passengerId);
+            return new ScenarioEvent(at, ScenarioEvent.Type.END, region, passengerId, 0, 0);
+        }
+
+        @Override
+        boolean advance() {
+            return false;
+        }
+    }
+
+    private record City(double longitude, double latitude, double radiusKm) {
+
+        static City parse(String lonLat, double radiusKm) {
+            if (lonLat == null) {
+                throw new IllegalArgumentException("No ride.loadgen.cities entry for a region being loaded");
+            }
+            String[] parts = lonLat.trim().split("\\s+");
+            return new City(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), radiusKm);
+        }
+
+        // Uniform over the disc around the centre
+        double[] randomPoint(SplittableRandom random) {
+            double r = radiusKm * Math.sqrt(random.nextDouble());
+            double theta = 2 * Math.PI * random.nextDouble();
+            double dLat = r * Math.sin(theta) / KM_PER_DEG_LAT;
+            double dLon = r * Math.cos(theta) / (KM_PER_DEG_LAT * Math.cos(Math.toRadians(latitude)));
+            return new double[]{longitude + dLon, latitude + dLat};
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ashwani.metrics;
+
+import com.ashwani.config.MetricsProperties;
+import com.ashwani.enums.Region;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage timers of the booking and location update paths, registered once per region so recording
+ * costs two clock reads and a histogram update:
+ * <ul>
+ *   <li>{@code ride.booking.stage{region,stage}}: {@code passenger_lookup}, {@code candidate_search} (the
+ *       in-process index), {@code claim} (claim script) and {@code dispatch} (GEO search and claim in one
+ *       script); either script also writes the passenger.</li>
+ *   <li>{@code ride.location.stage{region,stage}}: {@code write} (the location script for drivers held in
+ *       the region), {@code follow} (drivers that moved to another region) and {@code handoff}.</li>
+ *   <li>{@code ride.booking.candidates{region}}: drivers looked at per booking, claimed or passed over.</li>
+ *   <li>{@code ride.geo.results{region,source}}: nearest-driver results per search, from {@code redis}
+ *       or the {@code local} index.</li>
+ *   <li>{@code ride.location.batch.size{region}}: location updates per call.</li>
+ * </ul>
+ * Stage timers are skipped when {@code ride.metrics.detailed} is off; callers pass the value of
+ * {@link #start()} back when the stage ends.
+ */
+@Component
+public class HotPathMetrics {
+
+    public enum BookingStage {
+        PASSENGER_LOOKUP,
+        CANDIDATE_SEARCH,
+        CLAIM,
+        DISPATCH
+    }
+
+    public enum LocationStage {
+        WRITE,
+        FOLLOW,
+        HANDOFF
+    }
+
+    private final boolean enabled;
+    private final Map<Region, Timer[]> bookingStages = new EnumMap<>(Region.class);
+    private final Map<Region, Timer[]> locationStages = new EnumMap<>(Region.class);
+    private final Map<Region, DistributionSummary> candidates = new EnumMap<>(Region.class);
+    private final Map<Region, DistributionSummary> redisResults = new EnumMap<>(Region.class);
+    private final Map<Region, DistributionSummary> localResults = new EnumMap<>(Region.class);
+    private final Map<Region, DistributionSummary> batchSizes = new EnumMap<>(Region.class);
+
+    public HotPathMetrics(MetricsProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isDetailed();
+        for (Region region : Region.values()) {
+            if (enabled) {
+                bookingStages.put(region, timers(meterRegistry, "ride.booking.stage", region, BookingStage.values(), properties.isHistograms()));
+                locationStages.put(region, timers(meterRegistry, "ride.location.stage", region, LocationStage.values(), properties.isHistograms()));
+            }
+            candidates.put(region, summary("ride.booking.candidates", region).register(meterRegistry));
+            redisResults.put(region, summary("ride.geo.results", region).tag("source", "redis").register(meterRegistry));
+            localResults.put(region, summary("ride.geo.results", region).tag("source", "local").register(meterRegistry));
+            batchSizes.put(region, summary("ride.location.batch.size", region).register(meterRegistry));
+        }
+    }
+
+    /**
+     * Start of a stage, to be passed to {@link #booking} or {@link #location}; 0 when stages are not timed.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void booking(Region region, BookingStage stage, long start) {
+        if (enabled) {
+            bookingStages.get(region)[stage.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void location(Region region, LocationStage stage, long start) {
+        if (enabled) {
+            locationStages.get(region)[stage.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void candidatesScanned(Region region, int count) {
+        candidates.get(region).record(count);
+    }
+
+    public void geoResults(Region region, boolean local, int count) {
+        (local ? localResults : redisResults).get(region).record(count);
+    }
+
+    public void locationBatch(Region region, int size) {
+        batchSizes.get(region).record(size);
+    }
+
+    private static Timer[] timers(MeterRegistry meterRegistry, String name, Region region, Enum<?>[] stages, boolean histograms) {
+        Timer[] timers = new Timer[stages.length];
+        for (Enum<?> stage : stages) {
+            timers[stage.ordinal()] = Timer.builder(name)
+                    .tag("region", region.name())
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram(histograms)
+                    .register(meterRegistry);
+        }
+        return timers;
+    }
+
+    private static DistributionSummary.Builder summary(String name, Region region) {
+        return DistributionSummary.builder(name).tag("region", region.name());
+    }
+}
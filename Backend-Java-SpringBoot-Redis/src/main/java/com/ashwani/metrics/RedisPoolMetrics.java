@@ -0,0 +1,43 @@
+package com.ashwani.metrics;
+
+import com.ashwani.config.RedisNodeConnectionFactory;
+import com.ashwani.config.RedisTopology;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Occupancy of every Redis node's connection pool, tagged by {@code node} (host:port):
+ * {@code ride.redis.pool.active} connections lent out, {@code .idle} connections open but unused,
+ * {@code .waiters} threads blocked waiting for one and {@code .max} the pool's size. Waiters above zero
+ * mean the pool is saturated.
+ */
+@Component
+public class RedisPoolMetrics implements MeterBinder {
+
+    private final RedisTopology topology;
+
+    public RedisPoolMetrics(RedisTopology topology) {
+        this.topology = topology;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (RedisNodeConnectionFactory node : topology.nodes()) {
+            gauge(meterRegistry, "ride.redis.pool.active", node, RedisNodeConnectionFactory::getNumActive);
+            gauge(meterRegistry, "ride.redis.pool.idle", node, RedisNodeConnectionFactory::getNumIdle);
+            gauge(meterRegistry, "ride.redis.pool.waiters", node, RedisNodeConnectionFactory::getNumWaiters);
+            gauge(meterRegistry, "ride.redis.pool.max", node, factory -> factory.getPoolSettings().getMaxTotal());
+        }
+    }
+
+    private static void gauge(MeterRegistry meterRegistry, String name, RedisNodeConnectionFactory node,
+                              ToDoubleFunction<RedisNodeConnectionFactory> value) {
+        Gauge.builder(name, node, value)
+                .tag("node", node.getNode())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.ashwani.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A template that times every round trip it makes in {@code ride.redis.command}: single commands,
+ * script calls and whole pipelines alike, each from borrowing the pooled connection to returning it,
+ * so a wait for a free connection shows up as latency too. Failed commands are timed like the others.
+ */
+public class TimedRedisTemplate<K, V> extends RedisTemplate<K, V> {
+
+    private final Timer timer;
+
+    public TimedRedisTemplate(Timer timer) {
+        this.timer = timer;
+    }
+
+    @Override
+    public <T> T execute(RedisCallback<T> action, boolean exposeConnection, boolean pipeline) {
+        long start = System.nanoTime();
+        try {
+            return super.execute(action, exposeConnection, pipeline);
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.ashwani.push;
+
+import com.ashwani.dto.DriverDelta;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where a subscriber's coalesced deltas are written, e.g. an SSE stream.
+ */
+@FunctionalInterface
+public interface DeltaSink {
+
+    /**
+     * Writes one batch, at most one delta per driver. An empty batch is a keep-alive.
+     *
+     * @throws IOException when the subscriber is gone; it is then unsubscribed
+     */
+    void send(List<DriverDelta> deltas) throws IOException;
+}
@@ -0,0 +1,313 @@
+package com.ashwani.push;
+
+import com.ashwani.config.PushProperties;
+import com.ashwani.dto.DriverDelta;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.exception.NotFoundException;
+import com.ashwani.repository.DriverEventChannels;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.sharding.ReactiveShardedRedisTemplateRouter;
+import com.ashwani.sharding.RegionShards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoSearchCommandArgs;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans the driver deltas published on each region's {@link DriverEventChannels} channel out to map
+ * subscribers, each watching one region and viewport.
+ * <p>
+ * A region's channel is subscribed once per instance, on the region's master, while it has at least one
+ * subscriber. Deltas for drivers inside a subscriber's viewport are queued per driver, a newer delta
+ * replacing one still queued, and every subscriber's queue is flushed as one batch
+ * {@code ride.push.max-updates-per-second} times a second; a driver that pings faster costs each
+ * subscriber no more than that. A driver leaving the viewport is sent once as {@link DriverDelta.Type#LEFT};
+ * the drivers already inside when the subscription starts are looked up in the status GEO indexes for this.
+ * A subscriber whose previous batch is still being written is skipped for that flush and keeps coalescing.
+ */
+@Component
+public class DriverDeltaHub implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriverDeltaHub.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final PushProperties properties;
+    private final ReactiveShardedRedisTemplateRouter router;
+    private final RegionShards shards;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<Region, Set<Subscriber>> subscribers = new EnumMap<>(Region.class);
+    private final Map<Region, Disposable> feeds = new EnumMap<>(Region.class);
+    private final ScheduledExecutorService executor;
+
+    public DriverDeltaHub(PushProperties properties, ReactiveShardedRedisTemplateRouter router, RegionShards shards,
+                          ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.router = router;
+        this.shards = shards;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        for (Region region : Region.values()) {
+            Set<Subscriber> regionSubscribers = new CopyOnWriteArraySet<>();
+            subscribers.put(region, regionSubscribers);
+            Gauge.builder("ride.push.subscribers", regionSubscribers, Set::size)
+                    .tag("region", region.name())
+                    .register(meterRegistry);
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(Math.max(1, properties.getSenderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "driver-push-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushIntervalMs = Math.max(1, 1000 / Math.max(1, properties.getMaxUpdatesPerSecond()));
+        executor.scheduleAtFixedRate(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Streams the region's deltas inside the viewport as server-sent events named {@code drivers}, each
+     * carrying a JSON array of deltas. The stream stays open until the client goes away.
+     */
+    public SseEmitter subscribe(Region region, Viewport viewport) {
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscription subscription = subscribe(region, viewport, deltas -> {
+            if (deltas.isEmpty()) {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } else {
+                emitter.send(SseEmitter.event().name("drivers").data(deltas, MediaType.APPLICATION_JSON));
+            }
+        });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * Starts delivering the region's deltas inside the viewport to the sink, from the flush thread.
+     */
+    public Subscription subscribe(Region region, Viewport viewport, DeltaSink sink) {
+        if (!properties.isEnabled()) {
+            throw new NotFoundException("Driver push is disabled");
+        }
+        Subscriber subscriber = new Subscriber(region, viewport, sink);
+        synchronized (feeds) {
+            subscribers.get(region).add(subscriber);
+            feeds.computeIfAbsent(region, this::listen);
+        }
+        seedVisible(subscriber);
+        return () -> unsubscribe(subscriber);
+    }
+
+    // Drivers on the map the client loaded before subscribing; searched in the circle around the viewport
+    private void seedVisible(Subscriber subscriber) {
+        Viewport viewport = subscriber.viewport;
+        if (viewport.minLongitude() > viewport.maxLongitude()) {
+            return;     // Across the antimeridian: such drivers are only tracked from their first delta
+        }
+        double centerLatitude = (viewport.minLatitude() + viewport.maxLatitude()) / 2;
+        double centerLongitude = (viewport.minLongitude() + viewport.maxLongitude()) / 2;
+        double radiusKm = Math.max(
+                distanceKm(centerLatitude, centerLongitude, viewport.minLatitude(), viewport.minLongitude()),
+                distanceKm(centerLatitude, centerLongitude, viewport.maxLatitude(), viewport.minLongitude()));
+        GeoSearchCommandArgs args = GeoSearchCommandArgs.newGeoSearchArgs().includeCoordinates();
+        int[] nearShards = shards.shardsNear(subscriber.region, centerLongitude, centerLatitude, radiusKm);
+
+        Flux.fromArray(DriverStatus.values())
+                .flatMap(status -> Flux.fromStream(Arrays.stream(nearShards).boxed())
+                        .flatMap(shard -> router.getGeoTemplate(subscriber.region, shard, ConsistencyLevel.STRONG).opsForGeo()
+                                .search(DriverRepository.geoIndexKey(subscriber.region, status),
+                                        GeoReference.fromCoordinate(new Point(centerLongitude, centerLatitude)),
+                                        new Distance(Math.max(radiusKm, 0.001), Metrics.KILOMETERS), args)))
+                .map(GeoResult::getContent)
+                .filter(location -> viewport.contains(location.getPoint().getY(), location.getPoint().getX()))
+                .subscribe(location -> subscriber.visible.add(location.getName()),
+                        error -> logger.warn("Cannot look up the drivers in view in region {}", subscriber.region, error));
+    }
+
+    private static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        synchronized (feeds) {
+            Set<Subscriber> regionSubscribers = subscribers.get(subscriber.region);
+            if (regionSubscribers.remove(subscriber) && regionSubscribers.isEmpty()) {
+                Disposable feed = feeds.remove(subscriber.region);
+                if (feed != null) {
+                    feed.dispose();
+                }
+            }
+        }
+    }
+
+    // Lettuce resubscribes on reconnect; a feed that fails outright is retried with backoff. A split region
+    // publishes each driver's deltas on the shard holding it, so its feed merges one subscription per shard.
+    private Disposable listen(Region region) {
+        String channel = DriverEventChannels.channel(region);
+        logger.info("Subscribing to {} for driver push", channel);
+        return Flux.range(0, shards.count(region))
+                .flatMap(shard -> router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG)
+                        .listenToChannel(channel)
+                        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                                .maxBackoff(Duration.ofSeconds(30))
+                                .doBeforeRetry(signal -> logger.warn("Driver push feed for region {} shard {} failed, resubscribing",
+                                        region, shard, signal.failure()))))
+                .map(ReactiveSubscription.Message::getMessage)
+                .subscribe(message -> dispatch(region, message));
+    }
+
+    private void dispatch(Region region, String message) {
+        DriverDelta delta;
+        try {
+            delta = objectMapper.readValue(message, DriverDelta.class);
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable driver delta in region {}: {}", region, message);
+            return;
+        }
+        for (Subscriber subscriber : subscribers.get(region)) {
+            subscriber.offer(delta);
+        }
+    }
+
+    private void flushAll() {
+        long now = System.currentTimeMillis();
+        for (Set<Subscriber> regionSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : regionSubscribers) {
+                if (subscriber.hasPending() || now - subscriber.lastSentAt >= properties.getHeartbeatInterval().toMillis()) {
+                    if (subscriber.sending.compareAndSet(false, true)) {
+                        executor.execute(() -> subscriber.flush(now));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        synchronized (feeds) {
+            feeds.values().forEach(Disposable::dispose);
+            feeds.clear();
+            subscribers.values().forEach(Set::clear);
+        }
+    }
+
+    /**
+     * Handle for stopping a subscription; cancelling twice is harmless.
+     */
+    public interface Subscription {
+        void cancel();
+    }
+
+    private final class Subscriber {
+
+        private final Region region;
+        private final Viewport viewport;
+        private final DeltaSink sink;
+        // Drivers this subscriber currently shows, so leaving the viewport can be told once
+        private final Set<String> visible = ConcurrentHashMap.newKeySet();
+        private final Map<String, DriverDelta> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final Counter queued;
+        private final Counter coalesced;
+        private final Counter sent;
+        private volatile long lastSentAt = System.currentTimeMillis();
+
+        private Subscriber(Region region, Viewport viewport, DeltaSink sink) {
+            this.region = region;
+            this.viewport = viewport;
+            this.sink = sink;
+            this.queued = deltaCounter(region, "queued");
+            this.coalesced = deltaCounter(region, "coalesced");
+            this.sent = deltaCounter(region, "sent");
+        }
+
+        private void offer(DriverDelta delta) {
+            DriverDelta toQueue = delta;
+            boolean located = delta.getLatitude() != null && delta.getLongitude() != null;
+            if (!located || viewport.contains(delta.getLatitude(), delta.getLongitude())) {
+                visible.add(delta.getId());
+            } else if (visible.remove(delta.getId())) {
+                toQueue = new DriverDelta(DriverDelta.Type.LEFT, delta.getId(), delta.getStatus(),
+                        delta.getLatitude(), delta.getLongitude(), delta.getTimestamp());
+            } else {
+                return;
+            }
+            queued.increment();
+            if (pending.put(delta.getId(), toQueue) != null) {
+                coalesced.increment();
+            }
+        }
+
+        private boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        private void flush(long now) {
+            try {
+                List<DriverDelta> batch = new ArrayList<>(pending.size());
+                // Removed one by one, so a delta queued while the batch is built waits for the next flush
+                for (String driverId : pending.keySet()) {
+                    DriverDelta delta = pending.remove(driverId);
+                    if (delta != null) {
+                        batch.add(delta);
+                    }
+                }
+                sink.send(batch);
+                sent.increment(batch.size());
+                lastSentAt = now;
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Driver push subscriber in region {} is gone: {}", region, e.getMessage());
+                unsubscribe(this);
+            } finally {
+                sending.set(false);
+            }
+        }
+    }
+
+    private Counter deltaCounter(Region region, String outcome) {
+        return meterRegistry.counter("ride.push.deltas", "region", region.name(), "outcome", outcome);
+    }
+}
@@ -0,0 +1,23 @@
+package com.ashwani.push;
+
+/**
+ * Map area a push subscriber watches. A {@code minLongitude} greater than {@code maxLongitude} is a
+ * box that crosses the antimeridian.
+ */
+public record Viewport(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+
+    public Viewport {
+        if (minLatitude > maxLatitude) {
+            throw new IllegalArgumentException("minLat must not be greater than maxLat");
+        }
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        return minLongitude <= maxLongitude
+                ? longitude >= minLongitude && longitude <= maxLongitude
+                : longitude >= minLongitude || longitude <= maxLongitude;
+    }
+}
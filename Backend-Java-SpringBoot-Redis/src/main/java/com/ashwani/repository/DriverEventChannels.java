@@ -0,0 +1,48 @@
+package com.ashwani.repository;
+
+import com.ashwani.config.PushProperties;
+import com.ashwani.dto.DriverDelta;
+import com.ashwani.enums.Region;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import static com.ashwani.constant.ApplicationConstant.DRIVER_EVENTS_CHANNEL_PREFIX;
+
+/**
+ * Pub/sub channels driver changes are published on as {@link DriverDelta} JSON, one per region. The
+ * update scripts publish from the same call that makes the change; writes made outside a script
+ * publish through {@link #publish}.
+ */
+@Component
+public class DriverEventChannels {
+
+    private final PushProperties pushProperties;
+    private final ObjectMapper objectMapper;
+
+    DriverEventChannels(PushProperties pushProperties, ObjectMapper objectMapper) {
+        this.pushProperties = pushProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    public static String channel(Region region) {
+        return DRIVER_EVENTS_CHANNEL_PREFIX + region.name().toLowerCase();
+    }
+
+    // Script argument naming the channel; empty tells the script not to publish
+    String scriptArg(Region region) {
+        return pushProperties.isEnabled() ? channel(region) : "";
+    }
+
+    void publish(RedisTemplate<String, String> template, Region region, DriverDelta delta) {
+        if (!pushProperties.isEnabled()) {
+            return;
+        }
+        try {
+            template.convertAndSend(channel(region), objectMapper.writeValueAsString(delta));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize driver delta for " + delta.getId(), e);
+        }
+    }
+}
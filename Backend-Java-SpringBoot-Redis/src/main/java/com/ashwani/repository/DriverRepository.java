@@ -1,90 +1,792 @@
 package com.ashwani.repository;
 
+import com.ashwani.cache.NearCache;
+import com.ashwani.config.RegionResolutionProperties;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dto.DriverDelta;
 import com.ashwani.entity.Driver;
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.DriverStatus;
 import com.ashwani.enums.Region;
+import com.ashwani.geo.LocalDriverIndex;
+import com.ashwani.geo.RegionResolver;
+import com.ashwani.metrics.HotPathMetrics;
+import com.ashwani.sharding.RegionShards;
 import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 import static com.ashwani.constant.ApplicationConstant.DRIVER_GEO_KEY_PREFIX;
 import static com.ashwani.constant.ApplicationConstant.DRIVER_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_MEMBERS_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_MOVED_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_SHARD_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.DRIVER_STATE_KEY_PREFIX;
 
+/**
+ * Drivers are stored in two parts:
+ * <ul>
+ *     <li>{@code drivers:<region>} - hash of id to the JSON profile, written once at signup.</li>
+ *     <li>{@code drivers:state:<region>:<id>} - small hash with the hot fields ({@code lat}, {@code lon},
+ *     {@code status}, {@code ts}), overwritten in place by location and status updates.</li>
+ * </ul>
+ * Reads overlay the state hash on the profile. Drivers written before the split have no state hash
+ * and are served from the profile alone until {@link #migrateLegacyLayout(Region)} backfills them.
+ * <p>
+ * Positions are indexed in one GEO set per status ({@code drivers:geo:<region>:available},
+ * {@code :on_ride}, {@code :offline}). Every status change moves the driver between them inside the
+ * same script that writes the state hash, so dispatch only ever searches drivers it can assign.
+ * <p>
+ * Every position and status change is also published as a {@link DriverDelta} on the region's
+ * {@link DriverEventChannels} channel for the map push.
+ * <p>
+ * Saving a driver bumps {@code pv} in its state hash. Reads fetch the state hash first and take the
+ * profile from the {@link NearCache} when it was cached at that {@code pv}.
+ * <p>
+ * In a region split into shards (see {@link RegionShards}) the profile lives on the shard the id hashes
+ * to and the state hash and GEO entries on the shard owning the driver's cell, so nearby drivers share
+ * a shard. {@code drivers:shard:<region>}, next to the profile, records which shard that is, and
+ * {@code drivers:members:<region>} on each shard lists the drivers placed there; it stands in for the
+ * profile hash as the update scripts' existence check. A driver crossing into a cell of another shard
+ * is detached from the old shard and attached to the new one, which publishes a MOVED delta there.
+ */
 @Repository
 public class DriverRepository {
 
+    private static final Logger logger = LoggerFactory.getLogger(DriverRepository.class);
+
+    private static final String LATITUDE_FIELD = "lat";
+    private static final String LONGITUDE_FIELD = "lon";
+    private static final String STATUS_FIELD = "status";
+    private static final String TIMESTAMP_FIELD = "ts";
+    private static final String PROFILE_VERSION_FIELD = "pv";
+
+    // Keeps a single script invocation short enough not to stall the region's master
+    private static final int MAX_UPDATES_PER_SCRIPT = 1000;
+    // A driver handed off again before its update arrives is followed at most this many regions
+    private static final int MAX_HANDOFF_HOPS = 3;
+
     private final ShardedRedisTemplateRouter router;
+    private final LocalDriverIndex localDriverIndex;
+    private final DriverEventChannels eventChannels;
+    private final NearCache nearCache;
+    private final RegionShards shards;
+    private final RegionResolver regionResolver;
+    private final RegionResolutionProperties regionResolutionProperties;
+    private final MeterRegistry meterRegistry;
+    private final HotPathMetrics hotPathMetrics;
 
-    public DriverRepository(ShardedRedisTemplateRouter router) {
+    public DriverRepository(ShardedRedisTemplateRouter router, LocalDriverIndex localDriverIndex, DriverEventChannels eventChannels,
+                            NearCache nearCache, RegionShards shards, RegionResolver regionResolver,
+                            RegionResolutionProperties regionResolutionProperties, MeterRegistry meterRegistry,
+                            HotPathMetrics hotPathMetrics) {
         this.router = router;
+        this.localDriverIndex = localDriverIndex;
+        this.eventChannels = eventChannels;
+        this.nearCache = nearCache;
+        this.shards = shards;
+        this.regionResolver = regionResolver;
+        this.regionResolutionProperties = regionResolutionProperties;
+        this.meterRegistry = meterRegistry;
+        this.hotPathMetrics = hotPathMetrics;
     }
 
     public void saveDriver(Region region, Driver driver) {
+        if (shards.isSharded(region)) {
+            saveShardedDriver(region, driver);
+            return;
+        }
         RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, ConsistencyLevel.STRONG);
-        RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
 
         String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
-        String driverGeoKey = DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase();
+        DriverStatus status = driver.getStatus() != null ? driver.getStatus() : DriverStatus.AVAILABLE;
 
+        driver.setLastUpdated(System.currentTimeMillis());
         driverTemplate.opsForHash().put(driverKey, driver.getId(), driver);
-        geoTemplate.opsForGeo().add(driverGeoKey,
-                new Point(driver.getLongitude(), driver.getLatitude()),
-                driver.getId());
+        // After the profile, so a reader that sees the new version also gets the new profile. The script
+        // also drops the driver from the indexes of its previous status, which a re-save may have changed
+        attach(region, 0, driver.getId(), new Point(driver.getLongitude(), driver.getLatitude()), status,
+                String.valueOf(driver.getLastUpdated()), "", 1);
+        localDriverIndex.put(region, driver.getId(), driver.getLongitude(), driver.getLatitude(), status);
     }
 
     public Driver findDriverById(Region region, String driverId, ConsistencyLevel consistencyLevel) {
-        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, consistencyLevel);
+        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, shards.shardOf(region, driverId), consistencyLevel);
         String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
-        return (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
+        if (!nearCache.isEnabled()) {
+            Driver driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
+            if (driver != null) {
+                applyState(driver, state(region, driverId, consistencyLevel));
+            }
+            return driver;
+        }
+
+        // State first: a profile saved after it is read leaves the cached copy outdated, never ahead
+        Map<?, ?> state = state(region, driverId, consistencyLevel);
+        Object profileVersion = state.get(PROFILE_VERSION_FIELD);
+        // Drivers without a state hash are still on the original layout and not cached
+        long version = profileVersion != null ? Long.parseLong((String) profileVersion) : 0;
+        Driver driver = state.isEmpty() ? null : nearCache.driverProfile(region, driverId, version);
+        if (driver == null) {
+            driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
+            if (driver != null && !state.isEmpty()) {
+                nearCache.putDriverProfile(region, driverId, version, driver);
+            }
+        }
+        if (driver != null) {
+            applyState(driver, state);
+        }
+        return driver;
     }
 
+    /**
+     * Reads only the driver's status from its hot state, falling back to the profile for drivers
+     * that have not been migrated yet. Returns null when the driver is unknown in the region.
+     */
+    public DriverStatus findDriverStatus(Region region, String driverId, ConsistencyLevel consistencyLevel) {
+        Object status = state(region, driverId, consistencyLevel).get(STATUS_FIELD);
+        if (status != null) {
+            return DriverStatus.valueOf((String) status);
+        }
+        Driver driver = findDriverById(region, driverId, consistencyLevel);
+        return driver != null ? driver.getStatus() : null;
+    }
 
     public void updateDriverLocation(Region region, String driverId, Double longitude, Double latitude) {
-        RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
-        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, ConsistencyLevel.STRONG);
+        updateDriverLocations(region, Map.of(driverId, new Point(longitude, latitude)));
+    }
 
-        String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
-        String driverGeoKey = DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase();
+    /**
+     * Applies many location updates for one region. Each chunk of updates is a single script call on
+     * the region's master that writes the driver's status GEO index and state hash in place. In a split
+     * region the updates are grouped by the shard holding each driver, and drivers that crossed into a
+     * cell of another shard are moved there one by one.
+     * <p>
+     * With handoff on, a driver whose new position lies in another region's area is moved to that region,
+     * and an update for a driver that has left the region follows it to its region of record, which the
+     * region it left keeps in {@code drivers:moved:<region>}; see {@link #handOff}.
+     *
+     * @param locations driver id to new position (x = longitude, y = latitude)
+     * @return ids of the drivers that were found, in the region or the one they moved to, and updated
+     */
+    public Set<String> updateDriverLocations(Region region, Map<String, Point> locations) {
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        hotPathMetrics.locationBatch(region, locations.size());
+        if (!regionResolutionProperties.isHandoff()) {
+            long start = hotPathMetrics.start();
+            Set<String> updated = updateHere(region, locations, timestamp);
+            hotPathMetrics.location(region, HotPathMetrics.LocationStage.WRITE, start);
+            return updated;
+        }
+        Map<String, Point> here = locations;
+        Map<String, Region> crossing = new HashMap<>();
+        for (Map.Entry<String, Point> location : locations.entrySet()) {
+            Region area = regionResolver.resolve(location.getValue().getX(), location.getValue().getY());
+            if (area != null && area != region) {
+                crossing.put(location.getKey(), area);
+            }
+        }
+        if (!crossing.isEmpty()) {
+            here = new LinkedHashMap<>(locations);
+            here.keySet().removeAll(crossing.keySet());
+        }
 
-        geoTemplate.opsForGeo().add(driverGeoKey, new Point(longitude, latitude), driverId);
+        long start = hotPathMetrics.start();
+        Set<String> updated = here.isEmpty() ? new HashSet<>() : updateHere(region, here, timestamp);
+        hotPathMetrics.location(region, HotPathMetrics.LocationStage.WRITE, start);
+        if (updated.size() < here.size()) {
+            // Not in the region: drivers that have been handed off elsewhere are followed there
+            start = hotPathMetrics.start();
+            List<String> missing = here.keySet().stream().filter(driverId -> !updated.contains(driverId)).toList();
+            Map<String, Region> movedTo = movedTo(region, missing);
+            movedTo.forEach((driverId, holder) -> {
+                Point point = locations.get(driverId);
+                if (relocate(holder, regionResolver.resolve(point.getX(), point.getY()), driverId, point, timestamp)) {
+                    updated.add(driverId);
+                }
+            });
+            hotPathMetrics.location(region, HotPathMetrics.LocationStage.FOLLOW, start);
+        }
+        if (!crossing.isEmpty()) {
+            start = hotPathMetrics.start();
+            crossing.forEach((driverId, area) -> {
+                if (relocate(region, area, driverId, locations.get(driverId), timestamp)) {
+                    updated.add(driverId);
+                }
+            });
+            hotPathMetrics.location(region, HotPathMetrics.LocationStage.HANDOFF, start);
+        }
+        return updated;
+    }
 
-        Driver driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
-        if (driver != null) {
-            driver.setLongitude(longitude);
-            driver.setLatitude(latitude);
-            // Status is not changed here, assuming location update doesn't change status
-            driverTemplate.opsForHash().put(driverKey, driverId, driver);
+    // Location updates for drivers held in the region, written where they are
+    private Set<String> updateHere(Region region, Map<String, Point> locations, String timestamp) {
+        Set<String> updated = new HashSet<>();
+        if (!shards.isSharded(region)) {
+            updateInPlace(region, router.getGeoTemplate(region, ConsistencyLevel.STRONG), DRIVER_KEY_PREFIX + region.name().toLowerCase(),
+                    locations, timestamp, updated);
+            return updated;
+        }
+
+        List<String> driverIds = new ArrayList<>(locations.keySet());
+        int[] current = stateShards(region, driverIds, ConsistencyLevel.STRONG);
+        Map<Integer, Map<String, Point>> inPlace = new HashMap<>();
+        for (int i = 0; i < driverIds.size(); i++) {
+            String driverId = driverIds.get(i);
+            Point point = locations.get(driverId);
+            int target = shards.shardAt(region, point.getX(), point.getY());
+            if (current[i] == target) {
+                inPlace.computeIfAbsent(target, shard -> new LinkedHashMap<>()).put(driverId, point);
+            } else if (current[i] >= 0 && move(region, driverId, current[i], target, point, timestamp)) {
+                updated.add(driverId);
+                localDriverIndex.put(region, driverId, point.getX(), point.getY(), null);
+            }
+        }
+        inPlace.forEach((shard, shardLocations) -> updateInPlace(region, router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG),
+                membersKey(region), shardLocations, timestamp, updated));
+        return updated;
+    }
+
+    // Runs the location script over the drivers of one node; existenceKey is the profile hash, or the shard's members
+    private void updateInPlace(Region region, RedisTemplate<String, String> geoTemplate, String existenceKey,
+                               Map<String, Point> locations, String timestamp, Set<String> updated) {
+        String channel = eventChannels.scriptArg(region);
+        List<String> driverIds = new ArrayList<>(locations.keySet());
+        for (int from = 0; from < driverIds.size(); from += MAX_UPDATES_PER_SCRIPT) {
+            List<String> chunk = driverIds.subList(from, Math.min(from + MAX_UPDATES_PER_SCRIPT, driverIds.size()));
+            LocationUpdateCall call = locationUpdateCall(region, existenceKey, timestamp, channel, chunk, locations);
+            List<?> applied = geoTemplate.execute(RedisScripts.UPDATE_DRIVER_LOCATIONS, call.keys(), call.args());
+            for (int i = 0; i < chunk.size(); i++) {
+                if (applied != null && ((Number) applied.get(i)).longValue() == 1L) {
+                    String driverId = chunk.get(i);
+                    Point point = locations.get(driverId);
+                    updated.add(driverId);
+                    localDriverIndex.put(region, driverId, point.getX(), point.getY(), null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keys and arguments of one location script call for the given drivers, in the order the script reads
+     * them: the existence key and the status GEO indexes, then each driver's state hash; the timestamp
+     * and event channel, then id, longitude and latitude per driver.
+     */
+    public static LocationUpdateCall locationUpdateCall(Region region, String existenceKey, String timestamp, String channel,
+                                                        List<String> driverIds, Map<String, Point> locations) {
+        List<String> keys = new ArrayList<>(driverIds.size() + 4);
+        keys.add(existenceKey);
+        keys.addAll(geoIndexKeys(region));
+        Object[] args = new Object[driverIds.size() * 3 + 2];
+        args[0] = timestamp;
+        args[1] = channel;
+        int i = 2;
+        for (String driverId : driverIds) {
+            Point point = locations.get(driverId);
+            keys.add(stateKey(region, driverId));
+            args[i++] = driverId;
+            args[i++] = String.valueOf(point.getX());
+            args[i++] = String.valueOf(point.getY());
         }
+        return new LocationUpdateCall(keys, args);
     }
 
-    // New method to update driver status
+    public record LocationUpdateCall(List<String> keys, Object[] args) {
+    }
+
+    /**
+     * Moves a driver to another region, in three steps since the regions are separate Redis deployments.
+     * The first script, on the region it leaves, takes the driver out of the GEO indexes there, so no
+     * booking can claim it any more, and marks its state hash with the handoff; updates and shard moves
+     * leave a marked driver alone. The profile and state are then written in the new region, and a last
+     * script removes the driver from the old one and records the new region in
+     * {@code drivers:moved:<region>}. A driver on a ride stays where it is until the ride has ended, so a
+     * booking and a handoff never both get it. A handoff that stopped part way, say because the instance
+     * died, may be taken over by another update after {@code ride.region-resolution.handoff-timeout}.
+     * Handoffs are counted in {@code ride.region.handoffs{from,to,outcome}} and timed in
+     * {@code ride.region.handoff.latency{from,to}}.
+     */
+    private Handoff handOff(Region from, Region to, String driverId, Point point, String timestamp) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Handoff outcome = tryHandOff(from, to, driverId, point, timestamp);
+        meterRegistry.counter("ride.region.handoffs", "from", from.name(), "to", to.name(),
+                "outcome", outcome.name().toLowerCase()).increment();
+        if (outcome == Handoff.MOVED) {
+            sample.stop(meterRegistry.timer("ride.region.handoff.latency", "from", from.name(), "to", to.name()));
+            logger.debug("Driver {} handed off from region {} to {}", driverId, from, to);
+        }
+        return outcome;
+    }
+
+    private Handoff tryHandOff(Region from, Region to, String driverId, Point point, String timestamp) {
+        int fromShard = stateShard(from, driverId, ConsistencyLevel.STRONG);
+        if (fromShard < 0) {
+            return Handoff.MISSING;
+        }
+        RedisTemplate<String, String> fromTemplate = router.getGeoTemplate(from, fromShard, ConsistencyLevel.STRONG);
+        List<String> fromKeys = stateKeys(from, driverId);
+        List<?> begun = fromTemplate.execute(RedisScripts.BEGIN_DRIVER_HANDOFF, fromKeys, driverId, to.name(), timestamp,
+                String.valueOf(regionResolutionProperties.getHandoffTimeout().toMillis()));
+        String outcome = begun != null && !begun.isEmpty() ? (String) begun.get(0) : "MISSING";
+        switch (outcome) {
+            case "STARTED":
+                break;
+            case "ON_RIDE":
+                // Updated where the ride is; it moves with a later update once the ride has ended
+                return updateHere(from, Map.of(driverId, point), timestamp).isEmpty() ? Handoff.MISSING : Handoff.DEFERRED;
+            case "IN_PROGRESS":
+                return Handoff.BUSY;
+            default:
+                return Handoff.MISSING;
+        }
+        Map<String, String> state = new HashMap<>();
+        for (int i = 1; i + 1 < begun.size(); i += 2) {
+            state.put((String) begun.get(i), (String) begun.get(i + 1));
+        }
+        String startedAt = state.get("hots");
+        int fromIdShard = shards.shardOf(from, driverId);
+        Driver profile = (Driver) router.getDriverTemplate(from, fromIdShard, ConsistencyLevel.STRONG).opsForHash()
+                .get(DRIVER_KEY_PREFIX + from.name().toLowerCase(), driverId);
+
+        if (profile != null) {
+            DriverStatus status = DriverStatus.valueOf(state.getOrDefault(STATUS_FIELD, DriverStatus.AVAILABLE.name()));
+            int toIdShard = shards.shardOf(to, driverId);
+            router.getDriverTemplate(to, toIdShard, ConsistencyLevel.STRONG).opsForHash()
+                    .put(DRIVER_KEY_PREFIX + to.name().toLowerCase(), driverId, profile);
+            int toShard = shards.shardAt(to, point.getX(), point.getY());
+            // After the profile, so a reader that sees the new version also gets the new profile
+            attach(to, toShard, driverId, point, status, timestamp, state.getOrDefault(PROFILE_VERSION_FIELD, ""), 1);
+            RedisTemplate<String, String> toIdTemplate = router.getGeoTemplate(to, toIdShard, ConsistencyLevel.STRONG);
+            if (shards.isSharded(to)) {
+                toIdTemplate.opsForHash().put(directoryKey(to), driverId, String.valueOf(toShard));
+            }
+            toIdTemplate.opsForHash().delete(movedKey(to), driverId);
+            localDriverIndex.put(to, driverId, point.getX(), point.getY(), status);
+        }
+
+        Long finished = fromTemplate.execute(RedisScripts.FINISH_DRIVER_HANDOFF, fromKeys, driverId, startedAt,
+                eventChannels.scriptArg(from), String.valueOf(System.currentTimeMillis()));
+        if (finished == null || finished != 1L) {
+            // Another update took the handoff over and finishes it
+            return profile != null ? Handoff.MOVED : Handoff.MISSING;
+        }
+        RedisTemplate<String, String> fromIdTemplate = router.getGeoTemplate(from, fromIdShard, ConsistencyLevel.STRONG);
+        if (shards.isSharded(from)) {
+            router.getDriverTemplate(from, fromIdShard, ConsistencyLevel.STRONG).opsForHash()
+                    .delete(DRIVER_KEY_PREFIX + from.name().toLowerCase(), driverId);
+            fromIdTemplate.opsForHash().delete(directoryKey(from), driverId);
+        }
+        localDriverIndex.remove(from, driverId);
+        if (profile == null) {
+            return Handoff.MISSING;
+        }
+        fromIdTemplate.opsForHash().put(movedKey(from), driverId, to.name());
+        return Handoff.MOVED;
+    }
+
+    /**
+     * Applies one driver's update starting from the region believed to hold it, following
+     * {@code drivers:moved:<region>} when it is not there.
+     *
+     * @param target region whose area the new position lies in, or null to update the driver wherever it is
+     */
+    private boolean relocate(Region holder, Region target, String driverId, Point point, String timestamp) {
+        for (int hop = 0; hop < MAX_HANDOFF_HOPS; hop++) {
+            if (target == null || target == holder) {
+                if (!updateHere(holder, Map.of(driverId, point), timestamp).isEmpty()) {
+                    return true;
+                }
+            } else {
+                switch (handOff(holder, target, driverId, point, timestamp)) {
+                    case MOVED, DEFERRED:
+                        return true;
+                    case BUSY:
+                        // Another update is moving the driver; this one is dropped
+                        return false;
+                    default:
+                        break;
+                }
+            }
+            Region next = movedTo(holder, List.of(driverId)).get(driverId);
+            if (next == null) {
+                return false;
+            }
+            holder = next;
+        }
+        return false;
+    }
+
+    // Region each driver was handed off to from this region, for the drivers that have been
+    private Map<String, Region> movedTo(Region region, List<String> driverIds) {
+        Map<Integer, List<String>> byIdShard = new HashMap<>();
+        for (String driverId : driverIds) {
+            byIdShard.computeIfAbsent(shards.shardOf(region, driverId), shard -> new ArrayList<>()).add(driverId);
+        }
+        Map<String, Region> movedTo = new LinkedHashMap<>();
+        byIdShard.forEach((idShard, ids) -> {
+            List<Object> found = router.getGeoTemplate(region, idShard, ConsistencyLevel.STRONG).opsForHash()
+                    .multiGet(movedKey(region), new ArrayList<>(ids));
+            for (int i = 0; i < ids.size(); i++) {
+                if (found.get(i) != null) {
+                    Region next = Region.valueOf((String) found.get(i));
+                    if (next != region) {
+                        movedTo.put(ids.get(i), next);
+                    }
+                }
+            }
+        });
+        return movedTo;
+    }
+
+    private enum Handoff {
+        MOVED,      // now in the new region
+        DEFERRED,   // on a ride; updated where it is
+        BUSY,       // another update is handing it off
+        MISSING     // not in the region it was to leave
+    }
+
+    /**
+     * Sets the driver's status in place and moves it to the GEO index of the new status.
+     */
     public void updateDriverStatus(Region region, String driverId, DriverStatus status) {
-        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, ConsistencyLevel.STRONG);
-        String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
-        Driver driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
-        if (driver != null) {
-            driver.setStatus(status);
-            driverTemplate.opsForHash().put(driverKey, driverId, driver);
+        if (!shards.isSharded(region)) {
+            updateStatusOn(router.getGeoTemplate(region, ConsistencyLevel.STRONG), DRIVER_KEY_PREFIX + region.name().toLowerCase(),
+                    region, driverId, status);
+        } else {
+            // A driver moved to another shard between the lookup and the script is looked up once more
+            for (int attempt = 0; attempt < 2; attempt++) {
+                int shard = stateShard(region, driverId, ConsistencyLevel.STRONG);
+                if (shard < 0 || updateStatusOn(router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG), membersKey(region),
+                        region, driverId, status)) {
+                    break;
+                }
+            }
         }
+        localDriverIndex.updateStatus(region, driverId, status);
     }
 
-    public List<Driver> findAllDrivers(Region region, ConsistencyLevel consistencyLevel) {
-        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, consistencyLevel);
+    private boolean updateStatusOn(RedisTemplate<String, String> geoTemplate, String existenceKey, Region region, String driverId,
+                                   DriverStatus status) {
+        List<String> keys = new ArrayList<>(5);
+        keys.add(existenceKey);
+        keys.addAll(geoIndexKeys(region));
+        keys.add(stateKey(region, driverId));
+        Long applied = geoTemplate.execute(RedisScripts.UPDATE_DRIVER_STATUS, keys,
+                driverId, status.name(), String.valueOf(System.currentTimeMillis()), eventChannels.scriptArg(region));
+        return applied != null && applied == 1L;
+    }
+
+    /**
+     * One HSCAN page of the region's driver profiles, each overlaid with its state hash.
+     *
+     * @param cursor {@link CursorPage#FIRST} or the cursor returned with the previous page
+     * @param count  approximate page size
+     */
+    public CursorPage<Driver> findDriversPage(Region region, String cursor, int count, ConsistencyLevel consistencyLevel) {
         String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
-        // With the ObjectMapper correctly configured, this call now correctly returns List<Driver>.
-        return driverTemplate.opsForHash().values(driverKey).stream()
-                .map(obj -> (Driver) obj)
-                .collect(Collectors.toList());
+
+        CursorPage<Driver> page = HashScan.page(shard -> router.getDriverTemplate(region, shard, consistencyLevel),
+                shards.count(region), driverKey, cursor, count);
+        List<Driver> drivers = page.getItems();
+        if (drivers.isEmpty()) {
+            return page;
+        }
+
+        List<String> driverIds = drivers.stream().map(Driver::getId).toList();
+        int[] stateShards = stateShards(region, driverIds, consistencyLevel);
+        RedisSerializer<String> stringSerializer = RedisSerializer.string();
+        // One pipeline of state reads per shard, answers put back in page order
+        for (int shard : Arrays.stream(stateShards).filter(shard -> shard >= 0).distinct().toArray()) {
+            List<Integer> onShard = new ArrayList<>();
+            for (int i = 0; i < stateShards.length; i++) {
+                if (stateShards[i] == shard) {
+                    onShard.add(i);
+                }
+            }
+            List<Object> states = router.getGeoTemplate(region, shard, consistencyLevel).executePipelined((RedisCallback<Object>) connection -> {
+                for (int i : onShard) {
+                    connection.hashCommands().hGetAll(stringSerializer.serialize(stateKey(region, driverIds.get(i))));
+                }
+                return null;
+            });
+            for (int j = 0; j < onShard.size(); j++) {
+                applyState(drivers.get(onShard.get(j)), (Map<?, ?>) states.get(j));
+            }
+        }
+        return page;
     }
 
     public void removeDriverFromGeoIndex(Region region, String driverId) {
+        int shard = stateShard(region, driverId, ConsistencyLevel.STRONG);
+        if (shard < 0) {
+            localDriverIndex.remove(region, driverId);
+            return;
+        }
+        RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG);
+        for (String driverGeoKey : geoIndexKeys(region)) {
+            geoTemplate.opsForGeo().remove(driverGeoKey, driverId);
+        }
+        localDriverIndex.remove(region, driverId);
+    }
+
+    /**
+     * Migrates the region's drivers from the original layout: backfills each driver's state hash from
+     * its JSON profile, then moves it from the single {@code drivers:geo:<region>} index into the
+     * index of its status. Regions split into shards are skipped, and so are regions without a legacy GEO
+     * index, which the migration empties. State fields are written with HSETNX and drivers already placed
+     * by live updates are left alone, so the migration can be re-run safely while serving traffic.
+     *
+     * @return number of driver profiles visited
+     */
+    public long migrateLegacyLayout(Region region) {
+        if (shards.isSharded(region)) {
+            // Split regions are only ever written in the current layout
+            logger.warn("Skipping the legacy layout migration in region {}, which is split into {} shards", region, shards.count(region));
+            return 0;
+        }
+        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, ConsistencyLevel.STRONG);
         RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
-        String driverGeoKey = DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase();
-        geoTemplate.opsForGeo().remove(driverGeoKey, driverId);
+        String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
+        String legacyGeoKey = DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase();
+        if (!Boolean.TRUE.equals(geoTemplate.hasKey(legacyGeoKey))) {
+            logger.debug("No drivers left in the legacy layout in region {}", region);
+            return 0;
+        }
+        RedisSerializer<String> stringSerializer = RedisSerializer.string();
+
+        long visited = 0;
+        long moved = 0;
+        List<Driver> batch = new ArrayList<>();
+        try (Cursor<Map.Entry<Object, Object>> cursor = driverTemplate.opsForHash()
+                .scan(driverKey, ScanOptions.scanOptions().count(MAX_UPDATES_PER_SCRIPT).build())) {
+            while (cursor.hasNext()) {
+                batch.add((Driver) cursor.next().getValue());
+                if (batch.size() < MAX_UPDATES_PER_SCRIPT && cursor.hasNext()) {
+                    continue;
+                }
+
+                geoTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Driver driver : batch) {
+                        byte[] key = stringSerializer.serialize(stateKey(region, driver.getId()));
+                        toState(driver).forEach((field, value) -> connection.hashCommands()
+                                .hSetNX(key, stringSerializer.serialize(field), stringSerializer.serialize(value)));
+                    }
+                    return null;
+                });
+
+                List<String> keys = new ArrayList<>(batch.size() + 4);
+                keys.add(legacyGeoKey);
+                keys.addAll(geoIndexKeys(region));
+                List<String> ids = new ArrayList<>(batch.size());
+                for (Driver driver : batch) {
+                    keys.add(stateKey(region, driver.getId()));
+                    ids.add(driver.getId());
+                }
+                Long partitioned = geoTemplate.execute(RedisScripts.PARTITION_DRIVER_GEO, keys, ids.toArray());
+                moved += partitioned != null ? partitioned : 0;
+
+                visited += batch.size();
+                batch.clear();
+            }
+        }
+        logger.info("Migrated {} drivers in region {}, {} moved to status GEO indexes", visited, region, moved);
+        return visited;
+    }
+
+    /**
+     * Shard holding the driver's state and GEO entries: from the directory in a split region, -1 when the
+     * driver has never been placed; always 0 otherwise.
+     */
+    int stateShard(Region region, String driverId, ConsistencyLevel consistencyLevel) {
+        return stateShards(region, List.of(driverId), consistencyLevel)[0];
+    }
+
+    /**
+     * {@link #stateShard} of many drivers, with one directory read per shard their ids hash to.
+     */
+    int[] stateShards(Region region, List<String> driverIds, ConsistencyLevel consistencyLevel) {
+        int[] stateShards = new int[driverIds.size()];
+        if (!shards.isSharded(region)) {
+            return stateShards;
+        }
+        Map<Integer, List<Integer>> byIdShard = new HashMap<>();
+        for (int i = 0; i < driverIds.size(); i++) {
+            byIdShard.computeIfAbsent(shards.shardOf(region, driverIds.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        byIdShard.forEach((idShard, indexes) -> {
+            List<Object> fields = indexes.stream().map(i -> (Object) driverIds.get(i)).toList();
+            List<Object> found = router.getGeoTemplate(region, idShard, consistencyLevel).opsForHash().multiGet(directoryKey(region), fields);
+            for (int j = 0; j < indexes.size(); j++) {
+                Object shard = found.get(j);
+                stateShards[indexes.get(j)] = shard != null ? Integer.parseInt((String) shard) : -1;
+            }
+        });
+        return stateShards;
+    }
+
+    // Driver's state hash, empty when the driver has none or has not been placed on a shard yet
+    private Map<?, ?> state(Region region, String driverId, ConsistencyLevel consistencyLevel) {
+        int shard = stateShard(region, driverId, consistencyLevel);
+        return shard < 0 ? Map.of() : router.getGeoTemplate(region, shard, consistencyLevel).opsForHash().entries(stateKey(region, driverId));
+    }
+
+    private void saveShardedDriver(Region region, Driver driver) {
+        String driverId = driver.getId();
+        int idShard = shards.shardOf(region, driverId);
+        DriverStatus status = driver.getStatus() != null ? driver.getStatus() : DriverStatus.AVAILABLE;
+        driver.setLastUpdated(System.currentTimeMillis());
+        router.getDriverTemplate(region, idShard, ConsistencyLevel.STRONG).opsForHash()
+                .put(DRIVER_KEY_PREFIX + region.name().toLowerCase(), driverId, driver);
+
+        int previous = stateShard(region, driverId, ConsistencyLevel.STRONG);
+        int target = shards.shardAt(region, driver.getLongitude(), driver.getLatitude());
+        String carriedVersion = "";
+        if (previous >= 0 && previous != target) {
+            Object version = detach(region, previous, driverId).get(PROFILE_VERSION_FIELD);
+            carriedVersion = version != null ? (String) version : "";
+        }
+        // After the profile, so a reader that sees the new version also gets the new profile
+        attach(region, target, driverId, new Point(driver.getLongitude(), driver.getLatitude()), status,
+                String.valueOf(driver.getLastUpdated()), carriedVersion, 1);
+        if (previous != target) {
+            router.getGeoTemplate(region, idShard, ConsistencyLevel.STRONG).opsForHash()
+                    .put(directoryKey(region), driverId, String.valueOf(target));
+        }
+        localDriverIndex.put(region, driverId, driver.getLongitude(), driver.getLatitude(), status);
+    }
+
+    // Moves a driver whose new position is in a cell of another shard; false when it was no longer on the old one
+    private boolean move(Region region, String driverId, int from, int to, Point point, String timestamp) {
+        Map<String, String> state = detach(region, from, driverId);
+        if (state.isEmpty()) {
+            return false;
+        }
+        String status = state.getOrDefault(STATUS_FIELD, DriverStatus.AVAILABLE.name());
+        attach(region, to, driverId, point, DriverStatus.valueOf(status), timestamp, state.getOrDefault(PROFILE_VERSION_FIELD, ""), 0);
+        router.getGeoTemplate(region, shards.shardOf(region, driverId), ConsistencyLevel.STRONG).opsForHash()
+                .put(directoryKey(region), driverId, String.valueOf(to));
+        return true;
+    }
+
+    // State the driver had on the shard, empty when it was not there
+    private Map<String, String> detach(Region region, int shard, String driverId) {
+        List<String> keys = new ArrayList<>(5);
+        keys.add(membersKey(region));
+        keys.addAll(geoIndexKeys(region));
+        keys.add(stateKey(region, driverId));
+        List<?> fieldsAndValues = router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG).execute(RedisScripts.DETACH_DRIVER, keys, driverId);
+        Map<String, String> state = new HashMap<>();
+        if (fieldsAndValues != null) {
+            for (int i = 0; i + 1 < fieldsAndValues.size(); i += 2) {
+                state.put((String) fieldsAndValues.get(i), (String) fieldsAndValues.get(i + 1));
+            }
+        }
+        return state;
+    }
+
+    // Regions that are not split know their drivers by the profile hash and keep no members
+    private void attach(Region region, int shard, String driverId, Point point, DriverStatus status, String timestamp,
+                        String carriedVersion, int versionIncrement) {
+        List<String> keys = new ArrayList<>(5);
+        keys.add(membersKey(region));
+        keys.addAll(geoIndexKeys(region));
+        keys.add(stateKey(region, driverId));
+        router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG).execute(RedisScripts.ATTACH_DRIVER, keys,
+                driverId, String.valueOf(point.getX()), String.valueOf(point.getY()), status.name(), timestamp,
+                carriedVersion, String.valueOf(versionIncrement), eventChannels.scriptArg(region),
+                shards.isSharded(region) ? "1" : "0");
+    }
+
+    // Keys of the scripts that check a driver's existence and touch its indexes and state
+    private List<String> stateKeys(Region region, String driverId) {
+        List<String> keys = new ArrayList<>(5);
+        keys.add(shards.isSharded(region) ? membersKey(region) : DRIVER_KEY_PREFIX + region.name().toLowerCase());
+        keys.addAll(geoIndexKeys(region));
+        keys.add(stateKey(region, driverId));
+        return keys;
+    }
+
+    /**
+     * GEO index holding the drivers of the region that currently have the given status.
+     */
+    public static String geoIndexKey(Region region, DriverStatus status) {
+        return DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase() + ":" + status.name().toLowerCase();
+    }
+
+    // In the order the scripts expect: AVAILABLE, ON_RIDE, OFFLINE
+    static List<String> geoIndexKeys(Region region) {
+        return List.of(
+                geoIndexKey(region, DriverStatus.AVAILABLE),
+                geoIndexKey(region, DriverStatus.ON_RIDE),
+                geoIndexKey(region, DriverStatus.OFFLINE));
+    }
+
+    static String directoryKey(Region region) {
+        return DRIVER_SHARD_KEY_PREFIX + region.name().toLowerCase();
+    }
+
+    static String membersKey(Region region) {
+        return DRIVER_MEMBERS_KEY_PREFIX + region.name().toLowerCase();
+    }
+
+    static String movedKey(Region region) {
+        return DRIVER_MOVED_KEY_PREFIX + region.name().toLowerCase();
+    }
+
+    static String stateKey(Region region, String driverId) {
+        return DRIVER_STATE_KEY_PREFIX + region.name().toLowerCase() + ":" + driverId;
+    }
+
+    private static Map<String, String> toState(Driver driver) {
+        Map<String, String> state = new HashMap<>();
+        if (driver.getLatitude() != null && driver.getLongitude() != null) {
+            state.put(LATITUDE_FIELD, String.valueOf(driver.getLatitude()));
+            state.put(LONGITUDE_FIELD, String.valueOf(driver.getLongitude()));
+        }
+        if (driver.getStatus() != null) {
+            state.put(STATUS_FIELD, driver.getStatus().name());
+        }
+        if (driver.getLastUpdated() != null) {
+            state.put(TIMESTAMP_FIELD, String.valueOf(driver.getLastUpdated()));
+        }
+        return state;
+    }
+
+    private static void applyState(Driver driver, Map<?, ?> state) {
+        if (state == null || state.isEmpty()) {
+            return;
+        }
+        Object latitude = state.get(LATITUDE_FIELD);
+        Object longitude = state.get(LONGITUDE_FIELD);
+        Object status = state.get(STATUS_FIELD);
+        Object timestamp = state.get(TIMESTAMP_FIELD);
+        if (latitude != null && longitude != null) {
+            driver.setLatitude(Double.valueOf((String) latitude));
+            driver.setLongitude(Double.valueOf((String) longitude));
+        }
+        if (status != null) {
+            driver.setStatus(DriverStatus.valueOf((String) status));
+        }
+        if (timestamp != null) {
+            driver.setLastUpdated(Long.valueOf((String) timestamp));
+        }
     }
 }
@@ -0,0 +1,81 @@
+package com.ashwani.repository;
+
+import com.ashwani.dto.CursorPage;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Single HSCAN round trips over a region hash. Spring's scan cursor always starts from zero and pins a
+ * connection until it is closed, so pages are fetched with the raw command and the cursor is handed
+ * back to the caller; the connection returns to the pool after every page.
+ * <p>
+ * A hash spread over the shards of a split region is scanned one shard after the other, with cursors
+ * of the form {@code <shard>:<cursor>}; the first page's cursor is still {@link CursorPage#FIRST}.
+ */
+final class HashScan {
+
+    static final int MAX_COUNT = 1000;
+
+    private HashScan() {
+    }
+
+    /**
+     * Page of a hash spread over {@code shards} shards, {@code shardTemplates} giving each shard's template.
+     */
+    static <V> CursorPage<V> page(IntFunction<RedisTemplate<String, V>> shardTemplates, int shards, String key,
+                                  String cursor, int count) {
+        if (shards == 1) {
+            return page(shardTemplates.apply(0), key, cursor, count);
+        }
+        int colon = cursor != null ? cursor.indexOf(':') : -1;
+        int shard = 0;
+        String shardCursor = cursor;
+        if (colon >= 0) {
+            String prefix = cursor.substring(0, colon);
+            if (prefix.isEmpty() || !prefix.chars().allMatch(Character::isDigit) || prefix.length() > 4
+                    || Integer.parseInt(prefix) >= shards) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            shard = Integer.parseInt(prefix);
+            shardCursor = cursor.substring(colon + 1);
+        }
+        CursorPage<V> page = page(shardTemplates.apply(shard), key, shardCursor, count);
+        if (page.getNextCursor() != null) {
+            page.setNextCursor(shard + ":" + page.getNextCursor());
+        } else if (shard + 1 < shards) {
+            page.setNextCursor((shard + 1) + ":" + CursorPage.FIRST);
+        }
+        return page;
+    }
+
+    /**
+     * @param cursor cursor from the previous page, {@link CursorPage#FIRST} to start
+     * @param count  HSCAN COUNT hint, clamped to 1..{@value #MAX_COUNT}
+     */
+    @SuppressWarnings("unchecked")
+    static <V> CursorPage<V> page(RedisTemplate<String, V> template, String key, String cursor, int count) {
+        if (cursor == null || cursor.isEmpty() || !cursor.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        RedisSerializer<String> strings = RedisSerializer.string();
+        int boundedCount = Math.min(Math.max(count, 1), MAX_COUNT);
+
+        List<?> reply = template.execute((RedisCallback<List<?>>) connection -> (List<?>) connection.execute("HSCAN",
+                strings.serialize(key), strings.serialize(cursor),
+                strings.serialize("COUNT"), strings.serialize(String.valueOf(boundedCount))));
+
+        String next = strings.deserialize((byte[]) reply.get(0));
+        List<?> fieldsAndValues = (List<?>) reply.get(1);
+        RedisSerializer<?> valueSerializer = template.getHashValueSerializer();
+        List<V> items = new ArrayList<>(fieldsAndValues.size() / 2);
+        for (int i = 1; i < fieldsAndValues.size(); i += 2) {
+            items.add((V) valueSerializer.deserialize((byte[]) fieldsAndValues.get(i)));
+        }
+        return new CursorPage<>(items, CursorPage.FIRST.equals(next) ? null : next);
+    }
+}
@@ -1,60 +1,180 @@
 package com.ashwani.repository;
 
+import com.ashwani.cache.NearCache;
+import com.ashwani.dto.CursorPage;
 import com.ashwani.entity.Passenger;
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.PassengerStatus;
 import com.ashwani.enums.Region;
+import com.ashwani.sharding.RegionShards;
 import com.ashwani.sharding.ShardedRedisTemplateRouter;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_ACTIVE_RIDE_KEY_PREFIX;
 import static com.ashwani.constant.ApplicationConstant.PASSENGER_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_VERSION_KEY_PREFIX;
 
+/**
+ * Passengers are stored in one hash per region. Every write goes through a script that also bumps the
+ * passenger's counter in {@code passengers:version:<region>}, which {@link NearCache} checks cached
+ * copies against.
+ * <p>
+ * In a region split into shards, a passenger's entries in all three hashes live on the shard its id
+ * hashes to.
+ */
 @Repository
 public class PassengerRepository {
 
+    private static final RedisSerializer<Long> LONG_RESULT = new GenericToStringSerializer<>(Long.class);
+    private static final byte[] DELETED = new byte[0];
+
     private final ShardedRedisTemplateRouter router;
+    private final NearCache nearCache;
+    private final RegionShards shards;
 
-    public PassengerRepository(ShardedRedisTemplateRouter router) {
+    public PassengerRepository(ShardedRedisTemplateRouter router, NearCache nearCache, RegionShards shards) {
         this.router = router;
+        this.nearCache = nearCache;
+        this.shards = shards;
     }
 
     public void save(Region region, Passenger passenger) {
         RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, ConsistencyLevel.STRONG);
-        String passengerKey = PASSENGER_KEY_PREFIX + region.name().toLowerCase();
-        template.opsForHash().put(passengerKey, passenger.getId(), passenger);
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> passengerSerializer = (RedisSerializer<Object>) template.getHashValueSerializer();
+        write(region, passenger.getId(), passengerSerializer.serialize(passenger));
     }
 
+    /**
+     * With the near cache enabled, EVENTUAL reads are answered from it when the passenger is cached, and
+     * STRONG reads when the cached copy's version still matches the master's.
+     */
     public Passenger findById(Region region, String id, ConsistencyLevel consistencyLevel) {
-        RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, consistencyLevel);
-        String passengerKey = PASSENGER_KEY_PREFIX + region.name().toLowerCase();
-        return (Passenger) template.opsForHash().get(passengerKey, id);
+        if (!nearCache.isEnabled()) {
+            return read(region, id, consistencyLevel);
+        }
+        if (consistencyLevel != ConsistencyLevel.STRONG) {
+            Passenger cached = nearCache.passenger(region, id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // The version is read before the passenger, so a write in between leaves the cached copy outdated, never ahead
+        long version = version(region, id, consistencyLevel);
+        if (consistencyLevel == ConsistencyLevel.STRONG) {
+            Passenger cached = nearCache.passenger(region, id, version);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Passenger passenger = read(region, id, consistencyLevel);
+        if (passenger != null) {
+            nearCache.putPassenger(region, id, version, passenger);
+        }
+        return passenger;
     }
 
-    public List<Passenger> findAll(Region region, ConsistencyLevel consistencyLevel) {
-        RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, consistencyLevel);
+    /**
+     * One HSCAN page of the region's passengers.
+     *
+     * @param cursor {@link CursorPage#FIRST} or the cursor returned with the previous page
+     * @param count  approximate page size
+     */
+    public CursorPage<Passenger> findPage(Region region, String cursor, int count, ConsistencyLevel consistencyLevel) {
         String passengerKey = PASSENGER_KEY_PREFIX + region.name().toLowerCase();
-        return template.opsForHash().values(passengerKey).stream()
-                .map(obj -> (Passenger) obj)
-                .collect(Collectors.toList());
+        return HashScan.page(shard -> router.getPassengerTemplate(region, shard, consistencyLevel), shards.count(region),
+                passengerKey, cursor, count);
     }
 
-    public void updatePassengerStatus(Region region, String passengerId, PassengerStatus status) {
-        RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, ConsistencyLevel.STRONG);
-        String passengerKey = PASSENGER_KEY_PREFIX + region.name().toLowerCase();
-        Passenger passenger = (Passenger) template.opsForHash().get(passengerKey, passengerId);
-        if (passenger != null) {
-            passenger.setStatus(status);
-            template.opsForHash().put(passengerKey, passengerId, passenger);
-        }
+    /**
+     * Releases the passenger's active-ride marker set by the dispatch script so they can book again.
+     */
+    public void clearActiveRide(Region region, String passengerId) {
+        RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, shards.shardOf(region, passengerId),
+                ConsistencyLevel.STRONG);
+        String activeRideKey = PASSENGER_ACTIVE_RIDE_KEY_PREFIX + region.name().toLowerCase();
+        template.opsForHash().delete(activeRideKey, passengerId);
+    }
+
+    /**
+     * Writes a copy of the passenger with the given status, leaving the passenger passed in, which may be a
+     * near cache entry, untouched.
+     */
+    public void saveWithStatus(Region region, Passenger passenger, PassengerStatus status) {
+        write(region, passenger.getId(), valueWithStatus(region, passenger, status));
+    }
+
+    /**
+     * A copy of the passenger with the given status, serialized as stored, for the dispatch and archive
+     * scripts that write it along with the ride. {@link #written} must follow the script.
+     */
+    public byte[] valueWithStatus(Region region, Passenger passenger, PassengerStatus status) {
+        Passenger copy = new Passenger();
+        copy.setId(passenger.getId());
+        copy.setName(passenger.getName());
+        copy.setStatus(status);
+        copy.setLatitude(passenger.getLatitude());
+        copy.setLongitude(passenger.getLongitude());
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> passengerSerializer = (RedisSerializer<Object>) router.getPassengerTemplate(region, ConsistencyLevel.STRONG)
+                .getHashValueSerializer();
+        return passengerSerializer.serialize(copy);
+    }
+
+    /**
+     * Drops the near cache's copy of a passenger a script has written.
+     */
+    public void written(Region region, String id) {
+        nearCache.invalidatePassenger(region, id);
+    }
+
+    /**
+     * Keys a script writing a passenger needs, in the order {@code write_passenger.lua} takes them.
+     */
+    public static List<String> writeKeys(Region region) {
+        return List.of(PASSENGER_KEY_PREFIX + region.name().toLowerCase(), versionKey(region));
+    }
+
+    /**
+     * The channel a script writing a passenger publishes its id on, empty when the near cache is off.
+     */
+    public String eventChannel(Region region) {
+        return nearCache.passengerScriptArg(region);
     }
 
     public void delete(Region region, String id) {
-        RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, ConsistencyLevel.STRONG);
+        write(region, id, DELETED);
+    }
+
+    /**
+     * Key of the region's passenger version counters.
+     */
+    public static String versionKey(Region region) {
+        return PASSENGER_VERSION_KEY_PREFIX + region.name().toLowerCase();
+    }
+
+    private Passenger read(Region region, String id, ConsistencyLevel consistencyLevel) {
+        RedisTemplate<String, Passenger> template = router.getPassengerTemplate(region, shards.shardOf(region, id), consistencyLevel);
         String passengerKey = PASSENGER_KEY_PREFIX + region.name().toLowerCase();
-        template.opsForHash().delete(passengerKey, id);
+        return (Passenger) template.opsForHash().get(passengerKey, id);
+    }
+
+    private long version(Region region, String id, ConsistencyLevel consistencyLevel) {
+        Object version = router.getGeoTemplate(region, shards.shardOf(region, id), consistencyLevel).opsForHash().get(versionKey(region), id);
+        return version != null ? Long.parseLong((String) version) : 0;
+    }
+
+    // Arguments go over as raw bytes, since a binary passenger value is not valid UTF-8
+    private void write(Region region, String id, byte[] value) {
+        RedisSerializer<String> strings = RedisSerializer.string();
+        router.getGeoTemplate(region, shards.shardOf(region, id), ConsistencyLevel.STRONG).execute(RedisScripts.WRITE_PASSENGER,
+                RedisSerializer.byteArray(), LONG_RESULT,
+                writeKeys(region), strings.serialize(id), value, strings.serialize(eventChannel(region)));
+        nearCache.invalidatePassenger(region, id);
     }
 }
@@ -0,0 +1,106 @@
+package com.ashwani.repository;
+
+import com.ashwani.config.RegionResolutionProperties;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.geo.LocalDriverIndex;
+import com.ashwani.geo.RegionResolver;
+import com.ashwani.sharding.ReactiveShardedRedisTemplateRouter;
+import com.ashwani.sharding.RegionShards;
+import org.springframework.data.geo.Point;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.ashwani.constant.ApplicationConstant.DRIVER_KEY_PREFIX;
+
+/**
+ * Non-blocking counterpart of {@link DriverRepository} for location and status updates. Runs the same
+ * scripts on the same keys, so the same deltas are published, and keeps the in-process driver index in
+ * step the same way. Drivers of a region split into shards are looked up in its directory before every
+ * update, which the blocking repository does on the bounded elastic scheduler; so are region handoffs.
+ */
+@Repository
+public class ReactiveDriverRepository {
+
+    private final ReactiveShardedRedisTemplateRouter router;
+    private final LocalDriverIndex localDriverIndex;
+    private final DriverEventChannels eventChannels;
+    private final RegionShards shards;
+    private final DriverRepository driverRepository;
+    private final RegionResolver regionResolver;
+    private final RegionResolutionProperties regionResolutionProperties;
+
+    public ReactiveDriverRepository(ReactiveShardedRedisTemplateRouter router, LocalDriverIndex localDriverIndex,
+                                    DriverEventChannels eventChannels, RegionShards shards, DriverRepository driverRepository,
+                                    RegionResolver regionResolver, RegionResolutionProperties regionResolutionProperties) {
+        this.router = router;
+        this.localDriverIndex = localDriverIndex;
+        this.eventChannels = eventChannels;
+        this.shards = shards;
+        this.driverRepository = driverRepository;
+        this.regionResolver = regionResolver;
+        this.regionResolutionProperties = regionResolutionProperties;
+    }
+
+    /**
+     * Writes the driver's position in place on the region's master. Positions in another region's area,
+     * and drivers not found in the region, go through the blocking repository's handoff.
+     *
+     * @return whether the driver exists, in the region or the one it moved to, and was updated
+     */
+    public Mono<Boolean> updateDriverLocation(Region region, String driverId, Double longitude, Double latitude) {
+        boolean handoff = regionResolutionProperties.isHandoff();
+        Mono<Boolean> blocking = Mono.fromCallable(() -> !driverRepository.updateDriverLocations(region, Map.of(driverId, new Point(longitude, latitude))).isEmpty())
+                .subscribeOn(Schedulers.boundedElastic());
+        if (shards.isSharded(region) || handoff && crossesInto(region, longitude, latitude)) {
+            return blocking;
+        }
+        List<String> keys = new ArrayList<>(5);
+        keys.add(DRIVER_KEY_PREFIX + region.name().toLowerCase());
+        keys.addAll(DriverRepository.geoIndexKeys(region));
+        keys.add(DriverRepository.stateKey(region, driverId));
+        List<String> args = List.of(String.valueOf(System.currentTimeMillis()), eventChannels.scriptArg(region), driverId,
+                String.valueOf(longitude), String.valueOf(latitude));
+
+        return router.getGeoTemplate(region, ConsistencyLevel.STRONG)
+                .execute(RedisScripts.UPDATE_DRIVER_LOCATIONS, keys, args)
+                .next()
+                .map(applied -> ((Number) applied.get(0)).longValue() == 1L)
+                .doOnNext(updated -> {
+                    if (updated) {
+                        localDriverIndex.put(region, driverId, longitude, latitude, null);
+                    }
+                })
+                .flatMap(updated -> updated || !handoff ? Mono.just(updated) : blocking);
+    }
+
+    private boolean crossesInto(Region region, double longitude, double latitude) {
+        Region area = regionResolver.resolve(longitude, latitude);
+        return area != null && area != region;
+    }
+
+    /**
+     * Sets the driver's status in place and moves it to the GEO index of the new status.
+     */
+    public Mono<Void> updateDriverStatus(Region region, String driverId, DriverStatus status) {
+        if (shards.isSharded(region)) {
+            return Mono.<Void>fromRunnable(() -> driverRepository.updateDriverStatus(region, driverId, status))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        List<String> keys = new ArrayList<>(5);
+        keys.add(DRIVER_KEY_PREFIX + region.name().toLowerCase());
+        keys.addAll(DriverRepository.geoIndexKeys(region));
+        keys.add(DriverRepository.stateKey(region, driverId));
+
+        return router.getGeoTemplate(region, ConsistencyLevel.STRONG)
+                .execute(RedisScripts.UPDATE_DRIVER_STATUS, keys,
+                        List.of(driverId, status.name(), String.valueOf(System.currentTimeMillis()), eventChannels.scriptArg(region)))
+                .then(Mono.fromRunnable(() -> localDriverIndex.updateStatus(region, driverId, status)));
+    }
+}
@@ -0,0 +1,37 @@
+package com.ashwani.repository;
+
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.sharding.ReactiveShardedRedisTemplateRouter;
+import com.ashwani.sharding.RegionShards;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_KEY_PREFIX;
+
+/**
+ * Non-blocking counterpart of {@link PassengerRepository} for the booking path, on the same keys. Reads
+ * go to Redis directly; the passenger's status is written by the ride scripts that book and end rides.
+ */
+@Repository
+public class ReactivePassengerRepository {
+
+    private final ReactiveShardedRedisTemplateRouter router;
+    private final RegionShards shards;
+
+    public ReactivePassengerRepository(ReactiveShardedRedisTemplateRouter router, RegionShards shards) {
+        this.router = router;
+        this.shards = shards;
+    }
+
+    public Mono<Passenger> findById(Region region, String id, ConsistencyLevel consistencyLevel) {
+        String passengerKey = PASSENGER_KEY_PREFIX + region.name().toLowerCase();
+        return passengers(region, id, consistencyLevel).get(passengerKey, id);
+    }
+
+    private ReactiveHashOperations<String, String, Passenger> passengers(Region region, String id, ConsistencyLevel consistencyLevel) {
+        return router.getPassengerTemplate(region, shards.shardOf(region, id), consistencyLevel).opsForHash();
+    }
+}
@@ -0,0 +1,138 @@
+package com.ashwani.repository;
+
+import com.ashwani.dto.DispatchResult;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.sharding.ReactiveShardedRedisTemplateRouter;
+import com.ashwani.sharding.RegionShards;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static com.ashwani.constant.ApplicationConstant.RIDE_KEY_PREFIX;
+
+/**
+ * Non-blocking counterpart of {@link RideRepository} for booking and ending rides: the same dispatch,
+ * claim and archive scripts on the same hot hash and archive buckets. In a region split into shards,
+ * booking and ending a ride take several steps on different shards (see {@link RideRepository}), and are
+ * handed to the blocking repository on the bounded elastic scheduler.
+ */
+@Repository
+public class ReactiveRideRepository {
+
+    private static final RedisElementReader<Long> LONG_RESULT = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+    private static final RedisElementWriter<byte[]> RAW_ARGS = RedisElementWriter.from(RedisSerializer.byteArray());
+    // The elements of a script's list reply are read one by one with the result reader
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisElementReader<List> LIST_RESULT = (RedisElementReader) RedisElementReader.from(RedisSerializer.string());
+
+    private final ReactiveShardedRedisTemplateRouter router;
+    private final RideArchiveKeys archiveKeys;
+    private final RegionShards shards;
+    private final RideRepository rideRepository;
+
+    public ReactiveRideRepository(ReactiveShardedRedisTemplateRouter router, RideArchiveKeys archiveKeys, RegionShards shards,
+                                  RideRepository rideRepository) {
+        this.router = router;
+        this.archiveKeys = archiveKeys;
+        this.shards = shards;
+        this.rideRepository = rideRepository;
+    }
+
+    /**
+     * Books through the GEO search on the master, as {@link RideRepository#dispatch}.
+     */
+    public Mono<DispatchResult> dispatch(Region region, Ride ride, Passenger passenger, List<Double> ringsKm, int candidateCount) {
+        if (shards.isSharded(region)) {
+            return Mono.fromCallable(() -> rideRepository.dispatch(region, ride, passenger, ringsKm, candidateCount))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return router.getGeoTemplate(region, ConsistencyLevel.STRONG)
+                .execute(RedisScripts.DISPATCH_RIDE, RideRepository.dispatchKeys(region),
+                        rideRepository.dispatchArgs(region, ride, passenger, ringsKm, candidateCount), RAW_ARGS, LIST_RESULT)
+                .next()
+                .map(reply -> rideRepository.dispatched(region, ride, reply));
+    }
+
+    /**
+     * Claims the first still AVAILABLE candidate, as {@link RideRepository#claim}.
+     */
+    public Mono<DispatchResult> claim(Region region, Ride ride, Passenger passenger, List<String> candidateIds) {
+        if (shards.isSharded(region)) {
+            return Mono.fromCallable(() -> rideRepository.claim(region, ride, passenger, candidateIds))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        return router.getGeoTemplate(region, ConsistencyLevel.STRONG)
+                .execute(RedisScripts.CLAIM_DRIVER, RideRepository.dispatchKeys(region),
+                        rideRepository.claimArgs(region, ride, passenger, candidateIds), RAW_ARGS, LIST_RESULT)
+                .next()
+                .map(reply -> rideRepository.claimed(region, ride, candidateIds, reply));
+    }
+
+    /**
+     * Active ride from the hot hash only; empty if the ride is unknown or already archived.
+     */
+    public Mono<Ride> findActiveById(Region region, String id, ConsistencyLevel consistencyLevel) {
+        String rideKey = RIDE_KEY_PREFIX + region.name().toLowerCase();
+        return rides(region, id, consistencyLevel).get(rideKey, id);
+    }
+
+    /**
+     * Looks in the hot hash, then in the archive bucket the id points at, or the one of the other
+     * granularity if it is not there. Older ids without a start time look their bucket up in the bucket
+     * index first.
+     */
+    public Mono<Ride> findById(Region region, String id, ConsistencyLevel consistencyLevel) {
+        ReactiveHashOperations<String, String, Ride> rides = rides(region, id, consistencyLevel);
+        return findActiveById(region, id, consistencyLevel).switchIfEmpty(Mono.defer(() -> {
+            Long startTime = RideIds.startTime(id);
+            if (startTime != null) {
+                return rides.get(archiveKeys.archiveKey(region, startTime), id)
+                        .switchIfEmpty(Mono.defer(() -> rides.get(archiveKeys.fallbackArchiveKey(region, startTime), id)));
+            }
+            return router.getGeoTemplate(region, shards.shardOf(region, id), consistencyLevel).<String, String>opsForHash()
+                    .get(archiveKeys.bucketIndexKey(region), id)
+                    .flatMap(bucket -> rides.get(archiveKeys.archiveKey(region, bucket), id));
+        }));
+    }
+
+    /**
+     * Archives a finished ride and releases its passenger and driver, as {@link RideRepository#end}.
+     *
+     * @return false if the ride was no longer in the hot hash, e.g. ended concurrently
+     */
+    public Mono<Boolean> end(Region region, Ride ride, Passenger passenger) {
+        if (shards.isSharded(region)) {
+            return Mono.fromCallable(() -> rideRepository.end(region, ride, passenger))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+        ReactiveRedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, ConsistencyLevel.STRONG);
+        byte[] value = ByteUtils.getBytes(rideTemplate.getSerializationContext().getHashValueSerializationPair().write(ride));
+        return router.getGeoTemplate(region, ConsistencyLevel.STRONG)
+                .execute(RedisScripts.ARCHIVE_RIDE, rideRepository.archiveScriptKeys(region, ride, true),
+                        rideRepository.archiveScriptArgs(region, ride, value, passenger, true), RAW_ARGS, LONG_RESULT)
+                .next()
+                .map(moved -> moved == 1L)
+                .defaultIfEmpty(false)
+                .doOnNext(moved -> {
+                    if (moved) {
+                        rideRepository.ended(region, ride);
+                    }
+                });
+    }
+
+    private ReactiveHashOperations<String, String, Ride> rides(Region region, String id, ConsistencyLevel consistencyLevel) {
+        return router.getRideTemplate(region, shards.shardOf(region, id), consistencyLevel).opsForHash();
+    }
+}
@@ -0,0 +1,34 @@
+package com.ashwani.repository;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Lua scripts used by the repositories, loaded from {@code classpath:scripts/}.
+ * They run with EVALSHA and fall back to EVAL the first time a node sees them.
+ */
+final class RedisScripts {
+
+    static final RedisScript<List> UPDATE_DRIVER_LOCATIONS = load("update_driver_locations.lua", List.class);
+    static final RedisScript<Long> UPDATE_DRIVER_STATUS = load("update_driver_status.lua", Long.class);
+    static final RedisScript<List> DISPATCH_RIDE = load("dispatch_ride.lua", List.class);
+    static final RedisScript<List> CLAIM_DRIVER = load("claim_driver.lua", List.class);
+    static final RedisScript<Long> ARCHIVE_RIDE = load("archive_ride.lua", Long.class);
+    static final RedisScript<Long> PARTITION_DRIVER_GEO = load("partition_driver_geo.lua", Long.class);
+    static final RedisScript<Long> WRITE_PASSENGER = load("write_passenger.lua", Long.class);
+    static final RedisScript<List> DETACH_DRIVER = load("detach_driver.lua", List.class);
+    static final RedisScript<Long> ATTACH_DRIVER = load("attach_driver.lua", Long.class);
+    static final RedisScript<List> CLAIM_SHARD_DRIVER = load("claim_shard_driver.lua", List.class);
+    static final RedisScript<Long> RELEASE_PASSENGER_RIDE = load("release_passenger_ride.lua", Long.class);
+    static final RedisScript<List> BEGIN_DRIVER_HANDOFF = load("begin_driver_handoff.lua", List.class);
+    static final RedisScript<Long> FINISH_DRIVER_HANDOFF = load("finish_driver_handoff.lua", Long.class);
+
+    private RedisScripts() {
+    }
+
+    private static <T> RedisScript<T> load(String name, Class<T> resultType) {
+        return RedisScript.of(new ClassPathResource("scripts/" + name), resultType);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ashwani.repository;
+
+import com.ashwani.config.RideArchiveProperties;
+import com.ashwani.enums.Region;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import static com.ashwani.constant.ApplicationConstant.RIDE_ARCHIVE_BUCKET_KEY_PREFIX;
+import static com.ashwani.constant.ApplicationConstant.RIDE_ARCHIVE_KEY_PREFIX;
+
+/**
+ * Names and lifetimes of the ride archive buckets, shared by the blocking and reactive ride repositories.
+ */
+@Component
+class RideArchiveKeys {
+
+    private static final DateTimeFormatter DAY_BUCKET = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter HOUR_BUCKET = DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+
+    private final RideArchiveProperties archiveProperties;
+
+    RideArchiveKeys(RideArchiveProperties archiveProperties) {
+        this.archiveProperties = archiveProperties;
+    }
+
+    String archiveKey(Region region, long startTimeMillis) {
+        return RIDE_ARCHIVE_KEY_PREFIX + region.name().toLowerCase() + ":" + bucket(startTimeMillis);
+    }
+
+    String bucket(long startTimeMillis) {
+        return bucketFormat().format(Instant.ofEpochMilli(startTimeMillis));
+    }
+
+    /**
+     * Key of the bucket the ride would be in under the other granularity, where rides archived before
+     * {@code ride.rides.archive.bucket} was switched still are until they expire.
+     */
+    String fallbackArchiveKey(Region region, long startTimeMillis) {
+        DateTimeFormatter other = bucketFormat() == DAY_BUCKET ? HOUR_BUCKET : DAY_BUCKET;
+        return RIDE_ARCHIVE_KEY_PREFIX + region.name().toLowerCase() + ":" + other.format(Instant.ofEpochMilli(startTimeMillis));
+    }
+
+    /**
+     * Hash of archived ride id to bucket, for the ids that carry no start time. It only grows with rides
+     * created before time-ordered ids, and an entry may outlive its expired bucket.
+     */
+    String bucketIndexKey(Region region) {
+        return RIDE_ARCHIVE_BUCKET_KEY_PREFIX + region.name().toLowerCase();
+    }
+
+    /**
+     * Key of the bucket named in a request, {@code yyyyMMdd} or {@code yyyyMMddHH}.
+     */
+    String archiveKey(Region region, String bucket) {
+        if (!bucket.matches("\\d{8}|\\d{10}")) {
+            throw new IllegalArgumentException("Invalid archive bucket: " + bucket);
+        }
+        return RIDE_ARCHIVE_KEY_PREFIX + region.name().toLowerCase() + ":" + bucket;
+    }
+
+    // The bucket closes at the end of its hour or day and is kept for the retention after that
+    long archiveExpiresAt(long startTimeMillis) {
+        if (archiveProperties.getRetention().isZero()) {
+            return 0;
+        }
+        ChronoUnit unit = archiveProperties.getBucket();
+        Instant bucketEnd = Instant.ofEpochMilli(startTimeMillis).truncatedTo(unit).plus(1, unit);
+        return bucketEnd.plus(archiveProperties.getRetention()).toEpochMilli();
+    }
+
+    private DateTimeFormatter bucketFormat() {
+        return switch (archiveProperties.getBucket()) {
+            case HOURS -> HOUR_BUCKET;
+            case DAYS -> DAY_BUCKET;
+            default -> throw new IllegalStateException("ride.rides.archive.bucket must be HOURS or DAYS");
+        };
+    }
+}
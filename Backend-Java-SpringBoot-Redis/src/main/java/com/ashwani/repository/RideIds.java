@@ -0,0 +1,34 @@
+package com.ashwani.repository;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ride ids are version 7 UUIDs: the first 48 bits are the ride's start time in epoch millis, so the
+ * archive bucket of a finished ride can be computed from its id alone. Rides created before this
+ * scheme have random (version 4) ids and carry no time.
+ */
+public final class RideIds {
+
+    private RideIds() {
+    }
+
+    public static String newId(long startTimeMillis) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSignificant = (startTimeMillis << 16) | 0x7000L | (random.nextLong() & 0x0FFFL);
+        long leastSignificant = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificant, leastSignificant).toString();
+    }
+
+    /**
+     * @return the start time embedded in the id, or null for ids that are not version 7 UUIDs
+     */
+    public static Long startTime(String rideId) {
+        try {
+            UUID uuid = UUID.fromString(rideId);
+            return uuid.version() == 7 ? uuid.getMostSignificantBits() >>> 16 : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
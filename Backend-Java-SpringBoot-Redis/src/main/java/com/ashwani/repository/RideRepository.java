@@ -1,81 +1,592 @@
 package com.ashwani.repository;
 
-import com.ashwani.entity.Driver;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dto.DispatchResult;
+import com.ashwani.entity.Passenger;
 import com.ashwani.entity.Ride;
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
 import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.geo.LocalDriverIndex;
+import com.ashwani.metrics.HotPathMetrics;
+import com.ashwani.sharding.RegionShards;
 import com.ashwani.sharding.ShardedRedisTemplateRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoSearchCommandArgs;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import static com.ashwani.constant.ApplicationConstant.*;
 
+/**
+ * Rides live in two places:
+ * <ul>
+ *     <li>{@code rides:<region>} - hot hash of the rides still in progress, written by the dispatch scripts.</li>
+ *     <li>{@code rides:archive:<region>:<bucket>} - finished rides, one hash per hour or day of ride start
+ *     time (UTC), each expiring once the configured retention has passed.</li>
+ * </ul>
+ * The hot hash only ever holds active rides, so it stays small however much history accumulates.
+ * Lookups by id check it first, then the archive bucket derived from the id (see {@link RideIds}).
+ * <p>
+ * In a region split into shards a ride lives on the shard its id hashes to, and bookings can no longer
+ * run as one script: the passenger's active-ride marker is taken first on the passenger's shard, the
+ * driver is claimed on the shard holding it, then the ride is written on its own shard and the passenger
+ * on theirs. A booking that fails part way gives back what it took. Ending a ride there likewise archives
+ * it first and then releases the passenger and driver one by one. Nearest-driver searches only visit the
+ * shards owning the cells each search ring overlaps.
+ */
 @Repository
 public class RideRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(RideRepository.class);
 
+    private static final int SCAN_BATCH = 1000;
+    private static final RedisSerializer<Long> LONG_RESULT = new GenericToStringSerializer<>(Long.class);
+    // The elements of a script's list reply are read one by one with the result serializer
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisSerializer<List> LIST_RESULT = (RedisSerializer) RedisSerializer.string();
+
     private final ShardedRedisTemplateRouter router;
+    private final LocalDriverIndex localDriverIndex;
+    private final RideArchiveKeys archiveKeys;
+    private final DriverEventChannels eventChannels;
+    private final RegionShards shards;
+    private final DriverRepository driverRepository;
+    private final PassengerRepository passengerRepository;
+    private final HotPathMetrics hotPathMetrics;
 
-    public RideRepository(ShardedRedisTemplateRouter router) {
+    public RideRepository(ShardedRedisTemplateRouter router, LocalDriverIndex localDriverIndex, RideArchiveKeys archiveKeys,
+                          DriverEventChannels eventChannels, RegionShards shards, DriverRepository driverRepository,
+                          PassengerRepository passengerRepository, HotPathMetrics hotPathMetrics) {
         this.router = router;
+        this.localDriverIndex = localDriverIndex;
+        this.archiveKeys = archiveKeys;
+        this.eventChannels = eventChannels;
+        this.shards = shards;
+        this.driverRepository = driverRepository;
+        this.passengerRepository = passengerRepository;
+        this.hotPathMetrics = hotPathMetrics;
     }
 
+    /**
+     * Writes an active ride to the hot hash.
+     */
     public void save(Region region, Ride ride) {
-        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, ConsistencyLevel.STRONG);
+        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, shards.shardOf(region, ride.getId()), ConsistencyLevel.STRONG);
         String rideKey = RIDE_KEY_PREFIX + region.name().toLowerCase();
         rideTemplate.opsForHash().put(rideKey, ride.getId(), ride);
     }
 
-    public void updateDriverStatus(Region region, String driverId, DriverStatus status) {
-        RedisTemplate<String, Driver> driverTemplate = router.getDriverTemplate(region, ConsistencyLevel.STRONG);
-        String driverKey = DRIVER_KEY_PREFIX + region.name().toLowerCase();
-        Driver driver = (Driver) driverTemplate.opsForHash().get(driverKey, driverId);
+    /**
+     * Runs the whole booking on the region's master as one script: picks the nearest driver from the
+     * AVAILABLE GEO index, flips it to ON_RIDE, stores the ride, records it as the passenger's active ride
+     * and writes the passenger as ON_RIDE. Concurrent bookings are serialized by Redis, so a driver can
+     * never be claimed twice. The ride's driver id is filled in from the script's answer.
+     *
+     * @param passenger      the passenger booking, searched around and written back with status ON_RIDE
+     * @param ringsKm        search radii, smallest first; the script stops at the first ring with a claimable driver
+     * @param candidateCount nearest candidates fetched per ring
+     */
+    public DispatchResult dispatch(Region region, Ride ride, Passenger passenger, List<Double> ringsKm, int candidateCount) {
+        if (shards.isSharded(region)) {
+            return dispatchAcrossShards(region, ride, passenger, ringsKm, candidateCount);
+        }
+        List<?> reply = router.getGeoTemplate(region, ConsistencyLevel.STRONG).execute(RedisScripts.DISPATCH_RIDE,
+                RedisSerializer.byteArray(), LIST_RESULT, dispatchKeys(region), dispatchArgs(region, ride, passenger, ringsKm, candidateCount).toArray());
+        return dispatched(region, ride, reply);
+    }
+
+    // Arguments of dispatch_ride.lua, as raw bytes since a binary passenger value is not valid UTF-8
+    List<byte[]> dispatchArgs(Region region, Ride ride, Passenger passenger, List<Double> ringsKm, int candidateCount) {
+        RedisSerializer<String> strings = RedisSerializer.string();
+        List<byte[]> args = new ArrayList<>(10 + ringsKm.size());
+        args.add(strings.serialize(ride.getPassengerId()));
+        args.add(strings.serialize(String.valueOf(passenger.getLongitude())));
+        args.add(strings.serialize(String.valueOf(passenger.getLatitude())));
+        args.add(strings.serialize(String.valueOf(candidateCount)));
+        args.add(strings.serialize(ride.getId()));
+        args.add(strings.serialize(String.valueOf(ride.getStartTime())));
+        args.add(strings.serialize(DRIVER_STATE_KEY_PREFIX + region.name().toLowerCase() + ":"));
+        args.add(strings.serialize(eventChannels.scriptArg(region)));
+        args.add(passengerRepository.valueWithStatus(region, passenger, PassengerStatus.ON_RIDE));
+        args.add(strings.serialize(passengerRepository.eventChannel(region)));
+        ringsKm.forEach(radius -> args.add(strings.serialize(String.valueOf(radius))));
+        return args;
+    }
+
+    // Applies the answer of dispatch_ride.lua
+    DispatchResult dispatched(Region region, Ride ride, List<?> reply) {
+        DispatchResult.Outcome outcome = DispatchResult.Outcome.valueOf((String) reply.get(0));
+        String driverId = (String) reply.get(1);
+        int ringsTried = ((Number) reply.get(2)).intValue();
+        int scanned = ((Number) reply.get(3)).intValue();
+        if (outcome == DispatchResult.Outcome.OK) {
+            booked(region, ride, driverId);
+        }
+        logger.info("Dispatch for passenger {} in region {}: {} {} after {} rings", ride.getPassengerId(), region, outcome, driverId, ringsTried);
+        return new DispatchResult(outcome, driverId, ringsTried, scanned);
+    }
+
+    /**
+     * Same booking as {@link #dispatch} but without the GEO search: claims the first of the given
+     * candidates that is still AVAILABLE on the master. Candidates passed over are dropped from the
+     * local index's AVAILABLE set, since they were picked from a stale copy.
+     *
+     * @param candidateIds driver ids, preferred first, usually from {@link LocalDriverIndex#nearestAvailable}
+     */
+    public DispatchResult claim(Region region, Ride ride, Passenger passenger, List<String> candidateIds) {
+        if (shards.isSharded(region)) {
+            return claimAcrossShards(region, ride, passenger, candidateIds);
+        }
+        List<?> reply = router.getGeoTemplate(region, ConsistencyLevel.STRONG).execute(RedisScripts.CLAIM_DRIVER,
+                RedisSerializer.byteArray(), LIST_RESULT, dispatchKeys(region), claimArgs(region, ride, passenger, candidateIds).toArray());
+        return claimed(region, ride, candidateIds, reply);
+    }
+
+    // Arguments of claim_driver.lua, as raw bytes since a binary passenger value is not valid UTF-8
+    List<byte[]> claimArgs(Region region, Ride ride, Passenger passenger, List<String> candidateIds) {
+        RedisSerializer<String> strings = RedisSerializer.string();
+        List<byte[]> args = new ArrayList<>(7 + candidateIds.size());
+        args.add(strings.serialize(ride.getPassengerId()));
+        args.add(strings.serialize(ride.getId()));
+        args.add(strings.serialize(String.valueOf(ride.getStartTime())));
+        args.add(strings.serialize(DRIVER_STATE_KEY_PREFIX + region.name().toLowerCase() + ":"));
+        args.add(strings.serialize(eventChannels.scriptArg(region)));
+        args.add(passengerRepository.valueWithStatus(region, passenger, PassengerStatus.ON_RIDE));
+        args.add(strings.serialize(passengerRepository.eventChannel(region)));
+        candidateIds.forEach(id -> args.add(strings.serialize(id)));
+        return args;
+    }
+
+    // Applies the answer of claim_driver.lua
+    DispatchResult claimed(Region region, Ride ride, List<String> candidateIds, List<?> reply) {
+        DispatchResult.Outcome outcome = DispatchResult.Outcome.valueOf((String) reply.get(0));
+        String driverId = (String) reply.get(1);
+        int skipped = ((Number) reply.get(2)).intValue();
+        if (skipped > 0) {
+            localDriverIndex.invalidateStatus(region, candidateIds.subList(0, skipped));
+        }
+        if (outcome == DispatchResult.Outcome.OK) {
+            booked(region, ride, driverId);
+        }
+        logger.info("Claim for passenger {} in region {}: {} {} after skipping {} of {} candidates",
+                ride.getPassengerId(), region, outcome, driverId, skipped, candidateIds.size());
+        return new DispatchResult(outcome, driverId, 0, outcome == DispatchResult.Outcome.OK ? skipped + 1 : skipped);
+    }
 
-        if (driver != null) {
-            driver.setStatus(status);
-            driverTemplate.opsForHash().put(driverKey, driverId, driver);
+    private void booked(Region region, Ride ride, String driverId) {
+        ride.setDriverId(driverId);
+        localDriverIndex.updateStatus(region, driverId, DriverStatus.ON_RIDE);
+        passengerRepository.written(region, ride.getPassengerId());
+    }
 
-            if (DriverStatus.AVAILABLE.equals(status)) {
-                RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
-                String driverGeoKey = DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase();
-                geoTemplate.opsForGeo().add(driverGeoKey, new Point(driver.getLongitude(), driver.getLatitude()), driver.getId());
-                logger.info("Driver {} re-added to GEO index with location ({}, {}) in region {}", driverId, driver.getLongitude(), driver.getLatitude(), region);
+    private DispatchResult dispatchAcrossShards(Region region, Ride ride, Passenger passenger, List<Double> ringsKm, int candidateCount) {
+        if (!holdActiveRide(region, ride)) {
+            return new DispatchResult(DispatchResult.Outcome.PASSENGER_ON_RIDE, null, 0, 0);
+        }
+        int rings = 0;
+        int scanned = 0;
+        String driverId = null;
+        try {
+            for (Double radius : ringsKm) {
+                rings++;
+                List<Candidate> candidates = nearestAcrossShards(region, passenger.getLatitude(), passenger.getLongitude(), radius,
+                                candidateCount, ConsistencyLevel.STRONG).stream()
+                        .map(result -> new Candidate(result.shard(), result.location().getContent().getName()))
+                        .toList();
+                Claim claim = claimInOrder(region, candidates, ride.getStartTime());
+                driverId = claim.driverId();
+                scanned += driverId != null ? claim.skipped() + 1 : claim.skipped();
+                if (driverId != null) {
+                    break;
+                }
             }
+        } catch (RuntimeException e) {
+            throw abandonBooking(region, ride, e);
         }
+        DispatchResult.Outcome outcome = finishBooking(region, ride, passenger, driverId);
+        logger.info("Dispatch for passenger {} in region {}: {} {} after {} rings", ride.getPassengerId(), region, outcome, driverId, rings);
+        return new DispatchResult(outcome, driverId, rings, scanned);
     }
 
-    public List<Ride> findAll(Region region, ConsistencyLevel consistencyLevel) {
-        logger.info("Fetching all rides with {} consistency in region {}", consistencyLevel, region);
-        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, consistencyLevel);
+    private DispatchResult claimAcrossShards(Region region, Ride ride, Passenger passenger, List<String> candidateIds) {
+        if (!holdActiveRide(region, ride)) {
+            return new DispatchResult(DispatchResult.Outcome.PASSENGER_ON_RIDE, null, 0, 0);
+        }
+        Claim claim;
+        try {
+            int[] stateShards = driverRepository.stateShards(region, candidateIds, ConsistencyLevel.STRONG);
+            List<Candidate> candidates = new ArrayList<>(candidateIds.size());
+            for (int i = 0; i < candidateIds.size(); i++) {
+                candidates.add(new Candidate(stateShards[i], candidateIds.get(i)));
+            }
+            claim = claimInOrder(region, candidates, ride.getStartTime());
+        } catch (RuntimeException e) {
+            throw abandonBooking(region, ride, e);
+        }
+        if (claim.skipped() > 0) {
+            localDriverIndex.invalidateStatus(region, candidateIds.subList(0, claim.skipped()));
+        }
+        DispatchResult.Outcome outcome = finishBooking(region, ride, passenger, claim.driverId());
+        logger.info("Claim for passenger {} in region {}: {} {} after skipping {} of {} candidates",
+                ride.getPassengerId(), region, outcome, claim.driverId(), claim.skipped(), candidateIds.size());
+        return new DispatchResult(outcome, claim.driverId(), 0, claim.driverId() != null ? claim.skipped() + 1 : claim.skipped());
+    }
+
+    // Claims the first candidate still AVAILABLE, one script per run of consecutive candidates on the same shard
+    private Claim claimInOrder(Region region, List<Candidate> candidates, long startTime) {
+        String statePrefix = DRIVER_STATE_KEY_PREFIX + region.name().toLowerCase() + ":";
+        List<String> keys = List.of(DriverRepository.geoIndexKey(region, DriverStatus.AVAILABLE),
+                DriverRepository.geoIndexKey(region, DriverStatus.ON_RIDE));
+        int skipped = 0;
+        int from = 0;
+        while (from < candidates.size()) {
+            int shard = candidates.get(from).shard();
+            int to = from + 1;
+            while (to < candidates.size() && candidates.get(to).shard() == shard) {
+                to++;
+            }
+            if (shard >= 0) {
+                List<String> args = new ArrayList<>(3 + to - from);
+                args.add(String.valueOf(startTime));
+                args.add(statePrefix);
+                args.add(eventChannels.scriptArg(region));
+                candidates.subList(from, to).forEach(candidate -> args.add(candidate.driverId()));
+                List<?> reply = router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG)
+                        .execute(RedisScripts.CLAIM_SHARD_DRIVER, keys, args.toArray());
+                skipped += ((Number) reply.get(1)).intValue();
+                if (reply.get(0) != null) {
+                    return new Claim((String) reply.get(0), skipped);
+                }
+            } else {
+                skipped += to - from;     // Never placed on any shard
+            }
+            from = to;
+        }
+        return new Claim(null, skipped);
+    }
+
+    // Takes the passenger's active-ride marker for this ride; false when they already have one
+    private boolean holdActiveRide(Region region, Ride ride) {
+        Boolean held = router.getGeoTemplate(region, shards.shardOf(region, ride.getPassengerId()), ConsistencyLevel.STRONG)
+                .opsForHash().putIfAbsent(PASSENGER_ACTIVE_RIDE_KEY_PREFIX + region.name().toLowerCase(), ride.getPassengerId(), ride.getId());
+        return Boolean.TRUE.equals(held);
+    }
+
+    // Writes the ride, then the passenger, once a driver is claimed; gives back the marker, and the driver, when
+    // the ride cannot be written
+    private DispatchResult.Outcome finishBooking(Region region, Ride ride, Passenger passenger, String driverId) {
+        try {
+            if (driverId == null) {
+                releaseActiveRide(region, ride);
+                return DispatchResult.Outcome.NO_AVAILABLE_DRIVERS;
+            }
+            ride.setDriverId(driverId);
+            save(region, ride);
+        } catch (RuntimeException e) {
+            if (driverId != null) {
+                driverRepository.updateDriverStatus(region, driverId, DriverStatus.AVAILABLE);
+                releaseActiveRide(region, ride);
+                ride.setDriverId(null);
+            }
+            throw e;
+        }
+        localDriverIndex.updateStatus(region, driverId, DriverStatus.ON_RIDE);
+        passengerRepository.saveWithStatus(region, passenger, PassengerStatus.ON_RIDE);
+        return DispatchResult.Outcome.OK;
+    }
+
+    // Gives back the marker when the search or claim fails before any driver is held, keeping the original failure
+    private RuntimeException abandonBooking(Region region, Ride ride, RuntimeException failure) {
+        try {
+            releaseActiveRide(region, ride);
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    private void releaseActiveRide(Region region, Ride ride) {
+        router.getGeoTemplate(region, shards.shardOf(region, ride.getPassengerId()), ConsistencyLevel.STRONG)
+                .execute(RedisScripts.RELEASE_PASSENGER_RIDE, List.of(PASSENGER_ACTIVE_RIDE_KEY_PREFIX + region.name().toLowerCase()),
+                        ride.getPassengerId(), ride.getId());
+    }
+
+    // Nearest AVAILABLE drivers within the radius on every shard owning a cell the circle overlaps, closest first
+    private List<ShardResult> nearestAcrossShards(Region region, Double lat, Double lon, double radiusKm, int candidateCount,
+                                                  ConsistencyLevel consistencyLevel) {
+        String driverGeoKey = DriverRepository.geoIndexKey(region, DriverStatus.AVAILABLE);
+        GeoSearchCommandArgs args = GeoSearchCommandArgs.newGeoSearchArgs()
+                .includeDistance()
+                .sortAscending()
+                .limit(candidateCount);
+        List<ShardResult> merged = new ArrayList<>();
+        for (int shard : shards.shardsNear(region, lon, lat, radiusKm)) {
+            GeoResults<GeoLocation<String>> results = router.getGeoTemplate(region, shard, consistencyLevel).opsForGeo()
+                    .search(driverGeoKey, GeoReference.fromCoordinate(lon, lat), new Distance(radiusKm, Metrics.KILOMETERS), args);
+            if (results != null) {
+                results.getContent().forEach(result -> merged.add(new ShardResult(shard, result)));
+            }
+        }
+        merged.sort(Comparator.comparingDouble(result -> result.location().getDistance().getValue()));
+        return merged.size() > candidateCount ? merged.subList(0, candidateCount) : merged;
+    }
+
+    private record Candidate(int shard, String driverId) {
+    }
+
+    private record Claim(String driverId, int skipped) {
+    }
+
+    private record ShardResult(int shard, GeoResult<GeoLocation<String>> location) {
+    }
+
+    // In the order dispatch_ride.lua and claim_driver.lua expect
+    static List<String> dispatchKeys(Region region) {
+        String regionName = region.name().toLowerCase();
+        List<String> keys = new ArrayList<>(6);
+        keys.add(RIDE_KEY_PREFIX + regionName);
+        keys.add(DriverRepository.geoIndexKey(region, DriverStatus.AVAILABLE));
+        keys.add(DriverRepository.geoIndexKey(region, DriverStatus.ON_RIDE));
+        keys.add(PASSENGER_ACTIVE_RIDE_KEY_PREFIX + regionName);
+        keys.addAll(PassengerRepository.writeKeys(region));
+        return keys;
+    }
+
+    /**
+     * One HSCAN page of the region's active rides.
+     *
+     * @param cursor {@link CursorPage#FIRST} or the cursor returned with the previous page
+     * @param count  approximate page size
+     */
+    public CursorPage<Ride> findPage(Region region, String cursor, int count, ConsistencyLevel consistencyLevel) {
+        logger.debug("Scanning rides from cursor {} with {} consistency in region {}", cursor, consistencyLevel, region);
         String rideKey = RIDE_KEY_PREFIX + region.name().toLowerCase();
-        return rideTemplate.opsForHash().values(rideKey).stream()
-                .map(obj -> (Ride) obj)
-                .collect(Collectors.toList());
+        return HashScan.page(shard -> router.getRideTemplate(region, shard, consistencyLevel), shards.count(region), rideKey, cursor, count);
+    }
+
+    /**
+     * One HSCAN page of an archive bucket.
+     *
+     * @param bucket bucket suffix as it appears in the key, {@code yyyyMMdd} or {@code yyyyMMddHH}
+     */
+    public CursorPage<Ride> findArchivePage(Region region, String bucket, String cursor, int count, ConsistencyLevel consistencyLevel) {
+        return HashScan.page(shard -> router.getRideTemplate(region, shard, consistencyLevel), shards.count(region),
+                archiveKeys.archiveKey(region, bucket), cursor, count);
     }
 
+    /**
+     * Active ride from the hot hash only; null if the ride is unknown or already archived.
+     */
+    public Ride findActiveById(Region region, String id, ConsistencyLevel consistencyLevel) {
+        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, shards.shardOf(region, id), consistencyLevel);
+        String rideKey = RIDE_KEY_PREFIX + region.name().toLowerCase();
+        return (Ride) rideTemplate.opsForHash().get(rideKey, id);
+    }
+
+    /**
+     * Looks in the hot hash, then in the archive. Ids with an embedded start time cost one extra HGET
+     * on the bucket they belong to, and one more on a miss for the bucket of the other granularity; older
+     * ids first look their bucket up in the bucket index.
+     */
     public Ride findById(Region region, String id, ConsistencyLevel consistencyLevel) {
         logger.info("Fetching ride {} with {} consistency in region {}", id, consistencyLevel, region);
-        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, consistencyLevel);
+        Ride ride = findActiveById(region, id, consistencyLevel);
+        if (ride != null) {
+            return ride;
+        }
+
+        RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, shards.shardOf(region, id), consistencyLevel);
+        Long startTime = RideIds.startTime(id);
+        if (startTime != null) {
+            Ride archived = (Ride) rideTemplate.opsForHash().get(archiveKeys.archiveKey(region, startTime), id);
+            return archived != null ? archived
+                    : (Ride) rideTemplate.opsForHash().get(archiveKeys.fallbackArchiveKey(region, startTime), id);
+        }
+        Object bucket = router.getGeoTemplate(region, shards.shardOf(region, id), consistencyLevel).opsForHash()
+                .get(archiveKeys.bucketIndexKey(region), id);
+        return bucket != null ? (Ride) rideTemplate.opsForHash().get(archiveKeys.archiveKey(region, (String) bucket), id) : null;
+    }
+
+    /**
+     * Moves a finished ride from the hot hash into the archive bucket of its start time.
+     *
+     * @return false if the ride was no longer in the hot hash, e.g. ended concurrently
+     */
+    public boolean archive(Region region, Ride ride) {
+        return runArchive(region, ride, null, false);
+    }
+
+    /**
+     * Archives a finished ride and releases its passenger and driver: the passenger is written as ONLINE
+     * and their active-ride marker released, and the driver is set AVAILABLE. Outside split regions this
+     * is one script on the region's master, so a ride is never archived with its passenger or driver
+     * still held.
+     *
+     * @param passenger the ride's passenger as last read, null if it no longer exists
+     * @return false if the ride was no longer in the hot hash, e.g. ended concurrently
+     */
+    public boolean end(Region region, Ride ride, Passenger passenger) {
+        if (!shards.isSharded(region)) {
+            if (!runArchive(region, ride, passenger, true)) {
+                return false;
+            }
+            ended(region, ride);
+            return true;
+        }
+        if (!archive(region, ride)) {
+            return false;
+        }
+        if (passenger != null) {
+            passengerRepository.saveWithStatus(region, passenger, PassengerStatus.ONLINE);
+        }
+        releaseActiveRide(region, ride);
+        driverRepository.updateDriverStatus(region, ride.getDriverId(), DriverStatus.AVAILABLE);
+        return true;
+    }
+
+    private boolean runArchive(Region region, Ride ride, Passenger passenger, boolean release) {
+        int shard = shards.shardOf(region, ride.getId());
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> rideSerializer = (RedisSerializer<Object>) router.getRideTemplate(region, shard, ConsistencyLevel.STRONG)
+                .getHashValueSerializer();
+        Long moved = router.getGeoTemplate(region, shard, ConsistencyLevel.STRONG).execute(RedisScripts.ARCHIVE_RIDE,
+                RedisSerializer.byteArray(), LONG_RESULT, archiveScriptKeys(region, ride, release),
+                archiveScriptArgs(region, ride, rideSerializer.serialize(ride), passenger, release).toArray());
+        return moved != null && moved == 1L;
+    }
+
+    // Keys of archive_ride.lua; releasing the passenger and driver adds theirs, which must be on the ride's node
+    List<String> archiveScriptKeys(Region region, Ride ride, boolean release) {
+        String regionName = region.name().toLowerCase();
+        List<String> keys = new ArrayList<>(11);
+        keys.add(RIDE_KEY_PREFIX + regionName);
+        keys.add(archiveKeys.archiveKey(region, startTimeOf(ride)));
+        keys.add(archiveKeys.bucketIndexKey(region));
+        if (release) {
+            keys.add(PASSENGER_ACTIVE_RIDE_KEY_PREFIX + regionName);
+            keys.addAll(PassengerRepository.writeKeys(region));
+            keys.add(DRIVER_KEY_PREFIX + regionName);
+            keys.addAll(DriverRepository.geoIndexKeys(region));
+            keys.add(DriverRepository.stateKey(region, ride.getDriverId()));
+        }
+        return keys;
+    }
+
+    // Arguments of archive_ride.lua, as raw bytes since binary ride and passenger values are not valid UTF-8
+    List<byte[]> archiveScriptArgs(Region region, Ride ride, byte[] rideValue, Passenger passenger, boolean release) {
+        RedisSerializer<String> strings = RedisSerializer.string();
+        long startTime = startTimeOf(ride);
+        List<byte[]> args = new ArrayList<>(10);
+        args.add(strings.serialize(ride.getId()));
+        args.add(rideValue);
+        args.add(strings.serialize(String.valueOf(archiveKeys.archiveExpiresAt(startTime))));
+        // Ids without a start time find their bucket through the bucket index
+        args.add(strings.serialize(RideIds.startTime(ride.getId()) == null ? archiveKeys.bucket(startTime) : ""));
+        if (release) {
+            args.add(strings.serialize(ride.getPassengerId()));
+            args.add(passenger != null ? passengerRepository.valueWithStatus(region, passenger, PassengerStatus.ONLINE) : new byte[0]);
+            args.add(strings.serialize(passengerRepository.eventChannel(region)));
+            args.add(strings.serialize(ride.getDriverId()));
+            args.add(strings.serialize(String.valueOf(System.currentTimeMillis())));
+            args.add(strings.serialize(eventChannels.scriptArg(region)));
+        } else {
+            args.add(new byte[0]);
+        }
+        return args;
+    }
+
+    // Follows a successful archive_ride.lua run that released the passenger and driver
+    void ended(Region region, Ride ride) {
+        localDriverIndex.updateStatus(region, ride.getDriverId(), DriverStatus.AVAILABLE);
+        passengerRepository.written(region, ride.getPassengerId());
+    }
+
+    private static long startTimeOf(Ride ride) {
+        return ride.getStartTime() != null ? ride.getStartTime() : System.currentTimeMillis();
+    }
+
+    /**
+     * Moves the COMPLETED and CANCELLED rides left in the hot hash by earlier versions into the archive.
+     * Rides whose bucket is already past retention are dropped by the bucket's expiry.
+     *
+     * @return number of rides archived
+     */
+    public long archiveFinishedRides(Region region) {
         String rideKey = RIDE_KEY_PREFIX + region.name().toLowerCase();
-        return (Ride) rideTemplate.opsForHash().get(rideKey, id);
+        long archived = 0;
+        for (int shard = 0; shard < shards.count(region); shard++) {
+            RedisTemplate<String, Ride> rideTemplate = router.getRideTemplate(region, shard, ConsistencyLevel.STRONG);
+            // HSCAN still returns every field that is not deleted during the scan, so rides can be moved as they are seen
+            try (Cursor<Map.Entry<Object, Object>> cursor = rideTemplate.opsForHash()
+                    .scan(rideKey, ScanOptions.scanOptions().count(SCAN_BATCH).build())) {
+                while (cursor.hasNext()) {
+                    Ride ride = (Ride) cursor.next().getValue();
+                    boolean finished = ride.getStatus() == RideStatus.COMPLETED || ride.getStatus() == RideStatus.CANCELLED;
+                    if (finished && archive(region, ride)) {
+                        archived++;
+                    }
+                }
+            }
+        }
+        logger.info("Archived {} finished rides from the hot hash in region {}", archived, region);
+        return archived;
     }
 
-    public GeoResults<GeoLocation<String>> getNearByDrivers(Region region, Double lat, Double lon, ConsistencyLevel consistencyLevel) {
-        logger.info("Searching for nearby drivers with {} consistency in region {}", consistencyLevel, region);
+    /**
+     * Nearest AVAILABLE drivers, closest first. Each ring is a GEOSEARCH with ASC and COUNT, and the
+     * search stops at the first ring that yields {@code candidateCount} drivers or at the last ring. In a
+     * split region each ring searches the shards owning the cells it overlaps and merges their answers.
+     */
+    public GeoResults<GeoLocation<String>> getNearByDrivers(Region region, Double lat, Double lon, List<Double> ringsKm,
+                                                            int candidateCount, ConsistencyLevel consistencyLevel) {
+        logger.info("Searching for nearby available drivers with {} consistency in region {}", consistencyLevel, region);
+        if (shards.isSharded(region)) {
+            List<GeoResult<GeoLocation<String>>> results = List.of();
+            for (Double radius : ringsKm) {
+                results = nearestAcrossShards(region, lat, lon, radius, candidateCount, consistencyLevel).stream()
+                        .map(ShardResult::location)
+                        .toList();
+                if (results.size() >= candidateCount) {
+                    break;
+                }
+            }
+            hotPathMetrics.geoResults(region, false, results.size());
+            return new GeoResults<>(results, Metrics.KILOMETERS);
+        }
         RedisTemplate<String, String> geoTemplate = router.getGeoTemplate(region, consistencyLevel);
-        String driverGeoKey = DRIVER_GEO_KEY_PREFIX + region.name().toLowerCase();
-        return geoTemplate.opsForGeo().radius(
-                driverGeoKey,
-                new Circle(new Point(lon, lat), new Distance(50, Metrics.KILOMETERS))
-        );
+        String driverGeoKey = DriverRepository.geoIndexKey(region, DriverStatus.AVAILABLE);
+        GeoSearchCommandArgs args = GeoSearchCommandArgs.newGeoSearchArgs()
+                .includeDistance()
+                .sortAscending()
+                .limit(candidateCount);
+
+        GeoResults<GeoLocation<String>> results = null;
+        for (Double radius : ringsKm) {
+            results = geoTemplate.opsForGeo().search(driverGeoKey,
+                    GeoReference.fromCoordinate(lon, lat),
+                    new Distance(radius, Metrics.KILOMETERS),
+                    args);
+            if (results != null && results.getContent().size() >= candidateCount) {
+                break;
+            }
+        }
+        hotPathMetrics.geoResults(region, false, results != null ? results.getContent().size() : 0);
+        return results;
     }
 }
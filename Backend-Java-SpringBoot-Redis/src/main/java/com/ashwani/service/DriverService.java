@@ -1,12 +1,19 @@
 package com.ashwani.service;
 
+import com.ashwani.dto.BatchLocationUpdateResponse;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dto.DriverLocationUpdate;
 import com.ashwani.entity.Driver;
+import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface DriverService {
     void addDriver(Region region, Driver driver);
     void updateDriverLocation(Region region, String id, Double longitude, Double latitude);
-    List<Driver> getAllDrivers();
+    BatchLocationUpdateResponse updateDriverLocations(Region region, List<DriverLocationUpdate> updates);
+    CursorPage<Driver> getDriversPage(Region region, ConsistencyLevel consistencyLevel, String cursor, int limit);
+    void streamDrivers(Region region, ConsistencyLevel consistencyLevel, Consumer<? super Driver> sink);
 }
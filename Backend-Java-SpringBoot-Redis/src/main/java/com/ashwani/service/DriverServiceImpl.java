@@ -1,41 +1,130 @@
 package com.ashwani.service;
 
+import com.ashwani.dto.BatchLocationUpdateResponse;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dto.DriverLocationUpdate;
+import com.ashwani.dto.LocationUpdateResult;
 import com.ashwani.entity.Driver;
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
+import com.ashwani.ingest.LocationIngestionPipeline;
 import com.ashwani.repository.DriverRepository;
-import com.ashwani.sharding.ConsistencyContext;
-import com.ashwani.sharding.RegionContext;
+import com.ashwani.sharding.RegionAssignment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Point;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class DriverServiceImpl implements DriverService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DriverServiceImpl.class);
+
+    // Redis GEO only accepts latitudes within the Web Mercator range
+    private static final double MAX_GEO_LATITUDE = 85.05112878;
+
     @Autowired
     private DriverRepository driverRepository;
 
+    @Autowired
+    private LocationIngestionPipeline locationIngestion;
+
+    @Autowired
+    private RegionAssignment regionAssignment;
+
     @Override
     public void addDriver(Region region, Driver driver) {
+        region = regionAssignment.assign(region, "driver", driver.getId(), driver.getLongitude(), driver.getLatitude());
         driverRepository.saveDriver(region, driver);
-        try {
-            // Simulate replication lag
-            Thread.sleep(5000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
     }
 
     @Override
     public void updateDriverLocation(Region region, String id, Double longitude, Double latitude) {
+        String error = validate(id, longitude, latitude);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+        region = regionAssignment.assign(region, "driver", id, longitude, latitude);
+        if (locationIngestion.isEnabled()) {
+            locationIngestion.submit(region, id, longitude, latitude);
+            return;
+        }
         driverRepository.updateDriverLocation(region, id, longitude, latitude);
     }
 
     @Override
-    public List<Driver> getAllDrivers() {
-        ConsistencyLevel consistencyLevel = ConsistencyContext.getConsistencyLevel();
-        return driverRepository.findAllDrivers(RegionContext.getRegion(), consistencyLevel);
+    public BatchLocationUpdateResponse updateDriverLocations(Region region, List<DriverLocationUpdate> updates) {
+        LocationUpdateResult[] results = new LocationUpdateResult[updates.size()];
+
+        // Group valid pings by region, keeping the request index so results stay in request order.
+        // A later ping for the same driver replaces an earlier one in the same batch.
+        Map<Region, Map<String, Point>> locationsByRegion = new EnumMap<>(Region.class);
+        Map<Region, List<Integer>> indexesByRegion = new EnumMap<>(Region.class);
+        for (int i = 0; i < updates.size(); i++) {
+            DriverLocationUpdate update = updates.get(i);
+            Region target = regionAssignment.assign(update.getRegion() != null ? update.getRegion() : region, "driver",
+                    update.getId(), update.getLongitude(), update.getLatitude());
+            String error = validate(update.getId(), update.getLongitude(), update.getLatitude());
+            if (error != null) {
+                results[i] = LocationUpdateResult.rejected(update.getId(), target, error);
+                continue;
+            }
+            locationsByRegion.computeIfAbsent(target, r -> new LinkedHashMap<>())
+                    .put(update.getId(), new Point(update.getLongitude(), update.getLatitude()));
+            indexesByRegion.computeIfAbsent(target, r -> new ArrayList<>()).add(i);
+        }
+
+        locationsByRegion.forEach((target, locations) -> {
+            List<Integer> indexes = indexesByRegion.get(target);
+            try {
+                Set<String> updated = driverRepository.updateDriverLocations(target, locations);
+                for (int i : indexes) {
+                    String id = updates.get(i).getId();
+                    results[i] = updated.contains(id)
+                            ? LocationUpdateResult.applied(id, target)
+                            : LocationUpdateResult.rejected(id, target, "Driver not found");
+                }
+            } catch (RuntimeException e) {
+                logger.error("Batch location update failed for {} drivers in region {}", locations.size(), target, e);
+                for (int i : indexes) {
+                    results[i] = LocationUpdateResult.rejected(updates.get(i).getId(), target, e.getMessage());
+                }
+            }
+        });
+
+        return new BatchLocationUpdateResponse(Arrays.asList(results));
+    }
+
+    private String validate(String id, Double longitude, Double latitude) {
+        if (id == null || id.isEmpty()) {
+            return "Driver ID cannot be null";
+        }
+        if (latitude == null || longitude == null) {
+            return "Latitude and longitude cannot be null";
+        }
+        if (Math.abs(latitude) > MAX_GEO_LATITUDE || Math.abs(longitude) > 180) {
+            return "Coordinates out of range";
+        }
+        return null;
+    }
+
+    @Override
+    public CursorPage<Driver> getDriversPage(Region region, ConsistencyLevel consistencyLevel, String cursor, int limit) {
+        return driverRepository.findDriversPage(region, cursor, limit, consistencyLevel);
+    }
+
+    @Override
+    public void streamDrivers(Region region, ConsistencyLevel consistencyLevel, Consumer<? super Driver> sink) {
+        CursorPage.forEach(cursor -> driverRepository.findDriversPage(region, cursor, CursorPage.STREAM_PAGE_SIZE, consistencyLevel), sink);
     }
 }
@@ -1,13 +1,17 @@
 package com.ashwani.service;
 
+import com.ashwani.dto.CursorPage;
 import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
 
-import java.util.List;
+import java.util.function.Consumer;
 
 public interface PassengerService {
 
     void addPassenger(Region region, Passenger passenger);
 
-    List<Passenger> getAllPassengers();
+    CursorPage<Passenger> getPassengersPage(Region region, ConsistencyLevel consistencyLevel, String cursor, int limit);
+
+    void streamPassengers(Region region, ConsistencyLevel consistencyLevel, Consumer<? super Passenger> sink);
 }
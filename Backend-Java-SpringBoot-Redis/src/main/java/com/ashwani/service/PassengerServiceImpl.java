@@ -1,15 +1,15 @@
 package com.ashwani.service;
 
+import com.ashwani.dto.CursorPage;
 import com.ashwani.entity.Passenger;
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
 import com.ashwani.repository.PassengerRepository;
-import com.ashwani.sharding.ConsistencyContext;
-import com.ashwani.sharding.RegionContext;
+import com.ashwani.sharding.RegionAssignment;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class PassengerServiceImpl implements PassengerService {
@@ -17,14 +17,22 @@ public class PassengerServiceImpl implements PassengerService {
     @Autowired
     private PassengerRepository passengerRepository;
 
+    @Autowired
+    private RegionAssignment regionAssignment;
+
     @Override
     public void addPassenger(Region region, Passenger passenger) {
+        region = regionAssignment.assign(region, "passenger", passenger.getId(), passenger.getLongitude(), passenger.getLatitude());
         passengerRepository.save(region, passenger);
     }
 
     @Override
-    public List<Passenger> getAllPassengers() {
-        ConsistencyLevel consistencyLevel = ConsistencyContext.getConsistencyLevel();
-        return passengerRepository.findAll(RegionContext.getRegion(), consistencyLevel);
+    public CursorPage<Passenger> getPassengersPage(Region region, ConsistencyLevel consistencyLevel, String cursor, int limit) {
+        return passengerRepository.findPage(region, cursor, limit, consistencyLevel);
+    }
+
+    @Override
+    public void streamPassengers(Region region, ConsistencyLevel consistencyLevel, Consumer<? super Passenger> sink) {
+        CursorPage.forEach(cursor -> passengerRepository.findPage(region, cursor, CursorPage.STREAM_PAGE_SIZE, consistencyLevel), sink);
     }
 }
@@ -0,0 +1,9 @@
+package com.ashwani.service;
+
+import com.ashwani.enums.Region;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveDriverService {
+
+    Mono<Void> updateDriverLocation(Region region, String id, Double longitude, Double latitude);
+}
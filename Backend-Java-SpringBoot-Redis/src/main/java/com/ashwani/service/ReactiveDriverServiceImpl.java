@@ -0,0 +1,32 @@
+package com.ashwani.service;
+
+import com.ashwani.enums.Region;
+import com.ashwani.ingest.LocationIngestionPipeline;
+import com.ashwani.repository.ReactiveDriverRepository;
+import com.ashwani.sharding.RegionAssignment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+public class ReactiveDriverServiceImpl implements ReactiveDriverService {
+
+    @Autowired
+    private ReactiveDriverRepository driverRepository;
+
+    @Autowired
+    private LocationIngestionPipeline locationIngestion;
+
+    @Autowired
+    private RegionAssignment regionAssignment;
+
+    @Override
+    public Mono<Void> updateDriverLocation(Region requested, String id, Double longitude, Double latitude) {
+        Region region = regionAssignment.assign(requested, "driver", id, longitude, latitude);
+        if (locationIngestion.isEnabled()) {
+            // Queuing never blocks; a full buffer fails the Mono with a BackpressureException
+            return Mono.fromRunnable(() -> locationIngestion.submit(region, id, longitude, latitude));
+        }
+        return driverRepository.updateDriverLocation(region, id, longitude, latitude).then();
+    }
+}
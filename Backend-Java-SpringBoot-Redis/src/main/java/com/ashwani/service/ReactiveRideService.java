@@ -0,0 +1,16 @@
+package com.ashwani.service;
+
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.Region;
+import reactor.core.publisher.Mono;
+
+/**
+ * Booking and ending rides without blocking the caller's thread; same rules and outcomes as
+ * {@link RideService}, errors are signalled through the returned {@link Mono}.
+ */
+public interface ReactiveRideService {
+
+    Mono<Ride> bookRide(Region region, String passengerId);
+
+    Mono<Ride> endRide(Region region, String rideId);
+}
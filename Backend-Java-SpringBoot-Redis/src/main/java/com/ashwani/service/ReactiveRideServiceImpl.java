@@ -0,0 +1,128 @@
+package com.ashwani.service;
+
+import com.ashwani.config.DispatchProperties;
+import com.ashwani.dto.DispatchResult;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.exception.AlreadyExistsException;
+import com.ashwani.exception.NotFoundException;
+import com.ashwani.exception.PassengerNotFoundException;
+import com.ashwani.exception.RideNotFoundException;
+import com.ashwani.geo.LocalDriverIndex;
+import com.ashwani.repository.ReactivePassengerRepository;
+import com.ashwani.repository.ReactiveRideRepository;
+import com.ashwani.repository.RideIds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The booking flow of {@link RideServiceImpl} on the reactive repositories. Booking stays a chain, as
+ * dispatch searches from the position the passenger read returns; ending a ride reads the passenger,
+ * then archives the ride and releases the passenger and driver in one script.
+ */
+@Service
+public class ReactiveRideServiceImpl implements ReactiveRideService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveRideServiceImpl.class);
+
+    @Autowired
+    private ReactiveRideRepository rideRepository;
+
+    @Autowired
+    private ReactivePassengerRepository passengerRepository;
+
+    @Autowired
+    private DispatchProperties dispatchProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LocalDriverIndex localDriverIndex;
+
+    @Override
+    public Mono<Ride> bookRide(Region region, String passengerId) {
+        logger.info("Booking ride for passenger ID: {} in region {}", passengerId, region);
+        return passengerRepository.findById(region, passengerId, ConsistencyLevel.STRONG)
+                .switchIfEmpty(Mono.error(() -> new PassengerNotFoundException("Passenger not found with ID: " + passengerId)))
+                .flatMap(passenger -> {
+                    if (PassengerStatus.ON_RIDE.equals(passenger.getStatus())) {
+                        return Mono.error(new AlreadyExistsException("Passenger is already on a ride"));
+                    }
+                    Ride ride = new Ride();
+                    ride.setStartTime(System.currentTimeMillis());
+                    ride.setId(RideIds.newId(ride.getStartTime()));
+                    ride.setPassengerId(passengerId);
+                    ride.setStatus(RideStatus.ONGOING);
+                    return dispatch(region, ride, passenger).flatMap(result -> switch (result.getOutcome()) {
+                        case PASSENGER_ON_RIDE -> Mono.error(new AlreadyExistsException("Passenger is already on a ride"));
+                        case NO_AVAILABLE_DRIVERS -> Mono.error(new NotFoundException("Sorry, No AVAILABLE drivers nearby!"));
+                        case OK -> Mono.just(ride);
+                    });
+                });
+    }
+
+    // Local index candidates first, the GEO search on the master when they are gone or there are none
+    private Mono<DispatchResult> dispatch(Region region, Ride ride, Passenger passenger) {
+        DispatchProperties.Search search = dispatchProperties.forRegion(region);
+        Mono<DispatchResult> geoSearch = Mono.defer(() -> rideRepository.dispatch(region, ride, passenger,
+                        dispatchProperties.ringsKm(region), search.getCandidateCount()))
+                .doOnNext(result -> meterRegistry.summary("ride.dispatch.rings", "region", region.name()).record(result.getRingsTried()));
+        if (!localDriverIndex.isEnabled()) {
+            return geoSearch;
+        }
+
+        List<String> candidates = localDriverIndex.nearestAvailable(region, passenger.getLongitude(), passenger.getLatitude(),
+                search.getCandidateCount(), search.getMaxRadiusKm());
+        Mono<DispatchResult> claim = candidates.isEmpty() ? Mono.empty() : rideRepository.claim(region, ride, passenger, candidates);
+        return claim
+                .filter(result -> result.getOutcome() != DispatchResult.Outcome.NO_AVAILABLE_DRIVERS)
+                .doOnNext(result -> localIndexCounter(region, "hit").increment())
+                .switchIfEmpty(Mono.defer(() -> {
+                    localIndexCounter(region, "fallback").increment();
+                    return geoSearch;
+                }));
+    }
+
+    private Counter localIndexCounter(Region region, String result) {
+        return meterRegistry.counter("ride.dispatch.local_index", "region", region.name(), "result", result);
+    }
+
+    @Override
+    public Mono<Ride> endRide(Region region, String rideId) {
+        // Only the small hot hash is read on the happy path; the archive is consulted just to tell an
+        // unknown ride from one that has already ended.
+        Mono<Ride> unknownOrEnded = rideRepository.findById(region, rideId, ConsistencyLevel.STRONG)
+                .flatMap(ended -> Mono.<Ride>error(new AlreadyExistsException("Ride already completed with ID: " + rideId)))
+                .switchIfEmpty(Mono.error(() -> new RideNotFoundException("Ride not found with ID: " + rideId)));
+
+        return rideRepository.findActiveById(region, rideId, ConsistencyLevel.STRONG)
+                .switchIfEmpty(Mono.defer(() -> unknownOrEnded))
+                .flatMap(ride -> {
+                    if (RideStatus.COMPLETED.equals(ride.getStatus())) {
+                        return Mono.error(new AlreadyExistsException("Ride already completed with ID: " + rideId));
+                    }
+                    ride.setStatus(RideStatus.COMPLETED);
+                    ride.setEndTime(System.currentTimeMillis());
+                    return passengerRepository.findById(region, ride.getPassengerId(), ConsistencyLevel.STRONG)
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty())
+                            .flatMap(passenger -> rideRepository.end(region, ride, passenger.orElse(null)))
+                            .flatMap(ended -> ended
+                                    ? Mono.just(ride)
+                                    : Mono.error(new AlreadyExistsException("Ride already completed with ID: " + rideId)));
+                });
+    }
+}
@@ -1,17 +1,26 @@
 package com.ashwani.service;
 
+import com.ashwani.dto.CursorPage;
 import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface RideService {
 
     Ride bookRide(Region region, String passengerId);
 
+    CompletableFuture<Ride> bookRideAsync(Region region, String passengerId);
+
     Ride endRide(Region region, String rideId);
 
-    List<Ride> getAllRides();
+    CursorPage<Ride> getRidesPage(Region region, ConsistencyLevel consistencyLevel, String cursor, int limit);
+
+    CursorPage<Ride> getArchivedRidesPage(Region region, ConsistencyLevel consistencyLevel, String bucket, String cursor, int limit);
+
+    void streamRides(Region region, ConsistencyLevel consistencyLevel, Consumer<? super Ride> sink);
 
-    Ride getRideById(String rideId);
+    Ride getRideById(Region region, ConsistencyLevel consistencyLevel, String rideId);
 }
@@ -1,10 +1,12 @@
 package com.ashwani.service;
 
-import com.ashwani.entity.Driver;
+import com.ashwani.config.DispatchProperties;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dispatch.BatchDispatcher;
+import com.ashwani.dto.DispatchResult;
 import com.ashwani.entity.Passenger;
 import com.ashwani.entity.Ride;
 import com.ashwani.enums.ConsistencyLevel;
-import com.ashwani.enums.DriverStatus;
 import com.ashwani.enums.PassengerStatus;
 import com.ashwani.enums.Region;
 import com.ashwani.enums.RideStatus;
@@ -12,21 +14,20 @@ import com.ashwani.exception.AlreadyExistsException;
 import com.ashwani.exception.NotFoundException;
 import com.ashwani.exception.PassengerNotFoundException;
 import com.ashwani.exception.RideNotFoundException;
-import com.ashwani.repository.DriverRepository;
+import com.ashwani.geo.LocalDriverIndex;
+import com.ashwani.metrics.HotPathMetrics;
 import com.ashwani.repository.PassengerRepository;
+import com.ashwani.repository.RideIds;
 import com.ashwani.repository.RideRepository;
-import com.ashwani.sharding.ConsistencyContext;
-import com.ashwani.sharding.RegionContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.geo.GeoResult;
-import org.springframework.data.geo.GeoResults;
-import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @Service
 public class RideServiceImpl implements RideService {
@@ -40,10 +41,76 @@ public class RideServiceImpl implements RideService {
     private PassengerRepository passengerRepository;
 
     @Autowired
-    private DriverRepository driverRepository;
+    private DispatchProperties dispatchProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LocalDriverIndex localDriverIndex;
+
+    @Autowired
+    private BatchDispatcher batchDispatcher;
+
+    @Autowired
+    private HotPathMetrics hotPathMetrics;
 
     @Override
     public Ride bookRide(Region region, String passengerId) {
+        long start = hotPathMetrics.start();
+        Passenger passenger = findBookablePassenger(region, passengerId);
+        hotPathMetrics.booking(region, HotPathMetrics.BookingStage.PASSENGER_LOOKUP, start);
+        Ride ride = newRide(passengerId);
+
+        // Driver claim, ride creation, the passenger's active-ride marker and their ON_RIDE status all
+        // happen in one atomic script on the region master, so concurrent bookings cannot share a driver. Candidates come
+        // from the in-process index when it is enabled; the GEO search on the master is the fallback.
+        logger.info("Dispatching nearest driver to lat: {}, lon: {} in region {}", passenger.getLatitude(), passenger.getLongitude(), region);
+        DispatchProperties.Search search = dispatchProperties.forRegion(region);
+        DispatchResult result = null;
+        int scanned = 0;
+        if (localDriverIndex.isEnabled()) {
+            start = hotPathMetrics.start();
+            List<String> candidates = localDriverIndex.nearestAvailable(region, passenger.getLongitude(), passenger.getLatitude(),
+                    search.getCandidateCount(), search.getMaxRadiusKm());
+            hotPathMetrics.booking(region, HotPathMetrics.BookingStage.CANDIDATE_SEARCH, start);
+            hotPathMetrics.geoResults(region, true, candidates.size());
+            if (!candidates.isEmpty()) {
+                start = hotPathMetrics.start();
+                result = rideRepository.claim(region, ride, passenger, candidates);
+                hotPathMetrics.booking(region, HotPathMetrics.BookingStage.CLAIM, start);
+                scanned = result.getCandidatesScanned();
+            }
+            boolean hit = result != null && result.getOutcome() != DispatchResult.Outcome.NO_AVAILABLE_DRIVERS;
+            meterRegistry.counter("ride.dispatch.local_index", "region", region.name(), "result", hit ? "hit" : "fallback").increment();
+        }
+        if (result == null || result.getOutcome() == DispatchResult.Outcome.NO_AVAILABLE_DRIVERS) {
+            start = hotPathMetrics.start();
+            result = rideRepository.dispatch(region, ride, passenger, dispatchProperties.ringsKm(region), search.getCandidateCount());
+            hotPathMetrics.booking(region, HotPathMetrics.BookingStage.DISPATCH, start);
+            meterRegistry.summary("ride.dispatch.rings", "region", region.name()).record(result.getRingsTried());
+            scanned += result.getCandidatesScanned();
+        }
+        hotPathMetrics.candidatesScanned(region, scanned);
+        return finishBooking(ride, result);
+    }
+
+    /**
+     * {@link #bookRide} through the batched dispatcher when {@code ride.dispatch.batching.enabled} is on;
+     * the returned future completes once the booking's batch has been matched. Otherwise books now.
+     */
+    @Override
+    public CompletableFuture<Ride> bookRideAsync(Region region, String passengerId) {
+        if (!batchDispatcher.isEnabled()) {
+            return CompletableFuture.completedFuture(bookRide(region, passengerId));
+        }
+        Passenger passenger = findBookablePassenger(region, passengerId);
+        Ride ride = newRide(passengerId);
+        return batchDispatcher.submit(region, ride, passenger)
+                .thenApply(result -> finishBooking(ride, result));
+    }
+
+    private Passenger findBookablePassenger(Region region, String passengerId) {
         logger.info("Booking ride for passenger ID: {} in region {}", passengerId, region);
         // Write operations should always use STRONG consistency.
         ConsistencyLevel consistency = ConsistencyLevel.STRONG;
@@ -55,52 +122,24 @@ public class RideServiceImpl implements RideService {
         if (PassengerStatus.ON_RIDE.equals(passenger.getStatus())) {
             throw new AlreadyExistsException("Passenger is already on a ride");
         }
+        return passenger;
+    }
 
-        Double lat = passenger.getLatitude();
-        Double lon = passenger.getLongitude();
-
-        logger.info("Searching for nearby drivers at lat: {}, lon: {} with strong consistency in region {}", lat, lon, region);
-        GeoResults<GeoLocation<String>> nearbyDrivers = rideRepository.getNearByDrivers(region, lat, lon, ConsistencyLevel.STRONG);
-        logger.info("Found {} nearby drivers.", nearbyDrivers != null ? nearbyDrivers.getContent().size() : 0);
-
-        if (nearbyDrivers == null || nearbyDrivers.getContent().isEmpty()) {
-            throw new RideNotFoundException("Sorry, No drivers nearby!");
-        }
-
-        String nearestDriverId = null;
-
-        for (GeoResult<GeoLocation<String>> geoResult : nearbyDrivers) {
-            String driverId = geoResult.getContent().getName();
-            logger.info("Checking driver ID: {}", driverId);
-
-            Driver driver = driverRepository.findDriverById(region, driverId, ConsistencyLevel.STRONG);
-            if (driver != null) {
-                logger.info("Driver {} status: {}", driverId, driver.getStatus());
-                if (DriverStatus.AVAILABLE.equals(driver.getStatus())) {
-                    nearestDriverId = driver.getId();
-                    logger.info("Found available driver: {}", nearestDriverId);
-                    break;
-                }
-            } else {
-                logger.warn("Driver {} found in GEO index but not in hash. Skipping.", driverId);
-            }
-        }
-
-        if (nearestDriverId == null) {
-            throw new NotFoundException("Sorry, No AVAILABLE drivers nearby!");
-        }
-
+    private static Ride newRide(String passengerId) {
         Ride ride = new Ride();
-        ride.setId(UUID.randomUUID().toString());
+        ride.setStartTime(System.currentTimeMillis());
+        ride.setId(RideIds.newId(ride.getStartTime()));
         ride.setPassengerId(passengerId);
-        ride.setDriverId(nearestDriverId);
         ride.setStatus(RideStatus.ONGOING);
-        ride.setStartTime(System.currentTimeMillis());
-
-        passengerRepository.updatePassengerStatus(region, passengerId, PassengerStatus.ON_RIDE);
-        rideRepository.save(region, ride);
-        rideRepository.updateDriverStatus(region, nearestDriverId, DriverStatus.ON_RIDE);
+        return ride;
+    }
 
+    private Ride finishBooking(Ride ride, DispatchResult result) {
+        switch (result.getOutcome()) {
+            case PASSENGER_ON_RIDE -> throw new AlreadyExistsException("Passenger is already on a ride");
+            case NO_AVAILABLE_DRIVERS -> throw new NotFoundException("Sorry, No AVAILABLE drivers nearby!");
+            case OK -> logger.info("Assigned driver {} to passenger {}", result.getDriverId(), ride.getPassengerId());
+        }
         return ride;
     }
 
@@ -109,35 +148,47 @@ public class RideServiceImpl implements RideService {
     public Ride endRide(Region region, String rideId) {
         // Write operations should always use STRONG consistency.
         ConsistencyLevel consistency = ConsistencyLevel.STRONG;
-        Ride ride = rideRepository.findById(region, rideId, consistency);
+        // Only the small hot hash is read on the happy path; the archive is consulted just to tell an
+        // unknown ride from one that has already ended.
+        Ride ride = rideRepository.findActiveById(region, rideId, consistency);
         if (ride == null) {
-            throw new RideNotFoundException("Ride not found with ID: " + rideId);
+            if (rideRepository.findById(region, rideId, consistency) == null) {
+                throw new RideNotFoundException("Ride not found with ID: " + rideId);
+            }
+            throw new AlreadyExistsException("Ride already completed with ID: " + rideId);
         }
         if (RideStatus.COMPLETED.equals(ride.getStatus())) {
             throw new AlreadyExistsException("Ride already completed with ID: " + rideId);
         }
 
+        // The archive script also writes the passenger back as ONLINE and frees them and the driver
+        Passenger passenger = passengerRepository.findById(region, ride.getPassengerId(), consistency);
         ride.setStatus(RideStatus.COMPLETED);
         ride.setEndTime(System.currentTimeMillis());
-        rideRepository.save(region, ride);
-
-        passengerRepository.updatePassengerStatus(region, ride.getPassengerId(), PassengerStatus.ONLINE);
-        rideRepository.updateDriverStatus(region, ride.getDriverId(), DriverStatus.AVAILABLE);
+        if (!rideRepository.end(region, ride, passenger)) {
+            throw new AlreadyExistsException("Ride already completed with ID: " + rideId);
+        }
 
         return ride;
     }
 
     @Override
-    public List<Ride> getAllRides() {
-        Region region = RegionContext.getRegion();
-        ConsistencyLevel consistencyLevel = ConsistencyContext.getConsistencyLevel();
-        return rideRepository.findAll(region, consistencyLevel);
+    public CursorPage<Ride> getRidesPage(Region region, ConsistencyLevel consistencyLevel, String cursor, int limit) {
+        return rideRepository.findPage(region, cursor, limit, consistencyLevel);
+    }
+
+    @Override
+    public CursorPage<Ride> getArchivedRidesPage(Region region, ConsistencyLevel consistencyLevel, String bucket, String cursor, int limit) {
+        return rideRepository.findArchivePage(region, bucket, cursor, limit, consistencyLevel);
+    }
+
+    @Override
+    public void streamRides(Region region, ConsistencyLevel consistencyLevel, Consumer<? super Ride> sink) {
+        CursorPage.forEach(cursor -> rideRepository.findPage(region, cursor, CursorPage.STREAM_PAGE_SIZE, consistencyLevel), sink);
     }
 
     @Override
-    public Ride getRideById(String rideId) {
-        Region region = RegionContext.getRegion();
-        ConsistencyLevel consistencyLevel = ConsistencyContext.getConsistencyLevel();
+    public Ride getRideById(Region region, ConsistencyLevel consistencyLevel, String rideId) {
         return rideRepository.findById(region, rideId, consistencyLevel);
     }
 }
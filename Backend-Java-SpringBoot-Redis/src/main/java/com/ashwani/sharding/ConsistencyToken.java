@@ -0,0 +1,35 @@
+package com.ashwani.sharding;
+
+import com.ashwani.enums.Region;
+
+/**
+ * Read-your-writes token, {@code <REGION>:<millis>}: when a write to the region had returned, in epoch
+ * milliseconds. A read that sends it back may go to the region's replica only once the replica has
+ * applied the master's stream up to an offset probed after that time.
+ */
+public record ConsistencyToken(Region region, long writtenAt) {
+
+    /**
+     * The token in the header value, or null when it is not one.
+     */
+    public static ConsistencyToken parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return new ConsistencyToken(Region.valueOf(value.substring(0, separator).toUpperCase()),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return region.name() + ":" + writtenAt;
+    }
+}
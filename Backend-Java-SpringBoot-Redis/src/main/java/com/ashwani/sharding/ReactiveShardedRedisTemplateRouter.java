@@ -0,0 +1,112 @@
+package com.ashwani.sharding;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link ShardedRedisTemplateRouter}: the same region and consistency
+ * routing over the reactive templates, which share one Lettuce connection per Redis node.
+ */
+@Component
+public class ReactiveShardedRedisTemplateRouter {
+
+    //<editor-fold desc="Reactive Redis Template Maps">
+    @Resource(name = "reactiveMasterDriverRedisTemplates")
+    private Map<Region, ReactiveRedisTemplate<String, Driver>> masterDriverRedisTemplates;
+
+    @Resource(name = "reactiveReplicaDriverRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, Driver>>> replicaDriverRedisTemplates;
+
+    @Resource(name = "reactiveMasterRideRedisTemplates")
+    private Map<Region, ReactiveRedisTemplate<String, Ride>> masterRideRedisTemplates;
+
+    @Resource(name = "reactiveReplicaRideRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, Ride>>> replicaRideRedisTemplates;
+
+    @Resource(name = "reactiveMasterPassengerRedisTemplates")
+    private Map<Region, ReactiveRedisTemplate<String, Passenger>> masterPassengerRedisTemplates;
+
+    @Resource(name = "reactiveReplicaPassengerRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, Passenger>>> replicaPassengerRedisTemplates;
+
+    @Resource(name = "reactiveMasterGeoRedisTemplates")
+    private Map<Region, ReactiveRedisTemplate<String, String>> masterGeoRedisTemplates;
+
+    @Resource(name = "reactiveReplicaGeoRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, String>>> replicaGeoRedisTemplates;
+
+    @Resource(name = "reactiveShardDriverRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, Driver>>> shardDriverRedisTemplates;
+
+    @Resource(name = "reactiveShardRideRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, Ride>>> shardRideRedisTemplates;
+
+    @Resource(name = "reactiveShardPassengerRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, Passenger>>> shardPassengerRedisTemplates;
+
+    @Resource(name = "reactiveShardGeoRedisTemplates")
+    private Map<Region, List<ReactiveRedisTemplate<String, String>>> shardGeoRedisTemplates;
+    //</editor-fold>
+
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
+    public ReactiveRedisTemplate<String, Driver> getDriverTemplate(Region region, ConsistencyLevel consistencyLevel) {
+        return getTemplate(region, consistencyLevel, masterDriverRedisTemplates, replicaDriverRedisTemplates);
+    }
+
+    /**
+     * Template of one of the region's shards, numbered as in {@link RegionShards}. Shard 0 is the region's
+     * master and replicas; the other shards have no replicas, so every read of theirs goes to their master.
+     */
+    public ReactiveRedisTemplate<String, Driver> getDriverTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getDriverTemplate(region, consistencyLevel) : shardDriverRedisTemplates.get(region).get(shard);
+    }
+
+    public ReactiveRedisTemplate<String, Ride> getRideTemplate(Region region, ConsistencyLevel consistencyLevel) {
+        return getTemplate(region, consistencyLevel, masterRideRedisTemplates, replicaRideRedisTemplates);
+    }
+
+    public ReactiveRedisTemplate<String, Ride> getRideTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getRideTemplate(region, consistencyLevel) : shardRideRedisTemplates.get(region).get(shard);
+    }
+
+    public ReactiveRedisTemplate<String, Passenger> getPassengerTemplate(Region region, ConsistencyLevel consistencyLevel) {
+        return getTemplate(region, consistencyLevel, masterPassengerRedisTemplates, replicaPassengerRedisTemplates);
+    }
+
+    public ReactiveRedisTemplate<String, Passenger> getPassengerTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getPassengerTemplate(region, consistencyLevel) : shardPassengerRedisTemplates.get(region).get(shard);
+    }
+
+    public ReactiveRedisTemplate<String, String> getGeoTemplate(Region region, ConsistencyLevel consistencyLevel) {
+        return getTemplate(region, consistencyLevel, masterGeoRedisTemplates, replicaGeoRedisTemplates);
+    }
+
+    public ReactiveRedisTemplate<String, String> getGeoTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getGeoTemplate(region, consistencyLevel) : shardGeoRedisTemplates.get(region).get(shard);
+    }
+
+    private <V> ReactiveRedisTemplate<String, V> getTemplate(Region region, ConsistencyLevel consistencyLevel,
+                                                            Map<Region, ReactiveRedisTemplate<String, V>> masterMap,
+                                                            Map<Region, List<ReactiveRedisTemplate<String, V>>> replicaMap) {
+        // Same defaults as the blocking router: no region means US, anything but STRONG reads the replica
+        // the selector picks, or the master when none is usable
+        Region target = region != null ? region : Region.US;
+        if (ConsistencyLevel.STRONG.equals(consistencyLevel)) {
+            return masterMap.get(target);
+        }
+        int replica = replicaSelector.select(target);
+        return replica < 0 ? masterMap.get(target) : replicaMap.get(target).get(replica);
+    }
+}
@@ -0,0 +1,50 @@
+package com.ashwani.sharding;
+
+import com.ashwani.enums.Region;
+import com.ashwani.geo.RegionResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the region a driver or passenger write goes to. A write sent without a region goes to the one
+ * its coordinates resolve to. A write whose region disagrees with its coordinates still goes where it
+ * was sent and is counted in {@code ride.region.mismatches}; a driver location update is then handed
+ * off to the other region by the repository.
+ */
+@Component
+public class RegionAssignment {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegionAssignment.class);
+
+    private final RegionResolver regionResolver;
+    private final MeterRegistry meterRegistry;
+
+    public RegionAssignment(RegionResolver regionResolver, MeterRegistry meterRegistry) {
+        this.regionResolver = regionResolver;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Region to write to: {@code requested} when given, otherwise the region of the coordinates, and
+     * {@link RequestContext#DEFAULT_REGION} when neither is known.
+     *
+     * @param entity "driver" or "passenger", for the mismatch counter
+     */
+    public Region assign(Region requested, String entity, String id, Double longitude, Double latitude) {
+        if (longitude == null || latitude == null) {
+            return requested != null ? requested : RequestContext.DEFAULT_REGION;
+        }
+        Region resolved = regionResolver.resolve(longitude, latitude);
+        if (requested == null) {
+            return resolved != null ? resolved : RequestContext.DEFAULT_REGION;
+        }
+        if (resolved != null && resolved != requested) {
+            logger.debug("{} {} written to region {} is at {},{} in region {}", entity, id, requested, longitude, latitude, resolved);
+            meterRegistry.counter("ride.region.mismatches", "entity", entity, "requested", requested.name(),
+                    "resolved", resolved.name()).increment();
+        }
+        return requested;
+    }
+}
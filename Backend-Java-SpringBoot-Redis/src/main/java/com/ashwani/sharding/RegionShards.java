@@ -0,0 +1,109 @@
+package com.ashwani.sharding;
+
+import com.ashwani.config.RedisTopology;
+import com.ashwani.config.ShardingProperties;
+import com.ashwani.enums.Region;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Resolves which of a region's shards a key lives on. Ids map to one of 16384 hash slots, CRC16 of the
+ * id as in Redis Cluster, and each shard owns an equal contiguous range of slots. Driver positions are
+ * placed by geographic cell instead: the region is cut into {@code ride.sharding.cell-size-deg} cells,
+ * and a cell lives on the shard owning the slot of its name, so drivers near each other share a shard
+ * and a search only visits the shards of the cells it overlaps.
+ * <p>
+ * A region that is not split has one shard, 0, and every key resolves to it.
+ */
+@Component
+public class RegionShards {
+
+    public static final int SLOTS = 16384;
+
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final ShardingProperties properties;
+    private final Map<Region, Integer> counts = new EnumMap<>(Region.class);
+
+    public RegionShards(ShardingProperties properties, RedisTopology topology) {
+        this.properties = properties;
+        for (Region region : Region.values()) {
+            counts.put(region, Math.max(1, topology.shardMasters(region).size()));
+        }
+    }
+
+    public int count(Region region) {
+        return counts.get(region);
+    }
+
+    public boolean isSharded(Region region) {
+        return count(region) > 1;
+    }
+
+    /**
+     * Shard of a driver, passenger or ride id.
+     */
+    public int shardOf(Region region, String id) {
+        return slot(id) * count(region) / SLOTS;
+    }
+
+    /**
+     * Shard owning the cell of a position.
+     */
+    public int shardAt(Region region, double longitude, double latitude) {
+        if (!isSharded(region)) {
+            return 0;
+        }
+        return cellShard(region, cell(longitude), cell(latitude));
+    }
+
+    /**
+     * Shards owning any cell that overlaps the box around a circle of {@code radiusKm}, in shard order.
+     */
+    public int[] shardsNear(Region region, double longitude, double latitude, double radiusKm) {
+        int count = count(region);
+        if (count == 1) {
+            return new int[]{0};
+        }
+        double latitudeSpan = radiusKm / KM_PER_DEGREE;
+        double longitudeSpan = radiusKm / (KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        long minLatitudeCell = cell(Math.max(-90, latitude - latitudeSpan));
+        long maxLatitudeCell = cell(Math.min(90, latitude + latitudeSpan));
+        long minLongitudeCell = cell(Math.max(-180, longitude - longitudeSpan));
+        long maxLongitudeCell = cell(Math.min(180, longitude + longitudeSpan));
+
+        BitSet shards = new BitSet(count);
+        for (long y = minLatitudeCell; y <= maxLatitudeCell && shards.cardinality() < count; y++) {
+            for (long x = minLongitudeCell; x <= maxLongitudeCell && shards.cardinality() < count; x++) {
+                shards.set(cellShard(region, x, y));
+            }
+        }
+        return shards.stream().toArray();
+    }
+
+    /**
+     * Hash slot of a key: CRC16 (XMODEM) of its bytes, modulo {@value #SLOTS}.
+     */
+    public static int slot(String key) {
+        int crc = 0;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            crc ^= (b & 0xFF) << 8;
+            for (int i = 0; i < 8; i++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return (crc & 0xFFFF) % SLOTS;
+    }
+
+    private int cellShard(Region region, long longitudeCell, long latitudeCell) {
+        return slot("cell:" + longitudeCell + ":" + latitudeCell) * count(region) / SLOTS;
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / properties.getCellSizeDeg());
+    }
+}
@@ -0,0 +1,268 @@
+package com.ashwani.sharding;
+
+import com.ashwani.config.RedisNodeConnectionFactory;
+import com.ashwani.config.RedisTopology;
+import com.ashwani.config.ReplicaRoutingProperties;
+import com.ashwani.enums.Region;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Tracks how far each of every region's replicas is behind its master, in bytes of replication stream,
+ * from {@code INFO replication} on every node each {@code ride.replica-routing.probe-interval}. Replicas
+ * are probed before the master, so the lag is never under-reported. The round trip of every probe is
+ * recorded per node in {@code ride.redis.node.latency}.
+ * <p>
+ * {@link ReplicaSelector} picks EVENTUAL reads' replica among {@link #usableReplicas}, and the request
+ * interceptor asks {@link #replicaCaughtUp} for read-your-writes tokens, which carry the time of a write.
+ * The master offsets of the last {@value #MASTER_PROBES_KEPT} probes are kept with the time each was
+ * taken, so a token is checked against the first offset read after its write. Both answer from probes
+ * only. A replica that has not been probed yet is used as before; one that could not be probed, or whose
+ * link to the master is down, is not.
+ */
+@Component
+public class ReplicaLagMonitor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Covers tokens up to 16 s old at the default probe interval; older ones compare with the oldest probe kept
+    static final int MASTER_PROBES_KEPT = 32;
+
+    private final ReplicaRoutingProperties properties;
+    private final RedisTopology topology;
+    private final MeterRegistry meterRegistry;
+    private final Map<Region, RegionProbe> probes = new ConcurrentHashMap<>();
+    private final Map<Region, int[]> allReplicas = new EnumMap<>(Region.class);
+    private final Map<Region, Counter> lagReroutes = new EnumMap<>(Region.class);
+    private final Map<Region, Counter> tokenReroutes = new EnumMap<>(Region.class);
+    private final ScheduledExecutorService executor;
+
+    public ReplicaLagMonitor(ReplicaRoutingProperties properties, RedisTopology topology, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.topology = topology;
+        this.meterRegistry = meterRegistry;
+        for (Region region : Region.values()) {
+            List<RedisNodeConnectionFactory> replicas = topology.replicas(region);
+            int[] all = IntStream.range(0, replicas.size()).toArray();
+            allReplicas.put(region, all);
+            List<Probe> unprobed = new ArrayList<>();
+            for (int index = 0; index < replicas.size(); index++) {
+                unprobed.add(new Probe(-1, -1, false, 0));
+                int replica = index;
+                Gauge.builder("ride.replica.lag.bytes", probes, current -> current.get(region).replicas().get(replica).lagBytes())
+                        .tag("region", region.name())
+                        .tag("node", replicas.get(index).getNode())
+                        .baseUnit("bytes")
+                        .register(meterRegistry);
+            }
+            probes.put(region, new RegionProbe(List.copyOf(unprobed), all, List.of()));
+            lagReroutes.put(region, meterRegistry.counter("ride.replica.reroutes", "region", region.name(), "reason", "lag"));
+            tokenReroutes.put(region, meterRegistry.counter("ride.replica.reroutes", "region", region.name(), "reason", "token"));
+        }
+        if (properties.isEnabled()) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-lag-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = properties.getProbeInterval().toMillis();
+            executor.scheduleWithFixedDelay(this::probeAll, 0, interval, TimeUnit.MILLISECONDS);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Indexes, into {@link RedisTopology#replicas}, of the region's replicas EVENTUAL reads may go to.
+     * Counts a reroute when there are none. Callers must not modify the array.
+     */
+    public int[] usableReplicas(Region region) {
+        if (!properties.isEnabled()) {
+            return allReplicas.get(region);
+        }
+        int[] usable = probes.get(region).usable();
+        if (usable.length == 0) {
+            lagReroutes.get(region).increment();
+        }
+        return usable;
+    }
+
+    /**
+     * Whether every usable replica of the region had, at the last probe, applied the master's stream up
+     * to the offset of the first master probe taken after {@code writtenAt} (epoch milliseconds), which
+     * covers every write returned by then. Probes from within {@code tokenClockSkew} of the write do not
+     * count, as the token may come from another instance's clock. Until such a probe has been taken the
+     * replica has not caught up. Counts a reroute when one had not.
+     */
+    public boolean replicaCaughtUp(Region region, long writtenAt) {
+        RegionProbe regionProbe = probes.get(region);
+        long after = writtenAt + properties.getTokenClockSkew().toMillis();
+        MasterProbe master = regionProbe.masters().stream().filter(probe -> probe.takenAt() >= after).findFirst().orElse(null);
+        boolean caughtUp = master != null && regionProbe.usable().length > 0;
+        for (int index : regionProbe.usable()) {
+            Probe probe = regionProbe.replicas().get(index);
+            caughtUp &= master != null && probe.linkUp() && probe.replicaOffset() >= master.offset();
+        }
+        if (!caughtUp) {
+            tokenReroutes.get(region).increment();
+        }
+        return caughtUp;
+    }
+
+    /**
+     * Bytes of replication stream the region's furthest-behind reachable replica was behind at the last
+     * probe, or -1 if no replica's lag is known.
+     */
+    public long lagBytes(Region region) {
+        long lag = -1;
+        for (Probe probe : probes.get(region).replicas()) {
+            lag = Math.max(lag, probe.lagBytes());
+        }
+        return lag;
+    }
+
+    /**
+     * Round trip of the last probe of the region's replica at {@code index}, in nanoseconds; 0 if unknown.
+     */
+    public long probeNanos(Region region, int index) {
+        return probes.get(region).replicas().get(index).probeNanos();
+    }
+
+    /**
+     * Probes every region now instead of waiting for the next interval.
+     */
+    public void probeAll() {
+        for (Region region : Region.values()) {
+            RegionProbe previous = probes.get(region);
+            List<RedisNodeConnectionFactory> replicas = topology.replicas(region);
+            List<Probe> current = new ArrayList<>();
+            for (RedisNodeConnectionFactory replica : replicas) {
+                current.add(probeReplica(region, replica));
+            }
+            MasterProbe master = probeMaster(region);
+            Long masterOffset = master != null ? master.offset() : null;
+            List<Probe> lagged = new ArrayList<>();
+            List<Integer> usable = new ArrayList<>();
+            for (int index = 0; index < current.size(); index++) {
+                Probe probe = current.get(index);
+                if (probe.linkUp()) {
+                    // Without the master there is nothing to be behind of; reads keep going to the replica
+                    long lag = masterOffset != null ? Math.max(0, masterOffset - probe.replicaOffset()) : 0;
+                    probe = new Probe(probe.replicaOffset(), lag, true, probe.probeNanos());
+                    if (lag <= properties.getMaxLagBytes()) {
+                        usable.add(index);
+                    }
+                }
+                lagged.add(probe);
+                if (previous.replicas().get(index).linkUp() != probe.linkUp()) {
+                    if (probe.linkUp()) {
+                        logger.info("Replica {} of region {} is reachable again, {} bytes behind",
+                                replicas.get(index).getNode(), region, probe.lagBytes());
+                    } else {
+                        logger.warn("Replica {} of region {} is unreachable or not replicating; EVENTUAL reads avoid it",
+                                replicas.get(index).getNode(), region);
+                    }
+                }
+            }
+            probes.put(region, new RegionProbe(List.copyOf(lagged), usable.stream().mapToInt(Integer::intValue).toArray(),
+                    recentMasters(previous.masters(), master)));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Offsets and link state only; the lag is filled in once the master has been probed
+    private Probe probeReplica(Region region, RedisNodeConnectionFactory replica) {
+        long start = System.nanoTime();
+        try {
+            Properties info = replicationInfo(replica);
+            long nanos = record(replica, start);
+            if ("master".equals(info.getProperty("role"))) {
+                // A replica role served by the master itself, as in single-node setups
+                return new Probe(Long.parseLong(info.getProperty("master_repl_offset")), -1, true, nanos);
+            } else if ("up".equals(info.getProperty("master_link_status"))) {
+                return new Probe(Long.parseLong(info.getProperty("slave_repl_offset")), -1, true, nanos);
+            }
+            return new Probe(-1, -1, false, nanos);
+        } catch (RuntimeException e) {
+            logger.debug("Cannot probe replica {} of region {}", replica.getNode(), region, e);
+            return new Probe(-1, -1, false, 0);
+        }
+    }
+
+    private MasterProbe probeMaster(Region region) {
+        RedisNodeConnectionFactory master = topology.get(region, RedisTopology.Role.MASTER);
+        long takenAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            long offset = Long.parseLong(replicationInfo(master).getProperty("master_repl_offset"));
+            record(master, start);
+            return new MasterProbe(takenAt, offset);
+        } catch (RuntimeException e) {
+            logger.debug("Cannot probe the master of region {}", region, e);
+            return null;
+        }
+    }
+
+    private long record(RedisNodeConnectionFactory node, long start) {
+        long nanos = System.nanoTime() - start;
+        Timer.builder("ride.redis.node.latency")
+                .description("Round trip of the replication probe")
+                .tag("node", node.getNode())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        return nanos;
+    }
+
+    private static Properties replicationInfo(RedisConnectionFactory node) {
+        try (RedisConnection connection = node.getConnection()) {
+            return connection.serverCommands().info("replication");
+        }
+    }
+
+    private static List<MasterProbe> recentMasters(List<MasterProbe> previous, MasterProbe latest) {
+        if (latest == null) {
+            return previous;
+        }
+        List<MasterProbe> masters = new ArrayList<>(previous.subList(Math.max(0, previous.size() - MASTER_PROBES_KEPT + 1), previous.size()));
+        masters.add(latest);
+        return List.copyOf(masters);
+    }
+
+    private record Probe(long replicaOffset, long lagBytes, boolean linkUp, long probeNanos) {
+    }
+
+    // A master offset and when it was asked for, in epoch milliseconds; it covers every write returned by then
+    private record MasterProbe(long takenAt, long offset) {
+    }
+
+    // The region's replicas in topology order, the indexes of those reads may go to, and the recent master
+    // probes, oldest first
+    private record RegionProbe(List<Probe> replicas, int[] usable, List<MasterProbe> masters) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.ashwani.sharding;
+
+import com.ashwani.config.RedisNodeConnectionFactory;
+import com.ashwani.config.RedisTopology;
+import com.ashwani.enums.Region;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads a region's EVENTUAL reads over its usable replicas by the power of two choices: two replicas
+ * are drawn at random and the read goes to the one with fewer outstanding requests, counted as the
+ * connections its pool has lent out plus the threads waiting for one. A replica that answered the last
+ * health probe more than twice as slowly as the other loses a tie. Sampling two instead of scanning all
+ * keeps concurrent routers from herding onto the same least-loaded replica.
+ */
+@Component
+public class ReplicaSelector {
+
+    private final RedisTopology topology;
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReplicaSelector(RedisTopology topology, ReplicaLagMonitor replicaLagMonitor) {
+        this.topology = topology;
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    /**
+     * Index, into {@link RedisTopology#replicas}, of the replica the next EVENTUAL read of the region
+     * goes to, or -1 when none is usable and it has to go to the master.
+     */
+    public int select(Region region) {
+        int[] usable = replicaLagMonitor.usableReplicas(region);
+        if (usable.length <= 1) {
+            return usable.length == 1 ? usable[0] : -1;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(usable.length);
+        int second = random.nextInt(usable.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        return lessLoaded(region, usable[first], usable[second]);
+    }
+
+    private int lessLoaded(Region region, int first, int second) {
+        List<RedisNodeConnectionFactory> replicas = topology.replicas(region);
+        int firstLoad = outstanding(replicas.get(first));
+        int secondLoad = outstanding(replicas.get(second));
+        if (firstLoad != secondLoad) {
+            return firstLoad < secondLoad ? first : second;
+        }
+        long firstNanos = replicaLagMonitor.probeNanos(region, first);
+        long secondNanos = replicaLagMonitor.probeNanos(region, second);
+        return secondNanos > 0 && firstNanos > 2 * secondNanos ? second : first;
+    }
+
+    private static int outstanding(RedisNodeConnectionFactory replica) {
+        return replica.getNumActive() + replica.getNumWaiters();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ashwani.sharding;
+
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+
+/**
+ * The region and read consistency a request asked for through its {@code X-Region} and
+ * {@code X-Consistency-Level} headers. The region is null when neither the header nor the request's
+ * coordinates give one, so that writes can still be assigned by the coordinates in their body; reads use
+ * {@link #regionOrDefault()}, which falls back to {@link #DEFAULT_REGION}. The consistency level is null
+ * when its header is missing or invalid, which the template router treats as EVENTUAL.
+ * <p>
+ * The context is an immutable value stored on the request and handed to controllers as a method
+ * argument, then passed explicitly to services. Nothing is bound to the handling thread, so it stays
+ * correct when work moves between threads, such as async response bodies or virtual threads.
+ */
+public record RequestContext(Region region, ConsistencyLevel consistencyLevel) {
+
+    public static final String ATTRIBUTE = RequestContext.class.getName();
+
+    public static final Region DEFAULT_REGION = Region.US;
+
+    public static final RequestContext NONE = new RequestContext(null, null);
+
+    public Region regionOrDefault() {
+        return region != null ? region : DEFAULT_REGION;
+    }
+}
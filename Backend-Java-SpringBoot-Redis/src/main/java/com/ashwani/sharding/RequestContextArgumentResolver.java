@@ -0,0 +1,29 @@
+package com.ashwani.sharding;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves {@link RequestContext} controller parameters from the request attribute set by the
+ * request interceptor.
+ */
+@Component
+public class RequestContextArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return RequestContext.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public RequestContext resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                          NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object context = webRequest.getAttribute(RequestContext.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return context instanceof RequestContext requestContext ? requestContext : RequestContext.NONE;
+    }
+}
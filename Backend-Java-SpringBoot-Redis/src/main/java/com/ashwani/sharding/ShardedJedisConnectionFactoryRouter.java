@@ -2,10 +2,12 @@ package com.ashwani.sharding;
 
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -15,20 +17,22 @@ public class ShardedJedisConnectionFactoryRouter {
     private Map<Region, JedisConnectionFactory> masterConnectionFactories;
 
     @Resource(name = "replicaConnectionFactories")
-    private Map<Region, JedisConnectionFactory> replicaConnectionFactories;
+    private Map<Region, List<JedisConnectionFactory>> replicaConnectionFactories;
 
-    public JedisConnectionFactory getConnectionFactory(ConsistencyLevel consistencyLevel) {
-        Region region = RegionContextHolder.getRegion();
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
+    public JedisConnectionFactory getConnectionFactory(Region region, ConsistencyLevel consistencyLevel) {
         if (region == null) {
-            // Default to a specific region or throw an error if no region is set
-            // For now, let's default to US to avoid NullPointerExceptions
+            // Default to a primary region if no region is specified in the request
             region = Region.US;
         }
 
-        if (ConsistencyLevel.STRONG.equals(consistencyLevel)) {
+        int replica = ConsistencyLevel.STRONG.equals(consistencyLevel) ? -1 : replicaSelector.select(region);
+        if (replica < 0) {
             return masterConnectionFactories.get(region);
         } else {
-            return replicaConnectionFactories.get(region);
+            return replicaConnectionFactories.get(region).get(replica);
         }
     }
 }
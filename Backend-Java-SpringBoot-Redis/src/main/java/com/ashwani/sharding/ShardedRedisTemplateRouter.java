@@ -5,10 +5,12 @@ import com.ashwani.entity.Passenger;
 import com.ashwani.entity.Ride;
 import com.ashwani.enums.ConsistencyLevel;
 import com.ashwani.enums.Region;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -19,44 +21,79 @@ public class ShardedRedisTemplateRouter {
     private Map<Region, RedisTemplate<String, Driver>> masterDriverRedisTemplates;
 
     @Resource(name = "replicaDriverRedisTemplates")
-    private Map<Region, RedisTemplate<String, Driver>> replicaDriverRedisTemplates;
+    private Map<Region, List<RedisTemplate<String, Driver>>> replicaDriverRedisTemplates;
 
     @Resource(name = "masterRideRedisTemplates")
     private Map<Region, RedisTemplate<String, Ride>> masterRideRedisTemplates;
 
     @Resource(name = "replicaRideRedisTemplates")
-    private Map<Region, RedisTemplate<String, Ride>> replicaRideRedisTemplates;
+    private Map<Region, List<RedisTemplate<String, Ride>>> replicaRideRedisTemplates;
 
     @Resource(name = "masterPassengerRedisTemplates")
     private Map<Region, RedisTemplate<String, Passenger>> masterPassengerRedisTemplates;
 
     @Resource(name = "replicaPassengerRedisTemplates")
-    private Map<Region, RedisTemplate<String, Passenger>> replicaPassengerRedisTemplates;
+    private Map<Region, List<RedisTemplate<String, Passenger>>> replicaPassengerRedisTemplates;
 
     @Resource(name = "masterGeoRedisTemplates")
     private Map<Region, RedisTemplate<String, String>> masterGeoRedisTemplates;
 
     @Resource(name = "replicaGeoRedisTemplates")
-    private Map<Region, RedisTemplate<String, String>> replicaGeoRedisTemplates;
+    private Map<Region, List<RedisTemplate<String, String>>> replicaGeoRedisTemplates;
+
+    @Resource(name = "shardDriverRedisTemplates")
+    private Map<Region, List<RedisTemplate<String, Driver>>> shardDriverRedisTemplates;
+
+    @Resource(name = "shardRideRedisTemplates")
+    private Map<Region, List<RedisTemplate<String, Ride>>> shardRideRedisTemplates;
+
+    @Resource(name = "shardPassengerRedisTemplates")
+    private Map<Region, List<RedisTemplate<String, Passenger>>> shardPassengerRedisTemplates;
+
+    @Resource(name = "shardGeoRedisTemplates")
+    private Map<Region, List<RedisTemplate<String, String>>> shardGeoRedisTemplates;
     //</editor-fold>
 
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
     public RedisTemplate<String, Driver> getDriverTemplate(Region region, ConsistencyLevel consistencyLevel) {
         return getTemplate(region, consistencyLevel, masterDriverRedisTemplates, replicaDriverRedisTemplates);
     }
 
+    /**
+     * Template of one of the region's shards, numbered as in {@link RegionShards}. Shard 0 is the region's
+     * master and replicas; the other shards have no replicas, so every read of theirs goes to their master.
+     */
+    public RedisTemplate<String, Driver> getDriverTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getDriverTemplate(region, consistencyLevel) : shardDriverRedisTemplates.get(region).get(shard);
+    }
+
     public RedisTemplate<String, Ride> getRideTemplate(Region region, ConsistencyLevel consistencyLevel) {
         return getTemplate(region, consistencyLevel, masterRideRedisTemplates, replicaRideRedisTemplates);
     }
 
+    public RedisTemplate<String, Ride> getRideTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getRideTemplate(region, consistencyLevel) : shardRideRedisTemplates.get(region).get(shard);
+    }
+
     public RedisTemplate<String, Passenger> getPassengerTemplate(Region region, ConsistencyLevel consistencyLevel) {
         return getTemplate(region, consistencyLevel, masterPassengerRedisTemplates, replicaPassengerRedisTemplates);
     }
 
+    public RedisTemplate<String, Passenger> getPassengerTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getPassengerTemplate(region, consistencyLevel) : shardPassengerRedisTemplates.get(region).get(shard);
+    }
+
     public RedisTemplate<String, String> getGeoTemplate(Region region, ConsistencyLevel consistencyLevel) {
         return getTemplate(region, consistencyLevel, masterGeoRedisTemplates, replicaGeoRedisTemplates);
     }
 
-    private <V> RedisTemplate<String, V> getTemplate(Region region, ConsistencyLevel consistencyLevel, Map<Region, RedisTemplate<String, V>> masterMap, Map<Region, RedisTemplate<String, V>> replicaMap) {
+    public RedisTemplate<String, String> getGeoTemplate(Region region, int shard, ConsistencyLevel consistencyLevel) {
+        return shard == 0 ? getGeoTemplate(region, consistencyLevel) : shardGeoRedisTemplates.get(region).get(shard);
+    }
+
+    private <V> RedisTemplate<String, V> getTemplate(Region region, ConsistencyLevel consistencyLevel, Map<Region, RedisTemplate<String, V>> masterMap, Map<Region, List<RedisTemplate<String, V>>> replicaMap) {
         if (region == null) {
             // Default to a primary region if no region is specified in the request
             region = Region.US; // Or throw an exception, depending on desired behavior
@@ -64,8 +101,9 @@ public class ShardedRedisTemplateRouter {
 
         if (ConsistencyLevel.STRONG.equals(consistencyLevel)) {
             return masterMap.get(region);
-        } else {
-            return replicaMap.get(region);
         }
+        // EVENTUAL reads fall back to the master while every replica is unreachable or lagging too far behind
+        int replica = replicaSelector.select(region);
+        return replica < 0 ? masterMap.get(region) : replicaMap.get(region).get(replica);
     }
 }
@@ -0,0 +1,82 @@
+-- Moves a finished ride out of the hot ride hash into its archive bucket in one step, so a ride is
+-- always in exactly one of them and two concurrent endRide calls cannot both finish it. When the ride's
+-- passenger and driver live on the same node, as in a region that is not split into shards, the same
+-- step also releases them: the passenger is written as ONLINE, their active-ride marker is released if
+-- it still names the ride, and the driver is set AVAILABLE and moved to its GEO index.
+-- KEYS[1]  rides:<region>                      hot hash of active rides
+-- KEYS[2]  rides:archive:<region>:<bucket>     archive hash the ride moves to
+-- KEYS[3]  rides:archive-bucket:<region>       ride id -> bucket, for ride ids carrying no start time
+-- KEYS[4]  passengers:active:<region>          passenger id -> active ride id
+-- KEYS[5]  passengers:<region>                 passenger hash
+-- KEYS[6]  passengers:version:<region>         passenger id -> write counter
+-- KEYS[7]  drivers:<region>                    driver profile hash (existence check only)
+-- KEYS[8]  drivers:geo:<region>:available      GEO index the driver moves to
+-- KEYS[9]  drivers:geo:<region>:on_ride        GEO index the driver leaves
+-- KEYS[10] drivers:geo:<region>:offline        GEO index the driver leaves
+-- KEYS[11] drivers:state:<region>:<id>         driver hot state
+-- KEYS[4..11] are only passed with a passenger id in ARGV[5].
+-- ARGV[1]  ride id
+-- ARGV[2]  finished ride, serialized
+-- ARGV[3]  bucket expiry as epoch millis, 0 to keep the bucket forever
+-- ARGV[4]  bucket name to record in KEYS[3], empty when the ride id carries its start time
+-- ARGV[5]  passenger id, empty to leave the passenger and driver alone
+-- ARGV[6]  serialized passenger with status ONLINE, empty when the passenger no longer exists
+-- ARGV[7]  passengers:events:<region> channel the passenger id is published on, empty for none
+-- ARGV[8]  driver id
+-- ARGV[9]  update timestamp (epoch millis)
+-- ARGV[10] drivers:events:<region> channel the driver's STATUS delta is published on, empty for none
+-- Returns 1 if the ride was moved, 0 if it was no longer in the hot hash.
+if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+if tonumber(ARGV[3]) > 0 then
+    redis.call('PEXPIREAT', KEYS[2], ARGV[3])
+end
+if ARGV[4] ~= '' then
+    redis.call('HSET', KEYS[3], ARGV[1], ARGV[4])
+end
+redis.call('HDEL', KEYS[1], ARGV[1])
+if ARGV[5] == '' then
+    return 1
+end
+
+local passengerId = ARGV[5]
+if redis.call('HGET', KEYS[4], passengerId) == ARGV[1] then
+    redis.call('HDEL', KEYS[4], passengerId)
+end
+if ARGV[6] ~= '' and redis.call('HEXISTS', KEYS[5], passengerId) == 1 then
+    redis.call('HSET', KEYS[5], passengerId, ARGV[6])
+    redis.call('HINCRBY', KEYS[6], passengerId, 1)
+    if ARGV[7] ~= '' then
+        redis.call('PUBLISH', ARGV[7], passengerId)
+    end
+end
+
+-- As update_driver_status.lua, for a driver not being handed off
+local driverId = ARGV[8]
+if redis.call('HEXISTS', KEYS[7], driverId) == 0 or redis.call('HEXISTS', KEYS[11], 'ho') == 1 then
+    return 1
+end
+redis.call('HSET', KEYS[11], 'status', 'AVAILABLE', 'ts', ARGV[9])
+local pos = redis.call('HMGET', KEYS[11], 'lon', 'lat')
+if pos[1] and pos[2] then
+    redis.call('GEOADD', KEYS[8], pos[1], pos[2], driverId)
+else
+    for i = 9, 10 do
+        local score = redis.call('ZSCORE', KEYS[i], driverId)
+        if score then
+            redis.call('ZADD', KEYS[8], score, driverId)
+            break
+        end
+    end
+end
+redis.call('ZREM', KEYS[9], driverId)
+redis.call('ZREM', KEYS[10], driverId)
+if ARGV[10] ~= '' then
+    redis.call('PUBLISH', ARGV[10], cjson.encode({
+        type = 'STATUS', id = driverId, status = 'AVAILABLE',
+        longitude = tonumber(pos[1]), latitude = tonumber(pos[2]), timestamp = tonumber(ARGV[9])
+    }))
+end
+return 1
@@ -0,0 +1,45 @@
+-- Places a driver on the shard of a split region that owns its cell, or on the master of a region it is
+-- saved in or handed off to: writes its hot state, indexes it under its status only and publishes a
+-- MOVED delta.
+-- KEYS[1]  drivers:members:<region>           ids of the drivers placed on this shard
+-- KEYS[2]  drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]  drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5]  drivers:state:<region>:<id>        per-driver hot state
+-- ARGV[1]  driver id
+-- ARGV[2]  longitude
+-- ARGV[3]  latitude
+-- ARGV[4]  status
+-- ARGV[5]  update timestamp (epoch millis)
+-- ARGV[6]  profile version carried over from the shard the driver left, empty for none
+-- ARGV[7]  profile version increment, 1 when the profile was just saved
+-- ARGV[8]  drivers:events:<region> channel of this shard the MOVED delta is published on, empty for none
+-- ARGV[9]  '0' to leave KEYS[1] alone, for a region that is not split and keys drivers by their profile
+-- Returns the driver's profile version.
+local indexes = { AVAILABLE = KEYS[2], ON_RIDE = KEYS[3], OFFLINE = KEYS[4] }
+local id, lon, lat, status = ARGV[1], ARGV[2], ARGV[3], ARGV[4]
+if not indexes[status] then
+    status = 'AVAILABLE'
+end
+redis.call('HDEL', KEYS[5], 'ho', 'hots')
+redis.call('HSET', KEYS[5], 'lon', lon, 'lat', lat, 'status', status, 'ts', ARGV[5])
+if ARGV[6] ~= '' then
+    redis.call('HSET', KEYS[5], 'pv', ARGV[6])
+end
+local version = redis.call('HINCRBY', KEYS[5], 'pv', ARGV[7])
+if ARGV[9] ~= '0' then
+    redis.call('HSET', KEYS[1], id, '1')
+end
+redis.call('GEOADD', indexes[status], lon, lat, id)
+for _, index in pairs(indexes) do
+    if index ~= indexes[status] then
+        redis.call('ZREM', index, id)
+    end
+end
+if ARGV[8] ~= '' then
+    redis.call('PUBLISH', ARGV[8], cjson.encode({
+        type = 'MOVED', id = id, status = status,
+        longitude = tonumber(lon), latitude = tonumber(lat), timestamp = tonumber(ARGV[5])
+    }))
+end
+return version
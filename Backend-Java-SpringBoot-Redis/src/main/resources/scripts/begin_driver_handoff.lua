@@ -0,0 +1,35 @@
+-- Starts moving a driver to another region: takes it out of the GEO indexes, so no booking can claim it
+-- here any more, and marks its state hash with the region it is leaving for. Location updates and shard
+-- moves leave a marked driver alone. Drivers on a ride are not moved until the ride has ended.
+-- KEYS[1]  drivers:<region>                   profile hash (existence check), or
+--          drivers:members:<region>           ids placed on this shard, when the region is split
+-- KEYS[2]  drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]  drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5]  drivers:state:<region>:<id>        per-driver hot state
+-- ARGV[1]  driver id
+-- ARGV[2]  region the driver is moving to
+-- ARGV[3]  start time (epoch millis)
+-- ARGV[4]  millis after which a handoff that never finished may be taken over
+-- Returns {'STARTED', field, value, ...} with the driver's state hash, or {'ON_RIDE'}, {'IN_PROGRESS'}
+-- when another handoff of the driver is under way, or {'MISSING'} when the driver is not in the region.
+local id = ARGV[1]
+if redis.call('HEXISTS', KEYS[1], id) == 0 then
+    return {'MISSING'}
+end
+local state = redis.call('HMGET', KEYS[5], 'status', 'ho', 'hots')
+if state[1] == 'ON_RIDE' then
+    return {'ON_RIDE'}
+end
+if state[2] and tonumber(ARGV[3]) - (tonumber(state[3]) or 0) < tonumber(ARGV[4]) then
+    return {'IN_PROGRESS'}
+end
+redis.call('HSET', KEYS[5], 'ho', ARGV[2], 'hots', ARGV[3])
+for i = 2, 4 do
+    redis.call('ZREM', KEYS[i], id)
+end
+local result = {'STARTED'}
+for _, value in ipairs(redis.call('HGETALL', KEYS[5])) do
+    result[#result + 1] = value
+end
+return result
@@ -0,0 +1,64 @@
+-- Books a ride against a candidate list picked by the caller (the in-process driver index): claims the
+-- first candidate that is still AVAILABLE, creates the ride record, marks the passenger as having an
+-- active ride and writes them as ON_RIDE. No GEO search runs here; the caller falls back to dispatch_ride.lua when nothing
+-- in the list can be claimed.
+-- KEYS[1]  rides:<region>                     ride hash
+-- KEYS[2]  drivers:geo:<region>:available     GEO index the claimed driver leaves
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index the claimed driver moves to
+-- KEYS[4]  passengers:active:<region>         passenger id -> active ride id
+-- KEYS[5]  passengers:<region>                passenger hash
+-- KEYS[6]  passengers:version:<region>        passenger id -> write counter
+-- ARGV[1]  passenger id
+-- ARGV[2]  ride id
+-- ARGV[3]  start time (epoch millis)
+-- ARGV[4]  driver state key prefix, drivers:state:<region>:
+-- ARGV[5]  drivers:events:<region> channel the claimed driver's STATUS delta is published on, empty for none
+-- ARGV[6]  serialized passenger with status ON_RIDE, written only if the passenger still exists
+-- ARGV[7]  passengers:events:<region> channel the passenger id is published on, empty for none
+-- ARGV[8..] candidate driver ids, preferred first
+-- Driver state keys are derived from the candidate ids, so this script targets a standalone region master.
+-- Returns {outcome, driverId, skipped}, outcome being OK, PASSENGER_ON_RIDE or NO_AVAILABLE_DRIVERS and skipped
+-- the number of leading candidates that were no longer AVAILABLE.
+local passengerId = ARGV[1]
+
+if redis.call('HEXISTS', KEYS[4], passengerId) == 1 then
+    return {'PASSENGER_ON_RIDE', false, 0}
+end
+
+local skipped = 0
+for c = 8, #ARGV do
+    local driverId = ARGV[c]
+    local stateKey = ARGV[4] .. driverId
+    local score = redis.call('ZSCORE', KEYS[2], driverId)
+    if score and redis.call('HGET', stateKey, 'status') == 'AVAILABLE' then
+        redis.call('HSET', stateKey, 'status', 'ON_RIDE', 'ts', ARGV[3])
+        redis.call('ZREM', KEYS[2], driverId)
+        redis.call('ZADD', KEYS[3], score, driverId)
+        redis.call('HSET', KEYS[1], ARGV[2], cjson.encode({
+            ['@class'] = 'com.ashwani.entity.Ride',
+            id = ARGV[2],
+            passengerId = passengerId,
+            driverId = driverId,
+            status = 'ONGOING',
+            startTime = tonumber(ARGV[3])
+        }))
+        redis.call('HSET', KEYS[4], passengerId, ARGV[2])
+        if redis.call('HEXISTS', KEYS[5], passengerId) == 1 then
+            redis.call('HSET', KEYS[5], passengerId, ARGV[6])
+            redis.call('HINCRBY', KEYS[6], passengerId, 1)
+            if ARGV[7] ~= '' then
+                redis.call('PUBLISH', ARGV[7], passengerId)
+            end
+        end
+        if ARGV[5] ~= '' then
+            local pos = redis.call('HMGET', stateKey, 'lon', 'lat')
+            redis.call('PUBLISH', ARGV[5], cjson.encode({
+                type = 'STATUS', id = driverId, status = 'ON_RIDE',
+                longitude = tonumber(pos[1]), latitude = tonumber(pos[2]), timestamp = tonumber(ARGV[3])
+            }))
+        end
+        return {'OK', driverId, skipped}
+    end
+    skipped = skipped + 1
+end
+return {'NO_AVAILABLE_DRIVERS', false, skipped}
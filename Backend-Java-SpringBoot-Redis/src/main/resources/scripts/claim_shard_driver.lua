@@ -0,0 +1,32 @@
+-- Claims the first still AVAILABLE driver of a candidate list on one shard of a split region. Unlike
+-- claim_driver.lua it writes neither the ride nor the passenger's active ride, which live on the shards
+-- their own ids hash to; the caller holds the passenger's marker and writes the ride after the claim.
+-- KEYS[1]  drivers:geo:<region>:available     GEO index the claimed driver leaves
+-- KEYS[2]  drivers:geo:<region>:on_ride       GEO index the claimed driver moves to
+-- ARGV[1]  claim time (epoch millis)
+-- ARGV[2]  driver state key prefix, drivers:state:<region>:
+-- ARGV[3]  drivers:events:<region> channel the claimed driver's STATUS delta is published on, empty for none
+-- ARGV[4..] candidate driver ids on this shard, preferred first
+-- Returns {driverId, skipped}, driverId being false when no candidate could be claimed and skipped the
+-- number of leading candidates that were no longer AVAILABLE.
+local skipped = 0
+for c = 4, #ARGV do
+    local driverId = ARGV[c]
+    local stateKey = ARGV[2] .. driverId
+    local score = redis.call('ZSCORE', KEYS[1], driverId)
+    if score and redis.call('HGET', stateKey, 'status') == 'AVAILABLE' then
+        redis.call('HSET', stateKey, 'status', 'ON_RIDE', 'ts', ARGV[1])
+        redis.call('ZREM', KEYS[1], driverId)
+        redis.call('ZADD', KEYS[2], score, driverId)
+        if ARGV[3] ~= '' then
+            local pos = redis.call('HMGET', stateKey, 'lon', 'lat')
+            redis.call('PUBLISH', ARGV[3], cjson.encode({
+                type = 'STATUS', id = driverId, status = 'ON_RIDE',
+                longitude = tonumber(pos[1]), latitude = tonumber(pos[2]), timestamp = tonumber(ARGV[1])
+            }))
+        end
+        return {driverId, skipped}
+    end
+    skipped = skipped + 1
+end
+return {false, skipped}
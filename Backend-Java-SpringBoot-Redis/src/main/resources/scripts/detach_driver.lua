@@ -0,0 +1,19 @@
+-- Takes a driver off one shard of a split region, before it is attached to the shard owning its new cell.
+-- KEYS[1]  drivers:members:<region>           ids of the drivers placed on this shard
+-- KEYS[2]  drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]  drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5]  drivers:state:<region>:<id>        per-driver hot state
+-- ARGV[1]  driver id
+-- Returns the driver's state hash as a flat field, value list, empty when the driver is not on this shard
+-- or is being handed off to another region.
+local id = ARGV[1]
+if redis.call('HEXISTS', KEYS[5], 'ho') == 1 or redis.call('HDEL', KEYS[1], id) == 0 then
+    return {}
+end
+local state = redis.call('HGETALL', KEYS[5])
+for i = 2, 4 do
+    redis.call('ZREM', KEYS[i], id)
+end
+redis.call('DEL', KEYS[5])
+return state
@@ -0,0 +1,72 @@
+-- Books a ride atomically: finds the nearest AVAILABLE driver, claims it, creates the ride record,
+-- marks the passenger as having an active ride and writes them as ON_RIDE, all in one round trip.
+-- KEYS[1]  rides:<region>                     ride hash
+-- KEYS[2]  drivers:geo:<region>:available     GEO index searched for candidates
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index the claimed driver moves to
+-- KEYS[4]  passengers:active:<region>         passenger id -> active ride id
+-- KEYS[5]  passengers:<region>                passenger hash
+-- KEYS[6]  passengers:version:<region>        passenger id -> write counter
+-- ARGV[1]  passenger id
+-- ARGV[2]  passenger longitude
+-- ARGV[3]  passenger latitude
+-- ARGV[4]  nearest candidates fetched per ring (GEOSEARCH COUNT)
+-- ARGV[5]  ride id
+-- ARGV[6]  start time (epoch millis)
+-- ARGV[7]  driver state key prefix, drivers:state:<region>:
+-- ARGV[8]  drivers:events:<region> channel the claimed driver's STATUS delta is published on, empty for none
+-- ARGV[9]  serialized passenger with status ON_RIDE, written only if the passenger still exists
+-- ARGV[10] passengers:events:<region> channel the passenger id is published on, empty for none
+-- ARGV[11..] search radii in km, smallest first; the search stops at the first ring with a claimable driver
+-- Driver state keys are derived from GEO members, so this script targets a standalone region master.
+-- Returns {outcome, driverId, ringsTried, scanned}, outcome being OK, PASSENGER_ON_RIDE or NO_AVAILABLE_DRIVERS
+-- and scanned the number of GEO results examined over all rings.
+local passengerId = ARGV[1]
+
+if redis.call('HEXISTS', KEYS[4], passengerId) == 1 then
+    return {'PASSENGER_ON_RIDE', false, 0, 0}
+end
+
+local rings = 0
+local scanned = 0
+for r = 11, #ARGV do
+    rings = rings + 1
+    local candidates = redis.call('GEOSEARCH', KEYS[2], 'FROMLONLAT', ARGV[2], ARGV[3],
+            'BYRADIUS', ARGV[r], 'km', 'ASC', 'COUNT', ARGV[4], 'WITHHASH')
+    for _, candidate in ipairs(candidates) do
+        scanned = scanned + 1
+        local driverId, score = candidate[1], candidate[2]
+        local stateKey = ARGV[7] .. driverId
+        -- The index is kept in step with the state hash; a stale entry is dropped rather than claimed
+        if redis.call('HGET', stateKey, 'status') == 'AVAILABLE' then
+            redis.call('HSET', stateKey, 'status', 'ON_RIDE', 'ts', ARGV[6])
+            redis.call('ZREM', KEYS[2], driverId)
+            redis.call('ZADD', KEYS[3], score, driverId)
+            redis.call('HSET', KEYS[1], ARGV[5], cjson.encode({
+                ['@class'] = 'com.ashwani.entity.Ride',
+                id = ARGV[5],
+                passengerId = passengerId,
+                driverId = driverId,
+                status = 'ONGOING',
+                startTime = tonumber(ARGV[6])
+            }))
+            redis.call('HSET', KEYS[4], passengerId, ARGV[5])
+            if redis.call('HEXISTS', KEYS[5], passengerId) == 1 then
+                redis.call('HSET', KEYS[5], passengerId, ARGV[9])
+                redis.call('HINCRBY', KEYS[6], passengerId, 1)
+                if ARGV[10] ~= '' then
+                    redis.call('PUBLISH', ARGV[10], passengerId)
+                end
+            end
+            if ARGV[8] ~= '' then
+                local pos = redis.call('HMGET', stateKey, 'lon', 'lat')
+                redis.call('PUBLISH', ARGV[8], cjson.encode({
+                    type = 'STATUS', id = driverId, status = 'ON_RIDE',
+                    longitude = tonumber(pos[1]), latitude = tonumber(pos[2]), timestamp = tonumber(ARGV[6])
+                }))
+            end
+            return {'OK', driverId, rings, scanned}
+        end
+        redis.call('ZREM', KEYS[2], driverId)
+    end
+end
+return {'NO_AVAILABLE_DRIVERS', false, rings, scanned}
@@ -0,0 +1,30 @@
+-- Removes a driver from the region it left once begin_driver_handoff.lua has run and the driver has been
+-- written to its new region, and tells the region's map subscribers it is gone.
+-- KEYS[1]  drivers:<region>                   profile hash, or
+--          drivers:members:<region>           ids placed on this shard, when the region is split
+-- KEYS[2]  drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]  drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5]  drivers:state:<region>:<id>        per-driver hot state
+-- ARGV[1]  driver id
+-- ARGV[2]  start time the handoff was marked with
+-- ARGV[3]  drivers:events:<region> channel the OFFLINE delta is published on, empty for none
+-- ARGV[4]  finish time (epoch millis)
+-- Returns 1 when the driver was removed, 0 when its handoff was taken over by another caller.
+local id = ARGV[1]
+if redis.call('HGET', KEYS[5], 'hots') ~= ARGV[2] then
+    return 0
+end
+local pos = redis.call('HMGET', KEYS[5], 'lon', 'lat')
+redis.call('HDEL', KEYS[1], id)
+for i = 2, 4 do
+    redis.call('ZREM', KEYS[i], id)
+end
+redis.call('DEL', KEYS[5])
+if ARGV[3] ~= '' then
+    redis.call('PUBLISH', ARGV[3], cjson.encode({
+        type = 'OFFLINE', id = id, status = 'OFFLINE',
+        longitude = tonumber(pos[1]), latitude = tonumber(pos[2]), timestamp = tonumber(ARGV[4])
+    }))
+end
+return 1
@@ -0,0 +1,30 @@
+-- Migration: moves drivers from the single legacy GEO index into the per-status GEO indexes.
+-- KEYS[1]    drivers:geo:<region>               legacy GEO index of every driver
+-- KEYS[2]    drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]    drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]    drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5..n] drivers:state:<region>:<id>        per-driver hot state, already backfilled
+-- ARGV[1..]  driver ids, in KEYS order
+-- Drivers already present in a status index are left where live updates put them.
+-- Returns the number of drivers moved.
+local indexes = { AVAILABLE = KEYS[2], ON_RIDE = KEYS[3], OFFLINE = KEYS[4] }
+local moved = 0
+for i = 5, #KEYS do
+    local id = ARGV[i - 4]
+    local score = redis.call('ZSCORE', KEYS[1], id)
+    if score then
+        local placed = false
+        for _, index in pairs(indexes) do
+            if redis.call('ZSCORE', index, id) then
+                placed = true
+            end
+        end
+        local status = redis.call('HGET', KEYS[i], 'status')
+        if not placed and status and indexes[status] then
+            redis.call('ZADD', indexes[status], score, id)
+            moved = moved + 1
+        end
+        redis.call('ZREM', KEYS[1], id)
+    end
+end
+return moved
@@ -0,0 +1,10 @@
+-- Releases a passenger's active-ride marker, but only if it still names the given ride, so a booking
+-- that failed after taking the marker cannot release one taken by a later booking.
+-- KEYS[1]  passengers:active:<region>         passenger id -> active ride id
+-- ARGV[1]  passenger id
+-- ARGV[2]  ride id
+-- Returns 1 if the marker was released, 0 otherwise.
+if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then
+    return redis.call('HDEL', KEYS[1], ARGV[1])
+end
+return 0
@@ -0,0 +1,47 @@
+-- Writes driver positions in place, without reading the JSON profile back.
+-- KEYS[1]    drivers:<region>                   profile hash (existence check, legacy JSON status), or
+--            drivers:members:<region>           ids placed on this shard, when the region is split
+-- KEYS[2]    drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]    drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]    drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5..n] drivers:state:<region>:<id>        per-driver hot state, one key per update
+-- ARGV[1]    update timestamp (epoch millis)
+-- ARGV[2]    drivers:events:<region> channel a MOVED delta is published on per applied update, empty for none
+-- ARGV[3..]  id, longitude, latitude for each update, in KEYS order
+-- Returns one entry per update: 1 when applied, 0 when the driver has no profile in the region, is being
+-- handed off to another one, or GEOADD refuses the position; a refused position leaves the others applied.
+local indexes = { AVAILABLE = KEYS[2], ON_RIDE = KEYS[3], OFFLINE = KEYS[4] }
+local ts, channel = ARGV[1], ARGV[2]
+local results = {}
+for i = 5, #KEYS do
+    local a = (i - 5) * 3 + 3
+    local id, lon, lat = ARGV[a], ARGV[a + 1], ARGV[a + 2]
+    local state = redis.call('HEXISTS', KEYS[1], id) == 1 and redis.call('HMGET', KEYS[i], 'status', 'ho')
+    if state and not state[2] then
+        local status = state[1]
+        if not status then
+            -- Only drivers stored before the state split lack a state hash, and their profile is JSON
+            local ok, profile = pcall(cjson.decode, redis.call('HGET', KEYS[1], id))
+            status = ok and type(profile) == 'table' and profile['status'] or nil
+        end
+        if not indexes[status] then
+            status = 'AVAILABLE'
+        end
+        local added = redis.pcall('GEOADD', indexes[status], lon, lat, id)
+        if type(added) == 'table' and added.err then
+            results[#results + 1] = 0
+        else
+            redis.call('HSET', KEYS[i], 'lon', lon, 'lat', lat, 'status', status, 'ts', ts)
+            if channel ~= '' then
+                redis.call('PUBLISH', channel, cjson.encode({
+                    type = 'MOVED', id = id, status = status,
+                    longitude = tonumber(lon), latitude = tonumber(lat), timestamp = tonumber(ts)
+                }))
+            end
+            results[#results + 1] = 1
+        end
+    else
+        results[#results + 1] = 0
+    end
+end
+return results
@@ -0,0 +1,44 @@
+-- Sets a driver's status in its hot state hash and moves it to the matching GEO index.
+-- KEYS[1]  drivers:<region>                   profile hash (existence check only), or
+--          drivers:members:<region>           ids placed on this shard, when the region is split
+-- KEYS[2]  drivers:geo:<region>:available     GEO index of AVAILABLE drivers
+-- KEYS[3]  drivers:geo:<region>:on_ride       GEO index of ON_RIDE drivers
+-- KEYS[4]  drivers:geo:<region>:offline       GEO index of OFFLINE drivers
+-- KEYS[5]  drivers:state:<region>:<id>        per-driver hot state
+-- ARGV[1]  driver id
+-- ARGV[2]  new status
+-- ARGV[3]  update timestamp (epoch millis)
+-- ARGV[4]  drivers:events:<region> channel the STATUS (or OFFLINE) delta is published on, empty for none
+-- Returns 1 when applied, 0 when the driver has no profile in the region or is being handed off to another one.
+local indexes = { AVAILABLE = KEYS[2], ON_RIDE = KEYS[3], OFFLINE = KEYS[4] }
+local id, status = ARGV[1], ARGV[2]
+if redis.call('HEXISTS', KEYS[1], id) == 0 or redis.call('HEXISTS', KEYS[5], 'ho') == 1 then
+    return 0
+end
+redis.call('HSET', KEYS[5], 'status', status, 'ts', ARGV[3])
+
+local target = indexes[status]
+local pos = redis.call('HMGET', KEYS[5], 'lon', 'lat')
+if pos[1] and pos[2] then
+    redis.call('GEOADD', target, pos[1], pos[2], id)
+else
+    for _, index in pairs(indexes) do
+        local score = redis.call('ZSCORE', index, id)
+        if score then
+            redis.call('ZADD', target, score, id)
+            break
+        end
+    end
+end
+for _, index in pairs(indexes) do
+    if index ~= target then
+        redis.call('ZREM', index, id)
+    end
+end
+if ARGV[4] ~= '' then
+    redis.call('PUBLISH', ARGV[4], cjson.encode({
+        type = status == 'OFFLINE' and 'OFFLINE' or 'STATUS', id = id, status = status,
+        longitude = tonumber(pos[1]), latitude = tonumber(pos[2]), timestamp = tonumber(ARGV[3])
+    }))
+end
+return 1
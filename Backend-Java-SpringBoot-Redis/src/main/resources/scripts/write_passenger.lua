@@ -0,0 +1,18 @@
+-- Writes or deletes a passenger and bumps its version, so near caches can tell a cached copy is current.
+-- KEYS[1]  passengers:<region>              passenger hash
+-- KEYS[2]  passengers:version:<region>      passenger id -> write counter
+-- ARGV[1]  passenger id
+-- ARGV[2]  serialized passenger, empty to delete
+-- ARGV[3]  passengers:events:<region> channel the id is published on, empty for none
+-- Returns the passenger's new version.
+local id = ARGV[1]
+if ARGV[2] == '' then
+    redis.call('HDEL', KEYS[1], id)
+else
+    redis.call('HSET', KEYS[1], id, ARGV[2])
+end
+local version = redis.call('HINCRBY', KEYS[2], id, 1)
+if ARGV[3] ~= '' then
+    redis.call('PUBLISH', ARGV[3], id)
+end
+return version
@@ -0,0 +1,82 @@
+package com.ashwani;
+
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The integration tests run against real Redis nodes on localhost by default, and against in-memory
+ * stand-ins ({@code com.ashwani.memory}) with {@code mvn test -Pin-memory}, which sets
+ * {@code ride.redis.backend=in-memory}; those need nothing listening.
+ */
+public final class RedisTestSupport {
+
+    private RedisTestSupport() {
+    }
+
+    public static boolean inMemory() {
+        return "in-memory".equals(System.getProperty("ride.redis.backend"));
+    }
+
+    /**
+     * Removes what a test wrote under its own id prefix from the keys matching {@code pattern}: keys named
+     * after such an id, hash fields and sorted-set members starting with it, and hash entries whose value
+     * mentions it, as rides do their passenger and driver. Everything else in those keys is left alone.
+     */
+    public static void deleteOwnEntries(RedisTemplate<String, ?> template, String pattern, String prefix) {
+        template.execute((RedisCallback<Void>) connection -> {
+            Set<byte[]> keys = connection.keyCommands().keys(bytes(pattern));
+            if (keys != null) {
+                for (byte[] key : keys) {
+                    deleteOwnEntries(connection, key, prefix);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void deleteOwnEntries(RedisConnection connection, byte[] key, String prefix) {
+        if (string(key).contains(prefix)) {
+            connection.keyCommands().del(key);
+            return;
+        }
+        DataType type = connection.keyCommands().type(key);
+        if (type == DataType.HASH) {
+            List<byte[]> fields = new ArrayList<>();
+            for (Map.Entry<byte[], byte[]> entry : connection.hashCommands().hGetAll(key).entrySet()) {
+                if (string(entry.getKey()).startsWith(prefix) || string(entry.getValue()).contains(prefix)) {
+                    fields.add(entry.getKey());
+                }
+            }
+            if (!fields.isEmpty()) {
+                connection.hashCommands().hDel(key, fields.toArray(byte[][]::new));
+            }
+        } else if (type == DataType.ZSET) {
+            List<byte[]> members = new ArrayList<>();
+            for (byte[] member : connection.zSetCommands().zRange(key, 0, -1)) {
+                if (string(member).startsWith(prefix)) {
+                    members.add(member);
+                }
+            }
+            if (!members.isEmpty()) {
+                connection.zSetCommands().zRem(key, members.toArray(byte[][]::new));
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Binary values hold ids as plain bytes too, and ISO-8859-1 keeps every byte
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+}
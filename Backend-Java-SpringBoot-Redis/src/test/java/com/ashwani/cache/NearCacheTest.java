@@ -0,0 +1,165 @@
+package com.ashwani.cache;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static com.ashwani.constant.ApplicationConstant.PASSENGER_KEY_PREFIX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the repositories with the near cache on against the ASIA region. Writes another instance would
+ * make are simulated by writing Redis directly, without touching this instance's cache. Needs a Redis on
+ * localhost:6379 and is skipped otherwise.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "ride.near-cache.enabled=true"
+})
+class NearCacheTest {
+
+    static final Region REGION = Region.ASIA;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void cleanRegion() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+    }
+
+    @Test
+    void strongReadsSeeARemoteWriteThatEventualReadsStillServeFromCache() throws InterruptedException {
+        passengerRepository.save(REGION, passenger("p-1", PassengerStatus.ONLINE));
+        // Lets the save's own invalidation come back over pub/sub before the passenger is cached
+        Thread.sleep(300);
+        assertEquals(PassengerStatus.ONLINE, passengerRepository.findById(REGION, "p-1", ConsistencyLevel.STRONG).getStatus());
+
+        writeBehindCache(passenger("p-1", PassengerStatus.ON_RIDE));
+
+        assertEquals(PassengerStatus.ONLINE, passengerRepository.findById(REGION, "p-1", ConsistencyLevel.EVENTUAL).getStatus());
+        assertEquals(PassengerStatus.ON_RIDE, passengerRepository.findById(REGION, "p-1", ConsistencyLevel.STRONG).getStatus());
+        // The STRONG read cached the newer copy
+        assertEquals(PassengerStatus.ON_RIDE, passengerRepository.findById(REGION, "p-1", ConsistencyLevel.EVENTUAL).getStatus());
+    }
+
+    @Test
+    void publishedWritesInvalidateEventualReads() throws InterruptedException {
+        passengerRepository.save(REGION, passenger("p-2", PassengerStatus.ONLINE));
+        passengerRepository.findById(REGION, "p-2", ConsistencyLevel.EVENTUAL);
+
+        // What another instance's save does: write, bump the version and publish the id
+        writeBehindCache(passenger("p-2", PassengerStatus.ON_RIDE));
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        long deadline = System.currentTimeMillis() + 10_000;
+        PassengerStatus status = PassengerStatus.ONLINE;
+        while (status != PassengerStatus.ON_RIDE && System.currentTimeMillis() < deadline) {
+            // The listener subscribes in the background, so keep publishing until it has
+            template.convertAndSend(NearCache.passengerChannel(REGION), "p-2");
+            Thread.sleep(100);
+            status = passengerRepository.findById(REGION, "p-2", ConsistencyLevel.EVENTUAL).getStatus();
+        }
+        assertEquals(PassengerStatus.ON_RIDE, status);
+    }
+
+    @Test
+    void cachedCopiesCannotBeModifiedByCallers() {
+        passengerRepository.save(REGION, passenger("p-3", PassengerStatus.ONLINE));
+        passengerRepository.findById(REGION, "p-3", ConsistencyLevel.STRONG).setStatus(PassengerStatus.OFFLINE);
+
+        assertEquals(PassengerStatus.ONLINE, passengerRepository.findById(REGION, "p-3", ConsistencyLevel.STRONG).getStatus());
+        assertEquals(PassengerStatus.ONLINE, passengerRepository.findById(REGION, "p-3", ConsistencyLevel.EVENTUAL).getStatus());
+    }
+
+    @Test
+    void driverProfilesAreCachedUntilTheDriverIsSavedAgain() {
+        saveDriver("d-1", "Before");
+        double hits = lookups("drivers", "hit");
+
+        assertEquals("Before", driverRepository.findDriverById(REGION, "d-1", ConsistencyLevel.STRONG).getName());
+        driverRepository.updateDriverLocation(REGION, "d-1", 139.71, 35.69);
+        Driver moved = driverRepository.findDriverById(REGION, "d-1", ConsistencyLevel.STRONG);
+        assertEquals("Before", moved.getName());
+        assertEquals(139.71, moved.getLongitude(), 1e-9);
+        assertTrue(lookups("drivers", "hit") > hits, "the profile should have come from the cache");
+
+        saveDriver("d-1", "After");
+        assertEquals("After", driverRepository.findDriverById(REGION, "d-1", ConsistencyLevel.STRONG).getName());
+    }
+
+    private void writeBehindCache(Passenger passenger) {
+        router.getPassengerTemplate(REGION, ConsistencyLevel.STRONG).opsForHash()
+                .put(PASSENGER_KEY_PREFIX + REGION.name().toLowerCase(), passenger.getId(), passenger);
+        router.getGeoTemplate(REGION, ConsistencyLevel.STRONG).opsForHash()
+                .increment(PassengerRepository.versionKey(REGION), passenger.getId(), 1);
+    }
+
+    private double lookups(String cache, String outcome) {
+        return meterRegistry.counter("ride.cache.lookups", "cache", cache, "outcome", outcome).count();
+    }
+
+    private void saveDriver(String id, String name) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setName(name);
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLatitude(35.68);
+        driver.setLongitude(139.70);
+        driverRepository.saveDriver(REGION, driver);
+    }
+
+    private static Passenger passenger(String id, PassengerStatus status) {
+        Passenger passenger = new Passenger();
+        passenger.setId(id);
+        passenger.setName(id);
+        passenger.setStatus(status);
+        passenger.setLatitude(35.68);
+        passenger.setLongitude(139.70);
+        return passenger;
+    }
+}
@@ -0,0 +1,117 @@
+package com.ashwani.codec;
+
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.repository.RideIds;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionedRedisSerializerTest {
+
+    private static <T> VersionedRedisSerializer<T> serializer(EntityCodec<T> codec, ValueFormat format) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        return new VersionedRedisSerializer<>(codec, new Jackson2JsonRedisSerializer<>(objectMapper, codec.type()), format);
+    }
+
+    @Test
+    void binaryRoundTripsEveryEntityAndIsSmallerThanJson() {
+        Driver driver = new Driver();
+        driver.setId(UUID.randomUUID().toString());
+        driver.setName("Zoë Müller");
+        driver.setStatus(DriverStatus.ON_RIDE);
+        driver.setLatitude(48.8566);
+        driver.setLongitude(2.3522);
+        driver.setLastUpdated(System.currentTimeMillis());
+
+        Passenger passenger = new Passenger();
+        passenger.setId("passenger-7");
+        passenger.setName("Passenger 7");
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLatitude(-33.8688);
+        passenger.setLongitude(151.2093);
+
+        Ride ride = new Ride();
+        ride.setStartTime(System.currentTimeMillis());
+        ride.setEndTime(ride.getStartTime() + 1_234_567);
+        ride.setId(RideIds.newId(ride.getStartTime()));
+        ride.setPassengerId(passenger.getId());
+        ride.setDriverId(driver.getId());
+        ride.setStatus(RideStatus.COMPLETED);
+
+        assertRoundTrip(new DriverCodec(), driver);
+        assertRoundTrip(new PassengerCodec(), passenger);
+        assertRoundTrip(new RideCodec(), ride);
+    }
+
+    @Test
+    void binaryKeepsNullFields() {
+        Ride ride = new Ride();
+        ride.setId("not-a-uuid");
+        ride.setStatus(RideStatus.ONGOING);
+
+        VersionedRedisSerializer<Ride> binary = serializer(new RideCodec(), ValueFormat.BINARY);
+        assertEquals(ride, binary.deserialize(binary.serialize(ride)));
+        assertEquals(new Driver(), serializer(new DriverCodec(), ValueFormat.BINARY)
+                .deserialize(serializer(new DriverCodec(), ValueFormat.BINARY).serialize(new Driver())));
+    }
+
+    @Test
+    void binaryReaderStillReadsJson() {
+        VersionedRedisSerializer<Ride> binary = serializer(new RideCodec(), ValueFormat.BINARY);
+        VersionedRedisSerializer<Ride> json = serializer(new RideCodec(), ValueFormat.JSON);
+
+        Ride ride = new Ride();
+        ride.setId(UUID.randomUUID().toString());
+        ride.setDriverId("driver-1");
+        ride.setStatus(RideStatus.ONGOING);
+        ride.setStartTime(1_700_000_000_000L);
+        assertEquals(ride, binary.deserialize(json.serialize(ride)));
+
+        // As written by dispatch_ride.lua with cjson: no null fields, key order of the Lua table
+        String cjson = "{\"startTime\":1700000000000,\"status\":\"ONGOING\",\"driverId\":\"driver-1\","
+                + "\"@class\":\"com.ashwani.entity.Ride\",\"id\":\"" + ride.getId() + "\"}";
+        assertEquals(ride, binary.deserialize(cjson.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownVersions() {
+        VersionedRedisSerializer<Driver> binary = serializer(new DriverCodec(), ValueFormat.BINARY);
+        Driver driver = new Driver();
+        driver.setName("Driver");
+        driver.setLatitude(1.0);
+        byte[] bytes = binary.serialize(driver);
+
+        assertThrows(SerializationException.class, () -> binary.deserialize(Arrays.copyOf(bytes, bytes.length - 1)));
+        bytes[1] = 2;
+        assertThrows(SerializationException.class, () -> binary.deserialize(bytes));
+        assertNull(binary.deserialize(new byte[0]));
+    }
+
+    private static <T> void assertRoundTrip(EntityCodec<T> codec, T value) {
+        VersionedRedisSerializer<T> binary = serializer(codec, ValueFormat.BINARY);
+        byte[] encoded = binary.serialize(value);
+        assertEquals(VersionedRedisSerializer.MAGIC, encoded[0] & 0xFF);
+        assertEquals(value, binary.deserialize(encoded));
+
+        byte[] json = serializer(codec, ValueFormat.JSON).serialize(value);
+        assertTrue(encoded.length * 2 < json.length, encoded.length + " binary bytes vs " + json.length + " JSON bytes");
+    }
+}
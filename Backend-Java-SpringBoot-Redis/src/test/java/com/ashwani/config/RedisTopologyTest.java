@@ -0,0 +1,104 @@
+package com.ashwani.config;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.types.RedisClientInfo;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Points all six region roles at two addresses of the same local Redis and checks that exactly one
+ * pool is opened per address, with min-idle connections each. On a real Redis, which needs to be on
+ * localhost:6379, it also checks that the server sees no other connection under the client name; in
+ * memory each address is a node of its own, so that check is skipped there.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.us.master.host=localhost",
+        "spring.redis.us.master.port=6379",
+        "spring.redis.us.replica.host=127.0.0.1",
+        "spring.redis.us.replica.port=6379",
+        "spring.redis.eu.master.host=localhost",
+        "spring.redis.eu.master.port=6379",
+        "spring.redis.eu.replica.host=127.0.0.1",
+        "spring.redis.eu.replica.port=6379",
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=127.0.0.1",
+        "spring.redis.asia.replica.port=6379",
+        "ride.redis.client-name=" + RedisTopologyTest.CLIENT_NAME,
+        "ride.redis.pool.min-idle=2"
+})
+class RedisTopologyTest {
+
+    static final String CLIENT_NAME = "topology-test";
+    private static final int MIN_IDLE = 2;
+
+    @Autowired
+    private RedisTopology topology;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @Test
+    void opensOnePoolPerNode() {
+        assertEquals(2, topology.nodes().size());
+        for (Region region : Region.values()) {
+            assertSame(topology.get(Region.US, RedisTopology.Role.MASTER), topology.get(region, RedisTopology.Role.MASTER));
+            assertSame(topology.get(Region.US, RedisTopology.Role.REPLICA), topology.get(region, RedisTopology.Role.REPLICA));
+            assertSame(topology.get(region, RedisTopology.Role.MASTER),
+                    router.getDriverTemplate(region, ConsistencyLevel.STRONG).getConnectionFactory());
+            assertSame(router.getGeoTemplate(Region.US, ConsistencyLevel.EVENTUAL), router.getGeoTemplate(region, ConsistencyLevel.EVENTUAL));
+        }
+
+        // Each pool was warmed to min-idle at startup
+        assertEquals(topology.nodes().size() * MIN_IDLE, pooled());
+    }
+
+    @Test
+    void nothingElseConnectsUnderTheClientName() {
+        assumeFalse(RedisTestSupport.inMemory(), "Each address is a node of its own in memory");
+        RedisNodeConnectionFactory master = topology.get(Region.US, RedisTopology.Role.MASTER);
+        List<RedisClientInfo> clients;
+        try (RedisConnection connection = master.getConnection()) {
+            clients = connection.serverCommands().getClientList();
+        }
+        long open = clients.stream().filter(client -> CLIENT_NAME.equals(client.getName())).count();
+        assertEquals(pooled(), open);
+    }
+
+    private int pooled() {
+        int pooled = 0;
+        for (RedisNodeConnectionFactory node : topology.nodes()) {
+            assertEquals(3, node.getRoles().size());
+            pooled += node.getNumActive() + node.getNumIdle();
+        }
+        return pooled;
+    }
+}
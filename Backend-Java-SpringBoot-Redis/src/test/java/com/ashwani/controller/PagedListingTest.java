@@ -0,0 +1,134 @@
+package com.ashwani.controller;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Walks a region hash larger than Redis' compact encoding through the cursor pages and the NDJSON
+ * stream. Needs a Redis on localhost:6379 and is skipped otherwise.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379"
+})
+@AutoConfigureMockMvc
+class PagedListingTest {
+
+    // Above hash-max-listpack-entries, so HSCAN really pages instead of returning a compact hash in one reply
+    private static final int PASSENGERS = 600;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void seed() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(Region.ASIA, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+        for (int i = 0; i < PASSENGERS; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId("passenger-" + i);
+            passenger.setName("Passenger " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passenger.setLatitude(35.68);
+            passenger.setLongitude(139.76);
+            passengerRepository.save(Region.ASIA, passenger);
+        }
+    }
+
+    @Test
+    void cursorPagesCoverTheWholeHash() throws Exception {
+        Set<String> seen = new HashSet<>();
+        String cursor = "0";
+        int pages = 0;
+        while (cursor != null) {
+            MvcResult result = mockMvc.perform(get("/passengers").param("cursor", cursor).param("limit", "50")
+                            .header("X-Region", "ASIA").header("X-Consistency-Level", "STRONG"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            JsonNode page = objectMapper.readTree(result.getResponse().getContentAsString());
+            page.get("items").forEach(item -> seen.add(item.get("id").asText()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        }
+        assertEquals(PASSENGERS, seen.size());
+        assertEquals(true, pages > 1, "expected more than one page");
+    }
+
+    @Test
+    void ndjsonStreamsOneEntityPerLine() throws Exception {
+        MvcResult started = mockMvc.perform(get("/passengers").accept(MediaType.APPLICATION_NDJSON)
+                        .header("X-Region", "ASIA").header("X-Consistency-Level", "STRONG"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        Set<String> seen = new HashSet<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            seen.add(objectMapper.readTree(line).get("id").asText());
+        }
+        assertEquals(PASSENGERS, seen.size());
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() throws Exception {
+        mockMvc.perform(get("/passengers").param("cursor", "abc").header("X-Region", "ASIA"))
+                .andExpect(status().isBadRequest());
+    }
+}
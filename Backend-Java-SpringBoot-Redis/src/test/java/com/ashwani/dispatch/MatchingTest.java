@@ -0,0 +1,102 @@
+package com.ashwani.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchingTest {
+
+    @Test
+    void optimalBeatsFirstComeWhenNearestDriversCollide() {
+        // Passenger 0's nearest driver is also the only close one for passenger 1
+        int[][] drivers = {{0, 1}, {0, 1}};
+        double[][] km = {{0.5, 0.6}, {0.4, 1.6}};
+
+        int[] firstCome = Matching.firstCome(2, drivers, km);
+        assertArrayEquals(new int[]{0, 1}, firstCome);
+        assertEquals(2.1, Matching.totalKm(firstCome, drivers, km), 1e-9);
+
+        int[] optimal = Matching.optimal(2, drivers, km);
+        assertArrayEquals(new int[]{1, 0}, optimal);
+        assertEquals(1.0, Matching.totalKm(optimal, drivers, km), 1e-9);
+        assertArrayEquals(new int[]{1, 0}, Matching.greedy(2, drivers, km));
+    }
+
+    @Test
+    void optimalMatchesBruteForceOnSmallBatches() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            int passengers = 1 + random.nextInt(6);
+            int driverCount = 1 + random.nextInt(6);
+            int[][] drivers = new int[passengers][];
+            double[][] km = new double[passengers][];
+            for (int i = 0; i < passengers; i++) {
+                // Each passenger sees a random subset of the drivers
+                drivers[i] = random.ints(0, driverCount).distinct().limit(random.nextInt(driverCount + 1)).toArray();
+                km[i] = random.doubles(drivers[i].length, 0, 10).toArray();
+            }
+            int[] optimal = Matching.optimal(driverCount, drivers, km);
+            assertValid(optimal, drivers);
+            double[] best = bruteForce(0, new boolean[driverCount], drivers, km);
+            assertEquals(best[0], matched(optimal), "matched count in round " + round);
+            assertEquals(best[1], Matching.totalKm(optimal, drivers, km), 1e-9, "total distance in round " + round);
+
+            int[] greedy = Matching.greedy(driverCount, drivers, km);
+            assertValid(greedy, drivers);
+            assertValid(Matching.firstCome(driverCount, drivers, km), drivers);
+        }
+    }
+
+    @Test
+    void passengersWithoutCandidatesStayUnmatched() {
+        int[][] drivers = {{}, {0}, {0}};
+        double[][] km = {{}, {3.0}, {1.0}};
+        assertArrayEquals(new int[]{-1, -1, 0}, Matching.optimal(1, drivers, km));
+        assertArrayEquals(new int[]{-1, -1, 0}, Matching.greedy(1, drivers, km));
+        assertArrayEquals(new int[]{-1, 0, -1}, Matching.firstCome(1, drivers, km));
+    }
+
+    private static void assertValid(int[] assignment, int[][] drivers) {
+        Set<Integer> taken = new HashSet<>();
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0) {
+                int driver = assignment[i];
+                assertTrue(Arrays.stream(drivers[i]).anyMatch(candidate -> candidate == driver), "not a candidate");
+                assertTrue(taken.add(driver), "driver assigned twice");
+            }
+        }
+    }
+
+    private static int matched(int[] assignment) {
+        return (int) Arrays.stream(assignment).filter(column -> column >= 0).count();
+    }
+
+    // {most passengers matched, least total distance for that many} over passengers from i on
+    private static double[] bruteForce(int i, boolean[] taken, int[][] drivers, double[][] km) {
+        if (i == drivers.length) {
+            return new double[]{0, 0};
+        }
+        double[] best = bruteForce(i + 1, taken, drivers, km);
+        for (int c = 0; c < drivers[i].length; c++) {
+            int driver = drivers[i][c];
+            if (!taken[driver]) {
+                taken[driver] = true;
+                double[] rest = bruteForce(i + 1, taken, drivers, km);
+                taken[driver] = false;
+                double count = rest[0] + 1;
+                double total = rest[1] + km[i][c];
+                if (count > best[0] || count == best[0] && total < best[1]) {
+                    best = new double[]{count, total};
+                }
+            }
+        }
+        return best;
+    }
+}
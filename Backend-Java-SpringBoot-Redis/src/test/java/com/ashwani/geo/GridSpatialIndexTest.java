@@ -0,0 +1,73 @@
+package com.ashwani.geo;
+
+import com.ashwani.enums.DriverStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridSpatialIndexTest {
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(42);
+        GridSpatialIndex index = new GridSpatialIndex(0.01);
+        List<double[]> drivers = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            double lon = -74.05 + random.nextDouble() * 0.3;
+            double lat = 40.60 + random.nextDouble() * 0.3;
+            DriverStatus status = random.nextInt(4) == 0 ? DriverStatus.AVAILABLE : DriverStatus.ON_RIDE;
+            index.put("d" + i, lon, lat, status);
+            drivers.add(new double[]{i, lon, lat, status.ordinal()});
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double lon = -74.1 + random.nextDouble() * 0.4;
+            double lat = 40.55 + random.nextDouble() * 0.4;
+            List<String> expected = drivers.stream()
+                    .filter(d -> d[3] == DriverStatus.AVAILABLE.ordinal())
+                    .filter(d -> GridSpatialIndex.distanceKm(lon, lat, d[1], d[2]) <= 5)
+                    .sorted(Comparator.comparingDouble(d -> GridSpatialIndex.distanceKm(lon, lat, d[1], d[2])))
+                    .limit(10)
+                    .map(d -> "d" + (int) d[0])
+                    .toList();
+            assertEquals(expected, index.nearest(lon, lat, DriverStatus.AVAILABLE, 10, 5));
+        }
+        assertTrue(index.nearest(-73.9, 40.75, DriverStatus.AVAILABLE, 0, 5).isEmpty());
+    }
+
+    @Test
+    void movesStatusChangesAndRemovalsAreReflected() {
+        GridSpatialIndex index = new GridSpatialIndex(0.01);
+        index.put("a", 0.0, 0.0, DriverStatus.AVAILABLE);
+        index.put("b", 0.05, 0.0, DriverStatus.AVAILABLE);
+        assertEquals(List.of("a", "b"), index.nearest(0.0, 0.0, DriverStatus.AVAILABLE, 5, 50));
+
+        index.put("a", 0.2, 0.0, null);
+        assertEquals(List.of("b", "a"), index.nearest(0.0, 0.0, DriverStatus.AVAILABLE, 5, 50));
+
+        index.updateStatus("b", DriverStatus.ON_RIDE);
+        assertEquals(List.of("a"), index.nearest(0.0, 0.0, DriverStatus.AVAILABLE, 5, 50));
+
+        index.invalidateStatus("a");
+        assertTrue(index.nearest(0.0, 0.0, DriverStatus.AVAILABLE, 5, 50).isEmpty());
+
+        index.remove("a");
+        index.put("c", 0.01, 0.0, null);
+        assertEquals(2, index.size());
+        assertTrue(index.nearest(0.0, 0.0, DriverStatus.AVAILABLE, 5, 50).isEmpty(), "status unknown until set");
+    }
+
+    @Test
+    void decodesRedisGeoScores() {
+        // GEOADD Sicily 13.361389 38.115556 Palermo stores the score 3479099956230698
+        double[] palermo = RedisGeoHash.decode(3479099956230698d);
+        assertEquals(13.361389, palermo[0], 1e-5);
+        assertEquals(38.115556, palermo[1], 1e-5);
+    }
+}
@@ -0,0 +1,81 @@
+package com.ashwani.geo;
+
+import com.ashwani.config.RegionResolutionProperties;
+import com.ashwani.enums.Region;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionGridTest {
+
+    // A triangle, a box overlapping it and a concave "C" polygon
+    private static final Map<Region, List<String>> AREAS = Map.of(
+            Region.US, List.of("-10 -10; 30 -10; 10 25"),
+            Region.EU, List.of("0 0; 40 20"),
+            Region.ASIA, List.of("50 0; 70 0; 70 5; 55 5; 55 15; 70 15; 70 20; 50 20"));
+
+    @Test
+    void lookupsMatchTestingEveryShape() {
+        RegionGrid grid = RegionGrid.of(AREAS, 0.5);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            double lon = -20 + random.nextDouble() * 100;
+            double lat = -20 + random.nextDouble() * 50;
+            assertEquals(bruteForce(lon, lat), grid.resolve(lon, lat), lon + "," + lat);
+        }
+        assertTrue(grid.boundaryCells() > 0);
+    }
+
+    @Test
+    void overlapsGoToTheEarlierRegion() {
+        RegionGrid grid = RegionGrid.of(AREAS, 1);
+        assertEquals(Region.US, grid.resolve(10, 5));
+        assertEquals(Region.EU, grid.resolve(35, 5));
+        // Inside the notch of the C
+        assertNull(grid.resolve(65, 10));
+        assertEquals(Region.ASIA, grid.resolve(52, 10));
+    }
+
+    @Test
+    void defaultAreasCoverTheRegionsCities() {
+        RegionGrid grid = RegionGrid.of(new RegionResolutionProperties().getRegions(), 0.5);
+        assertEquals(Region.US, grid.resolve(-74.006, 40.713));
+        assertEquals(Region.US, grid.resolve(-46.633, -23.550));
+        assertEquals(Region.EU, grid.resolve(-0.128, 51.507));
+        assertEquals(Region.EU, grid.resolve(18.424, -33.925));
+        assertEquals(Region.ASIA, grid.resolve(139.70, 35.68));
+        assertEquals(Region.ASIA, grid.resolve(-175.0, 65.0));
+        assertEquals(Region.ASIA, grid.resolve(151.209, -33.868));
+    }
+
+    @Test
+    void invalidCoordinatesAndShapesAreRejected() {
+        RegionGrid grid = RegionGrid.of(AREAS, 0.5);
+        assertNull(grid.resolve(Double.NaN, 0));
+        assertNull(grid.resolve(0, 91));
+        assertNull(grid.resolve(-181, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> RegionGrid.of(Map.of(Region.US, List.of("0 0")), 0.5));
+        assertThrows(IllegalArgumentException.class, () -> RegionGrid.of(Map.of(Region.US, List.of("0 0; 200 10")), 0.5));
+        assertThrows(IllegalArgumentException.class, () -> RegionGrid.of(Map.of(Region.US, List.of("0,0; 1,1")), 0.5));
+        assertThrows(IllegalArgumentException.class, () -> RegionGrid.of(AREAS, 0));
+    }
+
+    private static Region bruteForce(double lon, double lat) {
+        for (Region region : Region.values()) {
+            for (String spec : AREAS.get(region)) {
+                if (RegionGrid.of(Map.of(region, List.of(spec)), 180).resolve(lon, lat) == region) {
+                    return region;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,153 @@
+package com.ashwani.ingest;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.exception.BackpressureException;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.service.DriverService;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Queues pings for the ASIA region and flushes by hand; the pipeline's own flusher is set to an hour
+ * so it stays out of the way. Needs a Redis on localhost:6379 and is skipped otherwise.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "ride.ingestion.enabled=true",
+        "ride.ingestion.capacity=16",
+        "ride.ingestion.flush-interval=1h",
+        "ride.ingestion.max-staleness=500ms"
+})
+class LocationIngestionPipelineTest {
+
+    static final Region REGION = Region.ASIA;
+
+    @Autowired
+    private LocationIngestionPipeline pipeline;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private DriverService driverService;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void seed() {
+        pipeline.flushAll();
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+        for (int i = 0; i < 2; i++) {
+            Driver driver = new Driver();
+            driver.setId("driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLatitude(35.68);
+            driver.setLongitude(139.76);
+            driverRepository.saveDriver(REGION, driver);
+        }
+    }
+
+    @Test
+    void onlyTheLatestPingPerDriverIsWritten() {
+        double coalescedBefore = count("coalesced");
+        double writtenBefore = count("written");
+        for (int i = 1; i <= 5; i++) {
+            pipeline.submit(REGION, "driver-0", 139.70 + i * 0.01, 35.60);
+        }
+        pipeline.submit(REGION, "driver-1", 139.80, 35.70);
+        pipeline.submit(REGION, "nobody", 139.80, 35.70);
+
+        // Nothing reaches Redis before the flush
+        assertEquals(139.76, driverRepository.findDriverById(REGION, "driver-0", ConsistencyLevel.STRONG).getLongitude(), 1e-9);
+        pipeline.flushAll();
+
+        assertEquals(139.75, driverRepository.findDriverById(REGION, "driver-0", ConsistencyLevel.STRONG).getLongitude(), 1e-9);
+        assertEquals(35.70, driverRepository.findDriverById(REGION, "driver-1", ConsistencyLevel.STRONG).getLatitude(), 1e-9);
+        assertEquals(4, count("coalesced") - coalescedBefore);
+        assertEquals(2, count("written") - writtenBefore);
+    }
+
+    @Test
+    void fullBufferRefusesNewPings() {
+        double rejectedBefore = count("rejected");
+        for (int i = 0; i < 16; i++) {
+            pipeline.submit(REGION, "driver-0", 139.70, 35.60);
+        }
+        assertThrows(BackpressureException.class, () -> pipeline.submit(REGION, "driver-1", 139.70, 35.60));
+        assertEquals(1, count("rejected") - rejectedBefore);
+
+        pipeline.flushAll();
+        pipeline.submit(REGION, "driver-1", 139.70, 35.60);
+    }
+
+    @Test
+    void pingsOlderThanMaxStalenessAreDropped() throws InterruptedException {
+        double staleBefore = count("stale");
+        pipeline.submit(REGION, "driver-0", 139.70, 35.60);
+        Thread.sleep(700);
+        pipeline.submit(REGION, "driver-1", 139.80, 35.70);
+        pipeline.flushAll();
+
+        assertEquals(1, count("stale") - staleBefore);
+        assertEquals(139.76, driverRepository.findDriverById(REGION, "driver-0", ConsistencyLevel.STRONG).getLongitude(), 1e-9);
+        assertEquals(139.80, driverRepository.findDriverById(REGION, "driver-1", ConsistencyLevel.STRONG).getLongitude(), 1e-9);
+    }
+
+    @Test
+    void anOutOfRangePingIsRefusedAndDoesNotFailTheOthersInItsFlush() {
+        assertThrows(IllegalArgumentException.class, () -> driverService.updateDriverLocation(REGION, "driver-1", 139.80, 89.0));
+
+        // Past the service's check, GEOADD refuses it alone
+        double writtenBefore = count("written");
+        pipeline.submit(REGION, "driver-0", 139.75, 35.60);
+        pipeline.submit(REGION, "driver-1", 139.80, 89.0);
+        pipeline.flushAll();
+
+        assertEquals(139.75, driverRepository.findDriverById(REGION, "driver-0", ConsistencyLevel.STRONG).getLongitude(), 1e-9);
+        assertEquals(35.68, driverRepository.findDriverById(REGION, "driver-1", ConsistencyLevel.STRONG).getLatitude(), 1e-9);
+        assertEquals(1, count("written") - writtenBefore);
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.counter("ride.ingestion.pings", "region", REGION.name(), "outcome", outcome).count();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ashwani.loadgen;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.config.LoadGeneratorProperties;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * A short generated scenario against the application's own server and a Redis on localhost:6379; skipped
+ * when it is not reachable.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379"
+})
+class LoadGeneratorTest {
+
+    private static final Region REGION = Region.ASIA;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void clean() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+    }
+
+    @Test
+    void aScenarioIsReportedPerEndpointAndRegion() throws Exception {
+        LoadGeneratorProperties properties = new LoadGeneratorProperties();
+        properties.setRegions(List.of(REGION));
+        properties.setDrivers(30);
+        properties.setPassengers(50);
+        properties.setBookingsPerSecond(10);
+        properties.setTripMedian(Duration.ofMillis(300));
+        properties.setDuration(Duration.ofSeconds(3));
+        LoadGenerator generator = new LoadGenerator(properties, objectMapper, environment, applicationContext);
+
+        LoadReport report = generator.run(new ScenarioGenerator(properties), "http://localhost:" + port);
+
+        Map<String, Map<String, Object>> rows = new HashMap<>();
+        for (Map<String, Object> row : report.rows()) {
+            rows.put(row.get("endpoint") + " " + row.get("region"), row);
+        }
+        assertEquals(30L, rows.get("POST /drivers ASIA").get("ok"));
+        assertEquals(50L, rows.get("POST /passengers ASIA").get("ok"));
+        assertEquals(30L * 3, rows.get("POST /drivers/updateLocation ASIA").get("ok"));
+        Map<String, Object> bookings = rows.get("POST /rides/book ALL");
+        assertTrue((Long) bookings.get("ok") > 0);
+        assertEquals(0L, bookings.get("errors"));
+        assertTrue((Long) rows.get("POST /rides/end ASIA").get("ok") > 0);
+        assertTrue((Double) bookings.get("p99Ms") > 0);
+        assertEquals(0L, report.errors());
+    }
+}
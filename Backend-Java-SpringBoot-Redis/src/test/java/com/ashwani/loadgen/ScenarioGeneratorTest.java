@@ -0,0 +1,97 @@
+package com.ashwani.loadgen;
+
+import com.ashwani.config.LoadGeneratorProperties;
+import com.ashwani.enums.Region;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScenarioGeneratorTest {
+
+    @Test
+    void theSameSeedGivesTheSameScenario() {
+        LoadGeneratorProperties properties = properties();
+        List<ScenarioEvent> first = drain(new ScenarioGenerator(properties));
+        assertEquals(first, drain(new ScenarioGenerator(properties)));
+
+        properties.setSeed(7);
+        assertNotEquals(first.subList(0, 10), drain(new ScenarioGenerator(properties)).subList(0, 10));
+    }
+
+    @Test
+    void eventsFollowTheConfiguredTraffic() {
+        LoadGeneratorProperties properties = properties();
+        List<ScenarioEvent> events = drain(new ScenarioGenerator(properties));
+
+        long previous = 0;
+        boolean setupOver = false;
+        Set<String> riding = new HashSet<>();
+        int bookings = 0;
+        int pings = 0;
+        for (ScenarioEvent event : events) {
+            if (event.type().isSetup()) {
+                assertFalse(setupOver, "creations come before everything else");
+                continue;
+            }
+            setupOver = true;
+            assertTrue(event.at() >= previous && event.at() < properties.getDuration().toMillis());
+            previous = event.at();
+            switch (event.type()) {
+                case PING -> {
+                    pings++;
+                    // Within the city's disc, give or take the degree approximation
+                    assertEquals(35.6812, event.latitude(), 0.1);
+                    assertEquals(139.7671, event.longitude(), 0.1);
+                }
+                case BOOK -> {
+                    bookings++;
+                    assertTrue(riding.add(event.id()), "a riding passenger is not booked again");
+                }
+                case END -> assertTrue(riding.remove(event.id()), "only a booked passenger's ride ends");
+                default -> {
+                }
+            }
+        }
+        // 50 drivers pinging every second for a minute, 10 bookings a second on average
+        assertEquals(50 * 60, pings);
+        assertTrue(bookings > 500 && bookings < 700, "bookings: " + bookings);
+    }
+
+    @Test
+    void aRecordedScenarioReplaysIdentically(@TempDir Path directory) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Path file = directory.resolve("scenario.ndjson");
+        List<ScenarioEvent> recorded = drain(ScenarioFile.record(new ScenarioGenerator(properties()), file, objectMapper));
+
+        assertEquals(recorded, drain(ScenarioFile.replay(file, objectMapper)));
+    }
+
+    private static LoadGeneratorProperties properties() {
+        LoadGeneratorProperties properties = new LoadGeneratorProperties();
+        properties.setRegions(List.of(Region.ASIA));
+        properties.setDrivers(50);
+        properties.setPassengers(500);
+        properties.setBookingsPerSecond(10);
+        properties.setDuration(Duration.ofMinutes(1));
+        return properties;
+    }
+
+    private static List<ScenarioEvent> drain(Iterator<ScenarioEvent> scenario) {
+        List<ScenarioEvent> events = new ArrayList<>();
+        scenario.forEachRemaining(events::add);
+        return events;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ashwani.memory;
+
+import com.ashwani.geo.RedisGeoHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ashwani.geo.RedisGeoHash.LAT_MAX;
+import static com.ashwani.geo.RedisGeoHash.LAT_MIN;
+import static com.ashwani.geo.RedisGeoHash.STEP;
+
+/**
+ * GEOSEARCH over a sorted set scored with {@link RedisGeoHash}. As in Redis, the search picks the finest
+ * geohash grid on which the shape's bounding box spans only a few cells, reads each cell as one score
+ * range, and keeps the members whose decoded position is inside the shape, with Redis's distance formula.
+ */
+final class GeoSearch {
+
+    static final double EARTH_RADIUS_M = 6372797.560856;
+    private static final int MAX_CELLS = 16;
+
+    record Match(String member, long score, double longitude, double latitude, double distance) {
+    }
+
+    private GeoSearch() {
+    }
+
+    /**
+     * Members within {@code radiusM} of the point, or inside the {@code widthM} x {@code heightM} box
+     * centred on it when {@code radiusM} is negative; unsorted.
+     */
+    static List<Match> search(SortedSetValue set, double longitude, double latitude, double radiusM, double widthM, double heightM) {
+        boolean circle = radiusM >= 0;
+        double halfHeightM = circle ? radiusM : heightM / 2;
+        double halfWidthM = circle ? radiusM : widthM / 2;
+        double latDelta = Math.toDegrees(halfHeightM / EARTH_RADIUS_M);
+        double minLat = Math.max(latitude - latDelta, LAT_MIN);
+        double maxLat = Math.min(latitude + latDelta, LAT_MAX);
+        // Measured at the edge nearest a pole, where a metre spans the most longitude
+        double widestLat = Math.min(Math.max(Math.abs(minLat), Math.abs(maxLat)), 89.9);
+        double lonDelta = Math.toDegrees(halfWidthM / EARTH_RADIUS_M / Math.cos(Math.toRadians(widestLat)));
+
+        int step = STEP;
+        long latFrom;
+        long latTo;
+        long lonFrom;
+        long lonTo;
+        while (true) {
+            long cells = 1L << step;
+            double latCell = (LAT_MAX - LAT_MIN) / cells;
+            double lonCell = 360.0 / cells;
+            latFrom = (long) ((minLat - LAT_MIN) / latCell);
+            latTo = Math.min((long) ((maxLat - LAT_MIN) / latCell), cells - 1);
+            lonFrom = (long) Math.floor((longitude - lonDelta + 180) / lonCell);
+            lonTo = (long) Math.floor((longitude + lonDelta + 180) / lonCell);
+            if (lonTo - lonFrom + 1 >= cells) {
+                lonFrom = 0;
+                lonTo = cells - 1;
+            }
+            if ((latTo - latFrom + 1) * (lonTo - lonFrom + 1) <= MAX_CELLS || step == 1) {
+                break;
+            }
+            step--;
+        }
+
+        List<Match> matches = new ArrayList<>();
+        int shift = 2 * (STEP - step);
+        for (long latCell = latFrom; latCell <= latTo; latCell++) {
+            for (long lonColumn = lonFrom; lonColumn <= lonTo; lonColumn++) {
+                // Columns past the antimeridian wrap around
+                long hash = RedisGeoHash.interleave(latCell, Math.floorMod(lonColumn, 1L << step));
+                for (SortedSetValue.Member member : set.between(hash << shift, (hash + 1) << shift)) {
+                    double[] position = RedisGeoHash.decode(member.score());
+                    double distance = circle
+                            ? inCircle(longitude, latitude, position[0], position[1], radiusM)
+                            : inBox(longitude, latitude, position[0], position[1], widthM, heightM);
+                    if (distance >= 0) {
+                        matches.add(new Match(member.name(), (long) member.score(), position[0], position[1], distance));
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    static double distance(double longitude1, double latitude1, double longitude2, double latitude2) {
+        double v = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        if (v == 0.0) {
+            return latitudeDistance(latitude1, latitude2);
+        }
+        double latitude1Rad = Math.toRadians(latitude1);
+        double latitude2Rad = Math.toRadians(latitude2);
+        double u = Math.sin((latitude2Rad - latitude1Rad) / 2);
+        double a = u * u + Math.cos(latitude1Rad) * Math.cos(latitude2Rad) * v * v;
+        return 2.0 * EARTH_RADIUS_M * Math.asin(Math.sqrt(a));
+    }
+
+    // The distance, or -1 when outside
+    private static double inCircle(double longitude, double latitude, double pointLongitude, double pointLatitude, double radiusM) {
+        double distance = distance(longitude, latitude, pointLongitude, pointLatitude);
+        return distance <= radiusM ? distance : -1;
+    }
+
+    private static double inBox(double longitude, double latitude, double pointLongitude, double pointLatitude, double widthM, double heightM) {
+        if (latitudeDistance(pointLatitude, latitude) > heightM / 2
+                || distance(pointLongitude, pointLatitude, longitude, pointLatitude) > widthM / 2) {
+            return -1;
+        }
+        return distance(longitude, latitude, pointLongitude, pointLatitude);
+    }
+
+    private static double latitudeDistance(double latitude1, double latitude2) {
+        return EARTH_RADIUS_M * Math.abs(Math.toRadians(latitude2) - Math.toRadians(latitude1));
+    }
+}
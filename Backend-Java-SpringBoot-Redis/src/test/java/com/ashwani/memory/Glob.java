@@ -0,0 +1,84 @@
+package com.ashwani.memory;
+
+/**
+ * Redis's glob-style patterns, as KEYS, SCAN MATCH and PSUBSCRIBE take them: {@code *}, {@code ?},
+ * {@code [abc]}, {@code [^a]}, {@code [a-z]} and {@code \} to escape.
+ */
+final class Glob {
+
+    private Glob() {
+    }
+
+    static boolean matches(String pattern, String string) {
+        return matches(pattern, 0, string, 0);
+    }
+
+    private static boolean matches(String pattern, int p, String string, int s) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            switch (c) {
+                case '*' -> {
+                    while (p + 1 < pattern.length() && pattern.charAt(p + 1) == '*') {
+                        p++;
+                    }
+                    if (p + 1 == pattern.length()) {
+                        return true;
+                    }
+                    for (int from = s; from <= string.length(); from++) {
+                        if (matches(pattern, p + 1, string, from)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                case '?' -> {
+                    if (s >= string.length()) {
+                        return false;
+                    }
+                    s++;
+                }
+                case '[' -> {
+                    if (s >= string.length()) {
+                        return false;
+                    }
+                    p++;
+                    boolean not = p < pattern.length() && pattern.charAt(p) == '^';
+                    if (not) {
+                        p++;
+                    }
+                    boolean match = false;
+                    char actual = string.charAt(s);
+                    while (p < pattern.length() && pattern.charAt(p) != ']') {
+                        if (pattern.charAt(p) == '\\' && p + 1 < pattern.length()) {
+                            p++;
+                            match |= pattern.charAt(p) == actual;
+                        } else if (p + 2 < pattern.length() && pattern.charAt(p + 1) == '-') {
+                            char start = pattern.charAt(p);
+                            char end = pattern.charAt(p + 2);
+                            match |= actual >= Math.min(start, end) && actual <= Math.max(start, end);
+                            p += 2;
+                        } else {
+                            match |= pattern.charAt(p) == actual;
+                        }
+                        p++;
+                    }
+                    if (match == not) {
+                        return false;
+                    }
+                    s++;
+                }
+                default -> {
+                    if (c == '\\' && p + 1 < pattern.length()) {
+                        c = pattern.charAt(++p);
+                    }
+                    if (s >= string.length() || string.charAt(s) != c) {
+                        return false;
+                    }
+                    s++;
+                }
+            }
+            p++;
+        }
+        return s == string.length();
+    }
+}
@@ -0,0 +1,60 @@
+package com.ashwani.memory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A hash key's fields. The scan order is only built once the hash is first scanned, so the many small
+ * per-driver state hashes, which are read whole, never pay for it.
+ */
+final class HashValue {
+
+    private final Map<String, String> fields = new HashMap<>();
+    private ScanOrder scanOrder;
+
+    String get(String field) {
+        return fields.get(field);
+    }
+
+    /**
+     * @return whether the field is new
+     */
+    boolean put(String field, String value) {
+        boolean added = fields.put(field, value) == null;
+        if (added && scanOrder != null) {
+            scanOrder.add(field);
+        }
+        return added;
+    }
+
+    boolean remove(String field) {
+        boolean removed = fields.remove(field) != null;
+        if (removed && scanOrder != null) {
+            scanOrder.remove(field);
+        }
+        return removed;
+    }
+
+    int size() {
+        return fields.size();
+    }
+
+    Map<String, String> fields() {
+        return fields;
+    }
+
+    long scan(long cursor, int count, BiConsumer<String, String> out) {
+        if (scanOrder == null) {
+            scanOrder = new ScanOrder();
+            fields.keySet().forEach(scanOrder::add);
+        }
+        return scanOrder.page(cursor, count, field -> out.accept(field, fields.get(field)));
+    }
+
+    HashValue copy() {
+        HashValue copy = new HashValue();
+        copy.fields.putAll(fields);
+        return copy;
+    }
+}
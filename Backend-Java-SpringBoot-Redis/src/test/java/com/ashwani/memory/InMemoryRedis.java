@@ -0,0 +1,1042 @@
+package com.ashwani.memory;
+
+import com.ashwani.geo.RedisGeoHash;
+import io.netty.channel.local.LocalAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One Redis node kept in this JVM: a keyspace of strings, hashes and sorted sets with the commands the
+ * application sends, GEO commands on sorted sets, pub/sub, and the Lua scripts sent with EVAL, run as
+ * they are written ({@link LuaScripts}). It speaks the Redis protocol over in-process connections
+ * ({@link RespServer}), so the Jedis pools, the Lettuce reactive connections and their pub/sub use it
+ * exactly as they use a real server.
+ * <p>
+ * Every command runs under one lock, so commands and scripts are atomic as in Redis. Values are kept as
+ * ISO-8859-1 strings, which map every byte to one char and back, so binary values survive unchanged.
+ * <p>
+ * A node can {@link #follow} another as its replica: it then refuses writes from clients and applies
+ * every write of its master {@code replicationLag} after the master did, or with the write itself when the
+ * lag is zero. Both report their replication offsets in {@code INFO replication} as Redis does, so replica
+ * lag tracking sees the lag. {@code latency} is added to every round trip, once per pipelined batch.
+ */
+public class InMemoryRedis implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryRedis.class);
+
+    private static final Set<String> WRITES = Set.of("DEL", "UNLINK", "PEXPIREAT", "PERSIST", "SET", "INCRBY",
+            "HSET", "HMSET", "HSETNX", "HDEL", "HINCRBY", "ZADD", "ZREM", "GEOADD", "FLUSHALL", "FLUSHDB");
+    private static final Map<String, Double> UNITS = Map.of("m", 1.0, "km", 1000.0, "mi", 1609.34, "ft", 0.3048);
+
+    /**
+     * A simple-string reply, such as {@code +OK}.
+     */
+    record Status(String text) {
+        static final Status OK = new Status("OK");
+    }
+
+    /**
+     * Receives what is published on the channels and patterns it subscribed to.
+     */
+    interface Subscriber {
+
+        void message(String channel, String message);
+
+        void patternMessage(String pattern, String channel, String message);
+    }
+
+    private final String name;
+    private final long latencyNanos;
+    private final long replicationLagNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Object> keyspace = new HashMap<>();
+    private final Map<String, Long> expires = new HashMap<>();
+    private final List<InMemoryRedis> replicas = new CopyOnWriteArrayList<>();
+    private final Map<String, Set<Subscriber>> channels = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> patterns = new ConcurrentHashMap<>();
+    // Messages are handed to subscribers in publish order, outside the lock
+    private final ExecutorService publisher;
+    private final LuaScripts scripts;
+    private final RespServer server;
+    private volatile InMemoryRedis master;
+    private volatile long replicationOffset;
+    private LinkedBlockingQueue<Replicated> backlog;
+    private Thread applier;
+
+    private record Replicated(long dueNanos, String[] command, long offset) {
+    }
+
+    private InMemoryRedis(String name, Duration latency, Duration replicationLag) {
+        this.name = name;
+        this.latencyNanos = latency.toNanos();
+        this.replicationLagNanos = replicationLag.toNanos();
+        this.publisher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "in-memory-redis-publish-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scripts = new LuaScripts(this);
+        this.server = new RespServer(this, name);
+    }
+
+    /**
+     * Starts a node.
+     *
+     * @param name           the address it stands in for, for logs and {@code INFO}
+     * @param latency        added to every round trip
+     * @param replicationLag how long after its master a replica applies a write, should it become one
+     */
+    public static InMemoryRedis start(String name, Duration latency, Duration replicationLag) {
+        return new InMemoryRedis(name, latency, replicationLag);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Opens a connection to the node, as Jedis's socket.
+     */
+    Socket connect() {
+        return server.connect();
+    }
+
+    /**
+     * Where Netty's local channels reach the node.
+     */
+    LocalAddress address() {
+        return server.address();
+    }
+
+    long latencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Makes this node a replica of {@code master}, starting from a copy of its current data.
+     */
+    public void follow(InMemoryRedis master) {
+        if (master == this || this.master == master) {
+            return;
+        }
+        if (this.master != null || !replicas.isEmpty()) {
+            throw new IllegalStateException("In-memory node " + name + " already takes part in replication");
+        }
+        master.lock.lock();
+        lock.lock();
+        try {
+            keyspace.clear();
+            master.keyspace.forEach((key, value) -> keyspace.put(key, copy(value)));
+            expires.putAll(master.expires);
+            replicationOffset = master.replicationOffset;
+            if (replicationLagNanos > 0) {
+                backlog = new LinkedBlockingQueue<>();
+                applier = new Thread(this::applyBacklog, "in-memory-redis-replication-" + name);
+                applier.setDaemon(true);
+                applier.start();
+            }
+            this.master = master;
+            master.replicas.add(this);
+        } finally {
+            lock.unlock();
+            master.lock.unlock();
+        }
+        logger.info("In-memory Redis {} replicates {} with {} ms lag", name, master.name, replicationLagNanos / 1_000_000);
+    }
+
+    @Override
+    public void close() {
+        server.close();
+        publisher.shutdownNow();
+        if (applier != null) {
+            applier.interrupt();
+        }
+    }
+
+    /**
+     * Runs one client command.
+     */
+    Object execute(String[] command) {
+        lock.lock();
+        try {
+            return command(command);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a command from a script; the lock is already held.
+     */
+    Object call(String... command) {
+        return command(command);
+    }
+
+    //<editor-fold desc="Pub/sub">
+    void subscribe(Subscriber subscriber, String channel) {
+        channels.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    }
+
+    void unsubscribe(Subscriber subscriber, String channel) {
+        channels.computeIfPresent(channel, (key, subscribers) -> subscribers.remove(subscriber) && subscribers.isEmpty() ? null : subscribers);
+    }
+
+    void patternSubscribe(Subscriber subscriber, String pattern) {
+        patterns.computeIfAbsent(pattern, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+    }
+
+    void patternUnsubscribe(Subscriber subscriber, String pattern) {
+        patterns.computeIfPresent(pattern, (key, subscribers) -> subscribers.remove(subscriber) && subscribers.isEmpty() ? null : subscribers);
+    }
+
+    private long publish(String channel, String message) {
+        long receivers = 0;
+        Set<Subscriber> subscribers = channels.get(channel);
+        if (subscribers != null) {
+            for (Subscriber subscriber : subscribers) {
+                publisher.execute(() -> subscriber.message(channel, message));
+                receivers++;
+            }
+        }
+        for (Map.Entry<String, Set<Subscriber>> entry : patterns.entrySet()) {
+            if (Glob.matches(entry.getKey(), channel)) {
+                for (Subscriber subscriber : entry.getValue()) {
+                    publisher.execute(() -> subscriber.patternMessage(entry.getKey(), channel, message));
+                    receivers++;
+                }
+            }
+        }
+        return receivers;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Replication">
+    private void propagate(String[] command) {
+        replicationOffset += respSize(command);
+        for (InMemoryRedis replica : replicas) {
+            if (replica.backlog == null) {
+                replica.apply(command, replicationOffset);
+            } else {
+                replica.backlog.add(new Replicated(System.nanoTime() + replica.replicationLagNanos, command, replicationOffset));
+            }
+        }
+    }
+
+    private void applyBacklog() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Replicated replicated = backlog.take();
+                for (long wait = replicated.dueNanos() - System.nanoTime(); wait > 0; wait = replicated.dueNanos() - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                apply(replicated.command(), replicated.offset());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(String[] command, long offset) {
+        lock.lock();
+        try {
+            dispatch(command[0].toUpperCase(Locale.ROOT), command);
+        } catch (RedisError e) {
+            logger.warn("In-memory replica {} failed to apply {}: {}", name, command[0], e.getMessage());
+        } finally {
+            replicationOffset = offset;
+            lock.unlock();
+        }
+    }
+
+    // Bytes the command takes in the replication stream
+    private static long respSize(String[] command) {
+        long size = 3 + String.valueOf(command.length).length();
+        for (String argument : command) {
+            size += 5 + String.valueOf(argument.length()).length() + argument.length();
+        }
+        return size;
+    }
+    //</editor-fold>
+
+    private Object command(String[] command) {
+        String name = command[0].toUpperCase(Locale.ROOT);
+        // Relative expiries are replicated as the absolute time they resolve to, like Redis does
+        if (name.equals("EXPIRE") || name.equals("PEXPIRE") || name.equals("EXPIREAT")) {
+            arity(command, 3, 3);
+            long value = integer(command[2]);
+            long at = switch (name) {
+                case "EXPIRE" -> System.currentTimeMillis() + value * 1000;
+                case "PEXPIRE" -> System.currentTimeMillis() + value;
+                default -> value * 1000;
+            };
+            command = new String[]{"PEXPIREAT", command[1], String.valueOf(at)};
+            name = "PEXPIREAT";
+        } else if (name.equals("INCR")) {
+            arity(command, 2, 2);
+            command = new String[]{"INCRBY", command[1], "1"};
+            name = "INCRBY";
+        }
+        boolean write = WRITES.contains(name);
+        if (write && master != null) {
+            throw new RedisError("READONLY You can't write against a read only replica.");
+        }
+        Object reply = dispatch(name, command);
+        if (write) {
+            propagate(command);
+        }
+        return reply;
+    }
+
+    private Object dispatch(String name, String[] c) {
+        return switch (name) {
+            case "PING" -> c.length > 1 ? c[1] : new Status("PONG");
+            case "ECHO" -> arity(c, 2, 2)[1];
+            case "SELECT" -> {
+                if (integer(arity(c, 2, 2)[1]) != 0) {
+                    throw new RedisError("ERR DB index is out of range");
+                }
+                yield Status.OK;
+            }
+            case "INFO" -> info(c.length > 1 ? c[1].toLowerCase(Locale.ROOT) : "all");
+            case "DBSIZE" -> (long) liveKeys().size();
+            case "TIME" -> {
+                long micros = System.currentTimeMillis() * 1000;
+                yield List.of(String.valueOf(micros / 1_000_000), String.valueOf(micros % 1_000_000));
+            }
+            case "FLUSHALL", "FLUSHDB" -> {
+                keyspace.clear();
+                expires.clear();
+                yield Status.OK;
+            }
+
+            case "DEL", "UNLINK" -> {
+                long deleted = 0;
+                for (int i = 1; i < arity(c, 2, -1).length; i++) {
+                    if (lookup(c[i]) != null) {
+                        remove(c[i]);
+                        deleted++;
+                    }
+                }
+                yield deleted;
+            }
+            case "EXISTS" -> {
+                long found = 0;
+                for (int i = 1; i < arity(c, 2, -1).length; i++) {
+                    found += lookup(c[i]) != null ? 1 : 0;
+                }
+                yield found;
+            }
+            case "TYPE" -> {
+                Object value = lookup(arity(c, 2, 2)[1]);
+                yield new Status(value == null ? "none" : value instanceof HashValue ? "hash" : value instanceof SortedSetValue ? "zset" : "string");
+            }
+            case "KEYS" -> {
+                String pattern = arity(c, 2, 2)[1];
+                List<String> keys = new ArrayList<>();
+                for (String key : liveKeys()) {
+                    if (Glob.matches(pattern, key)) {
+                        keys.add(key);
+                    }
+                }
+                yield keys;
+            }
+            case "PEXPIREAT" -> {
+                if (lookup(arity(c, 3, 3)[1]) == null) {
+                    yield 0L;
+                }
+                long at = integer(c[2]);
+                if (at <= System.currentTimeMillis()) {
+                    remove(c[1]);
+                } else {
+                    expires.put(c[1], at);
+                }
+                yield 1L;
+            }
+            case "PERSIST" -> lookup(arity(c, 2, 2)[1]) != null && expires.remove(c[1]) != null ? 1L : 0L;
+            case "TTL", "PTTL" -> {
+                if (lookup(arity(c, 2, 2)[1]) == null) {
+                    yield -2L;
+                }
+                Long at = expires.get(c[1]);
+                if (at == null) {
+                    yield -1L;
+                }
+                long millis = at - System.currentTimeMillis();
+                yield name.equals("TTL") ? (millis + 500) / 1000 : millis;
+            }
+
+            case "GET" -> string(arity(c, 2, 2)[1]);
+            case "SET" -> {
+                arity(c, 3, 5);
+                Long at = null;
+                if (c.length == 5 && (c[3].equalsIgnoreCase("EX") || c[3].equalsIgnoreCase("PX"))) {
+                    long value = integer(c[4]);
+                    at = System.currentTimeMillis() + (c[3].equalsIgnoreCase("EX") ? value * 1000 : value);
+                } else if (c.length != 3) {
+                    throw RedisError.syntax();
+                }
+                remove(c[1]);
+                keyspace.put(c[1], c[2]);
+                if (at != null) {
+                    expires.put(c[1], at);
+                }
+                yield Status.OK;
+            }
+            case "INCRBY" -> {
+                String current = string(arity(c, 3, 3)[1]);
+                long value = (current == null ? 0 : integer(current)) + integer(c[2]);
+                keyspace.put(c[1], String.valueOf(value));
+                yield value;
+            }
+
+            case "HGET" -> {
+                HashValue hash = hash(arity(c, 3, 3)[1], false);
+                yield hash == null ? null : hash.get(c[2]);
+            }
+            case "HSET", "HMSET" -> {
+                if (arity(c, 4, -1).length % 2 != 0) {
+                    throw new RedisError("ERR wrong number of arguments for '" + name.toLowerCase(Locale.ROOT) + "' command");
+                }
+                HashValue hash = hash(c[1], true);
+                long added = 0;
+                for (int i = 2; i < c.length; i += 2) {
+                    added += hash.put(c[i], c[i + 1]) ? 1 : 0;
+                }
+                yield name.equals("HSET") ? (Object) added : Status.OK;
+            }
+            case "HSETNX" -> {
+                HashValue hash = hash(arity(c, 4, 4)[1], true);
+                if (hash.get(c[2]) != null) {
+                    yield 0L;
+                }
+                hash.put(c[2], c[3]);
+                yield 1L;
+            }
+            case "HMGET" -> {
+                HashValue hash = hash(arity(c, 3, -1)[1], false);
+                List<String> values = new ArrayList<>(c.length - 2);
+                for (int i = 2; i < c.length; i++) {
+                    values.add(hash == null ? null : hash.get(c[i]));
+                }
+                yield values;
+            }
+            case "HDEL" -> {
+                HashValue hash = hash(arity(c, 3, -1)[1], false);
+                long deleted = 0;
+                for (int i = 2; hash != null && i < c.length; i++) {
+                    deleted += hash.remove(c[i]) ? 1 : 0;
+                }
+                if (hash != null && hash.size() == 0) {
+                    remove(c[1]);
+                }
+                yield deleted;
+            }
+            case "HGETALL", "HKEYS", "HVALS" -> {
+                HashValue hash = hash(arity(c, 2, 2)[1], false);
+                List<String> reply = new ArrayList<>();
+                if (hash != null) {
+                    hash.fields().forEach((field, value) -> {
+                        if (!name.equals("HVALS")) {
+                            reply.add(field);
+                        }
+                        if (!name.equals("HKEYS")) {
+                            reply.add(value);
+                        }
+                    });
+                }
+                yield reply;
+            }
+            case "HEXISTS" -> {
+                HashValue hash = hash(arity(c, 3, 3)[1], false);
+                yield hash != null && hash.get(c[2]) != null ? 1L : 0L;
+            }
+            case "HLEN" -> {
+                HashValue hash = hash(arity(c, 2, 2)[1], false);
+                yield hash == null ? 0L : (long) hash.size();
+            }
+            case "HINCRBY" -> {
+                HashValue hash = hash(arity(c, 4, 4)[1], true);
+                String current = hash.get(c[2]);
+                long value;
+                try {
+                    value = Math.addExact(current == null ? 0 : Long.parseLong(current), integer(c[3]));
+                } catch (NumberFormatException | ArithmeticException e) {
+                    throw new RedisError("ERR hash value is not an integer");
+                }
+                hash.put(c[2], String.valueOf(value));
+                yield value;
+            }
+            case "HSCAN", "ZSCAN" -> scan(name, c);
+
+            case "ZADD" -> zadd(c);
+            case "ZREM" -> {
+                SortedSetValue set = zset(arity(c, 3, -1)[1], false);
+                long removed = 0;
+                for (int i = 2; set != null && i < c.length; i++) {
+                    removed += set.remove(c[i]) ? 1 : 0;
+                }
+                if (set != null && set.size() == 0) {
+                    remove(c[1]);
+                }
+                yield removed;
+            }
+            case "ZSCORE" -> {
+                SortedSetValue set = zset(arity(c, 3, 3)[1], false);
+                Double score = set == null ? null : set.score(c[2]);
+                yield score == null ? null : format(score);
+            }
+            case "ZCARD" -> {
+                SortedSetValue set = zset(arity(c, 2, 2)[1], false);
+                yield set == null ? 0L : (long) set.size();
+            }
+            case "ZRANGE" -> zrange(c);
+
+            case "GEOADD" -> geoadd(c);
+            case "GEOPOS" -> {
+                SortedSetValue set = zset(arity(c, 2, -1)[1], false);
+                List<Object> positions = new ArrayList<>();
+                for (int i = 2; i < c.length; i++) {
+                    Double score = set == null ? null : set.score(c[i]);
+                    positions.add(score == null ? null : coordinates(RedisGeoHash.decode(score)));
+                }
+                yield positions;
+            }
+            case "GEODIST" -> {
+                SortedSetValue set = zset(arity(c, 4, 5)[1], false);
+                Double from = set == null ? null : set.score(c[2]);
+                Double to = set == null ? null : set.score(c[3]);
+                if (from == null || to == null) {
+                    yield null;
+                }
+                double[] a = RedisGeoHash.decode(from);
+                double[] b = RedisGeoHash.decode(to);
+                yield String.format(Locale.ROOT, "%.4f", GeoSearch.distance(a[0], a[1], b[0], b[1]) / unit(c.length > 4 ? c[4] : "m"));
+            }
+            case "GEOSEARCH" -> geosearch(c);
+            case "GEORADIUS", "GEORADIUS_RO" -> georadius(c);
+
+            case "PUBLISH" -> publish(arity(c, 3, 3)[1], c[2]);
+            case "EVAL", "EVALSHA", "EVAL_RO", "EVALSHA_RO" -> eval(name, c);
+            case "SCRIPT" -> script(c);
+            default -> throw new RedisError("ERR unknown command '" + c[0] + "', with args beginning with: "
+                    + String.join(" ", Arrays.asList(c).subList(1, Math.min(c.length, 4))));
+        };
+    }
+
+    //<editor-fold desc="Keyspace">
+    private Object lookup(String key) {
+        Object value = keyspace.get(key);
+        if (value != null && !expires.isEmpty()) {
+            Long at = expires.get(key);
+            if (at != null && at <= System.currentTimeMillis()) {
+                remove(key);
+                return null;
+            }
+        }
+        return value;
+    }
+
+    private void remove(String key) {
+        keyspace.remove(key);
+        expires.remove(key);
+    }
+
+    private List<String> liveKeys() {
+        List<String> keys = new ArrayList<>(keyspace.size());
+        for (String key : new ArrayList<>(keyspace.keySet())) {
+            if (lookup(key) != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private String string(String key) {
+        Object value = lookup(key);
+        if (value != null && !(value instanceof String)) {
+            throw new RedisError(RedisError.WRONG_TYPE);
+        }
+        return (String) value;
+    }
+
+    private HashValue hash(String key, boolean create) {
+        Object value = lookup(key);
+        if (value == null && create) {
+            value = new HashValue();
+            keyspace.put(key, value);
+        }
+        if (value != null && !(value instanceof HashValue)) {
+            throw new RedisError(RedisError.WRONG_TYPE);
+        }
+        return (HashValue) value;
+    }
+
+    private SortedSetValue zset(String key, boolean create) {
+        Object value = lookup(key);
+        if (value == null && create) {
+            value = new SortedSetValue();
+            keyspace.put(key, value);
+        }
+        if (value != null && !(value instanceof SortedSetValue)) {
+            throw new RedisError(RedisError.WRONG_TYPE);
+        }
+        return (SortedSetValue) value;
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof HashValue hash) {
+            return hash.copy();
+        }
+        if (value instanceof SortedSetValue set) {
+            return set.copy();
+        }
+        return value;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Sorted sets and GEO">
+    private Object zadd(String[] c) {
+        int i = 2;
+        boolean nx = false;
+        boolean xx = false;
+        boolean ch = false;
+        for (; i < c.length; i++) {
+            switch (c[i].toUpperCase(Locale.ROOT)) {
+                case "NX" -> nx = true;
+                case "XX" -> xx = true;
+                case "CH" -> ch = true;
+                default -> {
+                    return zaddPairs(c, i, nx, xx, ch);
+                }
+            }
+        }
+        throw new RedisError("ERR wrong number of arguments for 'zadd' command");
+    }
+
+    private Object zaddPairs(String[] c, int from, boolean nx, boolean xx, boolean ch) {
+        if ((c.length - from) % 2 != 0 || c.length == from) {
+            throw RedisError.syntax();
+        }
+        double[] scores = new double[(c.length - from) / 2];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = score(c[from + 2 * i]);
+        }
+        SortedSetValue set = zset(c[1], !xx);
+        long changed = 0;
+        for (int i = 0; set != null && i < scores.length; i++) {
+            String member = c[from + 2 * i + 1];
+            Double previous = set.score(member);
+            if ((nx && previous != null) || (xx && previous == null)) {
+                continue;
+            }
+            set.add(member, scores[i]);
+            changed += previous == null || (ch && previous != scores[i]) ? 1 : 0;
+        }
+        return changed;
+    }
+
+    private Object zrange(String[] c) {
+        arity(c, 4, 5);
+        boolean withScores = c.length == 5;
+        if (withScores && !c[4].equalsIgnoreCase("WITHSCORES")) {
+            throw RedisError.syntax();
+        }
+        SortedSetValue set = zset(c[1], false);
+        List<String> reply = new ArrayList<>();
+        if (set == null) {
+            return reply;
+        }
+        long start = integer(c[2]);
+        long stop = integer(c[3]);
+        int size = set.size();
+        start = start < 0 ? Math.max(0, size + start) : start;
+        stop = stop < 0 ? size + stop : Math.min(stop, size - 1);
+        if (start > stop || start >= size) {
+            return reply;
+        }
+        for (SortedSetValue.Member member : set.range((int) start, (int) stop)) {
+            reply.add(member.name());
+            if (withScores) {
+                reply.add(format(member.score()));
+            }
+        }
+        return reply;
+    }
+
+    private Object geoadd(String[] c) {
+        int i = 2;
+        boolean nx = false;
+        boolean xx = false;
+        boolean ch = false;
+        for (; i < c.length; i++) {
+            String option = c[i].toUpperCase(Locale.ROOT);
+            if (option.equals("NX")) {
+                nx = true;
+            } else if (option.equals("XX")) {
+                xx = true;
+            } else if (option.equals("CH")) {
+                ch = true;
+            } else {
+                break;
+            }
+        }
+        if ((c.length - i) % 3 != 0 || c.length == i) {
+            throw RedisError.syntax();
+        }
+        List<String> pairs = new ArrayList<>();
+        for (int j = i; j < c.length; j += 3) {
+            double longitude = score(c[j]);
+            double latitude = score(c[j + 1]);
+            if (longitude < RedisGeoHash.LON_MIN || longitude > RedisGeoHash.LON_MAX
+                    || latitude < RedisGeoHash.LAT_MIN || latitude > RedisGeoHash.LAT_MAX) {
+                throw new RedisError(String.format(Locale.ROOT, "ERR invalid longitude,latitude pair %f,%f", longitude, latitude));
+            }
+            pairs.add(String.valueOf(RedisGeoHash.encode(longitude, latitude)));
+            pairs.add(c[j + 2]);
+        }
+        List<String> zadd = new ArrayList<>(List.of("ZADD", c[1]));
+        if (nx) {
+            zadd.add("NX");
+        }
+        if (xx) {
+            zadd.add("XX");
+        }
+        if (ch) {
+            zadd.add("CH");
+        }
+        zadd.addAll(pairs);
+        return zadd(zadd.toArray(String[]::new));
+    }
+
+    private Object geosearch(String[] c) {
+        arity(c, 7, -1);
+        Double longitude = null;
+        Double latitude = null;
+        double radius = -1;
+        double width = 0;
+        double height = 0;
+        double unit = 1;
+        SortedSetValue set = zset(c[1], false);
+        int i = 2;
+        String fromMember = null;
+        List<String> options = new ArrayList<>();
+        while (i < c.length) {
+            switch (c[i].toUpperCase(Locale.ROOT)) {
+                case "FROMMEMBER" -> {
+                    fromMember = argument(c, i + 1);
+                    i += 2;
+                }
+                case "FROMLONLAT" -> {
+                    longitude = score(argument(c, i + 1));
+                    latitude = score(argument(c, i + 2));
+                    i += 3;
+                }
+                case "BYRADIUS" -> {
+                    unit = unit(argument(c, i + 2));
+                    radius = score(c[i + 1]) * unit;
+                    i += 3;
+                }
+                case "BYBOX" -> {
+                    unit = unit(argument(c, i + 3));
+                    width = score(c[i + 1]) * unit;
+                    height = score(c[i + 2]) * unit;
+                    i += 4;
+                }
+                default -> options.add(c[i++]);
+            }
+        }
+        if ((fromMember == null) == (longitude == null) || (radius < 0 && width == 0)) {
+            throw RedisError.syntax();
+        }
+        if (fromMember != null) {
+            Double score = set == null ? null : set.score(fromMember);
+            if (score == null) {
+                throw new RedisError("ERR could not decode requested zset member");
+            }
+            double[] position = RedisGeoHash.decode(score);
+            longitude = position[0];
+            latitude = position[1];
+        }
+        return geoReply(set, longitude, latitude, radius, width, height, unit, options);
+    }
+
+    private Object georadius(String[] c) {
+        arity(c, 6, -1);
+        double unit = unit(c[5]);
+        List<String> options = new ArrayList<>(Arrays.asList(c).subList(6, c.length));
+        return geoReply(zset(c[1], false), score(c[2]), score(c[3]), score(c[4]) * unit, 0, 0, unit, options);
+    }
+
+    private Object geoReply(SortedSetValue set, double longitude, double latitude, double radius, double width, double height,
+                            double unit, List<String> options) {
+        boolean withCoord = false;
+        boolean withDist = false;
+        boolean withHash = false;
+        boolean descending = false;
+        long count = Long.MAX_VALUE;
+        for (int i = 0; i < options.size(); i++) {
+            switch (options.get(i).toUpperCase(Locale.ROOT)) {
+                case "WITHCOORD" -> withCoord = true;
+                case "WITHDIST" -> withDist = true;
+                case "WITHHASH" -> withHash = true;
+                case "ASC" -> descending = false;
+                case "DESC" -> descending = true;
+                case "ANY" -> {
+                    // Nearest first anyway
+                }
+                case "COUNT" -> {
+                    if (i + 1 >= options.size() || (count = integer(options.get(++i))) <= 0) {
+                        throw new RedisError("ERR COUNT must be > 0");
+                    }
+                }
+                default -> throw RedisError.syntax();
+            }
+        }
+        List<Object> reply = new ArrayList<>();
+        if (set == null) {
+            return reply;
+        }
+        List<GeoSearch.Match> matches = GeoSearch.search(set, longitude, latitude, radius, width, height);
+        Comparator<GeoSearch.Match> order = Comparator.comparingDouble(GeoSearch.Match::distance).thenComparing(GeoSearch.Match::member);
+        matches.sort(descending ? order.reversed() : order);
+        Iterator<GeoSearch.Match> iterator = matches.iterator();
+        for (long n = 0; n < count && iterator.hasNext(); n++) {
+            GeoSearch.Match match = iterator.next();
+            if (!withCoord && !withDist && !withHash) {
+                reply.add(match.member());
+                continue;
+            }
+            List<Object> item = new ArrayList<>(4);
+            item.add(match.member());
+            if (withDist) {
+                item.add(String.format(Locale.ROOT, "%.4f", match.distance() / unit));
+            }
+            if (withHash) {
+                item.add(match.score());
+            }
+            if (withCoord) {
+                item.add(coordinates(new double[]{match.longitude(), match.latitude()}));
+            }
+            reply.add(item);
+        }
+        return reply;
+    }
+
+    private static List<String> coordinates(double[] position) {
+        return List.of(format(position[0]), format(position[1]));
+    }
+
+    private static double unit(String unit) {
+        Double metres = UNITS.get(unit.toLowerCase(Locale.ROOT));
+        if (metres == null) {
+            throw new RedisError("ERR unsupported unit provided. please use M, KM, FT, MI");
+        }
+        return metres;
+    }
+    //</editor-fold>
+
+    private Object scan(String name, String[] c) {
+        arity(c, 3, -1);
+        long cursor;
+        try {
+            cursor = Long.parseLong(c[2]);
+        } catch (NumberFormatException e) {
+            throw new RedisError("ERR invalid cursor");
+        }
+        int count = 10;
+        String match = null;
+        for (int i = 3; i < c.length; i += 2) {
+            String option = c[i].toUpperCase(Locale.ROOT);
+            if (option.equals("COUNT")) {
+                count = (int) Math.max(1, Math.min(integer(argument(c, i + 1)), Integer.MAX_VALUE));
+            } else if (option.equals("MATCH")) {
+                match = argument(c, i + 1);
+            } else {
+                throw RedisError.syntax();
+            }
+        }
+        String pattern = match;
+        List<String> items = new ArrayList<>();
+        long next = 0;
+        if (name.equals("HSCAN")) {
+            HashValue hash = hash(c[1], false);
+            if (hash != null) {
+                next = hash.scan(cursor, count, (field, value) -> {
+                    if (pattern == null || Glob.matches(pattern, field)) {
+                        items.add(field);
+                        items.add(value);
+                    }
+                });
+            }
+        } else {
+            SortedSetValue set = zset(c[1], false);
+            if (set != null) {
+                next = set.scan(cursor, count, (member, score) -> {
+                    if (pattern == null || Glob.matches(pattern, member)) {
+                        items.add(member);
+                        items.add(format(score));
+                    }
+                });
+            }
+        }
+        return List.of(String.valueOf(next), items);
+    }
+
+    //<editor-fold desc="Scripts">
+    private Object eval(String name, String[] c) {
+        arity(c, 3, -1);
+        String sha = name.startsWith("EVALSHA") ? c[1].toLowerCase(Locale.ROOT) : scripts.load(c[1]);
+        long keyCount = integer(c[2]);
+        if (keyCount < 0 || keyCount > c.length - 3) {
+            throw new RedisError("ERR Number of keys can't be greater than number of args");
+        }
+        List<String> keys = Arrays.asList(c).subList(3, 3 + (int) keyCount);
+        List<String> argv = Arrays.asList(c).subList(3 + (int) keyCount, c.length);
+        return scripts.run(sha, keys, argv);
+    }
+
+    private Object script(String[] c) {
+        String subcommand = arity(c, 2, -1)[1].toUpperCase(Locale.ROOT);
+        return switch (subcommand) {
+            case "LOAD" -> scripts.load(arity(c, 3, 3)[2]);
+            case "EXISTS" -> {
+                List<Long> exists = new ArrayList<>();
+                for (int i = 2; i < c.length; i++) {
+                    exists.add(scripts.exists(c[i].toLowerCase(Locale.ROOT)) ? 1L : 0L);
+                }
+                yield exists;
+            }
+            case "FLUSH" -> {
+                scripts.flush();
+                yield Status.OK;
+            }
+            default -> throw RedisError.syntax();
+        };
+    }
+    //</editor-fold>
+
+    private String info(String section) {
+        StringBuilder info = new StringBuilder();
+        boolean all = section.equals("all") || section.equals("default") || section.equals("everything");
+        if (all || section.equals("server")) {
+            info.append("# Server\r\nredis_version:7.2.0\r\nredis_mode:standalone\r\nexecutable:in-memory\r\n")
+                    .append("in_memory_node:").append(name).append("\r\n\r\n");
+        }
+        if (all || section.equals("replication")) {
+            InMemoryRedis currentMaster = master;
+            info.append("# Replication\r\n");
+            if (currentMaster == null) {
+                info.append("role:master\r\nconnected_slaves:").append(replicas.size()).append("\r\n");
+                for (int i = 0; i < replicas.size(); i++) {
+                    InMemoryRedis replica = replicas.get(i);
+                    info.append("slave").append(i).append(":ip=").append(host(replica.name)).append(",port=").append(port(replica.name))
+                            .append(",state=online,offset=").append(replica.replicationOffset).append(",lag=0\r\n");
+                }
+            } else {
+                info.append("role:slave\r\nmaster_host:").append(host(currentMaster.name))
+                        .append("\r\nmaster_port:").append(port(currentMaster.name))
+                        .append("\r\nmaster_link_status:up\r\nslave_repl_offset:").append(replicationOffset)
+                        .append("\r\nslave_read_only:1\r\n");
+            }
+            info.append("master_repl_offset:").append(replicationOffset).append("\r\n\r\n");
+        }
+        if (all || section.equals("keyspace")) {
+            info.append("# Keyspace\r\n");
+            int keys = liveKeys().size();
+            if (keys > 0) {
+                info.append("db0:keys=").append(keys).append(",expires=").append(expires.size()).append(",avg_ttl=0\r\n");
+            }
+        }
+        return info.toString();
+    }
+
+    // The host and port of the address a node stands in for
+    private static String host(String address) {
+        return address.substring(0, Math.max(address.lastIndexOf(':'), 0));
+    }
+
+    private static String port(String address) {
+        return address.substring(address.lastIndexOf(':') + 1);
+    }
+
+    //<editor-fold desc="Arguments and replies">
+    private static String[] arity(String[] command, int min, int max) {
+        if (command.length < min || (max >= 0 && command.length > max)) {
+            throw new RedisError("ERR wrong number of arguments for '" + command[0].toLowerCase(Locale.ROOT) + "' command");
+        }
+        return command;
+    }
+
+    private static String argument(String[] command, int index) {
+        if (index >= command.length) {
+            throw RedisError.syntax();
+        }
+        return command[index];
+    }
+
+    static long integer(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw RedisError.notInteger();
+        }
+    }
+
+    private static double score(String value) {
+        try {
+            double score = Double.parseDouble(value);
+            if (Double.isNaN(score)) {
+                throw RedisError.notFloat();
+            }
+            return score;
+        } catch (NumberFormatException e) {
+            throw RedisError.notFloat();
+        }
+    }
+
+    /**
+     * A double as Redis prints it: whole numbers without a decimal point, others in their shortest form.
+     */
+    static String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e17) {
+            return String.valueOf((long) value);
+        }
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+
+    /**
+     * Bytes as the ISO-8859-1 string values are kept in.
+     */
+    static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+    //</editor-fold>
+}
@@ -0,0 +1,19 @@
+package com.ashwani.memory;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Puts the test contexts' Redis nodes in memory when {@code ride.redis.backend=in-memory}, as
+ * {@code mvn test -Pin-memory} sets it.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ride.redis.backend", havingValue = "in-memory")
+public class InMemoryRedisConfig {
+
+    @Bean
+    public InMemoryRedisTransport inMemoryRedisTransport(InMemoryRedisProperties properties) {
+        return new InMemoryRedisTransport(properties);
+    }
+}
@@ -0,0 +1,18 @@
+package com.ashwani.memory;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * In-memory stand-in settings, bound from {@code ride.redis.in-memory.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "ride.redis.in-memory")
+public class InMemoryRedisProperties {
+
+    private Duration latency = Duration.ZERO;           // added to every round trip to a master, once per pipelined batch
+    private Duration replicaLatency = Duration.ZERO;    // added to every round trip to a replica
+    private Duration replicationLag = Duration.ZERO;    // how long after its master a replica applies a write
+}
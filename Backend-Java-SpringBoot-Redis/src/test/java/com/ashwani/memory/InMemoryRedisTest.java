@@ -0,0 +1,179 @@
+package com.ashwani.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryRedisTest {
+
+    private final List<InMemoryRedis> nodes = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        nodes.forEach(InMemoryRedis::close);
+    }
+
+    @Test
+    void geoSearchMatchesBruteForce() throws IOException {
+        InMemoryRedis redis = start(Duration.ZERO);
+        Random random = new Random(42);
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            String lon = String.valueOf(139.5 + random.nextDouble() * 0.5);
+            String lat = String.valueOf(35.5 + random.nextDouble() * 0.4);
+            redis.execute(new String[]{"GEOADD", "geo", lon, lat, "d" + i});
+            members.add("d" + i);
+        }
+
+        for (int q = 0; q < 100; q++) {
+            double lon = 139.4 + random.nextDouble() * 0.7;
+            double lat = 35.4 + random.nextDouble() * 0.6;
+            double radiusKm = 0.5 + random.nextDouble() * 10;
+            List<String> expected = members.stream()
+                    .filter(member -> distance(redis, member, lon, lat) <= radiusKm * 1000)
+                    .sorted(Comparator.comparingDouble((String member) -> distance(redis, member, lon, lat)).thenComparing(member -> member))
+                    .limit(20)
+                    .toList();
+            Object found = redis.execute(new String[]{"GEOSEARCH", "geo", "FROMLONLAT", String.valueOf(lon), String.valueOf(lat),
+                    "BYRADIUS", String.valueOf(radiusKm), "km", "ASC", "COUNT", "20"});
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void geoSearchRepliesWithDistanceHashAndCoordinates() throws IOException {
+        InMemoryRedis redis = start(Duration.ZERO);
+        redis.execute(new String[]{"GEOADD", "geo", "13.361389", "38.115556", "Palermo", "15.087269", "37.502669", "Catania"});
+
+        // As documented for Redis GEOSEARCH
+        assertEquals(List.of(
+                        List.of("Palermo", "190.4424", List.of("13.361389338970184", "38.1155563954963")),
+                        List.of("Catania", "56.4413", List.of("15.087267458438873", "37.50266842333162"))),
+                redis.execute(new String[]{"GEOSEARCH", "geo", "FROMLONLAT", "15", "37", "BYBOX", "400", "400", "km",
+                        "DESC", "WITHCOORD", "WITHDIST"}));
+        assertEquals("166274.1516", redis.execute(new String[]{"GEODIST", "geo", "Palermo", "Catania"}));
+        assertEquals(List.of(List.of("Palermo", 3479099956230698L), List.of("Catania", 3479447370796909L)),
+                redis.execute(new String[]{"GEOSEARCH", "geo", "FROMMEMBER", "Palermo", "BYRADIUS", "200", "km", "WITHHASH"}));
+    }
+
+    @Test
+    void hscanReturnsEveryFieldPresentThroughoutTheScan() throws IOException {
+        InMemoryRedis redis = start(Duration.ZERO);
+        for (int i = 0; i < 1_000; i++) {
+            redis.execute(new String[]{"HSET", "hash", "f" + i, "v" + i});
+        }
+
+        Set<String> seen = new HashSet<>();
+        String cursor = "0";
+        int page = 0;
+        do {
+            List<?> reply = (List<?>) redis.execute(new String[]{"HSCAN", "hash", cursor, "COUNT", "50"});
+            cursor = (String) reply.get(0);
+            List<?> items = (List<?>) reply.get(1);
+            for (int i = 0; i < items.size(); i += 2) {
+                seen.add((String) items.get(i));
+            }
+            // Fields come and go while the scan runs
+            redis.execute(new String[]{"HDEL", "hash", "f" + (500 + page)});
+            redis.execute(new String[]{"HSET", "hash", "new" + page, "v"});
+            page++;
+        } while (!cursor.equals("0"));
+
+        for (int i = 0; i < 1_000; i++) {
+            if (i < 500 || i >= 500 + page) {
+                assertTrue(seen.contains("f" + i), "f" + i);
+            }
+        }
+    }
+
+    @Test
+    void aReplicaAppliesWritesAfterTheLagAndReportsItsOffset() throws Exception {
+        InMemoryRedis master = start(Duration.ZERO);
+        InMemoryRedis replica = start(Duration.ofMillis(300));
+        master.execute(new String[]{"HSET", "hash", "before", "1"});
+        replica.follow(master);
+        assertEquals("1", replica.execute(new String[]{"HGET", "hash", "before"}));
+
+        master.execute(new String[]{"HSET", "hash", "field", "value"});
+        assertNull(replica.execute(new String[]{"HGET", "hash", "field"}));
+        long masterOffset = offset(master, "master_repl_offset");
+        assertTrue(offset(replica, "slave_repl_offset") < masterOffset);
+        assertEquals("up", info(replica).getProperty("master_link_status"));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (offset(replica, "slave_repl_offset") < masterOffset && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(masterOffset, offset(replica, "slave_repl_offset"));
+        assertEquals("value", replica.execute(new String[]{"HGET", "hash", "field"}));
+
+        RedisError readOnly = assertThrows(RedisError.class, () -> replica.execute(new String[]{"HSET", "hash", "field", "other"}));
+        assertTrue(readOnly.getMessage().startsWith("READONLY"));
+    }
+
+    @Test
+    void everyScriptCompiles() throws IOException {
+        InMemoryRedis redis = start(Duration.ZERO);
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources("classpath:scripts/*.lua")) {
+            String sha = (String) redis.execute(new String[]{"SCRIPT", "LOAD", InMemoryRedis.string(resource.getContentAsByteArray())});
+            assertEquals(List.of(1L), redis.execute(new String[]{"SCRIPT", "EXISTS", sha}), resource.getFilename());
+        }
+    }
+
+    @Test
+    void scriptRepliesConvertAsInRedis() {
+        InMemoryRedis redis = start(Duration.ZERO);
+        redis.execute(new String[]{"HSET", "hash", "field", "value"});
+
+        assertEquals(Arrays.asList(3L, "value", null, 1L, InMemoryRedis.Status.OK, List.of(1L, 2L)), redis.execute(new String[]{"EVAL",
+                "return {3.7, redis.call('HGET', KEYS[1], 'field'), redis.call('HGET', KEYS[1], 'other'), true,"
+                        + " redis.call('SET', 'string', ARGV[1]), {1, 2, nil, 4}}", "1", "hash", "x"}));
+        assertEquals("{\"a\":[1,2.5,\"x\\/y\",null]}", redis.execute(new String[]{"EVAL",
+                "return cjson.encode(cjson.decode(ARGV[1]))", "0", "{\"a\": [1, 2.5, \"x/y\", null]}"}));
+
+        RedisError wrongType = assertThrows(RedisError.class, () -> redis.execute(new String[]{"EVAL",
+                "local reply = redis.pcall('HGET', 'string', 'field'); return reply", "0"}));
+        assertTrue(wrongType.getMessage().startsWith("WRONGTYPE"));
+        RedisError noScript = assertThrows(RedisError.class, () -> redis.execute(new String[]{"EVALSHA", "0".repeat(40), "0"}));
+        assertTrue(noScript.getMessage().startsWith("NOSCRIPT"));
+    }
+
+    private InMemoryRedis start(Duration replicationLag) {
+        InMemoryRedis redis = InMemoryRedis.start("test-" + nodes.size(), Duration.ZERO, replicationLag);
+        nodes.add(redis);
+        return redis;
+    }
+
+    private static double distance(InMemoryRedis redis, String member, double lon, double lat) {
+        List<?> position = (List<?>) ((List<?>) redis.execute(new String[]{"GEOPOS", "geo", member})).get(0);
+        return GeoSearch.distance(lon, lat, Double.parseDouble((String) position.get(0)), Double.parseDouble((String) position.get(1)));
+    }
+
+    private static long offset(InMemoryRedis redis, String field) throws IOException {
+        return Long.parseLong(info(redis).getProperty(field));
+    }
+
+    private static Properties info(InMemoryRedis redis) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new StringReader((String) redis.execute(new String[]{"INFO", "replication"})));
+        return properties;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ashwani.memory;
+
+import com.ashwani.config.RedisNodeTransport;
+import com.ashwani.config.RedisTopology;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.NettyCustomizer;
+import io.lettuce.core.resource.SocketAddressResolver;
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.local.LocalChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.ReflectionUtils;
+import redis.clients.jedis.JedisSocketFactory;
+
+import java.lang.reflect.Field;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves every node address of the topology from an {@link InMemoryRedis} in this JVM. The Jedis pools
+ * get in-process sockets and the reactive Lettuce connections Netty local channels, so nothing is
+ * listened on or connected to over the network. A node serving only as a replica follows its region's
+ * master.
+ */
+public class InMemoryRedisTransport implements RedisNodeTransport, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryRedisTransport.class);
+    private static final Field CHANNEL_FACTORY = channelFactoryField();
+
+    private final InMemoryRedisProperties properties;
+    private final Map<String, InMemoryRedis> nodes = new ConcurrentHashMap<>();
+
+    public InMemoryRedisTransport(InMemoryRedisProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public JedisSocketFactory socketFactory(String host, int port, RedisTopology.Role role) {
+        InMemoryRedis node = nodes.computeIfAbsent(host + ":" + port, address -> InMemoryRedis.start(address,
+                role == RedisTopology.Role.MASTER ? properties.getLatency() : properties.getReplicaLatency(),
+                properties.getReplicationLag()));
+        return node::connect;
+    }
+
+    @Override
+    public void customize(ClientResources.Builder clientResources) {
+        clientResources.socketAddressResolver(new SocketAddressResolver() {
+            @Override
+            public SocketAddress resolve(RedisURI redisURI) {
+                return node(redisURI.getHost() + ":" + redisURI.getPort()).address();
+            }
+        });
+        clientResources.nettyCustomizer(new NettyCustomizer() {
+            @Override
+            public void afterBootstrapInitialized(Bootstrap bootstrap) {
+                // Netty sets a bootstrap's channel type once; Lettuce has set it to its TCP channel already
+                ReflectionUtils.setField(CHANNEL_FACTORY, bootstrap, null);
+                // TCP options mean nothing to a local channel
+                bootstrap.channel(LocalChannel.class)
+                        .option(ChannelOption.SO_KEEPALIVE, null)
+                        .option(ChannelOption.TCP_NODELAY, null);
+            }
+        });
+    }
+
+    @Override
+    public void replicate(String master, String replica) {
+        try {
+            node(replica).follow(node(master));
+        } catch (IllegalStateException e) {
+            logger.warn("In-memory Redis {} cannot replicate {}: {}", replica, master, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        nodes.values().forEach(InMemoryRedis::close);
+    }
+
+    private static Field channelFactoryField() {
+        Field field = ReflectionUtils.findField(AbstractBootstrap.class, "channelFactory");
+        if (field == null) {
+            throw new IllegalStateException("Netty's AbstractBootstrap has no channelFactory field");
+        }
+        ReflectionUtils.makeAccessible(field);
+        return field;
+    }
+
+    private InMemoryRedis node(String address) {
+        InMemoryRedis node = nodes.get(address);
+        if (node == null) {
+            throw new IllegalStateException("No in-memory Redis stands in for " + address);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,439 @@
+package com.ashwani.memory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LoadState;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.compiler.LuaC;
+import org.luaj.vm2.lib.BaseLib;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.PackageLib;
+import org.luaj.vm2.lib.StringLib;
+import org.luaj.vm2.lib.TableLib;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JseMathLib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the Lua scripts sent to one {@link InMemoryRedis} node on LuaJ, with what Redis gives a script:
+ * {@code KEYS} and {@code ARGV}, {@code redis.call} and {@code redis.pcall} into the node, the base,
+ * string, table and math libraries, and {@code cjson}. Replies cross between Redis and Lua with
+ * Redis's conversions: integers as numbers, nil as {@code false}, errors and status replies as
+ * {@code {err=...}} and {@code {ok=...}} tables; and back, numbers truncated to integers, {@code true}
+ * as 1 and {@code false} as a nil reply. Scripts run under the node's lock, one at a time.
+ */
+final class LuaScripts {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final LuaString ERR = LuaString.valueOf("err");
+    private static final LuaString OK = LuaString.valueOf("ok");
+
+    private final InMemoryRedis redis;
+    private final Globals globals = new Globals();
+    private final Map<String, LuaValue> compiled = new HashMap<>();
+    private final LuaValue jsonNull = LuaValue.userdataOf(new Object());
+
+    LuaScripts(InMemoryRedis redis) {
+        this.redis = redis;
+        globals.load(new BaseLib());
+        globals.load(new PackageLib());
+        globals.load(new StringLib());
+        globals.load(new TableLib());
+        globals.load(new JseMathLib());
+        LoadState.install(globals);
+        LuaC.install(globals);
+        // Nothing a script could reach the file system or other modules with
+        for (String name : new String[]{"dofile", "loadfile", "require", "package"}) {
+            globals.set(name, LuaValue.NIL);
+        }
+
+        LuaTable api = new LuaTable();
+        api.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                Object reply = command(args);
+                if (reply instanceof RedisError error) {
+                    throw new LuaError(errorTable(error.getMessage()));
+                }
+                return toLua(reply);
+            }
+        });
+        api.set("pcall", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return toLua(command(args));
+            }
+        });
+        api.set("error_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue message) {
+                return errorTable(string(message.checkstring()));
+            }
+        });
+        api.set("status_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue message) {
+                LuaTable status = new LuaTable();
+                status.set(OK, message.checkstring());
+                return status;
+            }
+        });
+        globals.set("redis", api);
+
+        LuaTable cjson = new LuaTable();
+        cjson.set("encode", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue value) {
+                ByteArrayOutputStream json = new ByteArrayOutputStream();
+                encode(value, json);
+                return LuaString.valueOf(json.toByteArray());
+            }
+        });
+        cjson.set("decode", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue json) {
+                try {
+                    return decode(JSON.readTree(bytes(json.checkstring())));
+                } catch (IOException e) {
+                    throw new LuaError("Expected value but found invalid token: " + e.getMessage());
+                }
+            }
+        });
+        cjson.set("null", jsonNull);
+        globals.set("cjson", cjson);
+    }
+
+    /**
+     * Compiles a script, unless it already is, and returns the SHA-1 it runs under.
+     */
+    String load(String script) {
+        String sha = sha1(script);
+        if (!compiled.containsKey(sha)) {
+            try {
+                compiled.put(sha, globals.load(new ByteArrayInputStream(InMemoryRedis.bytes(script)), "@user_script", "t", globals));
+            } catch (LuaError e) {
+                throw new RedisError("ERR Error compiling script (new function): " + e.getMessage());
+            }
+        }
+        return sha;
+    }
+
+    boolean exists(String sha) {
+        return compiled.containsKey(sha);
+    }
+
+    void flush() {
+        compiled.clear();
+    }
+
+    /**
+     * Runs a loaded script and returns its reply.
+     */
+    Object run(String sha, List<String> keys, List<String> argv) {
+        LuaValue script = compiled.get(sha);
+        if (script == null) {
+            throw new RedisError("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        globals.set("KEYS", table(keys));
+        globals.set("ARGV", table(argv));
+        Object reply;
+        try {
+            reply = fromLua(script.call());
+        } catch (LuaError e) {
+            LuaValue error = e.getMessageObject();
+            if (error != null && error.istable() && error.get(ERR).isstring()) {
+                throw new RedisError(string(error.get(ERR).checkstring()));
+            }
+            throw new RedisError("ERR Error running script (call to f_" + sha + "): " + e.getMessage());
+        }
+        if (reply instanceof RedisError error) {
+            throw error;
+        }
+        return reply;
+    }
+
+    /**
+     * The SHA-1 Redis names a script by, of its bytes.
+     */
+    static String sha1(String script) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(InMemoryRedis.bytes(script)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Runs a redis.call or redis.pcall; a failed command is returned as its error
+    private Object command(Varargs args) {
+        if (args.narg() == 0) {
+            return new RedisError("ERR Please specify at least one argument for this redis lib call");
+        }
+        String[] command = new String[args.narg()];
+        for (int i = 0; i < command.length; i++) {
+            LuaValue argument = args.arg(i + 1);
+            if (argument.type() == LuaValue.TNUMBER) {
+                command[i] = InMemoryRedis.format(argument.todouble());
+            } else if (argument.type() == LuaValue.TSTRING) {
+                command[i] = string(argument.checkstring());
+            } else {
+                return new RedisError("ERR Lua redis lib command arguments must be strings or integers");
+            }
+        }
+        try {
+            return redis.call(command);
+        } catch (RedisError e) {
+            return e;
+        }
+    }
+
+    //<editor-fold desc="Conversions">
+    private LuaValue toLua(Object reply) {
+        if (reply == null) {
+            return LuaValue.FALSE;
+        }
+        if (reply instanceof Long number) {
+            return LuaValue.valueOf((double) number);
+        }
+        if (reply instanceof String string) {
+            return LuaString.valueOf(InMemoryRedis.bytes(string));
+        }
+        if (reply instanceof InMemoryRedis.Status status) {
+            LuaTable table = new LuaTable();
+            table.set(OK, LuaValue.valueOf(status.text()));
+            return table;
+        }
+        if (reply instanceof RedisError error) {
+            return errorTable(error.getMessage());
+        }
+        if (reply instanceof List<?> list) {
+            LuaTable table = new LuaTable();
+            for (int i = 0; i < list.size(); i++) {
+                table.set(i + 1, toLua(list.get(i)));
+            }
+            return table;
+        }
+        throw new IllegalStateException("Unexpected reply " + reply.getClass());
+    }
+
+    private static Object fromLua(LuaValue value) {
+        switch (value.type()) {
+            case LuaValue.TNUMBER:
+                return (long) value.todouble();
+            case LuaValue.TSTRING:
+                return string(value.checkstring());
+            case LuaValue.TBOOLEAN:
+                return value.toboolean() ? 1L : null;
+            case LuaValue.TTABLE:
+                if (value.get(ERR).isstring()) {
+                    return new RedisError(string(value.get(ERR).checkstring()));
+                }
+                if (value.get(OK).isstring()) {
+                    return new InMemoryRedis.Status(string(value.get(OK).checkstring()));
+                }
+                List<Object> array = new ArrayList<>();
+                for (int i = 1; !value.get(i).isnil(); i++) {
+                    array.add(fromLua(value.get(i)));
+                }
+                return array;
+            default:
+                return null;
+        }
+    }
+
+    private static LuaTable errorTable(String message) {
+        LuaTable table = new LuaTable();
+        table.set(ERR, LuaValue.valueOf(message));
+        return table;
+    }
+
+    private static LuaTable table(List<String> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.set(i + 1, LuaString.valueOf(InMemoryRedis.bytes(values.get(i))));
+        }
+        return table;
+    }
+
+    private static byte[] bytes(LuaString string) {
+        byte[] bytes = new byte[string.rawlen()];
+        string.copyInto(0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private static String string(LuaString string) {
+        return InMemoryRedis.string(bytes(string));
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="cjson">
+    // As lua-cjson writes it: a table with keys 1..n is an array, any other an object
+    private void encode(LuaValue value, ByteArrayOutputStream json) {
+        switch (value.type()) {
+            case LuaValue.TNIL -> json.writeBytes(ascii("null"));
+            case LuaValue.TBOOLEAN -> json.writeBytes(ascii(value.toboolean() ? "true" : "false"));
+            case LuaValue.TNUMBER -> json.writeBytes(ascii(jsonNumber(value.todouble())));
+            case LuaValue.TSTRING -> encodeString(bytes(value.checkstring()), json);
+            case LuaValue.TTABLE -> encodeTable((LuaTable) value, json);
+            default -> {
+                if (value == jsonNull) {
+                    json.writeBytes(ascii("null"));
+                } else {
+                    throw new LuaError("Cannot serialise " + value.typename() + ": type not supported");
+                }
+            }
+        }
+    }
+
+    private void encodeTable(LuaTable table, ByteArrayOutputStream json) {
+        int length = arrayLength(table);
+        if (length > 0) {
+            json.write('[');
+            for (int i = 1; i <= length; i++) {
+                if (i > 1) {
+                    json.write(',');
+                }
+                encode(table.get(i), json);
+            }
+            json.write(']');
+            return;
+        }
+        json.write('{');
+        boolean first = true;
+        for (Iterator<Varargs> entries = entries(table); entries.hasNext(); ) {
+            Varargs entry = entries.next();
+            LuaValue key = entry.arg1();
+            if (key.type() != LuaValue.TSTRING && key.type() != LuaValue.TNUMBER) {
+                throw new LuaError("Cannot serialise " + key.typename() + ": table key must be a number or string");
+            }
+            if (!first) {
+                json.write(',');
+            }
+            first = false;
+            encodeString(key.type() == LuaValue.TNUMBER ? ascii(jsonNumber(key.todouble())) : bytes(key.checkstring()), json);
+            json.write(':');
+            encode(entry.arg(2), json);
+        }
+        json.write('}');
+    }
+
+    // The highest key when every key is a positive integer, so the table is an array; 0 otherwise
+    private static int arrayLength(LuaTable table) {
+        int max = 0;
+        for (Iterator<Varargs> entries = entries(table); entries.hasNext(); ) {
+            LuaValue key = entries.next().arg1();
+            if (key.type() != LuaValue.TNUMBER || key.todouble() != Math.rint(key.todouble()) || key.todouble() < 1) {
+                return 0;
+            }
+            max = Math.max(max, key.toint());
+        }
+        return max;
+    }
+
+    private static Iterator<Varargs> entries(LuaTable table) {
+        return new Iterator<>() {
+            private Varargs next = table.next(LuaValue.NIL);
+
+            @Override
+            public boolean hasNext() {
+                return !next.arg1().isnil();
+            }
+
+            @Override
+            public Varargs next() {
+                Varargs current = next;
+                next = table.next(current.arg1());
+                return current;
+            }
+        };
+    }
+
+    private static void encodeString(byte[] bytes, ByteArrayOutputStream json) {
+        json.write('"');
+        for (byte b : bytes) {
+            int c = b & 0xff;
+            switch (c) {
+                case '"' -> json.writeBytes(ascii("\\\""));
+                case '\\' -> json.writeBytes(ascii("\\\\"));
+                case '/' -> json.writeBytes(ascii("\\/"));
+                case '\b' -> json.writeBytes(ascii("\\b"));
+                case '\f' -> json.writeBytes(ascii("\\f"));
+                case '\n' -> json.writeBytes(ascii("\\n"));
+                case '\r' -> json.writeBytes(ascii("\\r"));
+                case '\t' -> json.writeBytes(ascii("\\t"));
+                default -> {
+                    if (c < 0x20 || c == 0x7f) {
+                        json.writeBytes(ascii(String.format("\\u%04x", c)));
+                    } else {
+                        json.write(c);
+                    }
+                }
+            }
+        }
+        json.write('"');
+    }
+
+    // lua-cjson prints numbers with %.14g
+    private static String jsonNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new LuaError("Cannot serialise number: must not be NaN or Inf");
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e14) {
+            return String.valueOf((long) value);
+        }
+        return new BigDecimal(value).round(new MathContext(14)).stripTrailingZeros().toString();
+    }
+
+    private LuaValue decode(JsonNode node) {
+        if (node.isObject()) {
+            LuaTable table = new LuaTable();
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                table.set(LuaValue.valueOf(field.getKey()), decode(field.getValue()));
+            }
+            return table;
+        }
+        if (node.isArray()) {
+            LuaTable table = new LuaTable();
+            for (int i = 0; i < node.size(); i++) {
+                table.set(i + 1, decode(node.get(i)));
+            }
+            return table;
+        }
+        if (node.isNumber()) {
+            return LuaValue.valueOf(node.asDouble());
+        }
+        if (node.isBoolean()) {
+            return LuaValue.valueOf(node.asBoolean());
+        }
+        if (node.isTextual()) {
+            return LuaValue.valueOf(node.asText());
+        }
+        if (node.isNull()) {
+            return jsonNull;
+        }
+        throw new LuaError("Expected value but found invalid token");
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+    //</editor-fold>
+}
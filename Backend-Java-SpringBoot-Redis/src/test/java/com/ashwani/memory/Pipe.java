@@ -0,0 +1,145 @@
+package com.ashwani.memory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One direction of an in-process connection: what is written to {@link #sink()} can be read from
+ * {@link #source()} once flushed, as from a socket. Closing either end ends the stream for the reader.
+ */
+final class Pipe {
+
+    private static final byte[] END = new byte[0];
+
+    private final LinkedBlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+    private final Source source = new Source();
+    private final Sink sink = new Sink();
+    private volatile int timeoutMillis;
+
+    InputStream source() {
+        return source;
+    }
+
+    OutputStream sink() {
+        return sink;
+    }
+
+    void write(byte[] bytes) {
+        if (bytes.length > 0) {
+            chunks.add(bytes);
+        }
+    }
+
+    void close() {
+        chunks.add(END);
+    }
+
+    /**
+     * How long a read waits for data before it fails with {@link SocketTimeoutException}; 0 waits forever.
+     */
+    void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    private final class Source extends InputStream {
+
+        private byte[] chunk = END;
+        private int position;
+        private boolean ended;
+
+        @Override
+        public int read() throws InterruptedIOException {
+            return next() ? chunk[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws InterruptedIOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            int read = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            int available = chunk.length - position;
+            for (byte[] queued : chunks) {
+                available += queued.length;
+            }
+            return available;
+        }
+
+        @Override
+        public void close() {
+            Pipe.this.close();
+        }
+
+        // Moves on to the next chunk once this one is read; false at the end of the stream
+        private boolean next() throws InterruptedIOException {
+            while (position == chunk.length) {
+                if (ended) {
+                    return false;
+                }
+                byte[] next;
+                try {
+                    int timeout = timeoutMillis;
+                    next = timeout > 0 ? chunks.poll(timeout, TimeUnit.MILLISECONDS) : chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (next == null) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                if (next == END) {
+                    ended = true;
+                }
+                chunk = next;
+                position = 0;
+            }
+            return true;
+        }
+    }
+
+    private final class Sink extends OutputStream {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            buffer.write(bytes, offset, length);
+        }
+
+        @Override
+        public synchronized void flush() {
+            Pipe.this.write(buffer.toByteArray());
+            buffer.reset();
+        }
+
+        @Override
+        public synchronized void close() {
+            flush();
+            Pipe.this.close();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ashwani.memory;
+
+/**
+ * A command failure, sent to the client as a RESP error; the message starts with the error code
+ * ({@code ERR}, {@code WRONGTYPE}, {@code NOSCRIPT}, {@code READONLY}) as in Redis.
+ */
+class RedisError extends RuntimeException {
+
+    static final String WRONG_TYPE = "WRONGTYPE Operation against a key holding the wrong kind of value";
+
+    RedisError(String message) {
+        super(message, null, false, false);
+    }
+
+    static RedisError syntax() {
+        return new RedisError("ERR syntax error");
+    }
+
+    static RedisError notInteger() {
+        return new RedisError("ERR value is not an integer or out of range");
+    }
+
+    static RedisError notFloat() {
+        return new RedisError("ERR value is not a valid float");
+    }
+}
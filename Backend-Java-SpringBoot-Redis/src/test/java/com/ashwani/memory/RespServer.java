@@ -0,0 +1,512 @@
+package com.ashwani.memory;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Serves one {@link InMemoryRedis} node over the Redis protocol (RESP2) without leaving the JVM, one
+ * thread per connection. Jedis connects through an in-process {@link Socket} ({@link #connect()}), and
+ * Lettuce through a Netty local channel to {@link #address()}. Connection state — client names, CLIENT
+ * LIST and subscriptions — lives here; every other command goes to the node.
+ */
+final class RespServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespServer.class);
+    private static final byte[] CRLF = {'\r', '\n'};
+    // Only hands bytes between the local channels and the connection threads
+    private static final EventLoopGroup LOCAL_CHANNELS = new DefaultEventLoopGroup(1, new DefaultThreadFactory("in-memory-redis-local", true));
+
+    private final InMemoryRedis redis;
+    private final Channel serverChannel;
+    private final ExecutorService connectionThreads;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong clientIds = new AtomicLong();
+
+    RespServer(InMemoryRedis redis, String name) {
+        this.redis = redis;
+        AtomicLong threads = new AtomicLong();
+        this.connectionThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "in-memory-redis-" + name + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Each server gets an address of its own, as test contexts with the same node addresses coexist
+        this.serverChannel = new ServerBootstrap()
+                .group(LOCAL_CHANNELS)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel channel) {
+                        channel.pipeline().addLast(new ChannelBridge());
+                    }
+                })
+                .bind(LocalAddress.ANY)
+                .syncUninterruptibly()
+                .channel();
+    }
+
+    /**
+     * The local address Netty clients connect to.
+     */
+    LocalAddress address() {
+        return (LocalAddress) serverChannel.localAddress();
+    }
+
+    /**
+     * Opens a connection and returns the client's end of it.
+     */
+    Socket connect() {
+        Pipe requests = new Pipe();
+        Pipe replies = new Pipe();
+        serve(new Connection("socket", requests.source(), replies.sink()));
+        return new InProcessSocket(requests, replies);
+    }
+
+    @Override
+    public void close() {
+        serverChannel.close().syncUninterruptibly();
+        connections.forEach(Connection::close);
+        connectionThreads.shutdownNow();
+    }
+
+    private void serve(Connection connection) {
+        connections.add(connection);
+        connectionThreads.execute(connection::serve);
+    }
+
+    // Hands what a local channel receives to its connection's thread, and writes the replies back
+    private final class ChannelBridge extends ChannelInboundHandlerAdapter {
+
+        private Pipe requests;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            requests = new Pipe();
+            serve(new Connection("local", requests.source(), new ChannelOutputStream(ctx.channel())));
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buffer = (ByteBuf) msg;
+            try {
+                requests.write(ByteBufUtil.getBytes(buffer));
+            } finally {
+                buffer.release();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            requests.close();
+        }
+    }
+
+    private static final class ChannelOutputStream extends OutputStream {
+
+        private final Channel channel;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        ChannelOutputStream(Channel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            buffer.write(bytes, offset, length);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (buffer.size() > 0) {
+                channel.writeAndFlush(Unpooled.wrappedBuffer(buffer.toByteArray()));
+                buffer.reset();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            flush();
+            channel.close();
+        }
+    }
+
+    // The client's end of a connection opened by connect(), for Jedis
+    private static final class InProcessSocket extends Socket {
+
+        private final Pipe requests;
+        private final Pipe replies;
+        private volatile boolean closed;
+
+        InProcessSocket(Pipe requests, Pipe replies) {
+            this.requests = requests;
+            this.replies = replies;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return replies.source();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return requests.sink();
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) {
+            replies.setTimeoutMillis(timeout);
+        }
+
+        @Override
+        public int getSoTimeout() {
+            return replies.getTimeoutMillis();
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isBound() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                requests.close();
+                replies.close();
+            }
+        }
+    }
+
+    private final class Connection implements InMemoryRedis.Subscriber {
+
+        private final long id = clientIds.incrementAndGet();
+        private final long createdAt = System.currentTimeMillis();
+        private final String kind;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Set<String> channels = new LinkedHashSet<>();
+        private final Set<String> patterns = new LinkedHashSet<>();
+        private volatile String name = "";
+        private volatile String lastCommand = "NULL";
+        private volatile long lastCommandAt = createdAt;
+
+        Connection(String kind, InputStream in, OutputStream out) {
+            this.kind = kind;
+            this.in = new BufferedInputStream(in);
+            this.out = new BufferedOutputStream(out);
+        }
+
+        void serve() {
+            try {
+                String[] command;
+                while ((command = read()) != null) {
+                    if (command.length == 0) {
+                        continue;
+                    }
+                    lastCommand = command[0].toLowerCase(Locale.ROOT);
+                    lastCommandAt = System.currentTimeMillis();
+                    boolean quit = lastCommand.equals("quit");
+                    handle(command);
+                    // The round trip's latency is paid once the whole pipelined batch has been answered
+                    if (quit || in.available() == 0) {
+                        if (redis.latencyNanos() > 0) {
+                            LockSupport.parkNanos(redis.latencyNanos());
+                        }
+                        synchronized (out) {
+                            out.flush();
+                        }
+                    }
+                    if (quit) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                logger.trace("In-memory Redis connection {} closed", id, e);
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                channels.forEach(channel -> redis.unsubscribe(this, channel));
+                patterns.forEach(pattern -> redis.patternUnsubscribe(this, pattern));
+            }
+            connections.remove(this);
+            try {
+                in.close();
+                synchronized (out) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                logger.trace("Closing in-memory Redis connection {}", id, e);
+            }
+        }
+
+        private void handle(String[] command) throws IOException {
+            String name = command[0].toUpperCase(Locale.ROOT);
+            switch (name) {
+                case "QUIT" -> reply(InMemoryRedis.Status.OK);
+                // No RESP3: clients fall back to RESP2
+                case "HELLO" -> reply(new RedisError("ERR unknown command 'HELLO', with args beginning with: "));
+                case "AUTH" -> reply(new RedisError("ERR AUTH <password> called without any password configured for the default user."));
+                case "CLIENT" -> reply(client(command));
+                case "SUBSCRIBE", "PSUBSCRIBE" -> subscribe(name.equals("PSUBSCRIBE"), command);
+                case "UNSUBSCRIBE", "PUNSUBSCRIBE" -> unsubscribe(name.equals("PUNSUBSCRIBE"), command);
+                case "PING" -> {
+                    if (subscriptions() > 0) {
+                        reply(List.of("pong", command.length > 1 ? command[1] : ""));
+                    } else {
+                        execute(command);
+                    }
+                }
+                default -> execute(command);
+            }
+        }
+
+        private void execute(String[] command) throws IOException {
+            Object result;
+            try {
+                result = redis.execute(command);
+            } catch (RedisError e) {
+                result = e;
+            }
+            reply(result);
+        }
+
+        private Object client(String[] command) {
+            if (command.length < 2) {
+                return new RedisError("ERR wrong number of arguments for 'client' command");
+            }
+            return switch (command[1].toUpperCase(Locale.ROOT)) {
+                case "SETNAME" -> {
+                    name = command.length > 2 ? command[2] : "";
+                    yield InMemoryRedis.Status.OK;
+                }
+                case "GETNAME" -> name.isEmpty() ? null : name;
+                case "ID" -> id;
+                case "SETINFO" -> InMemoryRedis.Status.OK;
+                case "LIST" -> {
+                    StringBuilder list = new StringBuilder();
+                    for (Connection connection : connections) {
+                        list.append(connection.describe()).append('\n');
+                    }
+                    yield list.toString();
+                }
+                default -> new RedisError("ERR unknown subcommand '" + command[1] + "'. Try CLIENT HELP.");
+            };
+        }
+
+        private String describe() {
+            long now = System.currentTimeMillis();
+            return "id=" + id
+                    + " addr=" + kind + ":" + id + " laddr=" + redis.getName()
+                    + " fd=" + id + " name=" + name + " age=" + (now - createdAt) / 1000 + " idle=" + (now - lastCommandAt) / 1000
+                    + " flags=" + (subscriptions() > 0 ? "P" : "N") + " db=0 sub=" + channels.size() + " psub=" + patterns.size()
+                    + " multi=-1 qbuf=0 qbuf-free=0 obl=0 oll=0 omem=0 events=r cmd=" + lastCommand + " user=default";
+        }
+
+        //<editor-fold desc="Pub/sub">
+        private void subscribe(boolean pattern, String[] command) throws IOException {
+            String kind = pattern ? "psubscribe" : "subscribe";
+            for (int i = 1; i < command.length; i++) {
+                int count;
+                synchronized (this) {
+                    if (pattern ? patterns.add(command[i]) : channels.add(command[i])) {
+                        if (pattern) {
+                            redis.patternSubscribe(this, command[i]);
+                        } else {
+                            redis.subscribe(this, command[i]);
+                        }
+                    }
+                    count = subscriptions();
+                }
+                reply(List.of(kind, command[i], (long) count));
+            }
+        }
+
+        private void unsubscribe(boolean pattern, String[] command) throws IOException {
+            String kind = pattern ? "punsubscribe" : "unsubscribe";
+            List<String> targets;
+            synchronized (this) {
+                targets = command.length > 1 ? List.of(command).subList(1, command.length) : new ArrayList<>(pattern ? patterns : channels);
+            }
+            if (targets.isEmpty()) {
+                reply(Arrays.asList(kind, null, (long) subscriptions()));
+            }
+            for (String target : targets) {
+                int count;
+                synchronized (this) {
+                    if (pattern ? patterns.remove(target) : channels.remove(target)) {
+                        if (pattern) {
+                            redis.patternUnsubscribe(this, target);
+                        } else {
+                            redis.unsubscribe(this, target);
+                        }
+                    }
+                    count = subscriptions();
+                }
+                reply(List.of(kind, target, (long) count));
+            }
+        }
+
+        private synchronized int subscriptions() {
+            return channels.size() + patterns.size();
+        }
+
+        @Override
+        public void message(String channel, String message) {
+            push(List.of("message", channel, message));
+        }
+
+        @Override
+        public void patternMessage(String pattern, String channel, String message) {
+            push(List.of("pmessage", pattern, channel, message));
+        }
+
+        private void push(List<String> message) {
+            try {
+                synchronized (out) {
+                    write(message);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+        //</editor-fold>
+
+        //<editor-fold desc="RESP">
+        // A command as a RESP array of bulk strings, or an inline command; null at the end of the stream
+        private String[] read() throws IOException {
+            int first = in.read();
+            if (first == -1) {
+                return null;
+            }
+            if (first != '*') {
+                String line = (char) first + readLine();
+                String trimmed = line.trim();
+                return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+");
+            }
+            int count = Integer.parseInt(readLine());
+            String[] command = new String[Math.max(count, 0)];
+            for (int i = 0; i < command.length; i++) {
+                if (in.read() != '$') {
+                    throw new IOException("Protocol error: expected '$'");
+                }
+                int length = Integer.parseInt(readLine());
+                byte[] bytes = in.readNBytes(length);
+                if (bytes.length < length || in.read() != '\r' || in.read() != '\n') {
+                    throw new EOFException();
+                }
+                command[i] = InMemoryRedis.string(bytes);
+            }
+            return command;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b == -1) {
+                    throw new EOFException();
+                }
+                line.append((char) b);
+            }
+            if (in.read() != '\n') {
+                throw new IOException("Protocol error: expected '\\n'");
+            }
+            return line.toString();
+        }
+
+        private void reply(Object reply) throws IOException {
+            synchronized (out) {
+                write(reply);
+            }
+        }
+
+        private void write(Object reply) throws IOException {
+            if (reply == null) {
+                out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+            } else if (reply instanceof String string) {
+                out.write('$');
+                out.write(Integer.toString(string.length()).getBytes(StandardCharsets.US_ASCII));
+                out.write(CRLF);
+                out.write(InMemoryRedis.bytes(string));
+                out.write(CRLF);
+            } else if (reply instanceof Long number) {
+                out.write(':');
+                out.write(Long.toString(number).getBytes(StandardCharsets.US_ASCII));
+                out.write(CRLF);
+            } else if (reply instanceof InMemoryRedis.Status status) {
+                out.write('+');
+                out.write(InMemoryRedis.bytes(status.text()));
+                out.write(CRLF);
+            } else if (reply instanceof RedisError error) {
+                out.write('-');
+                out.write(InMemoryRedis.bytes(error.getMessage().replace('\r', ' ').replace('\n', ' ')));
+                out.write(CRLF);
+            } else if (reply instanceof List<?> list) {
+                out.write('*');
+                out.write(Integer.toString(list.size()).getBytes(StandardCharsets.US_ASCII));
+                out.write(CRLF);
+                for (Object item : list) {
+                    write(item);
+                }
+            } else {
+                throw new IllegalStateException("Unexpected reply " + reply.getClass());
+            }
+        }
+        //</editor-fold>
+    }
+}
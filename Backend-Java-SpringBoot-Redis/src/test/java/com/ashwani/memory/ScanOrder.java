@@ -0,0 +1,82 @@
+package com.ashwani.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Order in which HSCAN and ZSCAN walk the members of one hash or sorted set: by a 63-bit hash of the
+ * member, which is also the cursor. Adding or removing members never moves the others, so a scan
+ * returns every member present from its first page to its last, as Redis guarantees, and can return
+ * one twice only when it shares its hash with another.
+ */
+final class ScanOrder {
+
+    private final TreeMap<Long, Object> members = new TreeMap<>();    // a member, or a List of members on a collision
+
+    void add(String member) {
+        members.merge(hash(member), member, (present, added) -> {
+            List<String> colliding = present instanceof String single ? new ArrayList<>(List.of(single)) : cast(present);
+            if (!colliding.contains(member)) {
+                colliding.add(member);
+            }
+            return colliding;
+        });
+    }
+
+    void remove(String member) {
+        long hash = hash(member);
+        Object present = members.get(hash);
+        if (present instanceof String) {
+            members.remove(hash);
+        } else if (present != null) {
+            List<String> colliding = cast(present);
+            colliding.remove(member);
+            if (colliding.isEmpty()) {
+                members.remove(hash);
+            }
+        }
+    }
+
+    /**
+     * Hands out about {@code count} members from {@code cursor} on.
+     *
+     * @return the cursor of the next page, 0 once every member has been handed out
+     */
+    long page(long cursor, int count, Consumer<String> out) {
+        int handed = 0;
+        for (Map.Entry<Long, Object> entry : members.tailMap(cursor, true).entrySet()) {
+            if (handed >= count) {
+                return entry.getKey();
+            }
+            if (entry.getValue() instanceof String member) {
+                out.accept(member);
+                handed++;
+            } else {
+                for (String member : cast(entry.getValue())) {
+                    out.accept(member);
+                    handed++;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // FNV-1a over the chars, kept positive and above 0 so that cursor 0 only ever means "start" or "done"
+    private static long hash(String member) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < member.length(); i++) {
+            hash ^= member.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash &= Long.MAX_VALUE;
+        return hash == 0 ? 1 : hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> cast(Object members) {
+        return (List<String>) members;
+    }
+}
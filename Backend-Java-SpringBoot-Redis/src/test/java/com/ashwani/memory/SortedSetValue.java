@@ -0,0 +1,105 @@
+package com.ashwani.memory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/**
+ * A sorted set key's members, which are also what GEO commands work on: each GEO member's score is its
+ * 52-bit geohash, so the members of one geohash cell are one score range of {@link #between}.
+ */
+final class SortedSetValue {
+
+    record Member(double score, String name) implements Comparable<Member> {
+
+        @Override
+        public int compareTo(Member other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : name.compareTo(other.name);
+        }
+    }
+
+    private final Map<String, Double> scores = new HashMap<>();
+    private final TreeSet<Member> byScore = new TreeSet<>();
+    private ScanOrder scanOrder;
+
+    Double score(String member) {
+        return scores.get(member);
+    }
+
+    /**
+     * @return whether the member is new
+     */
+    boolean add(String member, double score) {
+        Double previous = scores.put(member, score);
+        if (previous != null) {
+            if (previous == score) {
+                return false;
+            }
+            byScore.remove(new Member(previous, member));
+        }
+        byScore.add(new Member(score, member));
+        if (previous == null && scanOrder != null) {
+            scanOrder.add(member);
+        }
+        return previous == null;
+    }
+
+    boolean remove(String member) {
+        Double previous = scores.remove(member);
+        if (previous == null) {
+            return false;
+        }
+        byScore.remove(new Member(previous, member));
+        if (scanOrder != null) {
+            scanOrder.remove(member);
+        }
+        return true;
+    }
+
+    int size() {
+        return scores.size();
+    }
+
+    /**
+     * Members scored from {@code from}, inclusive, to {@code to}, exclusive.
+     */
+    NavigableSet<Member> between(double from, double to) {
+        return byScore.subSet(new Member(from, ""), true, new Member(to, ""), false);
+    }
+
+    /**
+     * Members ranked {@code start} to {@code stop}, both inclusive and already within bounds.
+     */
+    List<Member> range(int start, int stop) {
+        List<Member> members = new ArrayList<>(Math.max(0, stop - start + 1));
+        Iterator<Member> iterator = byScore.iterator();
+        for (int rank = 0; rank <= stop && iterator.hasNext(); rank++) {
+            Member member = iterator.next();
+            if (rank >= start) {
+                members.add(member);
+            }
+        }
+        return members;
+    }
+
+    long scan(long cursor, int count, BiConsumer<String, Double> out) {
+        if (scanOrder == null) {
+            scanOrder = new ScanOrder();
+            scores.keySet().forEach(scanOrder::add);
+        }
+        return scanOrder.page(cursor, count, member -> out.accept(member, scores.get(member)));
+    }
+
+    SortedSetValue copy() {
+        SortedSetValue copy = new SortedSetValue();
+        copy.scores.putAll(scores);
+        copy.byScore.addAll(byScore);
+        return copy;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ashwani.metrics;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.service.RideService;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Hot-path meters against a Redis on localhost:6379; skipped when it is not reachable.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379"
+})
+class HotPathMetricsTest {
+
+    private static final Region REGION = Region.ASIA;
+    private static final double LATITUDE = 35.68;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void clean() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+    }
+
+    @Test
+    void aBookingIsTimedPerStage() {
+        saveDriver("taken", 139.7601);
+        saveDriver("free", 139.7650);
+        savePassenger("first", 139.7600);
+        savePassenger("second", 139.7600);
+        rideService.bookRide(REGION, "first");
+
+        long lookups = stage("passenger_lookup").count();
+        long scripts = stage("claim").count() + stage("dispatch").count();
+        long scanned = (long) candidates().totalAmount();
+        long bookings = candidates().count();
+        rideService.bookRide(REGION, "second");
+
+        assertEquals(lookups + 1, stage("passenger_lookup").count());
+        assertTrue(stage("claim").count() + stage("dispatch").count() > scripts);
+        assertEquals(bookings + 1, candidates().count());
+        // The second booking gets "free", the first booking having taken the nearer driver
+        assertTrue(candidates().totalAmount() - scanned >= 1);
+        assertEquals(DriverStatus.ON_RIDE, driverRepository.findDriverStatus(REGION, "free", ConsistencyLevel.STRONG));
+    }
+
+    @Test
+    void redisRoundTripsAreTimedPerNodeAndRole() {
+        saveDriver("moving", 139.7600);
+        driverRepository.updateDriverLocation(REGION, "moving", 139.7610, LATITUDE);
+
+        Collection<Timer> commands = meterRegistry.find("ride.redis.command").tag("node", "localhost:6379").timers();
+        assertFalse(commands.isEmpty());
+        Timer command = commands.iterator().next();
+        assertTrue(command.count() > 0);
+        assertTrue(command.getId().getTag("role").contains("master"));
+        assertTrue(command.getId().getTag("region").contains(REGION.name()));
+        assertTrue(meterRegistry.get("ride.location.stage").tags("region", REGION.name(), "stage", "write").timer().count() > 0);
+    }
+
+    @Test
+    void poolOccupancyIsPublishedPerNode() {
+        assertNotNull(meterRegistry.get("ride.redis.pool.max").tag("node", "localhost:6379").gauge());
+        assertTrue(meterRegistry.get("ride.redis.pool.max").tag("node", "localhost:6379").gauge().value() > 0);
+        assertEquals(0, meterRegistry.get("ride.redis.pool.waiters").tag("node", "localhost:6379").gauge().value());
+    }
+
+    private Timer stage(String stage) {
+        return meterRegistry.get("ride.booking.stage").tags("region", REGION.name(), "stage", stage).timer();
+    }
+
+    private DistributionSummary candidates() {
+        return meterRegistry.get("ride.booking.candidates").tag("region", REGION.name()).summary();
+    }
+
+    private void saveDriver(String id, double longitude) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setName(id);
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLatitude(LATITUDE);
+        driver.setLongitude(longitude);
+        driverRepository.saveDriver(REGION, driver);
+    }
+
+    private void savePassenger(String id, double longitude) {
+        Passenger passenger = new Passenger();
+        passenger.setId(id);
+        passenger.setName(id);
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLatitude(LATITUDE);
+        passenger.setLongitude(longitude);
+        passengerRepository.save(REGION, passenger);
+    }
+}
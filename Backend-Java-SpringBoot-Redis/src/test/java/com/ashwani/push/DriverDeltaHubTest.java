@@ -0,0 +1,162 @@
+package com.ashwani.push;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.dto.DriverDelta;
+import com.ashwani.entity.Driver;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Subscribes to the ASIA region's driver deltas and drives updates through the repository, so the
+ * deltas come from the update scripts over Redis pub/sub. Needs a Redis on localhost:6379 and is
+ * skipped otherwise.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "ride.push.max-updates-per-second=2"
+})
+class DriverDeltaHubTest {
+
+    static final Region REGION = Region.ASIA;
+    // Central Tokyo
+    private static final Viewport VIEWPORT = new Viewport(35.60, 139.60, 35.80, 139.90);
+
+    @Autowired
+    private DriverDeltaHub hub;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    private final List<List<DriverDelta>> batches = new CopyOnWriteArrayList<>();
+    private DriverDeltaHub.Subscription subscription;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void subscribe() throws InterruptedException {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+        saveDriver("driver-0", 35.68, 139.76);
+        saveDriver("probe", 35.70, 139.70);
+
+        subscription = hub.subscribe(REGION, VIEWPORT, deltas -> {
+            if (!deltas.isEmpty()) {
+                batches.add(deltas);
+            }
+        });
+        // The channel subscription is made in the background; ping until the first delta comes through
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            driverRepository.updateDriverLocation(REGION, "probe", 139.70, 35.70);
+            Thread.sleep(100);
+        }
+        assertTrue(!batches.isEmpty(), "no delta arrived after subscribing");
+        Thread.sleep(600);
+        batches.clear();
+    }
+
+    @AfterEach
+    void unsubscribe() {
+        subscription.cancel();
+    }
+
+    @Test
+    void rapidPingsAreCoalescedToTheLatestPosition() throws InterruptedException {
+        for (int i = 1; i <= 50; i++) {
+            driverRepository.updateDriverLocation(REGION, "driver-0", 139.76 + i * 0.0001, 35.68);
+        }
+        Thread.sleep(1200);
+
+        List<DriverDelta> deltas = deltasFor("driver-0");
+        assertTrue(deltas.size() <= 4, "expected at most one delta per flush, got " + deltas.size());
+        DriverDelta last = deltas.get(deltas.size() - 1);
+        assertEquals(DriverDelta.Type.MOVED, last.getType());
+        assertEquals(139.765, last.getLongitude(), 1e-9);
+        assertEquals(DriverStatus.AVAILABLE, last.getStatus());
+        batches.forEach(batch -> assertEquals(batch.size(), batch.stream().map(DriverDelta::getId).distinct().count()));
+    }
+
+    @Test
+    void onlyDeltasInsideTheViewportAreSentAndLeavingIsToldOnce() throws InterruptedException {
+        saveDriver("osaka", 34.69, 135.50);
+        driverRepository.updateDriverLocation(REGION, "osaka", 135.51, 34.69);
+        // driver-0 drives out of the viewport and keeps moving outside it
+        driverRepository.updateDriverLocation(REGION, "driver-0", 139.95, 35.68);
+        Thread.sleep(700);
+        driverRepository.updateDriverLocation(REGION, "driver-0", 139.99, 35.68);
+        Thread.sleep(700);
+
+        assertTrue(deltasFor("osaka").isEmpty());
+        List<DriverDelta> deltas = deltasFor("driver-0");
+        assertEquals(1, deltas.size());
+        assertEquals(DriverDelta.Type.LEFT, deltas.get(0).getType());
+    }
+
+    @Test
+    void statusChangesAndGoingOfflineArePushed() throws InterruptedException {
+        driverRepository.updateDriverStatus(REGION, "driver-0", DriverStatus.ON_RIDE);
+        Thread.sleep(700);
+        driverRepository.updateDriverStatus(REGION, "driver-0", DriverStatus.OFFLINE);
+        Thread.sleep(700);
+
+        List<DriverDelta> deltas = deltasFor("driver-0");
+        assertEquals(2, deltas.size());
+        assertEquals(DriverDelta.Type.STATUS, deltas.get(0).getType());
+        assertEquals(DriverStatus.ON_RIDE, deltas.get(0).getStatus());
+        assertEquals(35.68, deltas.get(0).getLatitude(), 1e-9);
+        assertEquals(DriverDelta.Type.OFFLINE, deltas.get(1).getType());
+    }
+
+    private List<DriverDelta> deltasFor(String driverId) {
+        return batches.stream()
+                .flatMap(List::stream)
+                .filter(delta -> delta.getId().equals(driverId))
+                .toList();
+    }
+
+    private void saveDriver(String id, double latitude, double longitude) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setName(id);
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLatitude(latitude);
+        driver.setLongitude(longitude);
+        driverRepository.saveDriver(REGION, driver);
+    }
+}
@@ -0,0 +1,154 @@
+package com.ashwani.service;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.dispatch.BatchDispatcher;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.exception.NotFoundException;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Batched dispatch against a Redis on localhost:6379; skipped when it is not reachable. The window is
+ * long enough that batches are only flushed by the tests themselves.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "ride.dispatch.batching.enabled=true",
+        "ride.dispatch.batching.window=10m"
+})
+class BatchDispatchTest {
+
+    private static final Region REGION = Region.ASIA;
+    private static final double LATITUDE = 35.68;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private BatchDispatcher batchDispatcher;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void clean() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+    }
+
+    @Test
+    void aBatchIsMatchedForTheShortestTotalPickup() throws Exception {
+        // "east" is the nearest driver for both passengers; booked one at a time, "west" would be left to
+        // cross the whole distance for "second"
+        saveDriver("east", 139.7655);
+        saveDriver("west", 139.7540);
+        savePassenger("first", 139.7600);
+        savePassenger("second", 139.7700);
+
+        CompletableFuture<Ride> first = rideService.bookRideAsync(REGION, "first");
+        CompletableFuture<Ride> second = rideService.bookRideAsync(REGION, "second");
+        assertFalse(first.isDone());
+        batchDispatcher.flush(REGION);
+
+        assertEquals("west", first.get().getDriverId());
+        assertEquals("east", second.get().getDriverId());
+        assertEquals(DriverStatus.ON_RIDE, driverRepository.findDriverStatus(REGION, "east", ConsistencyLevel.STRONG));
+        assertEquals(PassengerStatus.ON_RIDE, passengerRepository.findById(REGION, "first", ConsistencyLevel.STRONG).getStatus());
+    }
+
+    @Test
+    void aDriverTakenBeforeTheFlushFallsBackToTheNextCandidate() throws Exception {
+        saveDriver("near", 139.7601);
+        saveDriver("far", 139.7650);
+        savePassenger("rider", 139.7600);
+        savePassenger("other", 139.7600);
+
+        CompletableFuture<Ride> batched = rideService.bookRideAsync(REGION, "rider");
+        // Booked directly while the batch is still open
+        assertEquals("near", rideService.bookRide(REGION, "other").getDriverId());
+        batchDispatcher.flush(REGION);
+
+        assertEquals("far", batched.get().getDriverId());
+    }
+
+    @Test
+    void passengersBeyondTheDriversGetNotFound() {
+        saveDriver("only", 139.7600);
+        savePassenger("lucky", 139.7600);
+        savePassenger("unlucky", 139.7700);
+
+        CompletableFuture<Ride> lucky = rideService.bookRideAsync(REGION, "lucky");
+        CompletableFuture<Ride> unlucky = rideService.bookRideAsync(REGION, "unlucky");
+        batchDispatcher.flush(REGION);
+
+        assertEquals("only", lucky.join().getDriverId());
+        ExecutionException failure = assertThrows(ExecutionException.class, unlucky::get);
+        assertInstanceOf(NotFoundException.class, failure.getCause());
+    }
+
+    private void saveDriver(String id, double longitude) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setName(id);
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLatitude(LATITUDE);
+        driver.setLongitude(longitude);
+        driverRepository.saveDriver(REGION, driver);
+    }
+
+    private void savePassenger(String id, double longitude) {
+        Passenger passenger = new Passenger();
+        passenger.setId(id);
+        passenger.setName(id);
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLatitude(LATITUDE);
+        passenger.setLongitude(longitude);
+        passengerRepository.save(REGION, passenger);
+    }
+}
@@ -0,0 +1,40 @@
+package com.ashwani.service;
+
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.repository.DriverRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Runs the dispatch concurrency checks with candidates taken from the in-process driver index, and
+ * checks that a stale local copy falls through to the next candidate instead of double-booking.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "ride.local-index.enabled=true"
+})
+class LocalIndexDispatchTest extends RideDispatchConcurrencyTest {
+
+    @Test
+    void driverTakenBehindTheLocalIndexIsSkipped() {
+        // Another instance books driver-1 directly in Redis; this JVM still thinks it is AVAILABLE
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.opsForHash().put("drivers:state:asia:" + PREFIX + "driver-1", "status", DriverStatus.ON_RIDE.name());
+        template.opsForZSet().remove(DriverRepository.geoIndexKey(REGION, DriverStatus.AVAILABLE), PREFIX + "driver-1");
+
+        Ride ride = rideService.bookRide(REGION, PREFIX + "passenger-0");
+
+        // driver-0 and driver-2 are equally close once driver-1 is gone
+        assertNotEquals(PREFIX + "driver-1", ride.getDriverId());
+        assertEquals(DriverStatus.ON_RIDE, driverRepository.findDriverStatus(REGION, ride.getDriverId(), ConsistencyLevel.STRONG));
+    }
+}
@@ -0,0 +1,168 @@
+package com.ashwani.service;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.exception.AlreadyExistsException;
+import com.ashwani.exception.NotFoundException;
+import com.ashwani.exception.PassengerNotFoundException;
+import com.ashwani.exception.RideNotFoundException;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.repository.ReactiveDriverRepository;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Books and ends rides through the reactive stack and checks the results with the blocking
+ * repositories, which read the same keys. Needs a Redis on localhost:6379 and is skipped otherwise.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379"
+})
+class ReactiveBookingTest {
+
+    static final Region REGION = Region.ASIA;
+    private static final int DRIVERS = 5;
+    private static final int PASSENGERS = 64;
+
+    @Autowired
+    private ReactiveRideService reactiveRideService;
+
+    @Autowired
+    private ReactiveDriverRepository reactiveDriverRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void seed() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+
+        for (int i = 0; i < DRIVERS; i++) {
+            Driver driver = new Driver();
+            driver.setId("driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLatitude(35.68 + i * 0.001);
+            driver.setLongitude(139.76);
+            driverRepository.saveDriver(REGION, driver);
+        }
+        for (int i = 0; i < PASSENGERS; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId("passenger-" + i);
+            passenger.setName("Passenger " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passenger.setLatitude(35.681);
+            passenger.setLongitude(139.761);
+            passengerRepository.save(REGION, passenger);
+        }
+    }
+
+    @Test
+    void bookedRideEndsAndReleasesDriverAndPassenger() {
+        // driver-1 sits on the passenger's latitude, so it is the nearest
+        Ride ride = reactiveRideService.bookRide(REGION, "passenger-0").block();
+        assertEquals("driver-1", ride.getDriverId());
+        assertEquals(DriverStatus.ON_RIDE, driverRepository.findDriverStatus(REGION, "driver-1", ConsistencyLevel.STRONG));
+        assertEquals(PassengerStatus.ON_RIDE, passengerRepository.findById(REGION, "passenger-0", ConsistencyLevel.STRONG).getStatus());
+
+        StepVerifier.create(reactiveRideService.endRide(REGION, ride.getId()))
+                .assertNext(ended -> assertEquals(RideStatus.COMPLETED, ended.getStatus()))
+                .verifyComplete();
+        assertEquals(DriverStatus.AVAILABLE, driverRepository.findDriverStatus(REGION, "driver-1", ConsistencyLevel.STRONG));
+        assertEquals(PassengerStatus.ONLINE, passengerRepository.findById(REGION, "passenger-0", ConsistencyLevel.STRONG).getStatus());
+        assertEquals(RideStatus.COMPLETED, rideRepository.findById(REGION, ride.getId(), ConsistencyLevel.STRONG).getStatus());
+
+        StepVerifier.create(reactiveRideService.endRide(REGION, ride.getId()))
+                .expectError(AlreadyExistsException.class)
+                .verify();
+        assertEquals("driver-1", reactiveRideService.bookRide(REGION, "passenger-0").block().getDriverId());
+    }
+
+    @Test
+    void concurrentBookingsNeverShareADriver() {
+        List<String> assigned = Flux.range(0, PASSENGERS)
+                .flatMap(i -> reactiveRideService.bookRide(REGION, "passenger-" + i)
+                        .map(Ride::getDriverId)
+                        .onErrorResume(NotFoundException.class, e -> Mono.empty()))
+                .collectList()
+                .block();
+
+        assertEquals(DRIVERS, assigned.size());
+        assertEquals(DRIVERS, new HashSet<>(assigned).size());
+    }
+
+    @Test
+    void unknownPassengerOrRideIsAnError() {
+        StepVerifier.create(reactiveRideService.bookRide(REGION, "nobody"))
+                .expectError(PassengerNotFoundException.class)
+                .verify();
+        StepVerifier.create(reactiveRideService.endRide(REGION, "no-such-ride"))
+                .expectError(RideNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void locationUpdateAppliesToKnownDriversOnly() {
+        StepVerifier.create(reactiveDriverRepository.updateDriverLocation(REGION, "driver-0", 139.70, 35.60))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(reactiveDriverRepository.updateDriverLocation(REGION, "nobody", 139.70, 35.60))
+                .expectNext(false)
+                .verifyComplete();
+
+        Driver driver = driverRepository.findDriverById(REGION, "driver-0", ConsistencyLevel.STRONG);
+        assertEquals(35.60, driver.getLatitude(), 1e-9);
+        assertEquals(139.70, driver.getLongitude(), 1e-9);
+    }
+}
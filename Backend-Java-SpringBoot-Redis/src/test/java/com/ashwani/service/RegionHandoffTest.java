@@ -0,0 +1,262 @@
+package com.ashwani.service;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives drivers from Dubai, in the EU region's default area, to Mumbai in ASIA's and back, and checks
+ * that a driver posted without a region lands in the region of its coordinates. EU runs on
+ * localhost:6382 and ASIA on localhost:6379; skipped unless both are reachable.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "spring.redis.eu.master.host=localhost",
+        "spring.redis.eu.master.port=6382",
+        "spring.redis.eu.replica.host=localhost",
+        "spring.redis.eu.replica.port=6382",
+        "ride.region-resolution.handoff=true"
+})
+@AutoConfigureMockMvc
+class RegionHandoffTest {
+
+    private static final double[] DUBAI = {55.27, 25.20};
+    private static final double[] MUMBAI = {72.88, 19.07};
+
+    @Autowired
+    private DriverService driverService;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        for (int port : new int[]{6379, 6382}) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 200);
+            } catch (IOException e) {
+                assumeTrue(false, "Redis is not reachable on localhost:" + port);
+            }
+        }
+    }
+
+    @BeforeEach
+    void cleanRegions() {
+        for (Region region : new Region[]{Region.EU, Region.ASIA}) {
+            RedisTemplate<String, String> template = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
+            template.delete(template.keys("*:" + region.name().toLowerCase() + "*"));
+        }
+    }
+
+    @Test
+    void aDriverPostedWithoutARegionGoesToTheRegionOfItsCoordinates() throws Exception {
+        double mismatches = meterRegistry.counter("ride.region.mismatches", "entity", "driver", "requested", "US",
+                "resolved", "EU").count();
+
+        mockMvc.perform(post("/drivers").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"unrouted\",\"name\":\"Unrouted\",\"longitude\":" + DUBAI[0]
+                                + ",\"latitude\":" + DUBAI[1] + "}"))
+                .andExpect(status().isOk());
+
+        RedisTemplate<String, String> eu = router.getGeoTemplate(Region.EU, ConsistencyLevel.STRONG);
+        assertNotNull(eu.opsForHash().get("drivers:eu", "unrouted"));
+        assertEquals(List.of("unrouted"), geoMembers(Region.EU));
+        assertEquals(mismatches, meterRegistry.counter("ride.region.mismatches", "entity", "driver", "requested", "US",
+                "resolved", "EU").count());
+    }
+
+    @Test
+    void aDriverCrossingARegionBoundaryIsMovedAndFollowed() {
+        double moved = handoffs(Region.EU, Region.ASIA, "moved");
+        driverService.addDriver(Region.EU, driver("crosser", DUBAI));
+
+        driverService.updateDriverLocation(Region.EU, "crosser", MUMBAI[0], MUMBAI[1]);
+        assertNull(driverRepository.findDriverById(Region.EU, "crosser", ConsistencyLevel.STRONG));
+        Driver inAsia = driverRepository.findDriverById(Region.ASIA, "crosser", ConsistencyLevel.STRONG);
+        assertNotNull(inAsia);
+        assertEquals("Crosser", inAsia.getName());
+        assertEquals(DriverStatus.AVAILABLE, inAsia.getStatus());
+        assertEquals(MUMBAI[0], inAsia.getLongitude(), 1e-9);
+        assertTrue(geoMembers(Region.EU).isEmpty());
+        assertEquals(List.of("crosser"), geoMembers(Region.ASIA));
+        assertEquals(moved + 1, handoffs(Region.EU, Region.ASIA, "moved"));
+        assertTrue(meterRegistry.timer("ride.region.handoff.latency", "from", "EU", "to", "ASIA").count() >= 1);
+
+        // A client still sending the old region is followed to the new one
+        driverService.updateDriverLocation(Region.EU, "crosser", MUMBAI[0] + 0.01, MUMBAI[1]);
+        assertEquals(MUMBAI[0] + 0.01, driverRepository.findDriverById(Region.ASIA, "crosser", ConsistencyLevel.STRONG).getLongitude(), 1e-9);
+        assertNull(driverRepository.findDriverById(Region.EU, "crosser", ConsistencyLevel.STRONG));
+
+        // And back again
+        driverService.updateDriverLocation(Region.ASIA, "crosser", DUBAI[0], DUBAI[1]);
+        assertNotNull(driverRepository.findDriverById(Region.EU, "crosser", ConsistencyLevel.STRONG));
+        assertNull(driverRepository.findDriverById(Region.ASIA, "crosser", ConsistencyLevel.STRONG));
+        assertEquals(List.of("crosser"), geoMembers(Region.EU));
+    }
+
+    @Test
+    void aDriverOnARideMovesOnlyAfterTheRideEnds() {
+        driverService.addDriver(Region.EU, driver("busy", DUBAI));
+        passengerRepository.save(Region.EU, passenger("rider", DUBAI));
+        Ride ride = rideService.bookRide(Region.EU, "rider");
+        assertEquals("busy", ride.getDriverId());
+
+        driverService.updateDriverLocation(Region.EU, "busy", MUMBAI[0], MUMBAI[1]);
+        Driver stillInEu = driverRepository.findDriverById(Region.EU, "busy", ConsistencyLevel.STRONG);
+        assertEquals(DriverStatus.ON_RIDE, stillInEu.getStatus());
+        assertEquals(MUMBAI[0], stillInEu.getLongitude(), 1e-9);
+        assertNull(driverRepository.findDriverById(Region.ASIA, "busy", ConsistencyLevel.STRONG));
+
+        rideService.endRide(Region.EU, ride.getId());
+        driverService.updateDriverLocation(Region.EU, "busy", MUMBAI[0], MUMBAI[1]);
+        assertNull(driverRepository.findDriverById(Region.EU, "busy", ConsistencyLevel.STRONG));
+        assertEquals(DriverStatus.AVAILABLE, driverRepository.findDriverById(Region.ASIA, "busy", ConsistencyLevel.STRONG).getStatus());
+    }
+
+    @Test
+    void concurrentUpdatesAndBookingsNeverLeaveADriverInBothRegions() throws Exception {
+        int drivers = 16;
+        for (int i = 0; i < drivers; i++) {
+            driverService.addDriver(Region.EU, driver("d-" + i, new double[]{DUBAI[0] + i * 0.001, DUBAI[1]}));
+            passengerRepository.save(Region.EU, passenger("p-" + i, DUBAI));
+        }
+
+        Map<String, String> bookedDrivers = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(12);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < drivers; i++) {
+            String passengerId = "p-" + i;
+            tasks.add(executor.submit(() -> {
+                start.await();
+                try {
+                    Ride ride = rideService.bookRide(Region.EU, passengerId);
+                    bookedDrivers.put(ride.getDriverId(), ride.getId());
+                } catch (RuntimeException e) {
+                    // No driver left in EU
+                }
+                return null;
+            }));
+            // Three pings per driver, racing each other and the bookings
+            for (int ping = 0; ping < 3; ping++) {
+                String driverId = "d-" + i;
+                double longitude = MUMBAI[0] + ping * 0.001;
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    driverService.updateDriverLocation(Region.EU, driverId, longitude, MUMBAI[1]);
+                    return null;
+                }));
+            }
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < drivers; i++) {
+            String driverId = "d-" + i;
+            Driver inEu = driverRepository.findDriverById(Region.EU, driverId, ConsistencyLevel.STRONG);
+            Driver inAsia = driverRepository.findDriverById(Region.ASIA, driverId, ConsistencyLevel.STRONG);
+            assertTrue(inEu == null ^ inAsia == null, driverId + " must be in exactly one region");
+            if (bookedDrivers.containsKey(driverId)) {
+                assertNotNull(inEu, driverId + " was booked in EU");
+                assertEquals(DriverStatus.ON_RIDE, inEu.getStatus());
+            } else {
+                // A ping that raced the handoff may have been dropped, but the driver is no longer in EU
+                assertNotNull(inAsia, driverId + " was never booked");
+                assertEquals(DriverStatus.AVAILABLE, inAsia.getStatus());
+            }
+        }
+        List<String> availableInAsia = geoMembers(Region.ASIA);
+        assertEquals(drivers - bookedDrivers.size(), availableInAsia.size());
+    }
+
+    private double handoffs(Region from, Region to, String outcome) {
+        return meterRegistry.counter("ride.region.handoffs", "from", from.name(), "to", to.name(), "outcome", outcome).count();
+    }
+
+    private List<String> geoMembers(Region region) {
+        RedisTemplate<String, String> template = router.getGeoTemplate(region, ConsistencyLevel.STRONG);
+        return new ArrayList<>(template.opsForZSet().range(DriverRepository.geoIndexKey(region, DriverStatus.AVAILABLE), 0, -1));
+    }
+
+    private static Driver driver(String id, double[] position) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setName(Character.toUpperCase(id.charAt(0)) + id.substring(1));
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLongitude(position[0]);
+        driver.setLatitude(position[1]);
+        return driver;
+    }
+
+    private static Passenger passenger(String id, double[] position) {
+        Passenger passenger = new Passenger();
+        passenger.setId(id);
+        passenger.setName(id);
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLongitude(position[0]);
+        passenger.setLatitude(position[1]);
+        return passenger;
+    }
+}
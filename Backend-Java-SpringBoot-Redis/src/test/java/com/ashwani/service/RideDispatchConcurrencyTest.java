@@ -0,0 +1,276 @@
+package com.ashwani.service;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.exception.AlreadyExistsException;
+import com.ashwani.exception.NotFoundException;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.repository.RideIds;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.sharding.ShardedRedisTemplateRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Fires many simultaneous bookings at a small driver pool and checks that every driver is assigned
+ * at most once. Needs a Redis on localhost:6379 and is skipped otherwise. Its drivers and passengers
+ * stand in Ulaanbaatar, away from those of the other tests, and carry the {@link #PREFIX} in their ids;
+ * only their entries are removed again.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379"
+})
+class RideDispatchConcurrencyTest {
+
+    static final Region REGION = Region.ASIA;
+    static final String PREFIX = "dispatch-test-";
+    private static final double LATITUDE = 47.92;
+    private static final double LONGITUDE = 106.92;
+    private static final int DRIVERS = 5;
+    private static final int PASSENGERS = 64;
+
+    @Autowired
+    RideService rideService;
+
+    @Autowired
+    DriverRepository driverRepository;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    ShardedRedisTemplateRouter router;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 6379), 200);
+        } catch (IOException e) {
+            assumeTrue(false, "Redis is not reachable on localhost:6379");
+        }
+    }
+
+    @BeforeEach
+    void seed() {
+        clean();
+
+        for (int i = 0; i < DRIVERS; i++) {
+            Driver driver = new Driver();
+            driver.setId(PREFIX + "driver-" + i);
+            driver.setName("Driver " + i);
+            driver.setStatus(DriverStatus.AVAILABLE);
+            driver.setLatitude(LATITUDE + i * 0.001);
+            driver.setLongitude(LONGITUDE);
+            driverRepository.saveDriver(REGION, driver);
+        }
+        for (int i = 0; i < PASSENGERS; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId(PREFIX + "passenger-" + i);
+            passenger.setName("Passenger " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passenger.setLatitude(LATITUDE + 0.001);
+            passenger.setLongitude(LONGITUDE + 0.001);
+            passengerRepository.save(REGION, passenger);
+        }
+    }
+
+    @AfterEach
+    void clean() {
+        RedisTestSupport.deleteOwnEntries(router.getGeoTemplate(REGION, ConsistencyLevel.STRONG), "*:asia*", PREFIX);
+    }
+
+    @Test
+    void parallelBookingsNeverShareADriver() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Ride>> bookings = new ArrayList<>();
+        for (int i = 0; i < PASSENGERS; i++) {
+            String passengerId = PREFIX + "passenger-" + i;
+            bookings.add(executor.submit(() -> {
+                start.await();
+                return rideService.bookRide(REGION, passengerId);
+            }));
+        }
+        start.countDown();
+
+        Set<String> assignedDrivers = new HashSet<>();
+        int booked = 0;
+        for (Future<Ride> booking : bookings) {
+            try {
+                Ride ride = booking.get();
+                booked++;
+                assertEquals(true, assignedDrivers.add(ride.getDriverId()), "Driver assigned twice: " + ride.getDriverId());
+            } catch (ExecutionException e) {
+                assertInstanceOf(NotFoundException.class, e.getCause());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(DRIVERS, booked);
+        assertEquals(DRIVERS, assignedDrivers.size());
+        for (int i = 0; i < DRIVERS; i++) {
+            assertEquals(DriverStatus.ON_RIDE, driverRepository.findDriverStatus(REGION, PREFIX + "driver-" + i, ConsistencyLevel.STRONG));
+        }
+    }
+
+    @Test
+    void resavedDriverLeavesTheIndexOfItsOldStatus() {
+        Driver driver = driverRepository.findDriverById(REGION, PREFIX + "driver-0", ConsistencyLevel.STRONG);
+        driver.setStatus(DriverStatus.OFFLINE);
+        driverRepository.saveDriver(REGION, driver);
+
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        assertNull(template.opsForZSet().score(DriverRepository.geoIndexKey(REGION, DriverStatus.AVAILABLE), PREFIX + "driver-0"));
+        assertNotNull(template.opsForZSet().score(DriverRepository.geoIndexKey(REGION, DriverStatus.OFFLINE), PREFIX + "driver-0"));
+        assertEquals(DriverStatus.OFFLINE, driverRepository.findDriverStatus(REGION, PREFIX + "driver-0", ConsistencyLevel.STRONG));
+    }
+
+    @Test
+    void endedRideReleasesDriverAndPassenger() {
+        // driver-1 sits on the passenger's latitude, so it is the nearest
+        Ride ride = rideService.bookRide(REGION, PREFIX + "passenger-0");
+        assertEquals(PREFIX + "driver-1", ride.getDriverId());
+
+        Ride ended = rideService.endRide(REGION, ride.getId());
+        assertEquals(PREFIX + "driver-1", ended.getDriverId());
+        assertEquals(DriverStatus.AVAILABLE, driverRepository.findDriverStatus(REGION, PREFIX + "driver-1", ConsistencyLevel.STRONG));
+
+        assertEquals(PREFIX + "driver-1", rideService.bookRide(REGION, PREFIX + "passenger-0").getDriverId());
+    }
+
+    @Test
+    void endedRideIsArchivedAndEndsOnlyOnce() throws InterruptedException {
+        Ride ride = rideService.bookRide(REGION, PREFIX + "passenger-0");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Ride>> ends = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ends.add(executor.submit(() -> {
+                start.await();
+                return rideService.endRide(REGION, ride.getId());
+            }));
+        }
+        start.countDown();
+        int ended = 0;
+        for (Future<Ride> end : ends) {
+            try {
+                end.get();
+                ended++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(AlreadyExistsException.class, e.getCause());
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, ended);
+
+        assertNull(rideRepository.findActiveById(REGION, ride.getId(), ConsistencyLevel.STRONG));
+        Ride archived = rideRepository.findById(REGION, ride.getId(), ConsistencyLevel.STRONG);
+        assertEquals(RideStatus.COMPLETED, archived.getStatus());
+        assertEquals(ride.getStartTime(), RideIds.startTime(ride.getId()));
+    }
+
+    @Test
+    void archivedRideWithoutStartTimeInItsIdIsFound() {
+        // Ids from before time-ordered ids carry no start time
+        Ride ride = new Ride();
+        ride.setId(PREFIX + "legacy-ride");
+        ride.setPassengerId(PREFIX + "passenger-0");
+        ride.setDriverId(PREFIX + "driver-0");
+        ride.setStatus(RideStatus.COMPLETED);
+        ride.setStartTime(System.currentTimeMillis() - 3 * 24 * 3600 * 1000L);
+        router.getRideTemplate(REGION, ConsistencyLevel.STRONG).opsForHash().put("rides:asia", ride.getId(), ride);
+
+        assertTrue(rideRepository.archive(REGION, ride));
+        assertNull(rideRepository.findActiveById(REGION, ride.getId(), ConsistencyLevel.STRONG));
+        assertEquals(ride, rideRepository.findById(REGION, ride.getId(), ConsistencyLevel.STRONG));
+    }
+
+    @Test
+    void archivedRideIsFoundAfterTheBucketGranularityChanged() {
+        // Archived while ride.rides.archive.bucket was HOURS; the tests run with DAYS
+        long startTime = System.currentTimeMillis() - 3 * 24 * 3600 * 1000L;
+        Ride ride = new Ride();
+        ride.setId(RideIds.newId(startTime));
+        ride.setPassengerId(PREFIX + "passenger-0");
+        ride.setDriverId(PREFIX + "driver-0");
+        ride.setStatus(RideStatus.COMPLETED);
+        ride.setStartTime(startTime);
+        String hourBucket = DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC).format(Instant.ofEpochMilli(startTime));
+        router.getRideTemplate(REGION, ConsistencyLevel.STRONG).opsForHash().put("rides:archive:asia:" + hourBucket, ride.getId(), ride);
+
+        assertEquals(ride, rideRepository.findById(REGION, ride.getId(), ConsistencyLevel.STRONG));
+    }
+
+    @Test
+    void passengerCannotBookTwiceConcurrently() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Ride>> bookings = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            bookings.add(executor.submit(() -> {
+                start.await();
+                return rideService.bookRide(REGION, PREFIX + "passenger-0");
+            }));
+        }
+        start.countDown();
+
+        int booked = 0;
+        for (Future<Ride> booking : bookings) {
+            try {
+                booking.get();
+                booked++;
+            } catch (ExecutionException ignored) {
+                // Rejected as already on a ride
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(1, booked);
+    }
+}
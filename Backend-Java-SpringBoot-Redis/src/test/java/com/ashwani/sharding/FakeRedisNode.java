@@ -0,0 +1,141 @@
+package com.ashwani.sharding;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just enough of a Redis replica, speaking RESP on a local port, to route reads at: it answers
+ * {@code PING}, {@code INFO replication} with a configurable link status and offset, every read with
+ * nil, and anything else with {@code OK}. Reads can be slowed down and are counted.
+ */
+class FakeRedisNode implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-redis-node");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong reads = new AtomicLong();
+    private volatile boolean linkUp = true;
+    private volatile long offset = 0;
+    private volatile long readDelayMillis = 0;
+
+    FakeRedisNode() throws IOException {
+        serverSocket = new ServerSocket(0);
+        executor.execute(this::accept);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    long reads() {
+        return reads.get();
+    }
+
+    void linkUp(boolean linkUp) {
+        this.linkUp = linkUp;
+    }
+
+    void offset(long offset) {
+        this.offset = offset;
+    }
+
+    void readDelayMillis(long readDelayMillis) {
+        this.readDelayMillis = readDelayMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket; InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = socket.getOutputStream()) {
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                out.write(reply(command).getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Client went away or the node is closing
+        }
+    }
+
+    private String reply(List<String> command) throws InterruptedException {
+        String name = command.isEmpty() ? "" : command.get(0).toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING":
+                return "+PONG\r\n";
+            case "INFO":
+                String info = "# Replication\r\nrole:slave\r\nmaster_link_status:" + (linkUp ? "up" : "down")
+                        + "\r\nslave_repl_offset:" + offset + "\r\nmaster_repl_offset:" + offset + "\r\n";
+                return "$" + info.getBytes(StandardCharsets.UTF_8).length + "\r\n" + info + "\r\n";
+            case "GET":
+            case "HGET":
+                reads.incrementAndGet();
+                if (readDelayMillis > 0) {
+                    Thread.sleep(readDelayMillis);
+                }
+                return "$-1\r\n";
+            default:
+                return "+OK\r\n";
+        }
+    }
+
+    // Reads one RESP array of bulk strings; null at end of stream
+    private static List<String> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        List<String> arguments = new ArrayList<>();
+        int count = Integer.parseInt(header.substring(1));
+        for (int i = 0; i < count; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] argument = in.readNBytes(length);
+            in.readNBytes(2);
+            arguments.add(new String(argument, StandardCharsets.UTF_8));
+        }
+        return arguments;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r') {
+                in.read();
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,143 @@
+package com.ashwani.sharding;
+
+import com.ashwani.config.RedisTopology;
+import com.ashwani.config.RedisTopologyProperties;
+import com.ashwani.config.ReplicaRoutingProperties;
+import com.ashwani.enums.Region;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routes the ASIA region's EVENTUAL reads over three fake replicas and checks where they land. Reads
+ * are sent from several threads at once through the replicas' own pools, so the selector sees the
+ * outstanding requests it balances on. Needs no Redis.
+ */
+class ReplicaBalancingTest {
+
+    static final Region REGION = Region.ASIA;
+    private static final int THREADS = 8;
+    private static final int READS_PER_THREAD = 150;
+    private static final byte[] KEY = "drivers:asia".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIELD = "d-1".getBytes(StandardCharsets.UTF_8);
+
+    private final List<FakeRedisNode> replicas = new ArrayList<>();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FakeRedisNode master;
+    private RedisTopology topology;
+    private ReplicaLagMonitor monitor;
+    private ReplicaSelector selector;
+
+    @BeforeEach
+    void startNodes() throws Exception {
+        master = new FakeRedisNode();
+        topology = new RedisTopology(new RedisTopologyProperties());
+        topology.add(REGION, RedisTopology.Role.MASTER, "localhost", master.port());
+        for (int i = 0; i < 3; i++) {
+            FakeRedisNode replica = new FakeRedisNode();
+            replicas.add(replica);
+            topology.add(REGION, RedisTopology.Role.REPLICA, "localhost", replica.port());
+        }
+        // Other regions point at the fake master too, so probing them stays local
+        for (Region region : Region.values()) {
+            if (region != REGION) {
+                topology.add(region, RedisTopology.Role.MASTER, "localhost", master.port());
+                topology.add(region, RedisTopology.Role.REPLICA, "localhost", master.port());
+            }
+        }
+        ReplicaRoutingProperties properties = new ReplicaRoutingProperties();
+        properties.setEnabled(false);
+        monitor = new ReplicaLagMonitor(properties, topology, meterRegistry);
+        properties.setEnabled(true);
+        selector = new ReplicaSelector(topology, monitor);
+    }
+
+    @AfterEach
+    void stopNodes() throws Exception {
+        monitor.destroy();
+        topology.destroy();
+        for (FakeRedisNode replica : replicas) {
+            replica.close();
+        }
+        master.close();
+    }
+
+    @Test
+    void readsSpreadEvenlyOverEqualReplicas() throws Exception {
+        monitor.probeAll();
+        readConcurrently();
+
+        long total = THREADS * READS_PER_THREAD;
+        for (FakeRedisNode replica : replicas) {
+            double share = (double) replica.reads() / total;
+            assertTrue(share > 0.2 && share < 0.47, "share " + share);
+        }
+    }
+
+    @Test
+    void aSlowReplicaGetsLessThanItsShare() throws Exception {
+        replicas.get(0).readDelayMillis(5);
+        monitor.probeAll();
+        readConcurrently();
+
+        long total = THREADS * READS_PER_THREAD;
+        double slowShare = (double) replicas.get(0).reads() / total;
+        assertTrue(slowShare < 0.2, "slow replica share " + slowShare);
+    }
+
+    @Test
+    void anUnhealthyReplicaGetsNoReads() throws Exception {
+        replicas.get(2).linkUp(false);
+        monitor.probeAll();
+        readConcurrently();
+
+        assertEquals(0, replicas.get(2).reads());
+        assertEquals(THREADS * READS_PER_THREAD, replicas.get(0).reads() + replicas.get(1).reads());
+    }
+
+    @Test
+    void readsGoToTheMasterWhenNoReplicaIsHealthy() {
+        replicas.forEach(replica -> replica.linkUp(false));
+        monitor.probeAll();
+
+        assertEquals(-1, selector.select(REGION));
+        assertEquals(1, meterRegistry.counter("ride.replica.reroutes", "region", REGION.name(), "reason", "lag").count());
+        assertTrue(meterRegistry.find("ride.redis.node.latency").timers().size() >= 4, "every probed node has a latency histogram");
+    }
+
+    private void readConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < READS_PER_THREAD; i++) {
+                        int replica = selector.select(REGION);
+                        try (RedisConnection connection = topology.replicas(REGION).get(replica).getConnection()) {
+                            connection.hashCommands().hGet(KEY, FIELD);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
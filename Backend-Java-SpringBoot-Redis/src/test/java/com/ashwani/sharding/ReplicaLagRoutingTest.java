@@ -0,0 +1,149 @@
+package com.ashwani.sharding;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.config.RedisTopology;
+import com.ashwani.config.RedisTopologyProperties;
+import com.ashwani.config.ReplicaRoutingProperties;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.Region;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Routes the ASIA region over a real master and replica. Probing is left to the tests, which call
+ * {@link ReplicaLagMonitor#probeAll()} themselves. Needs a Redis master on localhost:6379 with a replica
+ * on localhost:6380 and is skipped otherwise.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6380",
+        "ride.replica-routing.probe-interval=1h"
+})
+@AutoConfigureMockMvc
+class ReplicaLagRoutingTest {
+
+    static final Region REGION = Region.ASIA;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReplicaLagMonitor monitor;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        for (int port : new int[]{6379, 6380}) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 200);
+            } catch (IOException e) {
+                assumeTrue(false, "Redis is not reachable on localhost:" + port);
+            }
+        }
+    }
+
+    @BeforeEach
+    void cleanRegion() {
+        RedisTemplate<String, String> template = router.getGeoTemplate(REGION, ConsistencyLevel.STRONG);
+        template.delete(template.keys("*:asia*"));
+    }
+
+    @Test
+    void aReplicaWithinTheBoundServesEventualReads() {
+        monitor.probeAll();
+
+        assertTrue(monitor.lagBytes(REGION) >= 0);
+        assertNotSame(router.getGeoTemplate(REGION, ConsistencyLevel.STRONG), router.getGeoTemplate(REGION, ConsistencyLevel.EVENTUAL));
+    }
+
+    @Test
+    void readsWithAWriteTokenStayOnTheMasterUntilTheReplicaHasTheWrite() throws Exception {
+        monitor.probeAll();
+        String token = mockMvc.perform(post("/passengers").header("X-Region", "ASIA")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"ryw-1\",\"name\":\"Ryw\",\"latitude\":35.68,\"longitude\":139.70}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("X-Consistency-Token");
+        assertNotNull(token);
+        assertTrue(token.startsWith("ASIA:"), token);
+
+        // The last probe predates the write, so the read goes to the master and sees it
+        double reroutes = tokenReroutes();
+        mockMvc.perform(get("/passengers").header("X-Region", "ASIA").header("X-Consistency-Level", "EVENTUAL")
+                        .header("X-Consistency-Token", token))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("ryw-1")));
+        assertEquals(reroutes + 1, tokenReroutes());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!monitor.replicaCaughtUp(REGION, ConsistencyToken.parse(token).writtenAt()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            monitor.probeAll();
+        }
+        reroutes = tokenReroutes();
+        mockMvc.perform(get("/passengers").header("X-Region", "ASIA").header("X-Consistency-Level", "EVENTUAL")
+                        .header("X-Consistency-Token", token))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("ryw-1")));
+        assertEquals(reroutes, tokenReroutes());
+    }
+
+    @Test
+    void anUnreachableReplicaIsNotUsed() throws Exception {
+        RedisTopology topology = new RedisTopology(new RedisTopologyProperties());
+        topology.add(REGION, RedisTopology.Role.MASTER, "localhost", 6379);
+        // Nothing listens on this port
+        topology.add(REGION, RedisTopology.Role.REPLICA, "localhost", 6399);
+        ReplicaRoutingProperties properties = new ReplicaRoutingProperties();
+        properties.setEnabled(false);
+        ReplicaLagMonitor unreachable = new ReplicaLagMonitor(properties, topology, new SimpleMeterRegistry());
+        try {
+            properties.setEnabled(true);
+            assertEquals(1, unreachable.usableReplicas(REGION).length, "a replica not probed yet is used as before");
+            unreachable.probeAll();
+            assertEquals(0, unreachable.usableReplicas(REGION).length);
+            assertEquals(-1, unreachable.lagBytes(REGION));
+        } finally {
+            unreachable.destroy();
+            topology.destroy();
+        }
+    }
+
+    private double tokenReroutes() {
+        return meterRegistry.counter("ride.replica.reroutes", "region", REGION.name(), "reason", "token").count();
+    }
+}
@@ -0,0 +1,261 @@
+package com.ashwani.sharding;
+
+import com.ashwani.RedisTestSupport;
+import com.ashwani.dto.CursorPage;
+import com.ashwani.dto.DispatchResult;
+import com.ashwani.entity.Driver;
+import com.ashwani.entity.Passenger;
+import com.ashwani.entity.Ride;
+import com.ashwani.enums.ConsistencyLevel;
+import com.ashwani.enums.DriverStatus;
+import com.ashwani.enums.PassengerStatus;
+import com.ashwani.enums.Region;
+import com.ashwani.enums.RideStatus;
+import com.ashwani.repository.DriverRepository;
+import com.ashwani.repository.PassengerRepository;
+import com.ashwani.repository.RideIds;
+import com.ashwani.repository.RideRepository;
+import com.ashwani.service.RideService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Splits the ASIA region over two masters, localhost:6379 and localhost:6381, with 0.05 degree cells,
+ * and checks that drivers follow their cell from shard to shard while searches, bookings and listings
+ * still see the whole region. Skipped unless both are reachable.
+ */
+@SpringBootTest(properties = {
+        "spring.redis.asia.master.host=localhost",
+        "spring.redis.asia.master.port=6379",
+        "spring.redis.asia.replica.host=localhost",
+        "spring.redis.asia.replica.port=6379",
+        "spring.redis.asia.shards=localhost:6381",
+        "ride.sharding.cell-size-deg=0.05"
+})
+class ShardedRegionTest {
+
+    static final Region REGION = Region.ASIA;
+
+    @Autowired
+    private RegionShards shards;
+
+    @Autowired
+    private ShardedRedisTemplateRouter router;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private PassengerRepository passengerRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private RideService rideService;
+
+    @BeforeAll
+    static void requireRedis() {
+        if (RedisTestSupport.inMemory()) {
+            return;
+        }
+        for (int port : new int[]{6379, 6381}) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 200);
+            } catch (IOException e) {
+                assumeTrue(false, "Redis is not reachable on localhost:" + port);
+            }
+        }
+    }
+
+    @BeforeEach
+    void cleanRegion() {
+        for (int shard = 0; shard < shards.count(REGION); shard++) {
+            RedisTemplate<String, String> template = router.getGeoTemplate(REGION, shard, ConsistencyLevel.STRONG);
+            template.delete(template.keys("*:asia*"));
+        }
+    }
+
+    @Test
+    void idsAndCellsSpreadOverBothShards() {
+        assertEquals(2, shards.count(REGION));
+        assertEquals(1, shards.count(Region.US));
+
+        int[] perShard = new int[2];
+        for (int i = 0; i < 10_000; i++) {
+            perShard[shards.shardOf(REGION, "driver-" + i)]++;
+        }
+        assertTrue(perShard[0] > 4_500 && perShard[1] > 4_500, perShard[0] + " / " + perShard[1]);
+
+        double[][] cells = cellsOnEachShard();
+        assertArrayEquals(new int[]{0}, shards.shardsNear(REGION, cells[0][0], cells[0][1], 0.5));
+        assertArrayEquals(new int[]{1}, shards.shardsNear(REGION, cells[1][0], cells[1][1], 0.5));
+        assertArrayEquals(new int[]{0, 1}, shards.shardsNear(REGION, cells[0][0], cells[0][1], 50));
+    }
+
+    @Test
+    void aDriverFollowsItsCellToTheOtherShard() {
+        double[][] cells = cellsOnEachShard();
+        driverRepository.saveDriver(REGION, driver("mover", cells[0]));
+        assertEquals(0, onShard("mover"));
+
+        driverRepository.updateDriverLocation(REGION, "mover", cells[1][0], cells[1][1]);
+        assertEquals(1, onShard("mover"));
+        Driver moved = driverRepository.findDriverById(REGION, "mover", ConsistencyLevel.STRONG);
+        assertEquals(cells[1][0], moved.getLongitude(), 1e-6);
+        assertEquals(DriverStatus.AVAILABLE, moved.getStatus());
+
+        List<String> nearNew = nearby(cells[1]);
+        assertEquals(List.of("mover"), nearNew);
+        assertTrue(nearby(cells[0]).isEmpty());
+
+        driverRepository.updateDriverStatus(REGION, "mover", DriverStatus.OFFLINE);
+        assertEquals(DriverStatus.OFFLINE, driverRepository.findDriverStatus(REGION, "mover", ConsistencyLevel.STRONG));
+        assertTrue(nearby(cells[1]).isEmpty());
+    }
+
+    @Test
+    void aBookingClaimsTheNearestDriverOnWhicheverShardHoldsIt() {
+        double[][] cells = cellsOnEachShard();
+        driverRepository.saveDriver(REGION, driver("far", cells[0]));
+        driverRepository.saveDriver(REGION, driver("near", cells[1]));
+        Passenger passenger = new Passenger();
+        passenger.setId("rider");
+        passenger.setName("Rider");
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLongitude(cells[1][0]);
+        passenger.setLatitude(cells[1][1]);
+        passengerRepository.save(REGION, passenger);
+
+        Ride ride = rideService.bookRide(REGION, "rider");
+        assertEquals("near", ride.getDriverId());
+        assertEquals(DriverStatus.ON_RIDE, driverRepository.findDriverStatus(REGION, "near", ConsistencyLevel.STRONG));
+        assertEquals(RideStatus.ONGOING, rideRepository.findActiveById(REGION, ride.getId(), ConsistencyLevel.STRONG).getStatus());
+
+        Ride again = new Ride();
+        again.setStartTime(System.currentTimeMillis());
+        again.setId(RideIds.newId(again.getStartTime()));
+        again.setPassengerId("rider");
+        DispatchResult refused = rideRepository.dispatch(REGION, again, passenger, List.of(5.0), 5);
+        assertEquals(DispatchResult.Outcome.PASSENGER_ON_RIDE, refused.getOutcome());
+        assertEquals(DriverStatus.AVAILABLE, driverRepository.findDriverStatus(REGION, "far", ConsistencyLevel.STRONG));
+
+        rideService.endRide(REGION, ride.getId());
+        assertNull(rideRepository.findActiveById(REGION, ride.getId(), ConsistencyLevel.STRONG));
+        assertNotNull(rideRepository.findById(REGION, ride.getId(), ConsistencyLevel.STRONG));
+        assertEquals(DriverStatus.AVAILABLE, driverRepository.findDriverStatus(REGION, "near", ConsistencyLevel.STRONG));
+    }
+
+    @Test
+    void aBookingThatFailsOnAShardLetsThePassengerBookAgain() {
+        double[][] cells = cellsOnEachShard();
+        driverRepository.saveDriver(REGION, driver("near", cells[1]));
+        Passenger passenger = new Passenger();
+        passenger.setId("rider");
+        passenger.setName("Rider");
+        passenger.setStatus(PassengerStatus.ONLINE);
+        passenger.setLongitude(cells[0][0]);
+        passenger.setLatitude(cells[0][1]);
+        passengerRepository.save(REGION, passenger);
+
+        // Shard 0's AVAILABLE index is not a GEO key, so the search fails there after the marker is taken
+        RedisTemplate<String, String> shard0 = router.getGeoTemplate(REGION, 0, ConsistencyLevel.STRONG);
+        String availableKey = DriverRepository.geoIndexKey(REGION, DriverStatus.AVAILABLE);
+        shard0.delete(availableKey);
+        shard0.opsForValue().set(availableKey, "not a geo index");
+        assertThrows(RuntimeException.class, () -> rideService.bookRide(REGION, "rider"));
+        assertNull(router.getGeoTemplate(REGION, shards.shardOf(REGION, "rider"), ConsistencyLevel.STRONG)
+                .opsForHash().get("passengers:active:asia", "rider"));
+
+        shard0.delete(availableKey);
+        Ride ride = rideService.bookRide(REGION, "rider");
+        assertEquals("near", ride.getDriverId());
+    }
+
+    @Test
+    void listingsPageThroughEveryShard() {
+        for (int i = 0; i < 40; i++) {
+            Passenger passenger = new Passenger();
+            passenger.setId("listed-" + i);
+            passenger.setName("Listed " + i);
+            passenger.setStatus(PassengerStatus.ONLINE);
+            passengerRepository.save(REGION, passenger);
+        }
+        Set<String> seen = new HashSet<>();
+        List<String> cursors = new ArrayList<>();
+        String cursor = CursorPage.FIRST;
+        do {
+            CursorPage<Passenger> page = passengerRepository.findPage(REGION, cursor, 10, ConsistencyLevel.STRONG);
+            page.getItems().forEach(passenger -> seen.add(passenger.getId()));
+            cursor = page.getNextCursor();
+            cursors.add(cursor);
+        } while (cursor != null);
+        assertEquals(40, seen.size());
+        assertTrue(cursors.contains("1:0"), "the scan moves on to shard 1: " + cursors);
+    }
+
+    // A position in a cell of shard 0 and one in a neighbouring cell of shard 1, as {longitude, latitude}
+    private double[][] cellsOnEachShard() {
+        double latitude = 35.625;
+        for (int x = 0; x < 100; x++) {
+            double longitude = 139.025 + x * 0.05;
+            if (shards.shardAt(REGION, longitude, latitude) == 0 && shards.shardAt(REGION, longitude + 0.05, latitude) == 1) {
+                return new double[][]{{longitude, latitude}, {longitude + 0.05, latitude}};
+            }
+        }
+        throw new IllegalStateException("No neighbouring cells on different shards");
+    }
+
+    private int onShard(String driverId) {
+        int found = -1;
+        for (int shard = 0; shard < shards.count(REGION); shard++) {
+            if (router.getGeoTemplate(REGION, shard, ConsistencyLevel.STRONG).opsForHash().hasKey("drivers:members:asia", driverId)) {
+                assertEquals(-1, found, "placed on one shard only");
+                found = shard;
+            }
+        }
+        assertNotEquals(-1, found);
+        return found;
+    }
+
+    private List<String> nearby(double[] position) {
+        return rideRepository.getNearByDrivers(REGION, position[1], position[0], List.of(1.0), 5, ConsistencyLevel.STRONG)
+                .getContent().stream()
+                .map(GeoResult::getContent)
+                .map(GeoLocation::getName)
+                .toList();
+    }
+
+    private static Driver driver(String id, double[] position) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setName(id);
+        driver.setStatus(DriverStatus.AVAILABLE);
+        driver.setLongitude(position[0]);
+        driver.setLatitude(position[1]);
+        return driver;
+    }
+}
@@ -8,6 +8,8 @@ import {
   Popup,
   ZoomControl,
   Polyline,
+  useMap,
+  useMapEvents,
 } from "react-leaflet";
 import L from "leaflet";
 import "leaflet/dist/leaflet.css";
@@ -27,8 +29,10 @@ import {
   getDrivers,
   getPassengers,
   getRides,
+  subscribeToDriverDeltas,
+  updateDriverLocations,
 } from "../services/api";
-import { Ride } from "../types";
+import { Bounds, DriverDelta, Region, Ride } from "../types";
 
 // Distance helper (Haversine formula)
 const getDistance = (
@@ -85,6 +89,37 @@ const generateNewLocation = (
   return [lat + latOffset, lon + lonOffset];
 };
 
+// Visible map area as the delta stream expects it: latitudes within the GEO range, longitudes wrapped
+// to [-180, 180] (west greater than east when the view crosses the antimeridian)
+const toBounds = (bounds: L.LatLngBounds): Bounds => {
+  const wrap = (lon: number) => ((((lon + 180) % 360) + 360) % 360) - 180;
+  const wholeWorld = bounds.getEast() - bounds.getWest() >= 360;
+  return {
+    minLat: Math.max(bounds.getSouth(), -85),
+    maxLat: Math.min(bounds.getNorth(), 85),
+    minLon: wholeWorld ? -180 : wrap(bounds.getWest()),
+    maxLon: wholeWorld ? 180 : wrap(bounds.getEast()),
+  };
+};
+
+// Keeps one driver delta stream open for the visible part of the map, reopened after every pan or zoom
+const DriverDeltaStream: React.FC<{
+  region: Region;
+  onDeltas: (deltas: DriverDelta[]) => void;
+}> = ({ region, onDeltas }) => {
+  const map = useMap();
+  const [bounds, setBounds] = useState<Bounds>(() => toBounds(map.getBounds()));
+  useMapEvents({
+    moveend: () => setBounds(toBounds(map.getBounds())),
+  });
+
+  useEffect(
+    () => subscribeToDriverDeltas(bounds, onDeltas),
+    [bounds, region, onDeltas]
+  );
+  return null;
+};
+
 const MapView: React.FC = () => {
   const {
     drivers,
@@ -170,54 +205,84 @@ const MapView: React.FC = () => {
     }
   }, [fetchData]);
 
-  // Effect to handle smooth driver movement
+  // Apply pushed driver changes on top of the drivers loaded by fetchData
+  const applyDriverDeltas = useCallback(
+    (deltas: DriverDelta[]) => {
+      setDrivers((prevDrivers) => {
+        const byId = new Map(prevDrivers.map((driver) => [driver.id, driver]));
+        for (const delta of deltas) {
+          if (delta.type === "OFFLINE") {
+            byId.delete(delta.id);
+            continue;
+          }
+          // A driver that left the view keeps its new position, off screen, so it can come back
+          const known = byId.get(delta.id);
+          byId.set(delta.id, {
+            ...(known ?? { id: delta.id, name: delta.id }),
+            status: delta.status,
+            latitude: delta.latitude ?? known?.latitude ?? 0,
+            longitude: delta.longitude ?? known?.longitude ?? 0,
+          });
+        }
+        return Array.from(byId.values());
+      });
+    },
+    [setDrivers]
+  );
+
+  // Simulated movement of the drivers in view: new positions are sent to the server and come back,
+  // to this map and every other one watching, over the delta stream
   useEffect(() => {
     const movementInterval = setInterval(() => {
-      setDrivers((prevDrivers) => {
-        return prevDrivers.map((driver) => {
-          if (driver.status === "ON_RIDE") {
-            const ride = rides.find((r) => r.driverId === driver.id);
-            if (!ride) return driver; // no ride, skip
-
-            const passenger = passengers.find((p) => p.id === ride.passengerId);
-            if (
-              !passenger ||
-              passenger.latitude === undefined ||
-              passenger.longitude === undefined
-            ) {
-              return driver; // missing passenger location, skip
-            }
-
-            const [newLat, newLon] = generateNewLocation(
-              driver.latitude,
-              driver.longitude,
-              passenger.latitude,
-              passenger.longitude
-            );
-            if (
-              newLat === passenger.latitude &&
-              newLon === passenger.longitude
-            ) {
-              // console.log("Driver has reached the passenger");
-              handleEndRide(ride.id);
-              fetchData();
-            }
-            return { ...driver, latitude: newLat, longitude: newLon };
+      const view = mapRef.current?.getBounds();
+      const updates: { id: string; latitude: number; longitude: number }[] = [];
+      drivers.forEach((driver) => {
+        if (view && !view.contains([driver.latitude, driver.longitude])) {
+          return;
+        }
+        if (driver.status === "ON_RIDE") {
+          const ride = rides.find((r) => r.driverId === driver.id);
+          if (!ride) return; // no ride, skip
+
+          const passenger = passengers.find((p) => p.id === ride.passengerId);
+          if (
+            !passenger ||
+            passenger.latitude === undefined ||
+            passenger.longitude === undefined
+          ) {
+            return; // missing passenger location, skip
           }
 
-          if (driver.status === "AVAILABLE") {
-            const [newLat, newLon] = generateNewLocation(
-              driver.latitude,
-              driver.longitude
-            );
-            return { ...driver, latitude: newLat, longitude: newLon };
+          const [newLat, newLon] = generateNewLocation(
+            driver.latitude,
+            driver.longitude,
+            passenger.latitude,
+            passenger.longitude
+          );
+          if (
+            newLat === passenger.latitude &&
+            newLon === passenger.longitude
+          ) {
+            // console.log("Driver has reached the passenger");
+            handleEndRide(ride.id);
           }
-          return driver;
-        });
+          updates.push({ id: driver.id, latitude: newLat, longitude: newLon });
+        } else if (driver.status === "AVAILABLE") {
+          const [newLat, newLon] = generateNewLocation(
+            driver.latitude,
+            driver.longitude
+          );
+          updates.push({ id: driver.id, latitude: newLat, longitude: newLon });
+        }
       });
+      if (updates.length > 0) {
+        updateDriverLocations(updates).catch(() =>
+          console.warn("Failed to send simulated driver locations")
+        );
+      }
     }, 3000);
     return () => clearInterval(movementInterval);
-  }, [rides, drivers, passengers, setDrivers, fetchData, handleEndRide]);
+  }, [rides, drivers, passengers, handleEndRide]);
 
   // Effect to check for automatic end-ride condition
   useEffect(() => {
@@ -294,6 +359,7 @@ const MapView: React.FC = () => {
             url="https://{s}.tile.openstreetmap.org/{z}/{x}/{y}.png"
           />
           <ZoomControl position="topright" />
+          <DriverDeltaStream region={region} onDeltas={applyDriverDeltas} />
           <Marker position={currentLocation} icon={passengerOffIcon}>
             <Popup>📍 You are here</Popup>
           </Marker>
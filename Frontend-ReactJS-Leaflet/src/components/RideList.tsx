@@ -1,5 +1,5 @@
 import React, { useEffect, useState, useCallback } from "react";
-import { getDrivers, getPassengers, getRides, endRide } from "../services/api";
+import { getPassengers, getRides, endRide } from "../services/api";
 import { useRideContext } from "../context/RideContext";
 import "bootstrap-icons/font/bootstrap-icons.css";
 
@@ -7,37 +7,33 @@ import { Ride } from "../types";
 import { toast, ToastContainer } from "react-toastify";
 
 const RideList: React.FC = () => {
-  const { rides, setDrivers, setPassengers, setRides, region, registerFetchData, unregisterFetchData } = // Get region from context
+  const { rides, setPassengers, setRides, region, registerFetchData, unregisterFetchData } = // Get region from context
     useRideContext();
   const [loading, setLoading] = useState(false);
   const [expandedIds, setExpandedIds] = useState<Set<string>>(new Set());
 
-  // Fetch rides
+  // Fetch rides and passengers; drivers are loaded by the map and kept current by its delta stream
   const fetchRides = useCallback(async () => {
     console.log(`RideList: Fetching data for region: ${region}`); // Log region
     setLoading(true);
     try {
       // Explicitly clear state before fetching new data
-      setDrivers([]);
       setPassengers([]);
       setRides([]);
 
-      const fetchedDrivers = await getDrivers();
       const fetchedPassengers = await getPassengers();
       const fetchedRides = await getRides();
 
-      console.log("RideList: Fetched Drivers:", fetchedDrivers); // Log fetched data
-      console.log("RideList: Fetched Passengers:", fetchedPassengers);
+      console.log("RideList: Fetched Passengers:", fetchedPassengers); // Log fetched data
       console.log("RideList: Fetched Rides:", fetchedRides);
 
       setPassengers(fetchedPassengers);
       setRides(fetchedRides);
-      setDrivers(fetchedDrivers);
     } catch (err) {
       toast.error("Failed to fetch data from the server.");
     }
     setLoading(false);
-  }, [setDrivers, setPassengers, setRides, region]); // Keep region in dependencies for useCallback
+  }, [setPassengers, setRides, region]); // Keep region in dependencies for useCallback
 
   useEffect(() => {
     fetchRides(); // Initial fetch
@@ -1,6 +1,6 @@
 // src/services/api.ts
 import axios, { AxiosError } from "axios";
-import { Driver, Passenger, Ride } from "../types";
+import { Bounds, CursorPage, Driver, DriverDelta, Passenger, Ride } from "../types";
 import { consistencyManager } from "./consistencyManager";
 import { regionManager } from "./regionManager";
 
@@ -14,6 +14,9 @@ const api = axios.create({
   },
 });
 
+// Latest read-your-writes token per region, from the X-Consistency-Token header of our own writes
+const consistencyTokens = new Map<string, string>();
+
 // Request interceptor to add consistency and region headers
 api.interceptors.request.use(
   (config) => {
@@ -24,6 +27,11 @@ api.interceptors.request.use(
     if (config.method === "get") {
       const level = consistencyManager.get();
       config.headers["X-Consistency-Level"] = level;
+      // Keeps eventual reads on the master until the replica has our last write
+      const token = consistencyTokens.get(region);
+      if (token) {
+        config.headers["X-Consistency-Token"] = token;
+      }
     }
 
     return config;
@@ -33,9 +41,15 @@ api.interceptors.request.use(
   }
 );
 
-// Interceptor for global error handling
+// Interceptor for consistency tokens and global error handling
 api.interceptors.response.use(
-  (response) => response,
+  (response) => {
+    const token = response.headers["x-consistency-token"];
+    if (token) {
+      consistencyTokens.set(token.split(":")[0], token);
+    }
+    return response;
+  },
   (error: AxiosError) => {
     if (error.response) {
       // Server responded with an error
@@ -51,17 +65,27 @@ api.interceptors.response.use(
   }
 );
 
-// API Calls
-export const getDrivers = async (): Promise<Driver[]> => {
-  const response = await api.get("/drivers");
-  return response.data;
-};
+// Listings are cursor-paged on the server; walk every page
+const PAGE_SIZE = 500;
 
-export const getPassengers = async (): Promise<Passenger[]> => {
-  const response = await api.get("/passengers");
-  return response.data;
+const getAllPages = async <T>(path: string): Promise<T[]> => {
+  const items: T[] = [];
+  let cursor: string | null = "0";
+  while (cursor !== null) {
+    const response: { data: CursorPage<T> } = await api.get(path, {
+      params: { cursor, limit: PAGE_SIZE },
+    });
+    items.push(...response.data.items);
+    cursor = response.data.nextCursor;
+  }
+  return items;
 };
 
+// API Calls
+export const getDrivers = async (): Promise<Driver[]> => getAllPages<Driver>("/drivers");
+
+export const getPassengers = async (): Promise<Passenger[]> => getAllPages<Passenger>("/passengers");
+
 export const bookRide = async (passengerId: string): Promise<Ride> => {
   const response = await api.post(`/rides/book?id=${passengerId}`);
   return response.data;
@@ -82,9 +106,35 @@ export const addPassenger = async (passenger: any) => {
   return response.data;
 };
 
-export const getRides = async (): Promise<Ride[]> => {
-  const response = await api.get("/rides");
+export const getRides = async (): Promise<Ride[]> => getAllPages<Ride>("/rides");
+
+export const updateDriverLocations = async (
+  updates: { id: string; latitude: number; longitude: number }[]
+) => {
+  const response = await api.post("/drivers/locations:batch", updates);
   return response.data;
 };
 
+// Follows driver changes inside the bounds over server-sent events; call the returned function to stop.
+// EventSource cannot send headers, so the region goes in the query string.
+export const subscribeToDriverDeltas = (
+  bounds: Bounds,
+  onDeltas: (deltas: DriverDelta[]) => void
+): (() => void) => {
+  const params = new URLSearchParams({
+    minLat: String(bounds.minLat),
+    minLon: String(bounds.minLon),
+    maxLat: String(bounds.maxLat),
+    maxLon: String(bounds.maxLon),
+    region: regionManager.get(),
+  });
+  const source = new EventSource(`${API_URL}/drivers/deltas?${params}`);
+  source.addEventListener("drivers", (event) => {
+    onDeltas(JSON.parse((event as MessageEvent).data));
+  });
+  // The browser reconnects on its own after a dropped stream
+  source.onerror = () => console.warn("Driver delta stream interrupted, reconnecting");
+  return () => source.close();
+};
+
 export default api;
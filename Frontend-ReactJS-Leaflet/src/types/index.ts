@@ -28,3 +28,28 @@ export interface Ride {
   startTime: number;
   endTime?: number;
 }
+
+// One page of a listing; pass nextCursor back until it is null
+export interface CursorPage<T> {
+  items: T[];
+  nextCursor: string | null;
+}
+
+// One change to a driver pushed by GET /drivers/deltas; OFFLINE and LEFT mean drop the marker
+export type DriverDeltaType = 'MOVED' | 'STATUS' | 'OFFLINE' | 'LEFT';
+
+export interface DriverDelta {
+  type: DriverDeltaType;
+  id: string;
+  status: DriverStatus;
+  latitude?: number;
+  longitude?: number;
+  timestamp?: number;
+}
+
+export interface Bounds {
+  minLat: number;
+  minLon: number;
+  maxLat: number;
+  maxLon: number;
+}